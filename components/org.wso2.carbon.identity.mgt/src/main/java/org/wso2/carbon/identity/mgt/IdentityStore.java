@@ -22,6 +22,7 @@ import org.wso2.carbon.identity.mgt.claim.Claim;
 import org.wso2.carbon.identity.mgt.claim.MetaClaim;
 import org.wso2.carbon.identity.mgt.exception.AuthenticationFailure;
 import org.wso2.carbon.identity.mgt.exception.GroupNotFoundException;
+import org.wso2.carbon.identity.mgt.exception.IdentityStoreClientException;
 import org.wso2.carbon.identity.mgt.exception.IdentityStoreException;
 import org.wso2.carbon.identity.mgt.exception.UserNotFoundException;
 
@@ -112,6 +113,78 @@ public interface IdentityStore {
      */
     List<User> listUsers(int offset, int length, String domainName) throws IdentityStoreException;
 
+    /**
+     * List a page of users from the primary domain, starting after the given cursor.
+     * <p>
+     * The default implementation lists the users by offset, hence the cursor holds the offset of the next page.
+     *
+     * @param cursor Cursor returned with the previous page or null to retrieve the first page
+     * @param length Number of users to retrieve
+     * @return A page of users with the cursor of the next page
+     * @throws IdentityStoreException if there is a server error
+     */
+    default Page<User> listUsers(String cursor, int length) throws IdentityStoreException {
+
+        int offset = OffsetCursor.getOffset(cursor);
+        return OffsetCursor.toPage(listUsers(offset, length), offset, length);
+    }
+
+    /**
+     * List a page of users from a specific domain, starting after the given cursor.
+     * <p>
+     * The default implementation lists the users by offset, hence the cursor holds the offset of the next page.
+     *
+     * @param cursor     Cursor returned with the previous page or null to retrieve the first page
+     * @param length     Number of users to retrieve
+     * @param domainName The domain name to retrieve users from
+     * @return A page of users with the cursor of the next page
+     * @throws IdentityStoreException if there is a server error
+     */
+    default Page<User> listUsers(String cursor, int length, String domainName) throws IdentityStoreException {
+
+        int offset = OffsetCursor.getOffset(cursor);
+        return OffsetCursor.toPage(listUsers(offset, length, domainName), offset, length);
+    }
+
+    /**
+     * Walk through all the users of all the domains in domain order. Users are read page by page and the next page is
+     * fetched while the current page is being visited, hence at most two pages are held in memory.
+     * <p>
+     * The default implementation reads the pages of each domain of {@link #getDomainNames()} one after the other
+     * through {@link #listUsers(String, int, String)}.
+     *
+     * @param pageSize Number of users to read at once
+     * @param visitor  Visitor to be called for each user
+     * @throws IdentityStoreException if there is a server error
+     */
+    default void forEachUser(int pageSize, UserVisitor visitor) throws IdentityStoreException {
+
+        UserIteration.forEachUser(this, pageSize, null, visitor);
+    }
+
+    /**
+     * Walk through all the users of all the domains in domain order, along with the claims of each user for the given
+     * meta claims. Claims are fetched together with the page.
+     * <p>
+     * The default implementation reads the pages of each domain of {@link #getDomainNames()} one after the other
+     * through {@link #listUsers(String, int, String)} and the claims of each user through
+     * {@link #getClaimsOfUser(String, List)}.
+     *
+     * @param pageSize   Number of users to read at once
+     * @param metaClaims Meta claims to retrieve for each user
+     * @param visitor    Visitor to be called for each user
+     * @throws IdentityStoreException if there is a server error
+     */
+    default void forEachUser(int pageSize, List<MetaClaim> metaClaims, UserVisitor visitor)
+            throws IdentityStoreException {
+
+        if (metaClaims == null) {
+            throw new IdentityStoreClientException("Invalid meta claim list.");
+        }
+
+        UserIteration.forEachUser(this, pageSize, metaClaims, visitor);
+    }
+
     /**
      * List a set of users that matches a given claim.
      *
@@ -247,6 +320,39 @@ public interface IdentityStore {
      */
     List<Group> listGroups(int offset, int length, String domainName) throws IdentityStoreException;
 
+    /**
+     * List a page of groups from the primary domain, starting after the given cursor.
+     * <p>
+     * The default implementation lists the groups by offset, hence the cursor holds the offset of the next page.
+     *
+     * @param cursor Cursor returned with the previous page or null to retrieve the first page
+     * @param length Number of groups to retrieve
+     * @return A page of groups with the cursor of the next page
+     * @throws IdentityStoreException IdentityStore Exception
+     */
+    default Page<Group> listGroups(String cursor, int length) throws IdentityStoreException {
+
+        int offset = OffsetCursor.getOffset(cursor);
+        return OffsetCursor.toPage(listGroups(offset, length), offset, length);
+    }
+
+    /**
+     * List a page of groups from a specific domain, starting after the given cursor.
+     * <p>
+     * The default implementation lists the groups by offset, hence the cursor holds the offset of the next page.
+     *
+     * @param cursor     Cursor returned with the previous page or null to retrieve the first page
+     * @param length     Number of groups to retrieve
+     * @param domainName The domain to retrieve groups from
+     * @return A page of groups with the cursor of the next page
+     * @throws IdentityStoreException IdentityStore Exception
+     */
+    default Page<Group> listGroups(String cursor, int length, String domainName) throws IdentityStoreException {
+
+        int offset = OffsetCursor.getOffset(cursor);
+        return OffsetCursor.toPage(listGroups(offset, length, domainName), offset, length);
+    }
+
     /**
      * List groups that matches a given claim in a given range.
      *
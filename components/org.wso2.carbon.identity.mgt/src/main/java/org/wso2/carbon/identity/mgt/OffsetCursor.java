@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt;
+
+import org.wso2.carbon.identity.mgt.exception.IdentityStoreClientException;
+
+import java.util.List;
+
+/**
+ * Cursors of the default cursor based list operations of {@link IdentityStore}, which hold the offset of the next
+ * page for the stores listing by offset only.
+ */
+final class OffsetCursor {
+
+    private OffsetCursor() {
+    }
+
+    /**
+     * Get the offset held by a cursor.
+     *
+     * @param cursor Cursor returned with the previous page or null for the first page.
+     * @return Offset of the page.
+     * @throws IdentityStoreClientException If the cursor does not hold an offset.
+     */
+    static int getOffset(String cursor) throws IdentityStoreClientException {
+
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            int offset = Integer.parseInt(cursor);
+            if (offset >= 0) {
+                return offset;
+            }
+        } catch (NumberFormatException e) {
+            throw new IdentityStoreClientException("Invalid cursor.", e);
+        }
+        throw new IdentityStoreClientException("Invalid cursor.");
+    }
+
+    /**
+     * Build the page of the entities listed from the given offset.
+     *
+     * @param entries Entities listed from the offset.
+     * @param offset  Offset of the page.
+     * @param length  Requested number of entities.
+     * @param <T>     Type of the entities.
+     * @return Page with the cursor of the next page, which is null if the page is short.
+     */
+    static <T> Page<T> toPage(List<T> entries, int offset, int length) {
+
+        boolean hasNext = entries != null && length > 0 && entries.size() >= length;
+        return new Page<>(entries, hasNext ? String.valueOf(offset + entries.size()) : null);
+    }
+}
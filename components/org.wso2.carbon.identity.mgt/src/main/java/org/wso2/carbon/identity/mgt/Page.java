@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents a page of entities returned by a cursor based list operation.
+ *
+ * @param <T> Type of the entities in the page.
+ */
+public class Page<T> {
+
+    private List<T> entries;
+
+    private String nextCursor;
+
+    public Page(List<T> entries, String nextCursor) {
+
+        this.entries = entries == null ? Collections.emptyList() : entries;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Get the entities of this page.
+     *
+     * @return List of entities.
+     */
+    public List<T> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Get the opaque cursor to be used to retrieve the next page.
+     *
+     * @return Cursor of the next page or null if this is the last page.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Check whether there is a page after this page.
+     *
+     * @return True if there are more entities to retrieve.
+     */
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt;
+
+import org.wso2.carbon.identity.mgt.claim.Claim;
+import org.wso2.carbon.identity.mgt.claim.MetaClaim;
+import org.wso2.carbon.identity.mgt.exception.IdentityStoreClientException;
+import org.wso2.carbon.identity.mgt.exception.IdentityStoreException;
+import org.wso2.carbon.identity.mgt.exception.UserNotFoundException;
+
+import java.util.List;
+
+/**
+ * Default user iteration of {@link IdentityStore}, built on the cursor based user listing of each domain.
+ */
+final class UserIteration {
+
+    private UserIteration() {
+    }
+
+    /**
+     * Walk through the users of each domain, one page at a time.
+     *
+     * @param identityStore Identity store to read the users from.
+     * @param pageSize      Number of users to read at once.
+     * @param metaClaims    Meta claims to retrieve for each user or null if claims are not requested.
+     * @param visitor       Visitor to be called for each user.
+     * @throws IdentityStoreException if there is a server error or the visitor aborts the iteration.
+     */
+    static void forEachUser(IdentityStore identityStore, int pageSize, List<MetaClaim> metaClaims,
+                            UserVisitor visitor) throws IdentityStoreException {
+
+        if (pageSize <= 0) {
+            throw new IdentityStoreClientException("Invalid page size.");
+        }
+
+        if (visitor == null) {
+            throw new IdentityStoreClientException("Invalid user visitor.");
+        }
+
+        for (String domainName : identityStore.getDomainNames()) {
+            String cursor = null;
+            do {
+                Page<User> page = identityStore.listUsers(cursor, pageSize, domainName);
+                for (User user : page.getEntries()) {
+                    List<Claim> claims = null;
+                    if (metaClaims != null) {
+                        try {
+                            claims = identityStore.getClaimsOfUser(user.getUniqueUserId(), metaClaims);
+                        } catch (UserNotFoundException e) {
+                            // The user was deleted after the page was read.
+                            continue;
+                        }
+                    }
+                    if (!visitor.visit(user, claims)) {
+                        return;
+                    }
+                }
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+        }
+    }
+}
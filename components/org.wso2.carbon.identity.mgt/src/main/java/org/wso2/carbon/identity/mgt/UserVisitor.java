@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt;
+
+import org.wso2.carbon.identity.mgt.claim.Claim;
+import org.wso2.carbon.identity.mgt.exception.IdentityStoreException;
+
+import java.util.List;
+
+/**
+ * Callback used to walk through the users of the identity store.
+ */
+@FunctionalInterface
+public interface UserVisitor {
+
+    /**
+     * Visit a user.
+     *
+     * @param user   User
+     * @param claims Claims of the user or null if claims are not requested
+     * @return true to continue the iteration, false to stop it
+     * @throws IdentityStoreException to abort the iteration
+     */
+    boolean visit(User user, List<Claim> claims) throws IdentityStoreException;
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.cache;
+
+import java.io.Serializable;
+
+/**
+ * Message asking the nodes of a cluster to drop the cached entries of a user or a group, or the cached absence of the
+ * users owning a claim value.
+ */
+public class InvalidationMessage implements Serializable {
+
+    private static final long serialVersionUID = 5284601179046133525L;
+
+    /**
+     * Type of the invalidated entity.
+     */
+    public enum EntityType {
+        USER,
+        GROUP,
+        /**
+         * Claim value taken by a user. The unique id is the claim URI and the value, separated by a colon.
+         */
+        CLAIM
+    }
+
+    private EntityType entityType;
+
+    private String uniqueId;
+
+    private long generation;
+
+    private String origin;
+
+    /**
+     * Create an invalidation message.
+     *
+     * @param entityType Type of the invalidated entity.
+     * @param uniqueId   Unique id of the invalidated entity.
+     * @param generation Generation of the message, increasing for each message of the origin.
+     * @param origin     Id of the node publishing the message.
+     */
+    public InvalidationMessage(EntityType entityType, String uniqueId, long generation, String origin) {
+
+        this.entityType = entityType;
+        this.uniqueId = uniqueId;
+        this.generation = generation;
+        this.origin = origin;
+    }
+
+    public EntityType getEntityType() {
+        return entityType;
+    }
+
+    public String getUniqueId() {
+        return uniqueId;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    @Override
+    public String toString() {
+        return entityType + ":" + uniqueId + "@" + origin + "#" + generation;
+    }
+}
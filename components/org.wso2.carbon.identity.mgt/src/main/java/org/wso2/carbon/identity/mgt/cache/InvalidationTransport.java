@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.cache;
+
+import java.util.List;
+
+/**
+ * Transport delivering cache invalidation messages to all the nodes of a cluster, including the publishing node.
+ * <p>
+ * Transports are registered as OSGi services. The batches of a node must be delivered in the order they were
+ * published. Delivery may be at least once, as the receivers ignore the messages already applied.
+ */
+public interface InvalidationTransport {
+
+    /**
+     * Publish a batch of invalidation messages.
+     *
+     * @param messages Messages to publish.
+     */
+    void publish(List<InvalidationMessage> messages);
+
+    /**
+     * Register a listener for the messages published by any node.
+     *
+     * @param listener Invalidation listener.
+     */
+    void subscribe(InvalidationListener listener);
+
+    /**
+     * Remove a registered listener.
+     *
+     * @param listener Invalidation listener.
+     */
+    void unsubscribe(InvalidationListener listener);
+}
@@ -65,6 +65,10 @@ public class StoreConstants {
         public static final String IS_USER_EXIST = "IS_USER_EXIST";
         public static final String IS_USER_EXIST_LIST = "IS_USER_EXIST_LIST";
         public static final String TARGET_STATE = "TARGET_STATE";
+        public static final String CURSOR = "CURSOR";
+        public static final String USER_PAGE = "USER_PAGE";
+        public static final String GROUP_PAGE = "GROUP_PAGE";
+        public static final String PAGE_SIZE = "PAGE_SIZE";
 
     }
 
@@ -89,6 +93,14 @@ public class StoreConstants {
         public static final String POST_LIST_USERS = "POST_LIST_USERS";
         public static final String PRE_LIST_USERS_BY_DOMAIN = "PRE_LIST_USERS_BY_DOMAIN";
         public static final String POST_LIST_USERS_BY_DOMAIN = "POST_LIST_USERS_BY_DOMAIN";
+        public static final String PRE_LIST_USERS_BY_CURSOR = "PRE_LIST_USERS_BY_CURSOR";
+        public static final String POST_LIST_USERS_BY_CURSOR = "POST_LIST_USERS_BY_CURSOR";
+        public static final String PRE_LIST_USERS_BY_CURSOR_DOMAIN = "PRE_LIST_USERS_BY_CURSOR_DOMAIN";
+        public static final String POST_LIST_USERS_BY_CURSOR_DOMAIN = "POST_LIST_USERS_BY_CURSOR_DOMAIN";
+        public static final String PRE_FOR_EACH_USER = "PRE_FOR_EACH_USER";
+        public static final String POST_FOR_EACH_USER = "POST_FOR_EACH_USER";
+        public static final String PRE_FOR_EACH_USER_WITH_CLAIMS = "PRE_FOR_EACH_USER_WITH_CLAIMS";
+        public static final String POST_FOR_EACH_USER_WITH_CLAIMS = "POST_FOR_EACH_USER_WITH_CLAIMS";
         public static final String PRE_LIST_USERS_BY_CLAIM = "PRE_LIST_USERS_BY_CLAIM";
         public static final String POST_LIST_USERS_BY_CLAIM = "POST_LIST_USERS_BY_CLAIM";
         public static final String PRE_LIST_USERS_BY_CLAIM_DOMAIN = "PRE_LIST_USERS_BY_CLAIM_DOMAIN";
@@ -113,6 +125,10 @@ public class StoreConstants {
         public static final String POST_LIST_GROUPS = "POST_LIST_GROUPS";
         public static final String PRE_LIST_GROUPS_BY_DOMAIN = "PRE_LIST_GROUPS_BY_DOMAIN";
         public static final String POST_LIST_GROUPS_BY_DOMAIN = "POST_LIST_GROUPS_BY_DOMAIN";
+        public static final String PRE_LIST_GROUPS_BY_CURSOR = "PRE_LIST_GROUPS_BY_CURSOR";
+        public static final String POST_LIST_GROUPS_BY_CURSOR = "POST_LIST_GROUPS_BY_CURSOR";
+        public static final String PRE_LIST_GROUPS_BY_CURSOR_DOMAIN = "PRE_LIST_GROUPS_BY_CURSOR_DOMAIN";
+        public static final String POST_LIST_GROUPS_BY_CURSOR_DOMAIN = "POST_LIST_GROUPS_BY_CURSOR_DOMAIN";
         public static final String PRE_LIST_GROUPS_BY_CLAIM = "PRE_LIST_GROUPS_BY_CLAIM";
         public static final String POST_LIST_GROUPS_BY_CLAIM = "POST_LIST_GROUPS_BY_CLAIM";
         public static final String PRE_LIST_GROUPS_BY_CLAIM_DOMAIN = "PRE_LIST_GROUPS_BY_CLAIM_DOMAIN";
@@ -21,9 +21,12 @@ import org.slf4j.LoggerFactory;
 import org.wso2.carbon.identity.mgt.AuthenticationContext;
 import org.wso2.carbon.identity.mgt.Group;
 import org.wso2.carbon.identity.mgt.IdentityStore;
+import org.wso2.carbon.identity.mgt.Page;
 import org.wso2.carbon.identity.mgt.User;
+import org.wso2.carbon.identity.mgt.UserVisitor;
 import org.wso2.carbon.identity.mgt.bean.GroupBean;
 import org.wso2.carbon.identity.mgt.bean.UserBean;
+import org.wso2.carbon.identity.mgt.cache.InvalidationMessage;
 import org.wso2.carbon.identity.mgt.claim.Claim;
 import org.wso2.carbon.identity.mgt.claim.MetaClaim;
 import org.wso2.carbon.identity.mgt.exception.AuthenticationFailure;
@@ -31,13 +34,20 @@ import org.wso2.carbon.identity.mgt.exception.GroupNotFoundException;
 import org.wso2.carbon.identity.mgt.exception.IdentityStoreException;
 import org.wso2.carbon.identity.mgt.exception.UserNotFoundException;
 import org.wso2.carbon.identity.mgt.impl.config.CacheConfig;
+import org.wso2.carbon.identity.mgt.impl.util.BoundedCache;
 import org.wso2.carbon.identity.mgt.impl.util.CacheHelper;
+import org.wso2.carbon.identity.mgt.impl.util.SingleFlight;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import javax.cache.Cache;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
 import javax.cache.CacheManager;
 import javax.security.auth.callback.Callback;
 
@@ -56,39 +66,176 @@ public class CacheBackedIdentityStore implements IdentityStore {
 
     private static final String UNIQUE_GROUP_CACHE = "uniqueGroupCache";
 
+    private static final String USER_CLAIMS_CACHE = "userClaimsCache";
+
+    private static final String MISSING_USER_CACHE = "missingUserCache";
+
+    private static final String CLAIM_DOMAIN_USER_ID_CACHE = "claimDomainUserIdCache";
+
+    private static final String DOMAIN_USER_EPOCH_CACHE = "domainUserEpochCache";
+
     private IdentityStore identityStore;
 
     private Map<String, Boolean> cacheStatus = new HashMap<>();
 
     private CacheManager cacheManager;
 
+    private BoundedCache<String, User> userCache;
+
+    private BoundedCache<String, Group> groupCache;
+
+    private BoundedCache<String, Claim[]> claimsCache;
+
+    private BoundedCache<String, Boolean> missingUserCache;
+
+    // Concurrent cache misses of the same key share a single call to the underlying identity store.
+    private final SingleFlight<String, User> userLoads = new SingleFlight<>();
+
+    private final SingleFlight<String, User> claimUserLoads = new SingleFlight<>();
+
+    private final SingleFlight<String, Group> groupLoads = new SingleFlight<>();
+
+    private final SingleFlight<String, List<Claim>> claimsLoads = new SingleFlight<>();
+
+    private List<Domain> domains;
+
+    private volatile InvalidationBroadcaster invalidationBroadcaster;
 
     public CacheBackedIdentityStore(Map<String, CacheConfig> cacheConfigs, IdentityStore identityStore,
             CacheManager cacheManager)
             throws IdentityStoreException {
 
+        this(cacheConfigs, identityStore, Collections.emptyList(), cacheManager);
+    }
+
+    public CacheBackedIdentityStore(Map<String, CacheConfig> cacheConfigs, IdentityStore identityStore,
+            List<Domain> domains, CacheManager cacheManager)
+            throws IdentityStoreException {
+
         this.identityStore = identityStore;
         this.cacheManager = cacheManager;
+        this.domains = domains;
 
         // Initialize all caches.
-        initCacheIfRequired(UNIQUE_USER_CACHE, cacheConfigs);
-        initCacheIfRequired(UNIQUE_GROUP_CACHE, cacheConfigs);
+        userCache = initCacheIfRequired(UNIQUE_USER_CACHE, User.class, CacheHelper.MEDIUM_EXPIRE_TIME, cacheConfigs);
+        groupCache = initCacheIfRequired(UNIQUE_GROUP_CACHE, Group.class, CacheHelper.MEDIUM_EXPIRE_TIME,
+                cacheConfigs);
+        claimsCache = initCacheIfRequired(USER_CLAIMS_CACHE, Claim[].class, CacheHelper.LOW_EXPIRE_TIME,
+                cacheConfigs);
+        missingUserCache = initCacheIfRequired(MISSING_USER_CACHE, Boolean.class, CacheHelper.MIN_EXPIRE_TIME,
+                cacheConfigs);
+
+        // Unique claim values are resolved to domain users inside the domains, hence the cache is handed over to them.
+        BoundedCache<String, DomainUserCache.ClaimEntry> claimDomainUserIdCache = initCacheIfRequired(
+                CLAIM_DOMAIN_USER_ID_CACHE, DomainUserCache.ClaimEntry.class, CacheHelper.MEDIUM_EXPIRE_TIME,
+                cacheConfigs);
+        BoundedCache<String, Long> domainUserEpochCache = initCacheIfRequired(DOMAIN_USER_EPOCH_CACHE, Long.class,
+                CacheHelper.MEDIUM_EXPIRE_TIME, cacheConfigs);
+        if (claimDomainUserIdCache != null && domainUserEpochCache != null) {
+            DomainUserCache cache = new DomainUserCache(claimDomainUserIdCache, domainUserEpochCache);
+            domains.forEach(domain -> domain.setDomainUserCache(cache));
+        }
 
         if (log.isDebugEnabled()) {
             log.debug("Cache backed identity store successfully initialized.");
         }
     }
 
-    private void initCacheIfRequired(String cacheName, Map<String, CacheConfig> cacheConfigs) {
+    private <V> BoundedCache<String, V> initCacheIfRequired(String cacheName, Class<V> valueClass,
+                                                            int defaultExpiryTime,
+                                                            Map<String, CacheConfig> cacheConfigs) {
         if (CacheHelper.isCacheEnabled(cacheConfigs, cacheName)) {
-            CacheHelper.createCache(cacheName, String.class, User.class, CacheHelper.MEDIUM_EXPIRE_TIME,
-                    cacheConfigs, cacheManager);
             cacheStatus.put(cacheName, true);
+            return CacheHelper.createCache(cacheName, String.class, valueClass, defaultExpiryTime, cacheConfigs,
+                    cacheManager);
         } else {
             cacheStatus.put(cacheName, false);
+            return null;
         }
     }
 
+    /**
+     * Set the broadcaster used to invalidate the entries of the updated users and groups on the other nodes.
+     *
+     * @param invalidationBroadcaster Invalidation broadcaster or null to stop publishing the invalidations.
+     */
+    public void setInvalidationBroadcaster(InvalidationBroadcaster invalidationBroadcaster) {
+        this.invalidationBroadcaster = invalidationBroadcaster;
+    }
+
+    /**
+     * Drop the cached entries of a user or a group updated on another node.
+     *
+     * @param message Invalidation message.
+     */
+    public void applyInvalidation(InvalidationMessage message) {
+
+        String uniqueId = message.getUniqueId();
+        if (message.getEntityType() == InvalidationMessage.EntityType.CLAIM) {
+            applyClaimInvalidation(message);
+            return;
+        }
+
+        String primaryDomainName;
+        try {
+            primaryDomainName = identityStore.getPrimaryDomainName();
+        } catch (IdentityStoreException e) {
+            log.warn(String.format("Failed to apply the cache invalidation %s.", message), e);
+            return;
+        }
+
+        if (message.getEntityType() == InvalidationMessage.EntityType.USER) {
+            doDeleteClaimsOfUser(uniqueId);
+            doDeleteUser(uniqueId, primaryDomainName);
+        } else {
+            doDeleteGroup(uniqueId, primaryDomainName);
+        }
+
+        String[] uniqueIdParts = uniqueId.split("\\.", 2);
+        if (uniqueIdParts.length != 2) {
+            return;
+        }
+        for (Domain domain : domains) {
+            if (String.valueOf(domain.getId()).equals(uniqueIdParts[0])) {
+                if (message.getEntityType() == InvalidationMessage.EntityType.USER) {
+                    domain.invalidateCachedUser(uniqueIdParts[1]);
+                } else {
+                    domain.invalidateCachedGroup(uniqueIdParts[1]);
+                }
+            }
+        }
+    }
+
+    private void applyClaimInvalidation(InvalidationMessage message) {
+
+        if (missingUserCache == null) {
+            return;
+        }
+
+        Set<String> domainNames;
+        try {
+            domainNames = identityStore.getDomainNames();
+        } catch (IdentityStoreException e) {
+            log.warn(String.format("Failed to apply the cache invalidation %s.", message), e);
+            return;
+        }
+        domainNames.forEach(domainName -> missingUserCache.remove(domainName + ":" + message.getUniqueId()));
+    }
+
+    /**
+     * Get the unique ids of the users whose claims were read most recently.
+     *
+     * @param limit Maximum number of users.
+     * @return Unique user ids, most recently read first.
+     */
+    public List<String> getRecentUserIds(int limit) {
+
+        if (claimsCache == null) {
+            return Collections.emptyList();
+        }
+        return claimsCache.getRecentKeys(limit);
+    }
+
     @Override
     public boolean isUserExist(List<Claim> userClaims, String domainName) throws IdentityStoreException {
         return identityStore.isUserExist(userClaims, domainName);
@@ -102,7 +249,7 @@ public class CacheBackedIdentityStore implements IdentityStore {
     @Override
     public User getUser(String uniqueUserId) throws IdentityStoreException, UserNotFoundException {
 
-        if (cacheStatus.get(UNIQUE_USER_CACHE) && isNullOrEmpty(uniqueUserId)) {
+        if (cacheStatus.get(UNIQUE_USER_CACHE) && !isNullOrEmpty(uniqueUserId)) {
             return doGetUser(uniqueUserId, identityStore.getPrimaryDomainName());
         }
 
@@ -114,13 +261,25 @@ public class CacheBackedIdentityStore implements IdentityStore {
     @Override
     public User getUser(Claim claim) throws IdentityStoreException, UserNotFoundException {
 
+        if (missingUserCache != null && claim != null && !isNullOrEmpty(claim.getValue())) {
+            return doGetUser(claim, identityStore.getPrimaryDomainName(), () -> identityStore.getUser(claim));
+        }
+
         return identityStore.getUser(claim);
     }
 
     @Override
     public User getUser(Claim claim, String domainName) throws IdentityStoreException, UserNotFoundException {
 
-        return identityStore.getUser(claim);
+        if (isNullOrEmpty(domainName)) {
+            return getUser(claim);
+        }
+
+        if (missingUserCache != null && claim != null && !isNullOrEmpty(claim.getValue())) {
+            return doGetUser(claim, domainName, () -> identityStore.getUser(claim, domainName));
+        }
+
+        return identityStore.getUser(claim, domainName);
     }
 
     @Override
@@ -135,6 +294,31 @@ public class CacheBackedIdentityStore implements IdentityStore {
         return identityStore.listUsers(offset, length, domainName);
     }
 
+    @Override
+    public Page<User> listUsers(String cursor, int length) throws IdentityStoreException {
+
+        return identityStore.listUsers(cursor, length);
+    }
+
+    @Override
+    public Page<User> listUsers(String cursor, int length, String domainName) throws IdentityStoreException {
+
+        return identityStore.listUsers(cursor, length, domainName);
+    }
+
+    @Override
+    public void forEachUser(int pageSize, UserVisitor visitor) throws IdentityStoreException {
+
+        identityStore.forEachUser(pageSize, visitor);
+    }
+
+    @Override
+    public void forEachUser(int pageSize, List<MetaClaim> metaClaims, UserVisitor visitor)
+            throws IdentityStoreException {
+
+        identityStore.forEachUser(pageSize, metaClaims, visitor);
+    }
+
     @Override
     public List<User> listUsers(Claim claim, int offset, int length) throws IdentityStoreException {
 
@@ -213,6 +397,18 @@ public class CacheBackedIdentityStore implements IdentityStore {
         return identityStore.listGroups(offset, length, domainName);
     }
 
+    @Override
+    public Page<Group> listGroups(String cursor, int length) throws IdentityStoreException {
+
+        return identityStore.listGroups(cursor, length);
+    }
+
+    @Override
+    public Page<Group> listGroups(String cursor, int length, String domainName) throws IdentityStoreException {
+
+        return identityStore.listGroups(cursor, length, domainName);
+    }
+
     @Override
     public List<Group> listGroups(Claim claim, int offset, int length) throws IdentityStoreException {
 
@@ -262,6 +458,10 @@ public class CacheBackedIdentityStore implements IdentityStore {
     @Override
     public List<Claim> getClaimsOfUser(String uniqueUserId) throws IdentityStoreException, UserNotFoundException {
 
+        if (cacheStatus.get(USER_CLAIMS_CACHE) && !isNullOrEmpty(uniqueUserId)) {
+            return doGetClaimsOfUser(uniqueUserId);
+        }
+
         return identityStore.getClaimsOfUser(uniqueUserId);
     }
 
@@ -269,6 +469,22 @@ public class CacheBackedIdentityStore implements IdentityStore {
     public List<Claim> getClaimsOfUser(String uniqueUserId, List<MetaClaim> metaClaims) throws IdentityStoreException,
             UserNotFoundException {
 
+        if (cacheStatus.get(USER_CLAIMS_CACHE) && !isNullOrEmpty(uniqueUserId) && metaClaims != null) {
+
+            // Serve the subset from the full claims of the user if available. Subsets are not cached, as they cannot
+            // serve the other lookups.
+            Claim[] claims = claimsCache.get(uniqueUserId, () -> reloadClaimsOfUser(uniqueUserId));
+            if (claims != null) {
+                Set<String> claimUris = metaClaims.stream()
+                        .map(MetaClaim::getClaimUri)
+                        .collect(Collectors.toSet());
+                return Arrays.stream(claims)
+                        .filter(claim -> claimUris.contains(claim.getClaimUri()))
+                        .map(CacheBackedIdentityStore::copyClaim)
+                        .collect(Collectors.toList());
+            }
+        }
+
         return identityStore.getClaimsOfUser(uniqueUserId, metaClaims);
     }
 
@@ -288,61 +504,101 @@ public class CacheBackedIdentityStore implements IdentityStore {
     @Override
     public User addUser(UserBean userBean) throws IdentityStoreException {
 
-        return identityStore.addUser(userBean);
+        try {
+            return identityStore.addUser(userBean);
+        } finally {
+            doDeleteMissingUsers(userBean == null ? null : userBean.getClaims());
+        }
     }
 
     @Override
     public User addUser(UserBean userBean, String domainName) throws IdentityStoreException {
 
-        return identityStore.addUser(userBean, domainName);
+        try {
+            return identityStore.addUser(userBean, domainName);
+        } finally {
+            doDeleteMissingUsers(userBean == null ? null : userBean.getClaims());
+        }
     }
 
     @Override
     public List<User> addUsers(List<UserBean> userBeen) throws IdentityStoreException {
 
-        return identityStore.addUsers(userBeen);
+        try {
+            return identityStore.addUsers(userBeen);
+        } finally {
+            doDeleteMissingUsersOf(userBeen);
+        }
     }
 
     @Override
     public List<User> addUsers(List<UserBean> userBeen, String domainName) throws IdentityStoreException {
 
-        return identityStore.addUsers(userBeen, domainName);
+        try {
+            return identityStore.addUsers(userBeen, domainName);
+        } finally {
+            doDeleteMissingUsersOf(userBeen);
+        }
     }
 
     @Override
     public void updateUserClaims(String uniqueUserId, List<Claim> claims) throws IdentityStoreException,
             UserNotFoundException {
 
-        identityStore.updateUserClaims(uniqueUserId, claims);
+        try {
+            identityStore.updateUserClaims(uniqueUserId, claims);
+        } finally {
+            doDeleteClaimsOfUser(uniqueUserId);
+            doDeleteMissingUsers(claims);
+            publishUserInvalidation(uniqueUserId);
+        }
     }
 
     @Override
     public void updateUserClaims(String uniqueUserId, List<Claim> claimsToAdd, List<Claim> claimsToRemove) throws
             IdentityStoreException, UserNotFoundException {
 
-        identityStore.updateUserClaims(uniqueUserId, claimsToAdd, claimsToRemove);
+        try {
+            identityStore.updateUserClaims(uniqueUserId, claimsToAdd, claimsToRemove);
+        } finally {
+            doDeleteClaimsOfUser(uniqueUserId);
+            doDeleteMissingUsers(claimsToAdd);
+            publishUserInvalidation(uniqueUserId);
+        }
     }
 
     @Override
     public void updateUserCredentials(String uniqueUserId, List<Callback> credentials) throws IdentityStoreException,
             UserNotFoundException {
 
-        identityStore.updateUserCredentials(uniqueUserId, credentials);
+        try {
+            identityStore.updateUserCredentials(uniqueUserId, credentials);
+        } finally {
+            publishUserInvalidation(uniqueUserId);
+        }
     }
 
     @Override
     public void updateUserCredentials(String uniqueUserId, List<Callback> credentialsToAdd, List<Callback>
             credentialsToRemove) throws IdentityStoreException, UserNotFoundException {
 
-        identityStore.updateUserCredentials(uniqueUserId, credentialsToAdd, credentialsToRemove);
+        try {
+            identityStore.updateUserCredentials(uniqueUserId, credentialsToAdd, credentialsToRemove);
+        } finally {
+            publishUserInvalidation(uniqueUserId);
+        }
     }
 
     @Override
     public void deleteUser(String uniqueUserId) throws IdentityStoreException, UserNotFoundException {
 
-        identityStore.deleteUser(uniqueUserId);
-
-        doDeleteUser(uniqueUserId, identityStore.getPrimaryDomainName());
+        try {
+            identityStore.deleteUser(uniqueUserId);
+        } finally {
+            doDeleteClaimsOfUser(uniqueUserId);
+            doDeleteUser(uniqueUserId, identityStore.getPrimaryDomainName());
+            publishUserInvalidation(uniqueUserId);
+        }
     }
 
     @Override
@@ -399,9 +655,12 @@ public class CacheBackedIdentityStore implements IdentityStore {
     @Override
     public void deleteGroup(String uniqueGroupId) throws IdentityStoreException, GroupNotFoundException {
 
-        identityStore.deleteGroup(uniqueGroupId);
-
-        doDeleteGroup(uniqueGroupId, identityStore.getPrimaryDomainName());
+        try {
+            identityStore.deleteGroup(uniqueGroupId);
+        } finally {
+            doDeleteGroup(uniqueGroupId, identityStore.getPrimaryDomainName());
+            publishGroupInvalidation(uniqueGroupId);
+        }
     }
 
     @Override
@@ -421,7 +680,13 @@ public class CacheBackedIdentityStore implements IdentityStore {
     public AuthenticationContext authenticate(Claim claim, Callback[] credentials, String domainName) throws
             AuthenticationFailure, IdentityStoreException {
 
-        return identityStore.authenticate(claim, credentials, domainName);
+        AuthenticationContext authenticationContext = identityStore.authenticate(claim, credentials, domainName);
+
+        // Claims of the authenticated user are read by the login handlers, hence route them through the cache.
+        if (authenticationContext.isAuthenticated() && authenticationContext.getUser() != null) {
+            authenticationContext.getUser().setIdentityStore(this);
+        }
+        return authenticationContext;
     }
 
     @Override
@@ -439,52 +704,251 @@ public class CacheBackedIdentityStore implements IdentityStore {
     @Override
     public void setUserState(String uniqueUserId, String targetState) throws IdentityStoreException,
             UserNotFoundException {
-        identityStore.setUserState(uniqueUserId, targetState);
+
+        try {
+            identityStore.setUserState(uniqueUserId, targetState);
+        } finally {
+            doDeleteClaimsOfUser(uniqueUserId);
+            doDeleteUser(uniqueUserId, identityStore.getPrimaryDomainName());
+            publishUserInvalidation(uniqueUserId);
+        }
     }
 
     private User doGetUser(String uniqueUserId, String domainName) throws IdentityStoreException,
             UserNotFoundException {
 
-        Cache<String, User> userCache = cacheManager.getCache(UNIQUE_USER_CACHE, String.class, User.class);
-        User user = userCache.get(uniqueUserId.hashCode() + ":" + domainName.hashCode());
+        String key = getCacheKey(uniqueUserId, domainName);
+        User user = userCache.get(key, () -> {
+            try {
+                return identityStore.getUser(uniqueUserId);
+            } catch (UserNotFoundException e) {
+                return null;
+            }
+        });
 
         if (user == null) {
-            user = identityStore.getUser(uniqueUserId);
-            userCache.put(user.getUniqueUserId().hashCode() + ":" + user.getDomainName().hashCode(), user);
-            user.setIdentityStore(this);
-            return user;
+            user = coalesce(userLoads, key, () -> {
+                // A user updated while being loaded is not cached, as the loaded state might predate the update.
+                long generation = userCache.getGeneration(key);
+                User loadedUser = identityStore.getUser(uniqueUserId);
+                userCache.putIfUnchanged(key, loadedUser, generation);
+                return loadedUser;
+            }, UserNotFoundException.class);
+        }
+
+        user.setIdentityStore(this);
+        return user;
+    }
+
+    /**
+     * Get the user owning the claim, remembering the claim values with no owner in the domain so that repeated
+     * lookups of non existing users do not reach the domain.
+     */
+    private User doGetUser(Claim claim, String domainName, UserSupplier userSupplier) throws IdentityStoreException,
+            UserNotFoundException {
+
+        String missingUserKey = getMissingUserKey(claim, domainName);
+        if (missingUserCache.get(missingUserKey) != null) {
+            throw new UserNotFoundException("Invalid claim value.");
         }
 
+        User user = coalesce(claimUserLoads, missingUserKey, () -> {
+            long generation = missingUserCache.getGeneration(missingUserKey);
+            try {
+                return userSupplier.get();
+            } catch (UserNotFoundException e) {
+                // A user added with the claim value while it was looked up removes the key, and must not be hidden.
+                missingUserCache.putIfUnchanged(missingUserKey, Boolean.TRUE, generation);
+                throw e;
+            }
+        }, UserNotFoundException.class);
+
         user.setIdentityStore(this);
         return user;
     }
 
+    private void doDeleteMissingUsersOf(List<UserBean> userBeans) throws IdentityStoreException {
+
+        if (userBeans == null) {
+            return;
+        }
+
+        for (UserBean userBean : userBeans) {
+            if (userBean != null) {
+                doDeleteMissingUsers(userBean.getClaims());
+            }
+        }
+    }
+
+    private void doDeleteMissingUsers(List<Claim> claims) throws IdentityStoreException {
+
+        InvalidationBroadcaster broadcaster = invalidationBroadcaster;
+        if ((missingUserCache == null && broadcaster == null) || claims == null || claims.isEmpty()) {
+            return;
+        }
+
+        // The claim value might have been taken in any domain, hence forget the misses of all the domains. The claim
+        // invalidations are published even without the cache, as the other nodes may filter the existence checks.
+        Set<String> domainNames = missingUserCache == null ? Collections.emptySet() : identityStore.getDomainNames();
+        for (Claim claim : claims) {
+            if (claim != null && !isNullOrEmpty(claim.getValue())) {
+                domainNames.forEach(domainName -> missingUserCache.remove(getMissingUserKey(claim, domainName)));
+                if (broadcaster != null) {
+                    broadcaster.publishClaim(claim.getClaimUri(), claim.getValue());
+                }
+            }
+        }
+    }
+
+    private static String getMissingUserKey(Claim claim, String domainName) {
+
+        // Matches the unique id of the claim invalidations, prefixed by the domain name.
+        return domainName + ":" + claim.getClaimUri() + ":" + claim.getValue();
+    }
+
+    /**
+     * Supplier of a user which may not exist.
+     */
+    @FunctionalInterface
+    private interface UserSupplier {
+
+        User get() throws IdentityStoreException, UserNotFoundException;
+    }
+
+    /**
+     * Run the loader through the given single flight, unwrapping the original exception of the loader.
+     */
+    private <V, E extends Exception> V coalesce(SingleFlight<String, V> singleFlight, String key, Callable<V> loader,
+                                                Class<E> notFoundExceptionType) throws IdentityStoreException, E {
+
+        try {
+            return singleFlight.execute(key, loader);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IdentityStoreException) {
+                throw (IdentityStoreException) cause;
+            }
+            if (notFoundExceptionType.isInstance(cause)) {
+                throw notFoundExceptionType.cast(cause);
+            }
+            throw new IdentityStoreException("Failed to load the entry from the identity store.", cause);
+        }
+    }
+
     private Group doGetGroup(String uniqueGroupId, String domainName) throws IdentityStoreException,
             GroupNotFoundException {
 
-        Cache<String, Group> groupCache = cacheManager.getCache(UNIQUE_GROUP_CACHE, String.class, Group.class);
-        Group group = groupCache.get(uniqueGroupId.hashCode() + ":" + domainName.hashCode());
+        String key = getCacheKey(uniqueGroupId, domainName);
+        Group group = groupCache.get(key, () -> {
+            try {
+                return identityStore.getGroup(uniqueGroupId);
+            } catch (GroupNotFoundException e) {
+                return null;
+            }
+        });
 
         if (group == null) {
-            group = identityStore.getGroup(uniqueGroupId);
-            groupCache.put(group.getUniqueGroupId().hashCode() + ":" + group.getDomainName().hashCode(), group);
-            group.setIdentityStore(this);
-            return group;
+            group = coalesce(groupLoads, key, () -> {
+                long generation = groupCache.getGeneration(key);
+                Group loadedGroup = identityStore.getGroup(uniqueGroupId);
+                groupCache.putIfUnchanged(key, loadedGroup, generation);
+                return loadedGroup;
+            }, GroupNotFoundException.class);
         }
 
         group.setIdentityStore(this);
         return group;
     }
 
+    private List<Claim> doGetClaimsOfUser(String uniqueUserId) throws IdentityStoreException, UserNotFoundException {
+
+        Claim[] claims = claimsCache.get(uniqueUserId, () -> reloadClaimsOfUser(uniqueUserId));
+
+        if (claims == null) {
+            List<Claim> claimsOfUser = coalesce(claimsLoads, uniqueUserId, () -> {
+                long generation = claimsCache.getGeneration(uniqueUserId);
+                List<Claim> loadedClaims = identityStore.getClaimsOfUser(uniqueUserId);
+                claimsCache.putIfUnchanged(uniqueUserId, copyClaims(loadedClaims), generation);
+                return loadedClaims;
+            }, UserNotFoundException.class);
+            // The loaded list is shared by all the coalesced callers.
+            return new ArrayList<>(Arrays.asList(copyClaims(claimsOfUser)));
+        }
+
+        return new ArrayList<>(Arrays.asList(copyClaims(Arrays.asList(claims))));
+    }
+
+    /**
+     * Copy the claims, as claims are mutable and the cached claims must not change with the claims of the callers.
+     */
+    private static Claim[] copyClaims(List<Claim> claims) {
+
+        return claims.stream()
+                .map(CacheBackedIdentityStore::copyClaim)
+                .toArray(Claim[]::new);
+    }
+
+    private static Claim copyClaim(Claim claim) {
+
+        return new Claim(claim.getDialectUri(), claim.getClaimUri(), claim.getValue());
+    }
+
+    /**
+     * Load the claims of a user to refresh the cached claims. Returns null if the user no longer exists.
+     */
+    private Claim[] reloadClaimsOfUser(String uniqueUserId) throws IdentityStoreException {
+
+        try {
+            return copyClaims(identityStore.getClaimsOfUser(uniqueUserId));
+        } catch (UserNotFoundException e) {
+            return null;
+        }
+    }
+
+    private void doDeleteClaimsOfUser(String uniqueUserId) {
+
+        if (claimsCache == null || isNullOrEmpty(uniqueUserId)) {
+            return;
+        }
+
+        claimsCache.remove(uniqueUserId);
+    }
+
     private void doDeleteUser(String uniqueUserId, String domainName) {
 
-        Cache<String, User> userCache = cacheManager.getCache(UNIQUE_USER_CACHE, String.class, User.class);
-        userCache.remove(uniqueUserId.hashCode() + ":" + domainName.hashCode());
+        if (userCache == null) {
+            return;
+        }
+
+        userCache.remove(getCacheKey(uniqueUserId, domainName));
     }
 
     private void doDeleteGroup(String uniqueGroupId, String domainName) {
 
-        Cache<String, Group> groupCache = cacheManager.getCache(UNIQUE_GROUP_CACHE, String.class, Group.class);
-        groupCache.remove(uniqueGroupId.hashCode() + ":" + domainName.hashCode());
+        if (groupCache == null) {
+            return;
+        }
+
+        groupCache.remove(getCacheKey(uniqueGroupId, domainName));
+    }
+
+    private static String getCacheKey(String uniqueId, String domainName) {
+        return domainName + ":" + uniqueId;
+    }
+
+    private void publishUserInvalidation(String uniqueUserId) {
+
+        InvalidationBroadcaster broadcaster = invalidationBroadcaster;
+        if (broadcaster != null && !isNullOrEmpty(uniqueUserId)) {
+            broadcaster.publishUser(uniqueUserId);
+        }
+    }
+
+    private void publishGroupInvalidation(String uniqueGroupId) {
+
+        InvalidationBroadcaster broadcaster = invalidationBroadcaster;
+        if (broadcaster != null && !isNullOrEmpty(uniqueGroupId)) {
+            broadcaster.publishGroup(uniqueGroupId);
+        }
     }
 }
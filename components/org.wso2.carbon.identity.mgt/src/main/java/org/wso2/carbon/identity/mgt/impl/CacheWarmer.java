@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.identity.mgt.Page;
+import org.wso2.carbon.identity.mgt.User;
+import org.wso2.carbon.identity.mgt.exception.IdentityStoreException;
+import org.wso2.carbon.identity.mgt.exception.UserNotFoundException;
+import org.wso2.carbon.identity.mgt.impl.config.CacheWarmUpConfig;
+import org.wso2.carbon.identity.mgt.impl.util.UnitOfWork;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Loads users into the caches of the identity store in the background, so that the first requests after a start do
+ * not all go to the connectors.
+ * <p>
+ * The users to load are read from the snapshot of the most recently active users written at the previous shutdown. If
+ * there is no snapshot, the users of the primary domain are listed instead. Users are loaded in batches by a bounded
+ * number of threads and the warm up can be cancelled at any time.
+ */
+public class CacheWarmer {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheWarmer.class);
+
+    private static final String THREAD_NAME = "identity-store-cache-warm-up";
+
+    private final CacheBackedIdentityStore identityStore;
+
+    private final CacheWarmUpConfig warmUpConfig;
+
+    private volatile boolean cancelled;
+
+    private ExecutorService coordinator;
+
+    private ExecutorService workers;
+
+    public CacheWarmer(CacheBackedIdentityStore identityStore, CacheWarmUpConfig warmUpConfig) {
+
+        this.identityStore = identityStore;
+        this.warmUpConfig = warmUpConfig;
+    }
+
+    /**
+     * Start warming up the caches. Returns immediately.
+     */
+    public synchronized void start() {
+
+        AtomicInteger workerCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(warmUpConfig.getParallelism(), runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME + "-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        coordinator = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        coordinator.execute(this::warmUp);
+        coordinator.shutdown();
+    }
+
+    /**
+     * Cancel the warm up. Users being loaded are left to complete, the rest are skipped.
+     */
+    public synchronized void cancel() {
+
+        cancelled = true;
+        if (coordinator != null) {
+            coordinator.shutdownNow();
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Persist the unique ids of the most recently active users to be loaded at the next start. Does nothing if no
+     * snapshot file is configured.
+     */
+    public void writeSnapshot() {
+
+        if (warmUpConfig.getSnapshotFile() == null) {
+            return;
+        }
+
+        List<String> recentUserIds = identityStore.getRecentUserIds(warmUpConfig.getMaxUsers());
+        Path snapshotFile = Paths.get(warmUpConfig.getSnapshotFile()).toAbsolutePath();
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            Path tempFile = Files.createTempFile(snapshotFile.getParent(), snapshotFile.getFileName().toString(),
+                    ".tmp");
+            Files.write(tempFile, recentUserIds, StandardCharsets.UTF_8);
+            try {
+                Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn(String.format("Failed to write the cache warm up snapshot - %s", snapshotFile), e);
+            return;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Wrote %d recent users to the cache warm up snapshot - %s", recentUserIds.size(),
+                    snapshotFile));
+        }
+    }
+
+    private void warmUp() {
+
+        long startTime = System.currentTimeMillis();
+
+        List<String> uniqueUserIds;
+        try {
+            uniqueUserIds = getUniqueUserIdsToLoad();
+        } catch (IdentityStoreException | IOException e) {
+            log.error("Failed to retrieve the users to warm up the identity store caches.", e);
+            return;
+        }
+
+        List<Future<Integer>> batches = new ArrayList<>();
+        try {
+            for (int i = 0; i < uniqueUserIds.size() && !cancelled; i += warmUpConfig.getBatchSize()) {
+                List<String> batch = uniqueUserIds.subList(i, Math.min(i + warmUpConfig.getBatchSize(),
+                        uniqueUserIds.size()));
+                batches.add(workers.submit(() -> loadUsers(batch)));
+            }
+        } catch (RejectedExecutionException e) {
+            // Cancelled while submitting the batches.
+            return;
+        } finally {
+            workers.shutdown();
+        }
+
+        int loadedUsers = 0;
+        for (Future<Integer> batch : batches) {
+            try {
+                loadedUsers += batch.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (CancellationException e) {
+                return;
+            } catch (ExecutionException e) {
+                log.warn("Failed to warm up the identity store caches with a batch of users.", e.getCause());
+            }
+        }
+
+        if (cancelled) {
+            log.info("Identity store cache warm up cancelled after loading {} users.", loadedUsers);
+        } else {
+            log.info("Warmed up the identity store caches with {} users in {} ms.", loadedUsers,
+                    System.currentTimeMillis() - startTime);
+        }
+    }
+
+    private List<String> getUniqueUserIdsToLoad() throws IdentityStoreException, IOException {
+
+        int maxUsers = warmUpConfig.getMaxUsers();
+        if (warmUpConfig.getSnapshotFile() != null) {
+            Path snapshotFile = Paths.get(warmUpConfig.getSnapshotFile());
+            if (Files.isRegularFile(snapshotFile)) {
+                return Files.readAllLines(snapshotFile, StandardCharsets.UTF_8).stream()
+                        .map(String::trim)
+                        .filter(uniqueUserId -> !uniqueUserId.isEmpty())
+                        .distinct()
+                        .limit(maxUsers)
+                        .collect(Collectors.toList());
+            }
+        }
+
+        List<String> uniqueUserIds = new ArrayList<>();
+        String cursor = null;
+        do {
+            Page<User> page = identityStore.listUsers(cursor, Math.min(warmUpConfig.getBatchSize(),
+                    maxUsers - uniqueUserIds.size()));
+            page.getEntries().forEach(user -> uniqueUserIds.add(user.getUniqueUserId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null && uniqueUserIds.size() < maxUsers && !cancelled);
+        return uniqueUserIds;
+    }
+
+    private int loadUsers(List<String> uniqueUserIds) {
+
+        int loadedUsers = 0;
+        // Users of a batch are resolved over a single read only connection.
+        try (UnitOfWork.ReadScope readScope = UnitOfWork.openReadScope()) {
+            for (String uniqueUserId : uniqueUserIds) {
+                if (cancelled) {
+                    break;
+                }
+                try {
+                    identityStore.getUser(uniqueUserId);
+                    identityStore.getClaimsOfUser(uniqueUserId);
+                    loadedUsers++;
+                } catch (UserNotFoundException e) {
+                    if (log.isDebugEnabled()) {
+                        log.debug(String.format("Skipped warming up the caches with the removed user - %s",
+                                uniqueUserId));
+                    }
+                } catch (IdentityStoreException e) {
+                    log.warn(String.format("Failed to warm up the caches with the user - %s", uniqueUserId), e);
+                }
+            }
+        }
+        return loadedUsers;
+    }
+}
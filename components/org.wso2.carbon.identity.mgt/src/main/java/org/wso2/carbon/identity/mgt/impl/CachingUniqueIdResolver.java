@@ -0,0 +1,413 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.identity.mgt.exception.GroupNotFoundException;
+import org.wso2.carbon.identity.mgt.exception.UniqueIdResolverException;
+import org.wso2.carbon.identity.mgt.exception.UserNotFoundException;
+import org.wso2.carbon.identity.mgt.impl.config.CacheConfig;
+import org.wso2.carbon.identity.mgt.impl.util.BoundedCache;
+import org.wso2.carbon.identity.mgt.impl.util.CacheHelper;
+import org.wso2.carbon.identity.mgt.impl.util.SingleFlight;
+import org.wso2.carbon.identity.mgt.impl.util.UniqueIdResolverConstants;
+import org.wso2.carbon.identity.mgt.resolver.DomainGroup;
+import org.wso2.carbon.identity.mgt.resolver.DomainUser;
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolver;
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolverConfig;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import javax.cache.CacheManager;
+
+/**
+ * UniqueIdResolver decorator which caches the partitions of domain users and groups.
+ * <p>
+ * Partitions only change when a user or group is added, updated or deleted through the resolver, hence the cached
+ * entries are invalidated by the write methods of this resolver.
+ */
+public class CachingUniqueIdResolver implements UniqueIdResolver {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingUniqueIdResolver.class);
+
+    private static final String USER_PARTITION_CACHE = "userPartitionCache-";
+
+    private static final String GROUP_PARTITION_CACHE = "groupPartitionCache-";
+
+    private UniqueIdResolver uniqueIdResolver;
+
+    private CacheManager cacheManager;
+
+    private String cacheNameSuffix;
+
+    private BoundedCache<String, DomainUser> userCache;
+
+    private BoundedCache<String, DomainGroup> groupCache;
+
+    private final SingleFlight<String, DomainUser> userLoads = new SingleFlight<>();
+
+    private final SingleFlight<String, DomainGroup> groupLoads = new SingleFlight<>();
+
+    /**
+     * Create a caching resolver.
+     *
+     * @param uniqueIdResolver Resolver to delegate to.
+     * @param cacheManager     Cache manager to create the caches.
+     * @param cacheNameSuffix  Suffix to keep the cache names unique for each domain.
+     */
+    public CachingUniqueIdResolver(UniqueIdResolver uniqueIdResolver, CacheManager cacheManager,
+                                   String cacheNameSuffix) {
+
+        this.uniqueIdResolver = uniqueIdResolver;
+        this.cacheManager = cacheManager;
+        this.cacheNameSuffix = cacheNameSuffix;
+    }
+
+    @Override
+    public void init(UniqueIdResolverConfig uniqueIdResolverConfig) throws UniqueIdResolverException {
+
+        uniqueIdResolver.init(uniqueIdResolverConfig);
+
+        Map<String, String> properties = uniqueIdResolverConfig.getProperties() == null ? Collections.emptyMap() :
+                uniqueIdResolverConfig.getProperties();
+
+        CacheConfig cacheConfig = new CacheConfig();
+        cacheConfig.setExpireTime(getIntProperty(properties, UniqueIdResolverConstants.CACHE_EXPIRE_TIME));
+        cacheConfig.setMaxCapacity(getIntProperty(properties, UniqueIdResolverConstants.CACHE_MAX_CAPACITY));
+        cacheConfig.setStatisticsEnabled(Boolean.parseBoolean(properties.getOrDefault(
+                UniqueIdResolverConstants.CACHE_STATISTICS_ENABLED, Boolean.TRUE.toString())));
+
+        String userCacheName = USER_PARTITION_CACHE + cacheNameSuffix;
+        String groupCacheName = GROUP_PARTITION_CACHE + cacheNameSuffix;
+        Map<String, CacheConfig> cacheConfigs = new HashMap<>();
+        cacheConfigs.put(userCacheName, cacheConfig);
+        cacheConfigs.put(groupCacheName, cacheConfig);
+
+        userCache = CacheHelper.createCache(userCacheName, String.class, DomainUser.class,
+                CacheHelper.MEDIUM_EXPIRE_TIME, cacheConfigs, cacheManager);
+        groupCache = CacheHelper.createCache(groupCacheName, String.class, DomainGroup.class,
+                CacheHelper.MEDIUM_EXPIRE_TIME, cacheConfigs, cacheManager);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Caching unique id resolver initialized with caches {} and {}.", userCacheName,
+                    groupCacheName);
+        }
+    }
+
+    @Override
+    public DomainUser getUser(String domainUserId, int domainId) throws UniqueIdResolverException,
+            UserNotFoundException {
+
+        String key = getKey(domainId, domainUserId);
+        DomainUser domainUser = userCache.get(key);
+        if (domainUser == null) {
+            domainUser = coalesce(userLoads, key, () -> {
+                // A user updated while being loaded is not cached, as the loaded state might predate the update.
+                long generation = userCache.getGeneration(key);
+                DomainUser loadedUser = uniqueIdResolver.getUser(domainUserId, domainId);
+                if (loadedUser != null) {
+                    userCache.putIfUnchanged(key, loadedUser, generation);
+                }
+                return loadedUser;
+            }, UserNotFoundException.class);
+        }
+        return domainUser;
+    }
+
+    @Override
+    public DomainUser getUserFromConnectorUserId(String connectorUserId, String connectorId, int domainId) throws
+            UserNotFoundException, UniqueIdResolverException {
+        return uniqueIdResolver.getUserFromConnectorUserId(connectorUserId, connectorId, domainId);
+    }
+
+    @Override
+    public List<DomainUser> getUsers(List<String> connectorUserIds, String connectorId, int domainId) throws
+            UniqueIdResolverException {
+        return uniqueIdResolver.getUsers(connectorUserIds, connectorId, domainId);
+    }
+
+    @Override
+    public boolean isUserExists(String domainUserId, int domainId) throws UniqueIdResolverException {
+
+        if (userCache.get(getKey(domainId, domainUserId)) != null) {
+            return true;
+        }
+        return uniqueIdResolver.isUserExists(domainUserId, domainId);
+    }
+
+    @Override
+    public List<DomainUser> listDomainUsers(int offset, int length, int domainId) throws UniqueIdResolverException {
+        return uniqueIdResolver.listDomainUsers(offset, length, domainId);
+    }
+
+    @Override
+    public List<DomainUser> listDomainUsers(String lastDomainUserId, int length, int domainId)
+            throws UniqueIdResolverException {
+        return uniqueIdResolver.listDomainUsers(lastDomainUserId, length, domainId);
+    }
+
+    @Override
+    public DomainGroup getGroup(String domainGroupId, int domainId) throws UniqueIdResolverException,
+            GroupNotFoundException {
+
+        String key = getKey(domainId, domainGroupId);
+        DomainGroup domainGroup = groupCache.get(key);
+        if (domainGroup == null) {
+            domainGroup = coalesce(groupLoads, key, () -> {
+                long generation = groupCache.getGeneration(key);
+                DomainGroup loadedGroup = uniqueIdResolver.getGroup(domainGroupId, domainId);
+                if (loadedGroup != null) {
+                    groupCache.putIfUnchanged(key, loadedGroup, generation);
+                }
+                return loadedGroup;
+            }, GroupNotFoundException.class);
+        }
+        return domainGroup;
+    }
+
+    @Override
+    public DomainGroup getGroupFromConnectorGroupId(String connectorGroupId, String connectorId, int domainId)
+            throws UniqueIdResolverException, GroupNotFoundException {
+        return uniqueIdResolver.getGroupFromConnectorGroupId(connectorGroupId, connectorId, domainId);
+    }
+
+    @Override
+    public boolean isGroupExists(String uniqueGroupId, int domainId) throws UniqueIdResolverException {
+
+        if (groupCache.get(getKey(domainId, uniqueGroupId)) != null) {
+            return true;
+        }
+        return uniqueIdResolver.isGroupExists(uniqueGroupId, domainId);
+    }
+
+    @Override
+    public List<DomainGroup> listGroups(int offset, int length, int domainId) throws UniqueIdResolverException {
+        return uniqueIdResolver.listGroups(offset, length, domainId);
+    }
+
+    @Override
+    public List<DomainGroup> listGroups(String lastDomainGroupId, int length, int domainId)
+            throws UniqueIdResolverException {
+        return uniqueIdResolver.listGroups(lastDomainGroupId, length, domainId);
+    }
+
+    @Override
+    public List<DomainGroup> getGroups(List<String> connectorGroupIds, String connectorId, int domainId) throws
+            UniqueIdResolverException {
+        return uniqueIdResolver.getGroups(connectorGroupIds, connectorId, domainId);
+    }
+
+    @Override
+    public List<DomainGroup> getGroupsOfUser(String domainUserId, int domainId) throws UniqueIdResolverException {
+        return uniqueIdResolver.getGroupsOfUser(domainUserId, domainId);
+    }
+
+    @Override
+    public List<DomainUser> getUsersOfGroup(String domainGroupId, int domainId) throws UniqueIdResolverException {
+        return uniqueIdResolver.getUsersOfGroup(domainGroupId, domainId);
+    }
+
+    @Override
+    public boolean isUserInGroup(String domainUserId, String domainGroupId, int domainId) throws
+            UniqueIdResolverException {
+        return uniqueIdResolver.isUserInGroup(domainUserId, domainGroupId, domainId);
+    }
+
+    @Override
+    public String addUser(DomainUser domainUser, int domainId) throws UniqueIdResolverException {
+
+        String domainUserId = uniqueIdResolver.addUser(domainUser, domainId);
+        userCache.remove(getKey(domainId, domainUserId));
+        return domainUserId;
+    }
+
+    @Override
+    public List<String> addUsers(List<DomainUser> domainUsers, int domainId) throws UniqueIdResolverException {
+
+        List<String> domainUserIds = uniqueIdResolver.addUsers(domainUsers, domainId);
+        domainUserIds.forEach(domainUserId -> userCache.remove(getKey(domainId, domainUserId)));
+        return domainUserIds;
+    }
+
+    @Override
+    public void updateUser(String domainUserId, Map<String, String> connectorUserIdMap, int domainId, String state)
+            throws UniqueIdResolverException {
+
+        try {
+            uniqueIdResolver.updateUser(domainUserId, connectorUserIdMap, domainId, state);
+        } finally {
+            userCache.remove(getKey(domainId, domainUserId));
+        }
+    }
+
+    @Override
+    public void updateUser(String domainUserId, Map<String, String> connectorUserIdMap, boolean identityStore,
+                           int domainId, String state) throws UniqueIdResolverException {
+
+        try {
+            uniqueIdResolver.updateUser(domainUserId, connectorUserIdMap, identityStore, domainId, state);
+        } finally {
+            userCache.remove(getKey(domainId, domainUserId));
+        }
+    }
+
+    @Override
+    public void deleteUser(String domainUserId, int domainId) throws UniqueIdResolverException {
+
+        try {
+            uniqueIdResolver.deleteUser(domainUserId, domainId);
+        } finally {
+            userCache.remove(getKey(domainId, domainUserId));
+        }
+    }
+
+    @Override
+    public String addGroup(DomainGroup domainGroup, int domainId) throws UniqueIdResolverException {
+
+        String domainGroupId = uniqueIdResolver.addGroup(domainGroup, domainId);
+        groupCache.remove(getKey(domainId, domainGroupId));
+        return domainGroupId;
+    }
+
+    @Override
+    public List<String> addGroups(List<DomainGroup> domainGroups, int domainId) throws UniqueIdResolverException {
+
+        List<String> domainGroupIds = uniqueIdResolver.addGroups(domainGroups, domainId);
+        domainGroupIds.forEach(domainGroupId -> groupCache.remove(getKey(domainId, domainGroupId)));
+        return domainGroupIds;
+    }
+
+    @Override
+    public void updateGroup(String domainGroupId, Map<String, String> connectorGroupIdMap, int domainId) throws
+            UniqueIdResolverException {
+
+        try {
+            uniqueIdResolver.updateGroup(domainGroupId, connectorGroupIdMap, domainId);
+        } finally {
+            groupCache.remove(getKey(domainId, domainGroupId));
+        }
+    }
+
+    @Override
+    public void deleteGroup(String domainGroupId, int domainId) throws UniqueIdResolverException {
+
+        try {
+            uniqueIdResolver.deleteGroup(domainGroupId, domainId);
+        } finally {
+            groupCache.remove(getKey(domainId, domainGroupId));
+        }
+    }
+
+    @Override
+    public void updateGroupsOfUser(String domainUserId, List<String> domainGroupIds, int domainId) throws
+            UniqueIdResolverException {
+        uniqueIdResolver.updateGroupsOfUser(domainUserId, domainGroupIds, domainId);
+    }
+
+    @Override
+    public void updateGroupsOfUser(String domainUserId, List<String> domainGroupIdsToUpdate,
+                                   List<String> domainGroupIdsToRemove, int domainId)
+            throws UniqueIdResolverException {
+        uniqueIdResolver.updateGroupsOfUser(domainUserId, domainGroupIdsToUpdate, domainGroupIdsToRemove, domainId);
+    }
+
+    @Override
+    public void updateUsersOfGroup(String domainGroupId, List<String> domainUserIds, int domainId) throws
+            UniqueIdResolverException {
+        uniqueIdResolver.updateUsersOfGroup(domainGroupId, domainUserIds, domainId);
+    }
+
+    @Override
+    public void updateUsersOfGroup(String domainGroupId, List<String> domainUserIdsToUpdate,
+                                   List<String> domainUserIdsToRemove, int domainId)
+            throws UniqueIdResolverException {
+        uniqueIdResolver.updateUsersOfGroup(domainGroupId, domainUserIdsToUpdate, domainUserIdsToRemove, domainId);
+    }
+
+    @Override
+    public void setUserState(String domainUserId, String targetState, int domainId) throws
+            UniqueIdResolverException {
+
+        try {
+            uniqueIdResolver.setUserState(domainUserId, targetState, domainId);
+        } finally {
+            userCache.remove(getKey(domainId, domainUserId));
+        }
+    }
+
+    /**
+     * Drop the cached partitions of a user updated on another node.
+     *
+     * @param domainUserId Domain user id.
+     * @param domainId     Domain id.
+     */
+    public void invalidateUser(String domainUserId, int domainId) {
+        userCache.remove(getKey(domainId, domainUserId));
+    }
+
+    /**
+     * Drop the cached partitions of a group updated on another node.
+     *
+     * @param domainGroupId Domain group id.
+     * @param domainId      Domain id.
+     */
+    public void invalidateGroup(String domainGroupId, int domainId) {
+        groupCache.remove(getKey(domainId, domainGroupId));
+    }
+
+    /**
+     * Run the loader through the given single flight, unwrapping the original exception of the loader.
+     */
+    private <V, E extends Exception> V coalesce(SingleFlight<String, V> singleFlight, String key, Callable<V> loader,
+                                                Class<E> notFoundExceptionType) throws UniqueIdResolverException, E {
+
+        try {
+            return singleFlight.execute(key, loader);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UniqueIdResolverException) {
+                throw (UniqueIdResolverException) cause;
+            }
+            if (notFoundExceptionType.isInstance(cause)) {
+                throw notFoundExceptionType.cast(cause);
+            }
+            throw new UniqueIdResolverException("Failed to load the entry from the unique id resolver.", cause);
+        }
+    }
+
+    private int getIntProperty(Map<String, String> properties, String name) throws UniqueIdResolverException {
+
+        String value = properties.get(name);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new UniqueIdResolverException(String.format("Invalid value for %s: %s", name, value), e);
+        }
+    }
+
+    private String getKey(int domainId, String entityId) {
+        return domainId + ":" + entityId;
+    }
+}
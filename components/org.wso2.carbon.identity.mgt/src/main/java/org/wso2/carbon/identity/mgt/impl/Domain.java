@@ -37,10 +37,10 @@ import org.wso2.carbon.identity.mgt.exception.GroupNotFoundException;
 import org.wso2.carbon.identity.mgt.exception.IdentityStoreConnectorException;
 import org.wso2.carbon.identity.mgt.exception.UniqueIdResolverException;
 import org.wso2.carbon.identity.mgt.exception.UserNotFoundException;
-import org.wso2.carbon.identity.mgt.impl.util.IdentityUserMgtUtil;
 import org.wso2.carbon.identity.mgt.resolver.DomainGroup;
 import org.wso2.carbon.identity.mgt.resolver.DomainUser;
 import org.wso2.carbon.identity.mgt.resolver.GroupPartition;
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdGenerator;
 import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolver;
 import org.wso2.carbon.identity.mgt.resolver.UserPartition;
 import org.wso2.carbon.lcm.core.exception.LifecycleException;
@@ -109,6 +109,16 @@ public class Domain {
 
     private UniqueIdResolver uniqueIdResolver;
 
+    /**
+     * Generator of the unique ids of new users and groups.
+     */
+    private UniqueIdGenerator uniqueIdGenerator = new RandomUniqueIdGenerator();
+
+    /**
+     * Cache of unique claim values to domain user ids. Null if the cache is disabled.
+     */
+    private DomainUserCache domainUserCache;
+
     public Domain(int id, String name, int order, UniqueIdResolver uniqueIdResolver) throws
             DomainException {
 
@@ -146,6 +156,51 @@ public class Domain {
         return order;
     }
 
+    /**
+     * Set the generator of the unique ids of new users and groups.
+     *
+     * @param uniqueIdGenerator Unique id generator.
+     */
+    public void setUniqueIdGenerator(UniqueIdGenerator uniqueIdGenerator) {
+
+        this.uniqueIdGenerator = uniqueIdGenerator;
+    }
+
+    /**
+     * Set the cache used to resolve domain users from unique claims.
+     *
+     * @param domainUserCache Domain user cache.
+     */
+    public void setDomainUserCache(DomainUserCache domainUserCache) {
+
+        this.domainUserCache = domainUserCache;
+    }
+
+    /**
+     * Drop the cached entries of a user updated on another node.
+     *
+     * @param domainUserId Domain user id.
+     */
+    public void invalidateCachedUser(String domainUserId) {
+
+        removeFromDomainUserCache(domainUserId);
+        if (uniqueIdResolver instanceof CachingUniqueIdResolver) {
+            ((CachingUniqueIdResolver) uniqueIdResolver).invalidateUser(domainUserId, this.id);
+        }
+    }
+
+    /**
+     * Drop the cached entries of a group updated on another node.
+     *
+     * @param domainGroupId Domain group id.
+     */
+    public void invalidateCachedGroup(String domainGroupId) {
+
+        if (uniqueIdResolver instanceof CachingUniqueIdResolver) {
+            ((CachingUniqueIdResolver) uniqueIdResolver).invalidateGroup(domainGroupId, this.id);
+        }
+    }
+
     /**
      * Add an identity store connector to the map.
      *
@@ -226,6 +281,8 @@ public class Domain {
             this.uniqueIdResolver.setUserState(domainUserId, targetState, this.id);
         } catch (UniqueIdResolverException e) {
             throw new DomainException("Failed to set user state to :" + targetState, e);
+        } finally {
+            removeFromDomainUserCache(domainUserId);
         }
     }
 
@@ -243,6 +300,16 @@ public class Domain {
             throw new DomainClientException("Provided claim is not unique.");
         }
 
+        long cacheGeneration = getDomainUserCacheGeneration();
+        String cachedDomainUserId = getFromDomainUserCache(claim);
+        if (cachedDomainUserId != null) {
+            try {
+                return uniqueIdResolver.getUser(cachedDomainUserId, this.id);
+            } catch (UniqueIdResolverException e) {
+                throw new DomainException("Failed to retrieve the domain user.", e);
+            }
+        }
+
         IdentityStoreConnector identityStoreConnector = identityStoreConnectorsMap
                 .get(metaClaimMapping.getIdentityStoreConnectorId());
 
@@ -262,6 +329,7 @@ public class Domain {
         try {
             domainUser = uniqueIdResolver.getUserFromConnectorUserId(connectorUserId, metaClaimMapping
                     .getIdentityStoreConnectorId(), this.id);
+            addToDomainUserCache(claim, domainUser, cacheGeneration);
             return domainUser;
         } catch (UniqueIdResolverException e) {
             throw new DomainException("Failed to retrieve the domain user.", e);
@@ -276,6 +344,12 @@ public class Domain {
             throw new DomainClientException("Provided claim is not unique.");
         }
 
+        long cacheGeneration = getDomainUserCacheGeneration();
+        String cachedDomainUserId = getFromDomainUserCache(claim);
+        if (cachedDomainUserId != null) {
+            return cachedDomainUserId;
+        }
+
         IdentityStoreConnector identityStoreConnector = identityStoreConnectorsMap
                 .get(metaClaimMapping.getIdentityStoreConnectorId());
 
@@ -307,6 +381,7 @@ public class Domain {
             throw new UserNotFoundException("Failed to retrieve the domain user id.");
         }
 
+        addToDomainUserCache(claim, domainUser, cacheGeneration);
         return domainUser.getDomainUserId();
     }
 
@@ -326,6 +401,22 @@ public class Domain {
         return domainUsers;
     }
 
+    public List<DomainUser> listDomainUsers(String lastDomainUserId, int length) throws DomainException {
+
+        List<DomainUser> domainUsers;
+        try {
+            domainUsers = this.uniqueIdResolver.listDomainUsers(lastDomainUserId, length, this.id);
+        } catch (UniqueIdResolverException e) {
+            throw new DomainException("Failed to retrieve partitions of users.", e);
+        }
+
+        if (domainUsers == null || domainUsers.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        return domainUsers;
+    }
+
     public List<DomainUser> listDomainUsers(Claim claim, int offset, int length) throws DomainException {
 
         MetaClaimMapping metaClaimMapping = claimUriToMetaClaimMappings.get(claim.getClaimUri());
@@ -541,6 +632,26 @@ public class Domain {
                 .collect(Collectors.toList());
     }
 
+    public List<String> listDomainGroups(String lastDomainGroupId, int length) throws DomainException {
+
+        List<DomainGroup> domainGroups;
+        try {
+            domainGroups = this.uniqueIdResolver.listGroups(lastDomainGroupId, length, this.id);
+        } catch (UniqueIdResolverException e) {
+            throw new DomainException("Failed to retrieve partitions of groups.", e);
+        }
+
+        if (domainGroups == null || domainGroups.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        return domainGroups.stream()
+                .filter(Objects::nonNull)
+                .filter(domainGroup -> !isNullOrEmpty(domainGroup.getDomainGroupId()))
+                .map(DomainGroup::getDomainGroupId)
+                .collect(Collectors.toList());
+    }
+
     public List<String> listDomainGroups(Claim claim, int offset, int length) throws DomainException {
 
         MetaClaimMapping metaClaimMapping = claimUriToMetaClaimMappings.get(claim.getClaimUri());
@@ -686,6 +797,18 @@ public class Domain {
             throw new UserNotFoundException("Invalid unique user id.");
         }
 
+        return getClaimsOfUser(domainUser);
+    }
+
+    /**
+     * Get all claims of an already resolved domain user, without looking up the partitions again.
+     *
+     * @param domainUser Domain user with partitions
+     * @return List of claims
+     * @throws DomainException Domain Exception
+     */
+    public List<Claim> getClaimsOfUser(DomainUser domainUser) throws DomainException {
+
         if (domainUser.getUserPartitions() == null || domainUser.getUserPartitions().isEmpty()) {
             return Collections.emptyList();
         }
@@ -732,6 +855,20 @@ public class Domain {
             throw new UserNotFoundException("Invalid unique user id.");
         }
 
+        return getClaimsOfUser(domainUser, metaClaims);
+    }
+
+    /**
+     * Get the claims of an already resolved domain user for the given meta claims, without looking up the
+     * partitions again.
+     *
+     * @param domainUser Domain user with partitions
+     * @param metaClaims Meta claims to retrieve
+     * @return List of claims
+     * @throws DomainException Domain Exception
+     */
+    public List<Claim> getClaimsOfUser(DomainUser domainUser, List<MetaClaim> metaClaims) throws DomainException {
+
         if (domainUser.getUserPartitions() == null || domainUser.getUserPartitions().isEmpty()) {
             return Collections.emptyList();
         }
@@ -900,7 +1037,7 @@ public class Domain {
             }
         }
 
-        String userUniqueId = IdentityUserMgtUtil.generateUUID();
+        String userUniqueId = uniqueIdGenerator.generate();
         try {
             String receivedUserUniqueId = uniqueIdResolver.addUser(new DomainUser(userUniqueId, userPartitions,
                             userBean.getState()), this.id);
@@ -923,7 +1060,7 @@ public class Domain {
         Map<String, UserBean> userModelMap = userBeen.stream()
                 .filter(Objects::nonNull)
                 .filter(userModel -> !userModel.getClaims().isEmpty() || !userModel.getCredentials().isEmpty())
-                .collect(Collectors.toMap(userModel -> IdentityUserMgtUtil.generateUUID(), userModel -> userModel));
+                .collect(Collectors.toMap(userModel -> uniqueIdGenerator.generate(), userModel -> userModel));
 
         Map<String, Map<String, List<Attribute>>> attributesMap = getAttributesMapOfUsers(userModelMap);
 
@@ -1027,6 +1164,16 @@ public class Domain {
     public void updateUserClaims(String domainUserId, List<Claim> claims) throws DomainException,
             UserNotFoundException {
 
+        try {
+            doUpdateUserClaims(domainUserId, claims);
+        } finally {
+            removeFromDomainUserCache(domainUserId);
+        }
+    }
+
+    private void doUpdateUserClaims(String domainUserId, List<Claim> claims) throws DomainException,
+            UserNotFoundException {
+
         DomainUser domainUser;
         try {
             domainUser = uniqueIdResolver.getUser(domainUserId, this.id);
@@ -1094,7 +1241,8 @@ public class Domain {
 
         if (!connectorUserIdMap.equals(updatedConnectorUserIdMap)) {
             try {
-                uniqueIdResolver.updateUser(domainUserId, updatedConnectorUserIdMap, this.id, domainUser.getState());
+                uniqueIdResolver.updateUser(domainUserId, updatedConnectorUserIdMap, true,
+                        this.id, domainUser.getState());
             } catch (UniqueIdResolverException e) {
                 throw new DomainException("Failed to update user connector ids.", e);
             }
@@ -1104,6 +1252,16 @@ public class Domain {
     public void updateUserClaims(String domainUserId, List<Claim> claimsToUpdate, List<Claim> claimsToRemove)
             throws DomainException, UserNotFoundException {
 
+        try {
+            doUpdateUserClaims(domainUserId, claimsToUpdate, claimsToRemove);
+        } finally {
+            removeFromDomainUserCache(domainUserId);
+        }
+    }
+
+    private void doUpdateUserClaims(String domainUserId, List<Claim> claimsToUpdate, List<Claim> claimsToRemove)
+            throws DomainException, UserNotFoundException {
+
         DomainUser domainUser;
         try {
             domainUser = uniqueIdResolver.getUser(domainUserId, this.id);
@@ -1136,7 +1294,8 @@ public class Domain {
             connectorIds.addAll(attributeMapToRemove.keySet());
         }
 
-        Map<String, String> updatedConnectorUserIds = new HashMap<>();
+        // The connectors without changes keep their partitions.
+        Map<String, String> updatedConnectorUserIds = new HashMap<>(connectorUserIdMap);
 
         for (String connectorId : connectorIds) {
             IdentityStoreConnector identityStoreConnector = identityStoreConnectorsMap.get(connectorId);
@@ -1168,7 +1327,8 @@ public class Domain {
 
         if (!connectorUserIdMap.equals(updatedConnectorUserIds)) {
             try {
-                uniqueIdResolver.updateUser(domainUserId, updatedConnectorUserIds, this.id, domainUser.getState());
+                uniqueIdResolver.updateUser(domainUserId, updatedConnectorUserIds, true, this.id,
+                        domainUser.getState());
             } catch (UniqueIdResolverException e) {
                 throw new DomainException("Failed to update user connector ids.", e);
             }
@@ -1178,6 +1338,16 @@ public class Domain {
     public void updateUserCredentials(String domainUserId, List<Callback> callbacks) throws DomainException,
             UserNotFoundException {
 
+        try {
+            doUpdateUserCredentials(domainUserId, callbacks);
+        } finally {
+            removeFromDomainUserCache(domainUserId);
+        }
+    }
+
+    private void doUpdateUserCredentials(String domainUserId, List<Callback> callbacks) throws DomainException,
+            UserNotFoundException {
+
         DomainUser domainUser;
         try {
             domainUser = uniqueIdResolver.getUser(domainUserId, this.id);
@@ -1246,7 +1416,8 @@ public class Domain {
 
         if (!connectorUserIdMap.equals(updatedConnectorUserIdMap)) {
             try {
-                uniqueIdResolver.updateUser(domainUserId, updatedConnectorUserIdMap, this.id, domainUser.getState());
+                uniqueIdResolver.updateUser(domainUserId, updatedConnectorUserIdMap, false,
+                        this.id, domainUser.getState());
             } catch (UniqueIdResolverException e) {
                 throw new DomainException("Failed to update user connector ids.", e);
             }
@@ -1257,6 +1428,17 @@ public class Domain {
                                       List<Callback> credentialsToRemove) throws DomainException,
             UserNotFoundException {
 
+        try {
+            doUpdateUserCredentials(domainUserId, credentialsToUpdate, credentialsToRemove);
+        } finally {
+            removeFromDomainUserCache(domainUserId);
+        }
+    }
+
+    private void doUpdateUserCredentials(String domainUserId, List<Callback> credentialsToUpdate,
+                                         List<Callback> credentialsToRemove) throws DomainException,
+            UserNotFoundException {
+
         DomainUser domainUser;
         try {
             domainUser = uniqueIdResolver.getUser(domainUserId, this.id);
@@ -1289,7 +1471,8 @@ public class Domain {
             connectorIds.addAll(credentialMapToRemove.keySet());
         }
 
-        Map<String, String> updatedConnectorUserIds = new HashMap<>();
+        // The connectors without changes keep their partitions.
+        Map<String, String> updatedConnectorUserIds = new HashMap<>(connectorUserIdMap);
 
         for (String connectorId : connectorIds) {
             CredentialStoreConnector credentialStoreConnector = credentialStoreConnectorsMap.get(connectorId);
@@ -1320,7 +1503,8 @@ public class Domain {
 
         if (!connectorUserIdMap.equals(updatedConnectorUserIds)) {
             try {
-                uniqueIdResolver.updateUser(domainUserId, updatedConnectorUserIds, this.id, domainUser.getState());
+                uniqueIdResolver.updateUser(domainUserId, updatedConnectorUserIds, false, this.id,
+                        domainUser.getState());
             } catch (UniqueIdResolverException e) {
                 throw new DomainException("Failed to update user connector ids.", e);
             }
@@ -1329,6 +1513,15 @@ public class Domain {
 
     public void deleteUser(String domainUserId) throws DomainException, UserNotFoundException {
 
+        try {
+            doDeleteUser(domainUserId);
+        } finally {
+            removeFromDomainUserCache(domainUserId);
+        }
+    }
+
+    private void doDeleteUser(String domainUserId) throws DomainException, UserNotFoundException {
+
         DomainUser domainUser;
         try {
             domainUser = uniqueIdResolver.getUser(domainUserId, this.id);
@@ -1415,7 +1608,7 @@ public class Domain {
         }
 
 
-        String groupUniqueId = IdentityUserMgtUtil.generateUUID();
+        String groupUniqueId = uniqueIdGenerator.generate();
         try {
             String receivedGroupUniqueId = uniqueIdResolver.addGroup(new DomainGroup(groupUniqueId, groupPartitions),
                     this.id);
@@ -1436,7 +1629,7 @@ public class Domain {
         Map<String, GroupBean> groupModelMap = groupBeen.stream()
                 .filter(Objects::nonNull)
                 .filter(groupModel -> !groupModel.getClaims().isEmpty())
-                .collect(Collectors.toMap(groupModel -> IdentityUserMgtUtil.generateUUID(), groupModel -> groupModel));
+                .collect(Collectors.toMap(groupModel -> uniqueIdGenerator.generate(), groupModel -> groupModel));
 
         Map<String, Map<String, List<Attribute>>> attributesMap = getAttributesMapOfGroups(groupModelMap);
 
@@ -1702,30 +1895,68 @@ public class Domain {
 
     public AuthenticationContext authenticate(Claim claim, Callback[] credentials) throws AuthenticationFailure {
 
+        return authenticate(getAuthenticatingUser(claim), credentials);
+    }
+
+    /**
+     * Resolve the user owning a unique claim value, without checking any credentials.
+     *
+     * @param claim Unique claim
+     * @return Domain user owning the claim value
+     * @throws AuthenticationFailure If the claim is not unique or no user owns the claim value
+     */
+    public DomainUser getAuthenticatingUser(Claim claim) throws AuthenticationFailure {
+
         MetaClaimMapping metaClaimMapping = claimUriToMetaClaimMappings.get(claim.getClaimUri());
 
         if (!metaClaimMapping.isUnique()) {
             throw new AuthenticationFailure("Provided claim is not unique.");
         }
 
-        IdentityStoreConnector identityStoreConnector = identityStoreConnectorsMap.get(metaClaimMapping
-                .getIdentityStoreConnectorId());
-        String connectorUserId;
-        try {
-            connectorUserId = identityStoreConnector.getConnectorUserId(metaClaimMapping.getAttributeName(),
-                    claim.getValue());
-        } catch (UserNotFoundException | IdentityStoreConnectorException e) {
-            throw new AuthenticationFailure("Invalid claim value. No user mapped to the provided claim.", e);
+        DomainUser domainUser = null;
+        long cacheGeneration = getDomainUserCacheGeneration();
+        String cachedDomainUserId = getFromDomainUserCache(claim);
+        if (cachedDomainUserId != null) {
+            try {
+                domainUser = uniqueIdResolver.getUser(cachedDomainUserId, this.id);
+            } catch (UniqueIdResolverException | UserNotFoundException e) {
+                throw new AuthenticationFailure("Failed retrieve unique user info.", e);
+            }
         }
+        if (domainUser == null) {
+            IdentityStoreConnector identityStoreConnector = identityStoreConnectorsMap.get(metaClaimMapping
+                    .getIdentityStoreConnectorId());
+            String connectorUserId;
+            try {
+                connectorUserId = identityStoreConnector.getConnectorUserId(metaClaimMapping.getAttributeName(),
+                        claim.getValue());
+            } catch (UserNotFoundException | IdentityStoreConnectorException e) {
+                throw new AuthenticationFailure("Invalid claim value. No user mapped to the provided claim.", e);
+            }
 
-        DomainUser domainUser;
-        try {
-            domainUser = uniqueIdResolver.getUserFromConnectorUserId(connectorUserId, metaClaimMapping
-                    .getIdentityStoreConnectorId(), this.id);
-        } catch (UniqueIdResolverException | UserNotFoundException e) {
-            throw new AuthenticationFailure("Failed retrieve unique user info.", e);
+            try {
+                domainUser = uniqueIdResolver.getUserFromConnectorUserId(connectorUserId, metaClaimMapping
+                        .getIdentityStoreConnectorId(), this.id);
+            } catch (UniqueIdResolverException | UserNotFoundException e) {
+                throw new AuthenticationFailure("Failed retrieve unique user info.", e);
+            }
+            addToDomainUserCache(claim, domainUser, cacheGeneration);
         }
 
+        return domainUser;
+    }
+
+    /**
+     * Check the credentials of a user resolved by {@link #getAuthenticatingUser(Claim)}.
+     *
+     * @param domainUser  Domain user
+     * @param credentials Credentials
+     * @return AuthenticationContext, which is a FailedAuthenticationContext if the credentials are invalid
+     * @throws AuthenticationFailure If no credential store connector of the user can handle the credentials
+     */
+    public AuthenticationContext authenticate(DomainUser domainUser, Callback[] credentials)
+            throws AuthenticationFailure {
+
         for (UserPartition userPartition : domainUser.getUserPartitions()) {
             if (!userPartition.isIdentityStore()) {
                 CredentialStoreConnector connector = credentialStoreConnectorsMap.get(userPartition.getConnectorId());
@@ -1753,6 +1984,33 @@ public class Domain {
         throw new AuthenticationFailure("Failed to authenticate user.");
     }
 
+    private long getDomainUserCacheGeneration() {
+
+        return domainUserCache == null ? 0 : domainUserCache.getGeneration();
+    }
+
+    private String getFromDomainUserCache(Claim claim) {
+
+        if (domainUserCache == null) {
+            return null;
+        }
+        return domainUserCache.getDomainUserId(this.id, claim);
+    }
+
+    private void addToDomainUserCache(Claim claim, DomainUser domainUser, long cacheGeneration) {
+
+        if (domainUserCache != null && domainUser != null && !isNullOrEmpty(domainUser.getDomainUserId())) {
+            domainUserCache.putIfUnchanged(this.id, claim, domainUser.getDomainUserId(), cacheGeneration);
+        }
+    }
+
+    private void removeFromDomainUserCache(String domainUserId) {
+
+        if (domainUserCache != null) {
+            domainUserCache.removeUser(this.id, domainUserId);
+        }
+    }
+
     public MetaClaimMapping getMetaClaimMapping(String claimURI) throws DomainException {
 
         if (claimUriToMetaClaimMappings.isEmpty()) {
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.impl;
+
+import org.wso2.carbon.identity.mgt.claim.Claim;
+import org.wso2.carbon.identity.mgt.impl.util.BoundedCache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of unique claim values to domain user ids.
+ * <p>
+ * Only the ids are cached here. The partitions and the state of the domain users are cached by the caching unique id
+ * resolver of the domain, if enabled. Each user is given an epoch which is copied to its claim mappings, and a mapping
+ * is only used while the epoch matches. So removing the epoch of a user on a write invalidates every claim value
+ * mapped to that user, including the values the user no longer has, without knowing those values.
+ * <p>
+ * A mapping resolved while a user was being removed may be the old mapping of a value, and is not cached. As the user
+ * is not known before the value is resolved, the generation of the cache changes whenever any user is removed. It
+ * should be taken before resolving the value and passed to {@link #putIfUnchanged(int, Claim, String, long)}.
+ */
+public class DomainUserCache {
+
+    private static final String SEPARATOR = ":";
+
+    private final AtomicLong epochs = new AtomicLong();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private BoundedCache<String, ClaimEntry> claimCache;
+
+    private BoundedCache<String, Long> userEpochCache;
+
+    public DomainUserCache(BoundedCache<String, ClaimEntry> claimCache, BoundedCache<String, Long> userEpochCache) {
+
+        this.claimCache = claimCache;
+        this.userEpochCache = userEpochCache;
+    }
+
+    /**
+     * Get the id of the domain user mapped to a unique claim.
+     *
+     * @param domainId Id of the domain.
+     * @param claim    Unique claim.
+     * @return Domain user id or null if the claim is not cached.
+     */
+    public String getDomainUserId(int domainId, Claim claim) {
+
+        String claimKey = getClaimKey(domainId, claim);
+        ClaimEntry claimEntry = claimCache.get(claimKey);
+        if (claimEntry == null) {
+            return null;
+        }
+
+        Long epoch = userEpochCache.get(getUserKey(domainId, claimEntry.domainUserId));
+        if (epoch == null || epoch != claimEntry.epoch) {
+            // The user was updated after this value was mapped.
+            claimCache.remove(claimKey);
+            return null;
+        }
+        return claimEntry.domainUserId;
+    }
+
+    /**
+     * Get the generation of the cache. The generation changes whenever a user is removed, hence it should be taken
+     * before resolving a claim value and passed to {@link #putIfUnchanged(int, Claim, String, long)}.
+     *
+     * @return Generation of the cache.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Map a unique claim to a domain user, unless a user was removed after the given generation was taken.
+     *
+     * @param domainId     Id of the domain.
+     * @param claim        Unique claim.
+     * @param domainUserId Id of the domain user.
+     * @param generation   Generation of the cache taken before the claim value was resolved.
+     * @return True if the claim was mapped.
+     */
+    public boolean putIfUnchanged(int domainId, Claim claim, String domainUserId, long generation) {
+
+        String userKey = getUserKey(domainId, domainUserId);
+        Long epoch = userEpochCache.get(userKey);
+        if (epoch == null) {
+            epoch = epochs.incrementAndGet();
+            userEpochCache.put(userKey, epoch);
+        }
+
+        // Checked after the epoch is taken. A removal after this check advances the generation first and then removes
+        // the epoch, which invalidates the mapping put below.
+        if (this.generation.get() != generation) {
+            return false;
+        }
+        claimCache.put(getClaimKey(domainId, claim), new ClaimEntry(domainUserId, epoch));
+        return true;
+    }
+
+    /**
+     * Invalidate all the claim values mapped to a domain user.
+     *
+     * @param domainId     Id of the domain.
+     * @param domainUserId Id of the domain user.
+     */
+    public void removeUser(int domainId, String domainUserId) {
+
+        // Advance the generation first, so that a mapping resolved before the removal is either not put or put with
+        // the epoch removed here.
+        generation.incrementAndGet();
+        userEpochCache.remove(getUserKey(domainId, domainUserId));
+    }
+
+    private String getClaimKey(int domainId, Claim claim) {
+        return domainId + SEPARATOR + claim.getClaimUri() + SEPARATOR + claim.getValue();
+    }
+
+    private String getUserKey(int domainId, String domainUserId) {
+        return domainId + SEPARATOR + domainUserId;
+    }
+
+    /**
+     * Domain user id mapped to a claim value, with the epoch of the user at the time of mapping.
+     */
+    public static final class ClaimEntry {
+
+        private final String domainUserId;
+
+        private final long epoch;
+
+        ClaimEntry(String domainUserId, long epoch) {
+
+            this.domainUserId = domainUserId;
+            this.epoch = epoch;
+        }
+    }
+}
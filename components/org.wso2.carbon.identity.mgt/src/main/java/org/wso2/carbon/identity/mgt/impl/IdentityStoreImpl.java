@@ -22,9 +22,12 @@ import org.wso2.carbon.identity.mgt.AuthenticationContext;
 import org.wso2.carbon.identity.mgt.FailedAuthenticationContext;
 import org.wso2.carbon.identity.mgt.Group;
 import org.wso2.carbon.identity.mgt.IdentityStore;
+import org.wso2.carbon.identity.mgt.Page;
 import org.wso2.carbon.identity.mgt.User;
+import org.wso2.carbon.identity.mgt.UserVisitor;
 import org.wso2.carbon.identity.mgt.bean.GroupBean;
 import org.wso2.carbon.identity.mgt.bean.UserBean;
+import org.wso2.carbon.identity.mgt.cache.InvalidationMessage;
 import org.wso2.carbon.identity.mgt.claim.Claim;
 import org.wso2.carbon.identity.mgt.claim.MetaClaim;
 import org.wso2.carbon.identity.mgt.claim.MetaClaimMapping;
@@ -36,20 +39,36 @@ import org.wso2.carbon.identity.mgt.exception.IdentityStoreClientException;
 import org.wso2.carbon.identity.mgt.exception.IdentityStoreException;
 import org.wso2.carbon.identity.mgt.exception.IdentityStoreServerException;
 import org.wso2.carbon.identity.mgt.exception.UserNotFoundException;
+import org.wso2.carbon.identity.mgt.impl.config.AuthenticationConfig;
+import org.wso2.carbon.identity.mgt.impl.config.UserExistenceFilterConfig;
+import org.wso2.carbon.identity.mgt.impl.util.DomainRoutingIndex;
+import org.wso2.carbon.identity.mgt.impl.util.UnitOfWork;
 import org.wso2.carbon.identity.mgt.resolver.DomainUser;
 import org.wso2.carbon.lcm.core.LifecycleOperationManager;
 import org.wso2.carbon.lcm.core.exception.LifecycleException;
 import org.wso2.carbon.lcm.core.util.LifecycleUtils;
+import java.nio.charset.StandardCharsets;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import javax.security.auth.callback.Callback;
 
@@ -86,12 +105,62 @@ public class IdentityStoreImpl implements IdentityStore {
         return Integer.compare(d1Priority, d2Priority);
     });
 
+    private AuthenticationConfig authenticationConfig;
+
+    /**
+     * Bounded executor of the store, used to resolve users in multiple domains in parallel and to prefetch the pages
+     * of users while iterating. Shut down when the store is closed. Parallel authentication fails fast if the executor
+     * rejects a task, because the queue is full or the store is closed, while iteration reads the page on the calling
+     * thread instead.
+     */
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Index of unique claim values to the owning user, used to authenticate without querying every domain. Null if
+     * routing is not enabled.
+     */
+    private DomainRoutingIndex routingIndex;
+
+    /**
+     * Filters answering user existence checks without querying the domains. Null if the filter is not enabled.
+     */
+    private UserExistenceFilter userExistenceFilter;
+
     public IdentityStoreImpl(List<Domain> domains) throws IdentityStoreException {
 
+        this(domains, new AuthenticationConfig());
+    }
+
+    public IdentityStoreImpl(List<Domain> domains, AuthenticationConfig authenticationConfig)
+            throws IdentityStoreException {
+
+        this(domains, authenticationConfig, new UserExistenceFilterConfig());
+    }
+
+    public IdentityStoreImpl(List<Domain> domains, AuthenticationConfig authenticationConfig,
+                             UserExistenceFilterConfig userExistenceFilterConfig) throws IdentityStoreException {
+
         if (domains == null || domains.isEmpty()) {
             throw new IdentityStoreException("No domains registered.");
         }
 
+        this.authenticationConfig = authenticationConfig;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(authenticationConfig.getThreadPoolSize(),
+                authenticationConfig.getThreadPoolSize(), 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(authenticationConfig.getThreadPoolSize() * (domains.size() + 1)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "identity-store-worker-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        // Threads are only kept while the store is in use.
+        this.executor.allowCoreThreadTimeOut(true);
+
+        if (authenticationConfig.getRoutingIndexSize() > 0 && domains.size() > 1) {
+            this.routingIndex = new DomainRoutingIndex(authenticationConfig.getRoutingIndexSize());
+        }
+
         this.sortedDomains.addAll(domains);
         domains.stream()
                 .forEach(domain -> {
@@ -99,11 +168,53 @@ public class IdentityStoreImpl implements IdentityStore {
                     this.domainMap.put(domain.getName(), domain);
                 });
 
+        if (userExistenceFilterConfig.isEnable()) {
+            this.userExistenceFilter = new UserExistenceFilter(userExistenceFilterConfig, this.domains.values());
+            this.userExistenceFilter.start();
+        }
+
         if (log.isDebugEnabled()) {
             log.debug("Identity store successfully initialized.");
         }
     }
 
+    /**
+     * Stop the background tasks of the store. The store should not be used afterwards.
+     */
+    public void close() {
+
+        executor.shutdownNow();
+        if (userExistenceFilter != null) {
+            userExistenceFilter.stop();
+        }
+    }
+
+    /**
+     * Set whether the invalidations of the other nodes of the cluster are applied to the store. The user existence
+     * filter only reports values as absent once it knows the values taken on the other nodes.
+     *
+     * @param invalidationEnabled Whether the invalidations are applied through {@link #applyInvalidation}.
+     */
+    public void setInvalidationEnabled(boolean invalidationEnabled) {
+
+        if (userExistenceFilter != null) {
+            userExistenceFilter.setAuthoritative(invalidationEnabled);
+        }
+    }
+
+    /**
+     * Apply an invalidation received from another node of the cluster.
+     *
+     * @param message Invalidation message.
+     */
+    public void applyInvalidation(InvalidationMessage message) {
+
+        // A claim value taken on another node is not known to the user existence filter of this node.
+        if (userExistenceFilter != null && message.getEntityType() == InvalidationMessage.EntityType.CLAIM) {
+            userExistenceFilter.addTaken(message.getUniqueId());
+        }
+    }
+
     /**
      * Identity User Management Read Operations.
      */
@@ -133,12 +244,17 @@ public class IdentityStoreImpl implements IdentityStore {
             }
             if (domain.isClaimSupported(claim.getClaimUri()) &&
                     metaClaimMapping.isUnique()) {
+                UserExistenceFilter.Answer filterAnswer = checkUserExistenceFilter(domain, claim);
+                if (filterAnswer == UserExistenceFilter.Answer.ABSENT) {
+                    continue;
+                }
                 try {
                     domainUserId = domain.getDomainUserId(claim);
                     if (!isNullOrEmpty(domainUserId)) {
                         return true;
                     }
                 } catch (UserNotFoundException e) {
+                    recordFalsePositive(filterAnswer);
                     if (log.isDebugEnabled()) {
                         log.debug("User is not available in domain: {} for claim: {}", domainName, claim.getClaimUri());
                     }
@@ -178,6 +294,10 @@ public class IdentityStoreImpl implements IdentityStore {
                 }
                 if (domain.isClaimSupported(claim.getClaimUri()) &&
                         metaClaimMapping.isUnique()) {
+                    UserExistenceFilter.Answer filterAnswer = checkUserExistenceFilter(domain, claim);
+                    if (filterAnswer == UserExistenceFilter.Answer.ABSENT) {
+                        continue;
+                    }
                     try {
                         domainUserId = domain.getDomainUserId(claim);
                         if (!isNullOrEmpty(domainUserId)) {
@@ -185,6 +305,7 @@ public class IdentityStoreImpl implements IdentityStore {
                             break;
                         }
                     } catch (UserNotFoundException e) {
+                        recordFalsePositive(filterAnswer);
                         if (log.isDebugEnabled()) {
                             log.debug("User is not available in domain: {} for claim: {}", domainName,
                                     claim.getClaimUri());
@@ -316,6 +437,62 @@ public class IdentityStoreImpl implements IdentityStore {
         return doListUsers(offset, length, domain);
     }
 
+    @Override
+    public Page<User> listUsers(String cursor, int length) throws IdentityStoreException {
+
+        if (length < 0) {
+            throw new IdentityStoreClientException("Invalid length value.");
+        }
+
+        Domain domain;
+        try {
+            domain = getPrimaryDomain();
+        } catch (DomainException e) {
+            throw new IdentityStoreServerException("Error while retrieving the primary domain.", e);
+        }
+
+        return doListUsers(cursor, length, domain);
+    }
+
+    @Override
+    public Page<User> listUsers(String cursor, int length, String domainName) throws IdentityStoreException {
+
+        if (isNullOrEmpty(domainName)) {
+            return listUsers(cursor, length);
+        }
+
+        if (length < 0) {
+            throw new IdentityStoreClientException("Invalid length value.");
+        }
+
+        Domain domain;
+        try {
+            domain = getDomainFromDomainName(domainName);
+        } catch (DomainException e) {
+            throw new IdentityStoreServerException(String.format("Error while retrieving domain from the domain name " +
+                    "- %s", domainName), e);
+        }
+
+        return doListUsers(cursor, length, domain);
+    }
+
+    @Override
+    public void forEachUser(int pageSize, UserVisitor visitor) throws IdentityStoreException {
+
+        doForEachUser(pageSize, null, visitor);
+    }
+
+    @Override
+    public void forEachUser(int pageSize, List<MetaClaim> metaClaims, UserVisitor visitor)
+            throws IdentityStoreException {
+
+        if (metaClaims == null) {
+            throw new IdentityStoreClientException("Invalid meta claim list.");
+        }
+
+        doForEachUser(pageSize, metaClaims, visitor);
+    }
+
     @Override
     public List<User> listUsers(Claim claim, int offset, int length) throws IdentityStoreException {
 
@@ -631,6 +808,45 @@ public class IdentityStoreImpl implements IdentityStore {
         return doListGroups(offset, length, domain);
     }
 
+    @Override
+    public Page<Group> listGroups(String cursor, int length) throws IdentityStoreException {
+
+        if (length < 0) {
+            throw new IdentityStoreClientException("Invalid length value.");
+        }
+
+        Domain domain;
+        try {
+            domain = getPrimaryDomain();
+        } catch (DomainException e) {
+            throw new IdentityStoreServerException("Error while retrieving the primary domain.", e);
+        }
+
+        return doListGroups(cursor, length, domain);
+    }
+
+    @Override
+    public Page<Group> listGroups(String cursor, int length, String domainName) throws IdentityStoreException {
+
+        if (isNullOrEmpty(domainName)) {
+            return listGroups(cursor, length);
+        }
+
+        if (length < 0) {
+            throw new IdentityStoreClientException("Invalid length value.");
+        }
+
+        Domain domain;
+        try {
+            domain = getDomainFromDomainName(domainName);
+        } catch (DomainException e) {
+            throw new IdentityStoreServerException(String.format("Error while retrieving domain from the domain name " +
+                    "- %s", domainName), e);
+        }
+
+        return doListGroups(cursor, length, domain);
+    }
+
     @Override
     public List<Group> listGroups(Claim claim, int offset, int length) throws IdentityStoreException {
 
@@ -747,6 +963,13 @@ public class IdentityStoreImpl implements IdentityStore {
     @Override
     public List<Group> getGroupsOfUser(String uniqueUserId) throws IdentityStoreException, UserNotFoundException {
 
+        try (UnitOfWork.ReadScope readScope = UnitOfWork.openReadScope()) {
+            return doGetGroupsOfUser(uniqueUserId);
+        }
+    }
+
+    private List<Group> doGetGroupsOfUser(String uniqueUserId) throws IdentityStoreException, UserNotFoundException {
+
         if (isNullOrEmpty(uniqueUserId)) {
             throw new IdentityStoreClientException("Invalid unique user id.");
         }
@@ -796,6 +1019,13 @@ public class IdentityStoreImpl implements IdentityStore {
     @Override
     public List<User> getUsersOfGroup(String uniqueGroupId) throws IdentityStoreException, GroupNotFoundException {
 
+        try (UnitOfWork.ReadScope readScope = UnitOfWork.openReadScope()) {
+            return doGetUsersOfGroup(uniqueGroupId);
+        }
+    }
+
+    private List<User> doGetUsersOfGroup(String uniqueGroupId) throws IdentityStoreException, GroupNotFoundException {
+
         if (isNullOrEmpty(uniqueGroupId)) {
             throw new IdentityStoreClientException("Invalid unique group id.");
         }
@@ -842,6 +1072,14 @@ public class IdentityStoreImpl implements IdentityStore {
     public boolean isUserInGroup(String uniqueUserId, String uniqueGroupId) throws IdentityStoreException,
             UserNotFoundException, GroupNotFoundException {
 
+        try (UnitOfWork.ReadScope readScope = UnitOfWork.openReadScope()) {
+            return doIsUserInGroup(uniqueUserId, uniqueGroupId);
+        }
+    }
+
+    private boolean doIsUserInGroup(String uniqueUserId, String uniqueGroupId) throws IdentityStoreException,
+            UserNotFoundException, GroupNotFoundException {
+
         if (isNullOrEmpty(uniqueUserId) || isNullOrEmpty(uniqueGroupId)) {
             throw new IdentityStoreClientException("Invalid inputs.");
         }
@@ -1020,8 +1258,12 @@ public class IdentityStoreImpl implements IdentityStore {
             throw new IdentityStoreServerException("Failed to persist lifecycle data ", e);
         }
 
+        String uniqueUserId = getEncodedUniqueEntityId(domain.getId(), domainUserId);
+        addRoutes(domain, uniqueUserId, userBean.getClaims());
+        addToUserExistenceFilter(domain, userBean.getClaims());
+
         return new User.UserBuilder()
-                .setUserId(getEncodedUniqueEntityId(domain.getId(), domainUserId))
+                .setUserId(uniqueUserId)
                 .setDomainName(domain.getName())
                 .setState(initialState)
                 .setIdentityStore(this)
@@ -1073,8 +1315,12 @@ public class IdentityStoreImpl implements IdentityStore {
             throw new IdentityStoreServerException("Failed to persist lifecycle data ", e);
         }
 
+        String uniqueUserId = getEncodedUniqueEntityId(domain.getId(), domainUserId);
+        addRoutes(domain, uniqueUserId, userBean.getClaims());
+        addToUserExistenceFilter(domain, userBean.getClaims());
+
         return new User.UserBuilder()
-                .setUserId(getEncodedUniqueEntityId(domain.getId(), domainUserId))
+                .setUserId(uniqueUserId)
                 .setDomainName(domain.getName())
                 .setState(initialState)
                 .setIdentityStore(this)
@@ -1115,6 +1361,8 @@ public class IdentityStoreImpl implements IdentityStore {
             return Collections.emptyList();
         }
 
+        userBeans.forEach(userBean -> addToUserExistenceFilter(domain, userBean.getClaims()));
+
         List<String> uniqueUserIds = new ArrayList<>();
         domainUserIds.forEach(rethrowConsumer(domainUserId -> {
                     String uniqueUserId = getEncodedUniqueEntityId(domain.getId(), domainUserId);
@@ -1174,6 +1422,8 @@ public class IdentityStoreImpl implements IdentityStore {
             return Collections.emptyList();
         }
 
+        userBeans.forEach(userBean -> addToUserExistenceFilter(domain, userBean.getClaims()));
+
         List<String> uniqueUserIds = new ArrayList<>();
         domainUserIds.forEach(rethrowConsumer(domainUserId -> {
                     String uniqueUserId = getEncodedUniqueEntityId(domain.getId(), domainUserId);
@@ -1210,7 +1460,12 @@ public class IdentityStoreImpl implements IdentityStore {
             domain.updateUserClaims(decodedUniqueUserId.getValue(), claims);
         } catch (DomainException e) {
             throw new IdentityStoreServerException(String.format("Failed to update claims of user - %s", uniqueUserId));
+        } finally {
+            removeRoutes(uniqueUserId);
         }
+
+        addRoutes(domain, uniqueUserId, claims);
+        addToUserExistenceFilter(domain, claims);
     }
 
     @Override
@@ -1233,7 +1488,12 @@ public class IdentityStoreImpl implements IdentityStore {
             domain.updateUserClaims(decodedUniqueUserId.getValue(), claimsToAdd, claimsToRemove);
         } catch (DomainException e) {
             throw new IdentityStoreServerException(String.format("Failed to update claims of user - %s", uniqueUserId));
+        } finally {
+            removeRoutes(uniqueUserId);
         }
+
+        addRoutes(domain, uniqueUserId, claimsToAdd);
+        addToUserExistenceFilter(domain, claimsToAdd);
     }
 
     @Override
@@ -1297,6 +1557,8 @@ public class IdentityStoreImpl implements IdentityStore {
             domain.deleteUser(decodedUniqueUserId.getValue());
         } catch (DomainException e) {
             throw new IdentityStoreServerException(String.format("Failed to delete user - %s", uniqueUserId));
+        } finally {
+            removeRoutes(uniqueUserId);
         }
     }
 
@@ -1645,6 +1907,92 @@ public class IdentityStoreImpl implements IdentityStore {
             return getAuthenticationContext(domain.authenticate(claim, credentials), domain);
         }
 
+        if (routingIndex != null) {
+            AuthenticationContext authenticationContext = authenticateFromRoutedDomain(claim, credentials);
+            if (authenticationContext != null) {
+                return authenticationContext;
+            }
+        }
+
+        AuthenticationContext authenticationContext;
+        if (authenticationConfig.isParallel() && sortedDomains.size() > 1) {
+            authenticationContext = authenticateInParallel(claim, credentials);
+        } else {
+            authenticationContext = authenticateSequentially(claim, credentials);
+        }
+
+        if (routingIndex != null && authenticationContext.isAuthenticated()) {
+            routingIndex.put(claim.getClaimUri(), claim.getValue(), authenticationContext.getUser().getUniqueUserId());
+        }
+
+        return authenticationContext;
+    }
+
+    /**
+     * Authenticate against the domain which is known to own the claim value, without querying the other domains.
+     * <p>
+     * The route is only taken when no domain of a higher order supports the claim, as such a domain may own the
+     * same claim value and must be consulted first.
+     *
+     * @param claim       Unique claim
+     * @param credentials Credentials
+     * @return AuthenticationContext if the user was authenticated, or null if the owning domain is not known, a
+     * domain of a higher order supports the claim or the user could not be authenticated from it
+     * @throws IdentityStoreException Identity Store Exception
+     */
+    private AuthenticationContext authenticateFromRoutedDomain(Claim claim, Callback[] credentials)
+            throws IdentityStoreException {
+
+        String uniqueUserId = routingIndex.get(claim.getClaimUri(), claim.getValue());
+        if (uniqueUserId == null) {
+            return null;
+        }
+
+        Domain domain = domains.get(getDecodedUniqueEntityId(uniqueUserId).getKey());
+        if (domain == null || !domain.isClaimSupported(claim.getClaimUri())) {
+            routingIndex.remove(claim.getClaimUri(), claim.getValue());
+            return null;
+        }
+
+        for (Domain higherOrderDomain : sortedDomains) {
+            if (higherOrderDomain == domain) {
+                break;
+            }
+            if (higherOrderDomain.isClaimSupported(claim.getClaimUri())) {
+                return null;
+            }
+        }
+
+        try {
+            AuthenticationContext authenticationContext = domain.authenticate(claim, credentials);
+            if (authenticationContext.isAuthenticated()) {
+                return getAuthenticationContext(authenticationContext, domain);
+            }
+        } catch (AuthenticationFailure e) {
+            // The claim value is not owned by this domain anymore.
+            routingIndex.remove(claim.getClaimUri(), claim.getValue());
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Failed to authenticate user - %s from routed domain - %s",
+                        claim.getValue(), domain.getName()), e);
+            }
+        }
+
+        // Fall back to the other domains as the same claim value may exist in more than one domain.
+        return null;
+    }
+
+    /**
+     * Authenticate against the domains which support the claim one after the other in domain order.
+     *
+     * @param claim       Unique claim
+     * @param credentials Credentials
+     * @return AuthenticationContext of the first domain in order which authenticated the user, or a
+     * FailedAuthenticationContext with the failed users ordered by domain
+     * @throws IdentityStoreException Identity Store Exception
+     */
+    private AuthenticationContext authenticateSequentially(Claim claim, Callback[] credentials)
+            throws IdentityStoreException {
+
         FailedAuthenticationContext failedAuthenticationContext = new FailedAuthenticationContext();
 
         for (Domain domain : sortedDomains) {
@@ -1654,20 +2002,12 @@ public class IdentityStoreImpl implements IdentityStore {
                     if (authenticationContext.isAuthenticated()) {
                         return getAuthenticationContext(authenticationContext, domain);
                     } else {
-                        String domainUserId = (String) authenticationContext.getParameter(
-                                IdentityMgtConstants.DOMAIN_USER_ID);
-                        String state = (String) authenticationContext.getParameter(
-                                IdentityMgtConstants.STATE);
-                        failedAuthenticationContext.addFailedUserToList(new User.UserBuilder()
-                                .setUserId(getEncodedUniqueEntityId(domain.getId(), domainUserId))
-                                .setIdentityStore(this)
-                                .setState(state)
-                                .setDomainName(domain.getName()).build());
+                        addFailedUser(failedAuthenticationContext, authenticationContext, domain);
                     }
                 } catch (AuthenticationFailure e) {
                     if (log.isDebugEnabled()) {
                         log.debug(String.format("Failed to authenticate user - %s from domain - %s", claim.getValue(),
-                                domainName), e);
+                                domain.getName()), e);
                     }
                 }
             }
@@ -1676,6 +2016,157 @@ public class IdentityStoreImpl implements IdentityStore {
         return failedAuthenticationContext;
     }
 
+    /**
+     * Resolve the user owning the claim value in all the domains which support the claim at once, and check the
+     * credentials one domain after the other in domain order. Hence the credentials are only checked against a domain
+     * if all the domains with a higher priority failed to authenticate, as when authenticating sequentially.
+     * <p>
+     * A domain which does not resolve the user within the domain timeout fails the attempt, as the same claim value
+     * may be owned by another user in a domain with a lower priority. When the executor is saturated, the domains are
+     * authenticated sequentially on the calling thread.
+     *
+     * @param claim       Unique claim
+     * @param credentials Credentials
+     * @return AuthenticationContext of the first domain in order which authenticated the user, or a
+     * FailedAuthenticationContext with the failed users ordered by domain
+     * @throws IdentityStoreException Identity Store Exception
+     */
+    private AuthenticationContext authenticateInParallel(Claim claim, Callback[] credentials)
+            throws IdentityStoreException {
+
+        Map<Domain, Future<DomainUser>> domainUserFutures = new LinkedHashMap<>();
+        try {
+            for (Domain domain : sortedDomains) {
+                if (domain.isClaimSupported(claim.getClaimUri())) {
+                    domainUserFutures.put(domain, executor.submit(() -> domain.getAuthenticatingUser(claim)));
+                }
+            }
+        } catch (RejectedExecutionException e) {
+            domainUserFutures.values().forEach(future -> future.cancel(false));
+            if (log.isDebugEnabled()) {
+                log.debug("Authentication executor is saturated, authenticating the domains sequentially.", e);
+            }
+            return authenticateSequentially(claim, credentials);
+        }
+
+        FailedAuthenticationContext failedAuthenticationContext = new FailedAuthenticationContext();
+        try {
+            for (Map.Entry<Domain, Future<DomainUser>> entry : domainUserFutures.entrySet()) {
+                Domain domain = entry.getKey();
+                try {
+                    DomainUser domainUser = entry.getValue().get(authenticationConfig.getDomainTimeout(),
+                            TimeUnit.MILLISECONDS);
+                    AuthenticationContext authenticationContext = domain.authenticate(domainUser, credentials);
+                    if (authenticationContext.isAuthenticated()) {
+                        return getAuthenticationContext(authenticationContext, domain);
+                    }
+                    addFailedUser(failedAuthenticationContext, authenticationContext, domain);
+                } catch (TimeoutException e) {
+                    // Checking the domains with a lower priority could authenticate a different user with the same
+                    // claim value, which the sequential authentication never does.
+                    throw new IdentityStoreServerException(String.format("Authentication timed out for domain - %s",
+                            domain.getName()), e);
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof AuthenticationFailure)) {
+                        throw new IdentityStoreServerException(String.format("Error while authenticating user from " +
+                                "domain - %s", domain.getName()), e.getCause());
+                    }
+                    if (log.isDebugEnabled()) {
+                        log.debug(String.format("Failed to authenticate user - %s from domain - %s", claim.getValue(),
+                                domain.getName()), e.getCause());
+                    }
+                } catch (AuthenticationFailure e) {
+                    if (log.isDebugEnabled()) {
+                        log.debug(String.format("Failed to authenticate user - %s from domain - %s", claim.getValue(),
+                                domain.getName()), e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdentityStoreServerException("Interrupted while authenticating the user.", e);
+        } finally {
+            // Results of the remaining domains are not needed anymore. Lookups which are already running are left to
+            // complete, as interrupting them may leave the connections of the connectors in an unusable state.
+            domainUserFutures.values().forEach(future -> future.cancel(false));
+        }
+
+        return failedAuthenticationContext;
+    }
+
+    /**
+     * Remember the domain of the unique claim values of a user to route authentication requests.
+     *
+     * @param domain       Domain of the user
+     * @param uniqueUserId Unique user id
+     * @param claims       Claims of the user
+     */
+    private void addRoutes(Domain domain, String uniqueUserId, List<Claim> claims) {
+
+        if (routingIndex == null || claims == null) {
+            return;
+        }
+
+        for (Claim claim : claims) {
+            if (claim == null || isNullOrEmpty(claim.getValue()) || !domain.isClaimSupported(claim.getClaimUri())) {
+                continue;
+            }
+            try {
+                if (domain.getMetaClaimMapping(claim.getClaimUri()).isUnique()) {
+                    routingIndex.put(claim.getClaimUri(), claim.getValue(), uniqueUserId);
+                }
+            } catch (DomainException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug(String.format("Failed to add route for claim - %s of user - %s", claim.getClaimUri(),
+                            uniqueUserId), e);
+                }
+            }
+        }
+    }
+
+    private void addToUserExistenceFilter(Domain domain, List<Claim> claims) {
+
+        if (userExistenceFilter != null) {
+            userExistenceFilter.add(domain, claims);
+        }
+    }
+
+    private UserExistenceFilter.Answer checkUserExistenceFilter(Domain domain, Claim claim) {
+
+        if (userExistenceFilter == null) {
+            return UserExistenceFilter.Answer.UNKNOWN;
+        }
+        return userExistenceFilter.check(domain, claim);
+    }
+
+    private void recordFalsePositive(UserExistenceFilter.Answer filterAnswer) {
+
+        // Only the values the filter let through count, so that the rate is relative to its positive answers.
+        if (filterAnswer == UserExistenceFilter.Answer.MAYBE_PRESENT) {
+            userExistenceFilter.recordFalsePositive();
+        }
+    }
+
+    private void removeRoutes(String uniqueUserId) {
+
+        if (routingIndex != null) {
+            routingIndex.removeUser(uniqueUserId);
+        }
+    }
+
+    private void addFailedUser(FailedAuthenticationContext failedAuthenticationContext,
+                               AuthenticationContext authenticationContext, Domain domain)
+            throws IdentityStoreException {
+
+        String domainUserId = (String) authenticationContext.getParameter(IdentityMgtConstants.DOMAIN_USER_ID);
+        String state = (String) authenticationContext.getParameter(IdentityMgtConstants.STATE);
+        failedAuthenticationContext.addFailedUserToList(new User.UserBuilder()
+                .setUserId(getEncodedUniqueEntityId(domain.getId(), domainUserId))
+                .setIdentityStore(this)
+                .setState(state)
+                .setDomainName(domain.getName()).build());
+    }
+
     /**
      * Identity User Management Authentication Related Operations End.
      */
@@ -1855,6 +2346,134 @@ public class IdentityStoreImpl implements IdentityStore {
                 .collect(Collectors.toList());
     }
 
+    private Page<User> doListUsers(String cursor, int length, Domain domain) throws IdentityStoreException {
+
+        if (length == 0) {
+            return new Page<>(Collections.emptyList(), cursor);
+        }
+
+        List<DomainUser> domainUsers;
+        try {
+            domainUsers = domain.listDomainUsers(getDomainEntityIdFromCursor(cursor, domain), length);
+        } catch (DomainException e) {
+            throw new IdentityStoreServerException(String.format("Failed to list users in the domain - %s", domain), e);
+        }
+
+        if (domainUsers == null || domainUsers.isEmpty()) {
+            return new Page<>(Collections.emptyList(), null);
+        }
+
+        List<User> users = domainUsers.stream()
+                .map(rethrowFunction(domainUser -> new User.UserBuilder()
+                        .setUserId(getEncodedUniqueEntityId(domain.getId(), domainUser.getDomainUserId()))
+                        .setDomainName(domain.getName())
+                        .setState(domainUser.getState())
+                        .setIdentityStore(this)
+                        .build()))
+                .collect(Collectors.toList());
+
+        // A short page means there are no more users after it.
+        String nextCursor = domainUsers.size() < length ? null : getCursor(domain.getId(),
+                domainUsers.get(domainUsers.size() - 1).getDomainUserId());
+        return new Page<>(users, nextCursor);
+    }
+
+    private void doForEachUser(int pageSize, List<MetaClaim> metaClaims, UserVisitor visitor)
+            throws IdentityStoreException {
+
+        if (pageSize <= 0) {
+            throw new IdentityStoreClientException("Invalid page size.");
+        }
+
+        if (visitor == null) {
+            throw new IdentityStoreClientException("Invalid user visitor.");
+        }
+
+        // Only the next page is prefetched, so that only the page being visited and the next page are held in memory.
+        Future<UserBatch> nextBatch = null;
+        try {
+            for (Domain domain : sortedDomains) {
+                nextBatch = prefetchUserBatch(domain, null, pageSize, metaClaims);
+                while (nextBatch != null) {
+                    UserBatch userBatch = getUserBatch(nextBatch, domain);
+                    nextBatch = userBatch.lastDomainUserId == null ? null : prefetchUserBatch(domain,
+                            userBatch.lastDomainUserId, pageSize, metaClaims);
+
+                    for (int i = 0; i < userBatch.users.size(); i++) {
+                        List<Claim> claims = userBatch.claims == null ? null : userBatch.claims.get(i);
+                        if (!visitor.visit(userBatch.users.get(i), claims)) {
+                            return;
+                        }
+                    }
+                }
+            }
+        } finally {
+            // A prefetch which is already running is left to complete, as interrupting it may leave the connections
+            // of the connectors in an unusable state.
+            if (nextBatch != null) {
+                nextBatch.cancel(false);
+            }
+        }
+    }
+
+    private Future<UserBatch> prefetchUserBatch(Domain domain, String lastDomainUserId, int pageSize,
+                                                List<MetaClaim> metaClaims) throws IdentityStoreException {
+
+        try {
+            return executor.submit(() -> readUserBatch(domain, lastDomainUserId, pageSize, metaClaims));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(readUserBatch(domain, lastDomainUserId, pageSize, metaClaims));
+        }
+    }
+
+    private UserBatch readUserBatch(Domain domain, String lastDomainUserId, int pageSize, List<MetaClaim> metaClaims)
+            throws IdentityStoreException {
+
+        List<DomainUser> domainUsers;
+        List<List<Claim>> claims = metaClaims == null ? null : new ArrayList<>();
+        try {
+            domainUsers = domain.listDomainUsers(lastDomainUserId, pageSize);
+            if (claims != null) {
+                for (DomainUser domainUser : domainUsers) {
+                    claims.add(domain.getClaimsOfUser(domainUser, metaClaims));
+                }
+            }
+        } catch (DomainException e) {
+            throw new IdentityStoreServerException(String.format("Failed to read users in the domain - %s",
+                    domain.getName()), e);
+        }
+
+        List<User> users = domainUsers.stream()
+                .map(rethrowFunction(domainUser -> new User.UserBuilder()
+                        .setUserId(getEncodedUniqueEntityId(domain.getId(), domainUser.getDomainUserId()))
+                        .setDomainName(domain.getName())
+                        .setState(domainUser.getState())
+                        .setIdentityStore(this)
+                        .build()))
+                .collect(Collectors.toList());
+
+        String nextDomainUserId = domainUsers.size() < pageSize ? null : domainUsers.get(domainUsers.size() - 1)
+                .getDomainUserId();
+        return new UserBatch(users, claims, nextDomainUserId);
+    }
+
+    private UserBatch getUserBatch(Future<UserBatch> userBatchFuture, Domain domain) throws IdentityStoreException {
+
+        try {
+            return userBatchFuture.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdentityStoreServerException(String.format("Interrupted while reading users in the domain - " +
+                    "%s", domain.getName()), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IdentityStoreException) {
+                throw (IdentityStoreException) e.getCause();
+            }
+            throw new IdentityStoreServerException(String.format("Failed to read users in the domain - %s",
+                    domain.getName()), e.getCause());
+        }
+    }
+
     private List<User> doListUsers(Claim claim, int offset, int length, Domain domain) throws IdentityStoreException {
 
         List<DomainUser> domainUsers;
@@ -2011,6 +2630,82 @@ public class IdentityStoreImpl implements IdentityStore {
                 .collect(Collectors.toList());
     }
 
+    private Page<Group> doListGroups(String cursor, int length, Domain domain) throws IdentityStoreException {
+
+        if (length == 0) {
+            return new Page<>(Collections.emptyList(), cursor);
+        }
+
+        List<String> domainGroupIds;
+        try {
+            domainGroupIds = domain.listDomainGroups(getDomainEntityIdFromCursor(cursor, domain), length);
+        } catch (DomainException e) {
+            throw new IdentityStoreServerException(String.format("Failed to list groups in the domain - %s", domain),
+                    e);
+        }
+
+        if (domainGroupIds == null || domainGroupIds.isEmpty()) {
+            return new Page<>(Collections.emptyList(), null);
+        }
+
+        List<Group> groups = domainGroupIds.stream()
+                .map(rethrowFunction(domainGroupId -> new Group.GroupBuilder()
+                        .setGroupId(getEncodedUniqueEntityId(domain.getId(), domainGroupId))
+                        .setDomainName(domain.getName())
+                        .setIdentityStore(this)
+                        .build()))
+                .collect(Collectors.toList());
+
+        // A short page means there are no more groups after it.
+        String nextCursor = domainGroupIds.size() < length ? null : getCursor(domain.getId(),
+                domainGroupIds.get(domainGroupIds.size() - 1));
+        return new Page<>(groups, nextCursor);
+    }
+
+    /**
+     * Build the opaque cursor pointing after the given domain entity.
+     *
+     * @param domainId       Domain id
+     * @param domainEntityId Last domain entity id of the page
+     * @return Opaque cursor
+     * @throws IdentityStoreException Identity Store Exception
+     */
+    private String getCursor(int domainId, String domainEntityId) throws IdentityStoreException {
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(getEncodedUniqueEntityId(domainId,
+                domainEntityId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Get the domain entity id the given cursor points to.
+     *
+     * @param cursor Opaque cursor
+     * @param domain Domain the cursor is used with
+     * @return Domain entity id or null if the cursor points to the beginning
+     * @throws IdentityStoreException if the cursor is invalid for the given domain
+     */
+    private String getDomainEntityIdFromCursor(String cursor, Domain domain) throws IdentityStoreException {
+
+        if (isNullOrEmpty(cursor)) {
+            return null;
+        }
+
+        String uniqueEntityId;
+        try {
+            uniqueEntityId = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IdentityStoreClientException("Invalid cursor.", e);
+        }
+
+        SimpleEntry<Integer, String> decodedUniqueEntityId = getDecodedUniqueEntityId(uniqueEntityId);
+        if (decodedUniqueEntityId.getKey() != domain.getId()) {
+            throw new IdentityStoreClientException(String.format("Cursor does not belong to the domain - %s",
+                    domain.getName()));
+        }
+
+        return decodedUniqueEntityId.getValue();
+    }
+
     private List<Group> doListGroups(Claim claim, int offset, int length, Domain domain) throws IdentityStoreException {
 
         List<String> domainGroupIds;
@@ -2112,4 +2807,23 @@ public class IdentityStoreImpl implements IdentityStore {
 
         return domainEntityIds;
     }
+
+    /**
+     * A page of users read while walking through the users of a domain.
+     */
+    private static class UserBatch {
+
+        private final List<User> users;
+
+        private final List<List<Claim>> claims;
+
+        private final String lastDomainUserId;
+
+        UserBatch(List<User> users, List<List<Claim>> claims, String lastDomainUserId) {
+
+            this.users = users;
+            this.claims = claims;
+            this.lastDomainUserId = lastDomainUserId;
+        }
+    }
 }
@@ -22,9 +22,12 @@ import org.wso2.carbon.identity.event.EventService;
 import org.wso2.carbon.identity.mgt.AuthenticationContext;
 import org.wso2.carbon.identity.mgt.Group;
 import org.wso2.carbon.identity.mgt.IdentityStore;
+import org.wso2.carbon.identity.mgt.Page;
 import org.wso2.carbon.identity.mgt.User;
+import org.wso2.carbon.identity.mgt.UserVisitor;
 import org.wso2.carbon.identity.mgt.bean.GroupBean;
 import org.wso2.carbon.identity.mgt.bean.UserBean;
+import org.wso2.carbon.identity.mgt.cache.InvalidationMessage;
 import org.wso2.carbon.identity.mgt.claim.Claim;
 import org.wso2.carbon.identity.mgt.claim.MetaClaim;
 import org.wso2.carbon.identity.mgt.event.IdentityMgtMessageContext;
@@ -55,6 +58,10 @@ public class InterceptingIdentityStore implements IdentityStore {
 
 
     private IdentityStore identityStore;
+
+    private IdentityStoreImpl baseIdentityStore;
+
+    private CacheBackedIdentityStore cacheBackedIdentityStore;
     private EventService eventService = IdentityMgtDataHolder.getInstance().getEventService();
     private static final Logger log = LoggerFactory.getLogger(InterceptingIdentityStore.class);
 
@@ -62,15 +69,55 @@ public class InterceptingIdentityStore implements IdentityStore {
     public InterceptingIdentityStore(StoreConfig storeConfig, List<Domain> domains, CacheManager cacheManager
             ) throws IdentityStoreException {
 
-        IdentityStore baseIdentityStore = new IdentityStoreImpl(domains);
+        baseIdentityStore = new IdentityStoreImpl(domains, storeConfig.getAuthenticationConfig(),
+                storeConfig.getUserExistenceFilterConfig());
         if (storeConfig.isEnableCache() && storeConfig.isEnableIdentityStoreCache()) {
-            identityStore = new CacheBackedIdentityStore(storeConfig.getIdentityStoreCacheConfigMap(),
-                    baseIdentityStore, cacheManager);
+            cacheBackedIdentityStore = new CacheBackedIdentityStore(storeConfig.getIdentityStoreCacheConfigMap(),
+                    baseIdentityStore, domains, cacheManager);
+            identityStore = cacheBackedIdentityStore;
         } else {
             identityStore = baseIdentityStore;
         }
     }
 
+    /**
+     * Get the caching identity store wrapped by this store.
+     *
+     * @return Cache backed identity store or null if the identity store cache is disabled.
+     */
+    public CacheBackedIdentityStore getCacheBackedIdentityStore() {
+        return cacheBackedIdentityStore;
+    }
+
+    /**
+     * Apply an invalidation received from another node of the cluster to the wrapped stores.
+     *
+     * @param message Invalidation message.
+     */
+    public void applyInvalidation(InvalidationMessage message) {
+
+        if (cacheBackedIdentityStore != null) {
+            cacheBackedIdentityStore.applyInvalidation(message);
+        }
+        baseIdentityStore.applyInvalidation(message);
+    }
+
+    /**
+     * Set whether the invalidations of the other nodes of the cluster are applied to the wrapped stores.
+     *
+     * @param invalidationEnabled Whether the invalidations are applied through {@link #applyInvalidation}.
+     */
+    public void setInvalidationEnabled(boolean invalidationEnabled) {
+        baseIdentityStore.setInvalidationEnabled(invalidationEnabled);
+    }
+
+    /**
+     * Stop the background tasks of the wrapped stores. The store should not be used afterwards.
+     */
+    public void close() {
+        baseIdentityStore.close();
+    }
+
     @Override
     public boolean isUserExist(List<Claim> userClaims, String domainName) throws IdentityStoreException {
 
@@ -248,6 +295,106 @@ public class InterceptingIdentityStore implements IdentityStore {
         return users;
     }
 
+    @Override
+    public Page<User> listUsers(String cursor, int length) throws IdentityStoreException {
+
+        IdentityMgtMessageContext messageContext = new IdentityMgtMessageContext();
+
+        EventInterceptorTemplate<Page<User>, IdentityStoreException> template = new EventInterceptorTemplate<>
+                (eventService, messageContext);
+
+        Page<User> userPage = template.pushEvent(IdentityStoreInterceptorConstants.PRE_LIST_USERS_BY_CURSOR,
+                                                 (eventProperties) -> {
+                                                     eventProperties.put(IdentityStoreConstants.CURSOR, cursor);
+                                                     eventProperties.put(IdentityStoreConstants.LENGTH, length);
+                                                 }).executeWith(new EventHandlerDelegate<Page<User>>() {
+            @Override
+            public Page<User> execute() throws IdentityStoreException {
+                return identityStore.listUsers(cursor, length);
+            }
+        }).pushEvent(IdentityStoreInterceptorConstants.POST_LIST_USERS_BY_CURSOR, (eventProperties) -> {
+            eventProperties.put(IdentityStoreConstants.CURSOR, cursor);
+            eventProperties.put(IdentityStoreConstants.LENGTH, length);
+            eventProperties.put(IdentityStoreConstants.USER_PAGE, template.getResult());
+        }).getResult();
+
+        return userPage;
+    }
+
+    @Override
+    public Page<User> listUsers(String cursor, int length, String domainName) throws IdentityStoreException {
+
+        IdentityMgtMessageContext messageContext = new IdentityMgtMessageContext();
+
+        EventInterceptorTemplate<Page<User>, IdentityStoreException> template = new EventInterceptorTemplate<>
+                (eventService, messageContext);
+
+        Page<User> userPage = template.pushEvent(IdentityStoreInterceptorConstants.PRE_LIST_USERS_BY_CURSOR_DOMAIN,
+                                                 (eventProperties) -> {
+                                                     eventProperties.put(IdentityStoreConstants.CURSOR, cursor);
+                                                     eventProperties.put(IdentityStoreConstants.LENGTH, length);
+                                                     eventProperties.put(IdentityStoreConstants.DOMAIN_NAME,
+                                                                         domainName);
+                                                 }).executeWith(new EventHandlerDelegate<Page<User>>() {
+            @Override
+            public Page<User> execute() throws IdentityStoreException {
+                return identityStore.listUsers(cursor, length, domainName);
+            }
+        }).pushEvent(IdentityStoreInterceptorConstants.POST_LIST_USERS_BY_CURSOR_DOMAIN, (eventProperties) -> {
+            eventProperties.put(IdentityStoreConstants.CURSOR, cursor);
+            eventProperties.put(IdentityStoreConstants.LENGTH, length);
+            eventProperties.put(IdentityStoreConstants.DOMAIN_NAME, domainName);
+            eventProperties.put(IdentityStoreConstants.USER_PAGE, template.getResult());
+        }).getResult();
+
+        return userPage;
+    }
+
+    @Override
+    public void forEachUser(int pageSize, UserVisitor visitor) throws IdentityStoreException {
+
+        IdentityMgtMessageContext messageContext = new IdentityMgtMessageContext();
+
+        EventInterceptorTemplate<Void, IdentityStoreException> template = new EventInterceptorTemplate<>
+                (eventService, messageContext);
+
+        template.pushEvent(IdentityStoreInterceptorConstants.PRE_FOR_EACH_USER, (eventProperties) -> {
+            eventProperties.put(IdentityStoreConstants.PAGE_SIZE, pageSize);
+        }).executeWith(new EventHandlerDelegate<Void>() {
+            @Override
+            public Void execute() throws IdentityStoreException {
+                identityStore.forEachUser(pageSize, visitor);
+                return null;
+            }
+        }).pushEvent(IdentityStoreInterceptorConstants.POST_FOR_EACH_USER, (eventProperties) -> {
+            eventProperties.put(IdentityStoreConstants.PAGE_SIZE, pageSize);
+        });
+    }
+
+    @Override
+    public void forEachUser(int pageSize, List<MetaClaim> metaClaims, UserVisitor visitor)
+            throws IdentityStoreException {
+
+        IdentityMgtMessageContext messageContext = new IdentityMgtMessageContext();
+
+        EventInterceptorTemplate<Void, IdentityStoreException> template = new EventInterceptorTemplate<>
+                (eventService, messageContext);
+
+        template.pushEvent(IdentityStoreInterceptorConstants.PRE_FOR_EACH_USER_WITH_CLAIMS, (eventProperties) -> {
+            eventProperties.put(IdentityStoreConstants.PAGE_SIZE, pageSize);
+            eventProperties.put(IdentityStoreConstants.META_CLAIM_LIST, metaClaims);
+        }).executeWith(new EventHandlerDelegate<Void>() {
+            @Override
+            public Void execute() throws IdentityStoreException {
+                identityStore.forEachUser(pageSize, metaClaims, visitor);
+                return null;
+            }
+        }).pushEvent(IdentityStoreInterceptorConstants.POST_FOR_EACH_USER_WITH_CLAIMS, (eventProperties) -> {
+            eventProperties.put(IdentityStoreConstants.PAGE_SIZE, pageSize);
+            eventProperties.put(IdentityStoreConstants.META_CLAIM_LIST, metaClaims);
+        });
+    }
+
     @Override
     public List<User> listUsers(Claim claim, int offset, int length) throws IdentityStoreException {
 
@@ -562,6 +709,61 @@ public class InterceptingIdentityStore implements IdentityStore {
         return groups;
     }
 
+    @Override
+    public Page<Group> listGroups(String cursor, int length) throws IdentityStoreException {
+
+        IdentityMgtMessageContext messageContext = new IdentityMgtMessageContext();
+
+        EventInterceptorTemplate<Page<Group>, IdentityStoreException> template = new EventInterceptorTemplate<>
+                (eventService, messageContext);
+
+        Page<Group> groupPage = template.pushEvent(IdentityStoreInterceptorConstants.PRE_LIST_GROUPS_BY_CURSOR,
+                                                   (eventProperties) -> {
+                                                       eventProperties.put(IdentityStoreConstants.CURSOR, cursor);
+                                                       eventProperties.put(IdentityStoreConstants.LENGTH, length);
+                                                   }).executeWith(new EventHandlerDelegate<Page<Group>>() {
+            @Override
+            public Page<Group> execute() throws IdentityStoreException {
+                return identityStore.listGroups(cursor, length);
+            }
+        }).pushEvent(IdentityStoreInterceptorConstants.POST_LIST_GROUPS_BY_CURSOR, (eventProperties) -> {
+            eventProperties.put(IdentityStoreConstants.CURSOR, cursor);
+            eventProperties.put(IdentityStoreConstants.LENGTH, length);
+            eventProperties.put(IdentityStoreConstants.GROUP_PAGE, template.getResult());
+        }).getResult();
+
+        return groupPage;
+    }
+
+    @Override
+    public Page<Group> listGroups(String cursor, int length, String domainName) throws IdentityStoreException {
+
+        IdentityMgtMessageContext messageContext = new IdentityMgtMessageContext();
+
+        EventInterceptorTemplate<Page<Group>, IdentityStoreException> template = new EventInterceptorTemplate<>
+                (eventService, messageContext);
+
+        Page<Group> groupPage = template.pushEvent(IdentityStoreInterceptorConstants.PRE_LIST_GROUPS_BY_CURSOR_DOMAIN,
+                                                   (eventProperties) -> {
+                                                       eventProperties.put(IdentityStoreConstants.CURSOR, cursor);
+                                                       eventProperties.put(IdentityStoreConstants.LENGTH, length);
+                                                       eventProperties.put(IdentityStoreConstants.DOMAIN_NAME,
+                                                                           domainName);
+                                                   }).executeWith(new EventHandlerDelegate<Page<Group>>() {
+            @Override
+            public Page<Group> execute() throws IdentityStoreException {
+                return identityStore.listGroups(cursor, length, domainName);
+            }
+        }).pushEvent(IdentityStoreInterceptorConstants.POST_LIST_GROUPS_BY_CURSOR_DOMAIN, (eventProperties) -> {
+            eventProperties.put(IdentityStoreConstants.CURSOR, cursor);
+            eventProperties.put(IdentityStoreConstants.LENGTH, length);
+            eventProperties.put(IdentityStoreConstants.DOMAIN_NAME, domainName);
+            eventProperties.put(IdentityStoreConstants.GROUP_PAGE, template.getResult());
+        }).getResult();
+
+        return groupPage;
+    }
+
     @Override
     public List<Group> listGroups(Claim claim, int offset, int length) throws IdentityStoreException {
 
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.identity.mgt.cache.InvalidationListener;
+import org.wso2.carbon.identity.mgt.cache.InvalidationMessage;
+import org.wso2.carbon.identity.mgt.cache.InvalidationTransport;
+import org.wso2.carbon.identity.mgt.impl.config.CacheInvalidationConfig;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Publishes the cache invalidations of this node to the other nodes of the cluster and applies the invalidations
+ * received from them.
+ * <p>
+ * Invalidations are held for the configured batch interval and the invalidations of the same entity are coalesced,
+ * so a burst of updates to a user results in a single message. Each message carries a generation which increases for
+ * every invalidation of this node. Receivers ignore their own messages and the messages of a node with a generation
+ * already applied, so redelivered batches are dropped.
+ */
+public class InvalidationBroadcaster implements InvalidationListener {
+
+    private static final Logger log = LoggerFactory.getLogger(InvalidationBroadcaster.class);
+
+    private static final String THREAD_NAME = "identity-store-cache-invalidation";
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final CacheInvalidationConfig invalidationConfig;
+
+    private final Consumer<InvalidationMessage> invalidationHandler;
+
+    private final Map<String, InvalidationMessage> pendingMessages = new LinkedHashMap<>();
+
+    private final Map<String, Long> appliedGenerations = new ConcurrentHashMap<>();
+
+    private final Object flushLock = new Object();
+
+    private volatile InvalidationTransport transport;
+
+    private volatile ScheduledExecutorService scheduler;
+
+    /**
+     * Create an invalidation broadcaster.
+     *
+     * @param transport           Transport used to exchange the messages.
+     * @param invalidationConfig  Cache invalidation config.
+     * @param invalidationHandler Handler applying the invalidations received from the other nodes.
+     */
+    public InvalidationBroadcaster(InvalidationTransport transport, CacheInvalidationConfig invalidationConfig,
+                                   Consumer<InvalidationMessage> invalidationHandler) {
+
+        this.transport = transport;
+        this.invalidationConfig = invalidationConfig;
+        this.invalidationHandler = invalidationHandler;
+    }
+
+    /**
+     * Subscribe to the transport and start publishing the pending invalidations periodically.
+     */
+    public synchronized void start() {
+
+        transport.subscribe(this);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = invalidationConfig.getBatchInterval();
+        scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Publish the pending invalidations and unsubscribe from the transport.
+     */
+    public synchronized void close() {
+
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        flush();
+        transport.unsubscribe(this);
+    }
+
+    /**
+     * Replace the transport used to exchange the messages.
+     *
+     * @param transport New transport.
+     */
+    public synchronized void setTransport(InvalidationTransport transport) {
+
+        InvalidationTransport previousTransport = this.transport;
+        this.transport = transport;
+        if (scheduler != null) {
+            previousTransport.unsubscribe(this);
+            transport.subscribe(this);
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Invalidate a user on the other nodes.
+     *
+     * @param uniqueUserId Unique user id.
+     */
+    public void publishUser(String uniqueUserId) {
+        publish(InvalidationMessage.EntityType.USER, uniqueUserId);
+    }
+
+    /**
+     * Invalidate a group on the other nodes.
+     *
+     * @param uniqueGroupId Unique group id.
+     */
+    public void publishGroup(String uniqueGroupId) {
+        publish(InvalidationMessage.EntityType.GROUP, uniqueGroupId);
+    }
+
+    /**
+     * Invalidate the cached absence of the users owning a claim value on the other nodes.
+     *
+     * @param claimUri   Claim URI.
+     * @param claimValue Claim value taken by a user.
+     */
+    public void publishClaim(String claimUri, String claimValue) {
+        publish(InvalidationMessage.EntityType.CLAIM, claimUri + ":" + claimValue);
+    }
+
+    /**
+     * Publish the pending invalidations now.
+     */
+    public void flush() {
+
+        // Batches are published one at a time, as the receivers drop the messages older than the ones applied.
+        synchronized (flushLock) {
+            List<InvalidationMessage> messages;
+            synchronized (pendingMessages) {
+                if (pendingMessages.isEmpty()) {
+                    return;
+                }
+                messages = new ArrayList<>(pendingMessages.values());
+                pendingMessages.clear();
+            }
+
+            messages.sort(Comparator.comparingLong(InvalidationMessage::getGeneration));
+            try {
+                transport.publish(messages);
+            } catch (RuntimeException e) {
+                log.warn(String.format("Failed to publish %d cache invalidations. Entries on the other nodes will " +
+                        "be stale until they expire.", messages.size()), e);
+            }
+        }
+    }
+
+    @Override
+    public void onInvalidation(List<InvalidationMessage> messages) {
+
+        for (InvalidationMessage message : messages) {
+            if (nodeId.equals(message.getOrigin())) {
+                continue;
+            }
+
+            Long appliedGeneration = appliedGenerations.get(message.getOrigin());
+            if (appliedGeneration != null && message.getGeneration() <= appliedGeneration) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Ignoring the already applied cache invalidation {}.", message);
+                }
+                continue;
+            }
+
+            try {
+                invalidationHandler.accept(message);
+            } catch (RuntimeException e) {
+                log.warn(String.format("Failed to apply the cache invalidation %s.", message), e);
+            }
+            appliedGenerations.merge(message.getOrigin(), message.getGeneration(), Math::max);
+        }
+    }
+
+    private void publish(InvalidationMessage.EntityType entityType, String uniqueId) {
+
+        boolean batchFull;
+        synchronized (pendingMessages) {
+            String key = entityType + ":" + uniqueId;
+            // Remove first, so that the coalesced message takes the position of its latest generation.
+            pendingMessages.remove(key);
+            pendingMessages.put(key, new InvalidationMessage(entityType, uniqueId, generation.incrementAndGet(),
+                    nodeId));
+            batchFull = pendingMessages.size() >= invalidationConfig.getMaxBatchSize();
+        }
+
+        if (batchFull) {
+            flushAsync();
+        }
+    }
+
+    private void flushAsync() {
+
+        ScheduledExecutorService currentScheduler = scheduler;
+        if (currentScheduler != null) {
+            try {
+                currentScheduler.execute(this::flush);
+                return;
+            } catch (RejectedExecutionException e) {
+                log.debug("Cache invalidation scheduler is shut down. Publishing in the caller thread.");
+            }
+        }
+        flush();
+    }
+}
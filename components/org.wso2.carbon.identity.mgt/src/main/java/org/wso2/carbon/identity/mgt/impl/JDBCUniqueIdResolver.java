@@ -24,6 +24,8 @@ import org.wso2.carbon.identity.mgt.exception.UniqueIdResolverException;
 import org.wso2.carbon.identity.mgt.exception.UserNotFoundException;
 import org.wso2.carbon.identity.mgt.impl.internal.IdentityMgtDataHolder;
 import org.wso2.carbon.identity.mgt.impl.util.NamedPreparedStatement;
+import org.wso2.carbon.identity.mgt.impl.util.ReadReplicaRouter;
+import org.wso2.carbon.identity.mgt.impl.util.SqlDialect;
 import org.wso2.carbon.identity.mgt.impl.util.UniqueIdResolverConstants;
 import org.wso2.carbon.identity.mgt.impl.util.UnitOfWork;
 import org.wso2.carbon.identity.mgt.resolver.DomainGroup;
@@ -33,12 +35,22 @@ import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolver;
 import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolverConfig;
 import org.wso2.carbon.identity.mgt.resolver.UserPartition;
 
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 import javax.sql.DataSource;
 
@@ -52,7 +64,45 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
 
     private static final Logger log = LoggerFactory.getLogger(JDBCUniqueIdResolver.class);
 
-    private DataSource dataSource;
+    private static final int MAX_MEMBERSHIP_UPDATE_ATTEMPTS = 3;
+
+    // SQL state class of the integrity constraint violations, such as a duplicate key.
+    private static final String INTEGRITY_CONSTRAINT_VIOLATION_CLASS = "23";
+
+    private static final String ADD_USER = "INSERT INTO IDM_USER " +
+            "(USER_ID, CONNECTOR_USER_ID, CONNECTOR_ID, DOMAIN_ID, CONNECTOR_TYPE) " +
+            "VALUES (:" + SQLPlaceholders.USER_ID + ";, :" + SQLPlaceholders.CONNECTOR_USER_ID + ";, " +
+            ":" + SQLPlaceholders.CONNECTOR_ID + ";, :" + SQLPlaceholders.DOMAIN_ID + ";, " +
+            ":" + SQLPlaceholders.CONNECTOR_TYPE + ";)";
+
+    private static final String ADD_USER_INFO = "INSERT INTO IDM_USER_INFO (USER_ID, DOMAIN_ID, STATE) " +
+            "VALUES (:" + SQLPlaceholders.USER_ID + ";, :" + SQLPlaceholders.DOMAIN_ID + ";, " +
+            ":" + SQLPlaceholders.STATE + ";)";
+
+    /**
+     * Joins the partitions of a user, aliased U, to the single row holding the state of the user.
+     */
+    private static final String JOIN_USER_INFO = "INNER JOIN IDM_USER_INFO I " +
+            "ON I.DOMAIN_ID = U.DOMAIN_ID AND I.USER_ID = U.USER_ID ";
+
+    private static final String ADD_GROUP = "INSERT INTO IDM_GROUP " +
+            "(GROUP_ID, CONNECTOR_GROUP_ID, CONNECTOR_ID, DOMAIN_ID) " +
+            "VALUES (:" + SQLPlaceholders.GROUP_ID + ";, :" + SQLPlaceholders.CONNECTOR_GROUP_ID + ";, " +
+            ":" + SQLPlaceholders.CONNECTOR_ID + ";, :" + SQLPlaceholders.DOMAIN_ID + ";)";
+
+    private static final List<String> MAPPING_COLUMNS = Arrays.asList(ColumnNames.USER_ID, ColumnNames.GROUP_ID,
+            ColumnNames.DOMAIN_ID);
+
+    private ReadReplicaRouter readReplicaRouter;
+
+    private SqlDialect sqlDialect;
+
+    // Upserts of a single partition, keyed on the unique index of the entity id and the connector id.
+    private String upsertUserPartition;
+
+    private String upsertGroupPartition;
+
+    private int batchSize = UniqueIdResolverConstants.DEFAULT_BATCH_SIZE;
 
     public JDBCUniqueIdResolver() {
 
@@ -61,22 +111,90 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
     @Override
     public void init(UniqueIdResolverConfig uniqueIdResolverConfig) throws UniqueIdResolverException {
 
+        Map<String, String> properties = uniqueIdResolverConfig.getProperties();
+        DataSource dataSource;
+        List<DataSource> readDataSources = new ArrayList<>();
         try {
             dataSource = IdentityMgtDataHolder.getInstance()
-                    .getDataSource(uniqueIdResolverConfig.getProperties().get(UniqueIdResolverConstants.DATA_SOURCE));
+                    .getDataSource(properties.get(UniqueIdResolverConstants.DATA_SOURCE));
+            String readDataSourcesProperty = properties.get(UniqueIdResolverConstants.READ_DATA_SOURCES);
+            if (readDataSourcesProperty != null) {
+                for (String readDataSourceName : readDataSourcesProperty.split(",")) {
+                    if (!readDataSourceName.trim().isEmpty()) {
+                        readDataSources.add(IdentityMgtDataHolder.getInstance()
+                                .getDataSource(readDataSourceName.trim()));
+                    }
+                }
+            }
         } catch (DataSourceException e) {
             throw new UniqueIdResolverException("Error occurred while initiating data source.", e);
         }
+
+        ReadReplicaRouter.RoutingPolicy routingPolicy = ReadReplicaRouter.RoutingPolicy.ROUND_ROBIN;
+        String routingPolicyProperty = properties.get(UniqueIdResolverConstants.READ_ROUTING_POLICY);
+        if (routingPolicyProperty != null) {
+            try {
+                routingPolicy = ReadReplicaRouter.RoutingPolicy.fromValue(routingPolicyProperty);
+            } catch (IllegalArgumentException e) {
+                throw new UniqueIdResolverException(e.getMessage(), e);
+            }
+        }
+
+        long readYourWritesWindow = UniqueIdResolverConstants.DEFAULT_READ_YOUR_WRITES_WINDOW;
+        String readYourWritesWindowProperty = properties.get(UniqueIdResolverConstants.READ_YOUR_WRITES_WINDOW);
+        if (readYourWritesWindowProperty != null) {
+            try {
+                readYourWritesWindow = Long.parseLong(readYourWritesWindowProperty.trim());
+            } catch (NumberFormatException e) {
+                throw new UniqueIdResolverException("Invalid read your writes window: " +
+                        readYourWritesWindowProperty, e);
+            }
+        }
+
+        readReplicaRouter = new ReadReplicaRouter(dataSource, readDataSources, routingPolicy, readYourWritesWindow);
+
+        String batchSizeProperty = uniqueIdResolverConfig.getProperties().get(UniqueIdResolverConstants.BATCH_SIZE);
+        if (batchSizeProperty != null) {
+            try {
+                batchSize = Integer.parseInt(batchSizeProperty.trim());
+            } catch (NumberFormatException e) {
+                throw new UniqueIdResolverException("Invalid batch size: " + batchSizeProperty, e);
+            }
+            if (batchSize <= 0) {
+                throw new UniqueIdResolverException("Batch size should be a positive integer.");
+            }
+        }
+
+        String databaseTypeProperty = properties.get(UniqueIdResolverConstants.DATABASE_TYPE);
+        if (databaseTypeProperty != null) {
+            try {
+                sqlDialect = SqlDialect.fromValue(databaseTypeProperty);
+            } catch (IllegalArgumentException e) {
+                throw new UniqueIdResolverException(e.getMessage(), e);
+            }
+        } else {
+            sqlDialect = SqlDialect.detect(dataSource);
+        }
+
+        upsertUserPartition = sqlDialect.upsert("IDM_USER",
+                Arrays.asList(ColumnNames.USER_ID, ColumnNames.DOMAIN_ID, ColumnNames.CONNECTOR_ID),
+                Collections.singletonList(ColumnNames.CONNECTOR_USER_ID),
+                Collections.singletonList(ColumnNames.CONNECTOR_TYPE));
+        upsertGroupPartition = sqlDialect.upsert("IDM_GROUP",
+                Arrays.asList(ColumnNames.GROUP_ID, ColumnNames.DOMAIN_ID, ColumnNames.CONNECTOR_ID),
+                Collections.singletonList(ColumnNames.CONNECTOR_GROUP_ID),
+                Collections.emptyList());
     }
 
     //TODO
     @Override
     public DomainUser getUser(String domainUserId, int domainId) throws UniqueIdResolverException,
             UserNotFoundException {
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection())) {
-            final String selectUniqueUser = "SELECT CONNECTOR_TYPE, CONNECTOR_ID, CONNECTOR_USER_ID," +
-                    " STATE FROM IDM_USER WHERE USER_ID = :" + SQLPlaceholders.USER_ID + "; AND " +
-                    "DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; ";
+        try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(readReplicaRouter.getPrimaryDataSource())) {
+            final String selectUniqueUser = "SELECT U.CONNECTOR_TYPE, U.CONNECTOR_ID, U.CONNECTOR_USER_ID, " +
+                    "I.STATE FROM IDM_USER U " + JOIN_USER_INFO +
+                    "WHERE U.USER_ID = :" + SQLPlaceholders.USER_ID + "; AND " +
+                    "U.DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; ";
 
             DomainUser domainUser = new DomainUser();
             List<UserPartition> userPartitions = new ArrayList<>();
@@ -84,6 +202,7 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
             NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
                     unitOfWork.getConnection(),
                     selectUniqueUser);
+            unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
             namedPreparedStatement.setString(SQLPlaceholders.USER_ID, domainUserId);
             namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
             try (ResultSet resultSet = namedPreparedStatement.getPreparedStatement().executeQuery()) {
@@ -112,14 +231,15 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
     public DomainUser getUserFromConnectorUserId(String connectorUserId, String connectorId, int domainId) throws
             UserNotFoundException, UniqueIdResolverException {
 
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection())) {
-            final String selectUniqueUser = "SELECT USER_ID, CONNECTOR_TYPE, CONNECTOR_ID, CONNECTOR_USER_ID, STATE " +
-                    "FROM IDM_USER WHERE USER_ID = ( " +
+        try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(readReplicaRouter.getPrimaryDataSource())) {
+            final String selectUniqueUser = "SELECT U.USER_ID, U.CONNECTOR_TYPE, U.CONNECTOR_ID, " +
+                    "U.CONNECTOR_USER_ID, I.STATE FROM IDM_USER U " + JOIN_USER_INFO +
+                    "WHERE U.USER_ID = ( " +
                     "SELECT USER_ID FROM IDM_USER " +
                     "WHERE CONNECTOR_USER_ID = :" + SQLPlaceholders.CONNECTOR_USER_ID + "; " +
                     "AND CONNECTOR_ID = :" + SQLPlaceholders.CONNECTOR_ID + "; AND " +
                     "DOMAIN_ID = :" + SQLPlaceholders.MAPPING_DOMAIN_ID + ";) AND " +
-                    "DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + ";";
+                    "U.DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + ";";
 
             String userUUID = null;
             DomainUser domainUser = new DomainUser();
@@ -127,6 +247,7 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
             NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
                     unitOfWork.getConnection(),
                     selectUniqueUser);
+            unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
             namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_USER_ID, connectorUserId);
             namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_ID, connectorId);
             namedPreparedStatement.setInt(SQLPlaceholders.MAPPING_DOMAIN_ID, domainId);
@@ -162,14 +283,17 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
     public List<DomainUser> getUsers(List<String> connectorUserIds, String connectorId, int domainId) throws
             UniqueIdResolverException {
 
+        Map<String, DomainUser> connectorUserIdToUserMap = findUsers(connectorUserIds, connectorId, domainId);
+
         UniqueIdResolverException uniqueIdResolverException = new UniqueIdResolverException();
         List<DomainUser> domainUsers = new ArrayList<>();
-        connectorUserIds.stream().forEach(entry -> {
-            try {
-                DomainUser domainUser = getUserFromConnectorUserId(entry, connectorId, domainId);
+        connectorUserIds.forEach(connectorUserId -> {
+            DomainUser domainUser = connectorUserIdToUserMap.get(connectorUserId);
+            if (domainUser != null) {
                 domainUsers.add(domainUser);
-            } catch (UniqueIdResolverException | UserNotFoundException e) {
-                uniqueIdResolverException.addSuppressed(e);
+            } else {
+                uniqueIdResolverException.addSuppressed(new UserNotFoundException(String.format("No user found for " +
+                        "connector user id: %s", connectorUserId)));
             }
         });
 
@@ -180,17 +304,95 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
         return domainUsers;
     }
 
+    /**
+     * Resolve the users of the given connector user ids. Connector user ids without a user are left out of the
+     * returned map.
+     *
+     * @param connectorUserIds The connector specific user Ids.
+     * @param connectorId      The connector Id.
+     * @param domainId         Domain id.
+     * @return Map of connector user id to the resolved user.
+     * @throws UniqueIdResolverException Unique Id Resolver Exception.
+     */
+    Map<String, DomainUser> findUsers(List<String> connectorUserIds, String connectorId, int domainId)
+            throws UniqueIdResolverException {
+
+        Map<String, DomainUser> connectorUserIdToUserMap = new HashMap<>();
+
+        try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(readReplicaRouter.getReadDataSource())) {
+
+            // Resolve the connector user ids in fixed size chunks on a single connection, instead of one query per id.
+            List<String> distinctConnectorUserIds = connectorUserIds.stream()
+                    .distinct()
+                    .collect(Collectors.toList());
+            for (int from = 0; from < distinctConnectorUserIds.size(); from += UniqueIdResolverConstants
+                    .MAX_IN_CLAUSE_SIZE) {
+                List<String> chunk = distinctConnectorUserIds.subList(from, Math.min(from + UniqueIdResolverConstants
+                        .MAX_IN_CLAUSE_SIZE, distinctConnectorUserIds.size()));
+                connectorUserIdToUserMap.putAll(getUsersOfChunk(unitOfWork, chunk, connectorId, domainId));
+            }
+        } catch (SQLException e) {
+            throw new UniqueIdResolverException("Error while searching users.", e);
+        }
+        return connectorUserIdToUserMap;
+    }
+
+    private Map<String, DomainUser> getUsersOfChunk(UnitOfWork unitOfWork, List<String> connectorUserIds,
+                                                    String connectorId, int domainId) throws SQLException {
+
+        final String selectUniqueUsers = "SELECT U.USER_ID, U.CONNECTOR_TYPE, U.CONNECTOR_ID, U.CONNECTOR_USER_ID, " +
+                "I.STATE, M.CONNECTOR_USER_ID AS " + ColumnNames.MAPPED_CONNECTOR_USER_ID + " " +
+                "FROM IDM_USER U INNER JOIN IDM_USER M ON U.USER_ID = M.USER_ID AND U.DOMAIN_ID = M.DOMAIN_ID " +
+                JOIN_USER_INFO +
+                "WHERE M.DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; AND " +
+                "M.CONNECTOR_ID = :" + SQLPlaceholders.CONNECTOR_ID + "; AND " +
+                "M.CONNECTOR_USER_ID IN (:" + SQLPlaceholders.CONNECTOR_USER_ID + ";)";
+
+        Map<String, Integer> repetition = new HashMap<>();
+        repetition.put(SQLPlaceholders.CONNECTOR_USER_ID, connectorUserIds.size());
+
+        NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(unitOfWork.getConnection(),
+                selectUniqueUsers, repetition);
+        unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
+        namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
+        namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_ID, connectorId);
+        namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_USER_ID, connectorUserIds);
+
+        Map<String, DomainUser> connectorUserIdToUserMap = new HashMap<>();
+        try (ResultSet resultSet = namedPreparedStatement.getPreparedStatement().executeQuery()) {
+            while (resultSet.next()) {
+                String mappedConnectorUserId = resultSet.getString(ColumnNames.MAPPED_CONNECTOR_USER_ID);
+                DomainUser domainUser = connectorUserIdToUserMap.get(mappedConnectorUserId);
+                if (domainUser == null) {
+                    domainUser = new DomainUser();
+                    domainUser.setDomainUserId(resultSet.getString(ColumnNames.USER_ID));
+                    domainUser.setState(resultSet.getString(SQLPlaceholders.STATE));
+                    connectorUserIdToUserMap.put(mappedConnectorUserId, domainUser);
+                }
+
+                UserPartition userPartition = new UserPartition();
+                userPartition.setConnectorId(resultSet.getString(ColumnNames.CONNECTOR_ID));
+                userPartition.setConnectorUserId(resultSet.getString(ColumnNames.CONNECTOR_USER_ID));
+                userPartition.setIdentityStore(UniqueIdResolverConstants.IDENTITY_STORE_CONNECTOR.equals(resultSet
+                        .getString(ColumnNames.CONNECTOR_TYPE)));
+                domainUser.addUserPartition(userPartition);
+            }
+        }
+        return connectorUserIdToUserMap;
+    }
+
     @Override
     public boolean isUserExists(String domainUserId, int domainId) throws UniqueIdResolverException {
 
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection())) {
-            final String selectUser = "SELECT ID FROM IDM_USER " +
-                    "WHERE USER_ID = :" + SQLPlaceholders.USER_ID + "; AND " +
-                    "DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + ";";
+        try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(readReplicaRouter.getReadDataSource())) {
+            final String selectUser = "SELECT USER_ID FROM IDM_USER_INFO " +
+                    "WHERE DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; AND " +
+                    "USER_ID = :" + SQLPlaceholders.USER_ID + ";";
 
             NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
                     unitOfWork.getConnection(),
                     selectUser);
+            unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
             namedPreparedStatement.setString(SQLPlaceholders.USER_ID, domainUserId);
             namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
             try (ResultSet resultSet = namedPreparedStatement.getPreparedStatement().executeQuery()) {
@@ -215,14 +417,17 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
             offset--;
         }
 
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection())) {
-            final String selectUniqueUser = "SELECT USER_ID, CONNECTOR_TYPE, CONNECTOR_ID, CONNECTOR_USER_ID, STATE " +
-                    "FROM IDM_USER WHERE DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; LIMIT :limit; OFFSET :offset;";
+        try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(readReplicaRouter.getReadDataSource())) {
+            final String selectUniqueUser = "SELECT U.USER_ID, U.CONNECTOR_TYPE, U.CONNECTOR_ID, " +
+                    "U.CONNECTOR_USER_ID, I.STATE FROM IDM_USER U " + JOIN_USER_INFO +
+                    "WHERE U.DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; ORDER BY U.USER_ID " +
+                    sqlDialect.limitOffset(SQLPlaceholders.LIMIT, SQLPlaceholders.OFFSET);
 
             Map<String, DomainUser> userMap = new HashMap<>();
             NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
                     unitOfWork.getConnection(),
                     selectUniqueUser);
+            unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
             namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
             namedPreparedStatement.setInt(SQLPlaceholders.LIMIT, length);
             namedPreparedStatement.setInt(SQLPlaceholders.OFFSET, offset);
@@ -258,11 +463,69 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
         }
     }
 
+    @Override
+    public List<DomainUser> listDomainUsers(String lastDomainUserId, int length, int domainId)
+            throws UniqueIdResolverException {
+
+        // Seek on the primary key of IDM_USER_INFO, which has a row per user, to pick the next set of users. Then
+        // fetch all the partitions of those users.
+        try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(readReplicaRouter.getReadDataSource())) {
+            // The first page has no lower bound, since some databases read an empty string as null.
+            final String selectUniqueUsers = "SELECT U.USER_ID, U.CONNECTOR_TYPE, U.CONNECTOR_ID, " +
+                    "U.CONNECTOR_USER_ID, I.STATE FROM IDM_USER U INNER JOIN (" +
+                    "SELECT USER_ID, DOMAIN_ID, STATE FROM IDM_USER_INFO " +
+                    "WHERE DOMAIN_ID = :" + SQLPlaceholders.MAPPING_DOMAIN_ID + "; " +
+                    (lastDomainUserId == null ? "" : "AND USER_ID > :" + SQLPlaceholders.USER_ID + "; ") +
+                    "ORDER BY USER_ID " + sqlDialect.limit(SQLPlaceholders.LIMIT) + ") I " +
+                    "ON I.DOMAIN_ID = U.DOMAIN_ID AND I.USER_ID = U.USER_ID " +
+                    "WHERE U.DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; ORDER BY U.USER_ID";
+
+            Map<String, DomainUser> userMap = new LinkedHashMap<>();
+            NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
+                    unitOfWork.getConnection(),
+                    selectUniqueUsers);
+            unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
+            namedPreparedStatement.setInt(SQLPlaceholders.MAPPING_DOMAIN_ID, domainId);
+            if (lastDomainUserId != null) {
+                namedPreparedStatement.setString(SQLPlaceholders.USER_ID, lastDomainUserId);
+            }
+            namedPreparedStatement.setInt(SQLPlaceholders.LIMIT, length);
+            namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
+            try (ResultSet resultSet = namedPreparedStatement.getPreparedStatement().executeQuery()) {
+
+                while (resultSet.next()) {
+                    UserPartition userPartition = new UserPartition();
+                    String userUUID = resultSet.getString(ColumnNames.USER_ID);
+                    userPartition.setConnectorId(resultSet.getString(ColumnNames.CONNECTOR_ID));
+                    userPartition.setConnectorUserId(resultSet.getString(ColumnNames.CONNECTOR_USER_ID));
+                    userPartition.setIdentityStore(UniqueIdResolverConstants.IDENTITY_STORE_CONNECTOR.equals(resultSet
+                            .getString(ColumnNames.CONNECTOR_TYPE)));
+
+                    DomainUser user;
+                    if ((user = userMap.get(userUUID)) != null) {
+                        user.addUserPartition(userPartition);
+                    } else {
+                        user = new DomainUser();
+                        user.setDomainUserId(userUUID);
+                        user.addUserPartition(userPartition);
+                        user.setState(resultSet.getString(SQLPlaceholders.STATE));
+                        userMap.put(userUUID, user);
+                    }
+                }
+            }
+
+            return new ArrayList<>(userMap.values());
+
+        } catch (SQLException e) {
+            throw new UniqueIdResolverException("Error while listing users.", e);
+        }
+    }
+
     @Override
     public DomainGroup getGroup(String domainGroupId, int domainId) throws UniqueIdResolverException,
             GroupNotFoundException {
 
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection())) {
+        try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(readReplicaRouter.getPrimaryDataSource())) {
             final String selectUniqueUser = "SELECT CONNECTOR_ID, CONNECTOR_GROUP_ID FROM " +
                     "IDM_GROUP WHERE GROUP_ID = :" + SQLPlaceholders.GROUP_ID + "; AND " +
                     "DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + ";";
@@ -272,6 +535,7 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
             NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
                     unitOfWork.getConnection(),
                     selectUniqueUser);
+            unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
             namedPreparedStatement.setString(SQLPlaceholders.GROUP_ID, domainGroupId);
             namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
             try (ResultSet resultSet = namedPreparedStatement.getPreparedStatement().executeQuery()) {
@@ -296,7 +560,7 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
     public DomainGroup getGroupFromConnectorGroupId(String connectorGroupId, String connectorId, int domainId)
             throws UniqueIdResolverException, GroupNotFoundException {
 
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection())) {
+        try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(readReplicaRouter.getPrimaryDataSource())) {
             final String selectUniqueGroup = "SELECT GROUP_ID, CONNECTOR_ID, CONNECTOR_GROUP_ID " +
                     "FROM IDM_GROUP WHERE GROUP_ID = ( " +
                     "SELECT GROUP_ID FROM IDM_GROUP " +
@@ -311,6 +575,7 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
             NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
                     unitOfWork.getConnection(),
                     selectUniqueGroup);
+            unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
             namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_GROUP_ID, connectorGroupId);
             namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_ID, connectorId);
             namedPreparedStatement.setInt(SQLPlaceholders.MAPPING_DOMAIN_ID, domainId);
@@ -339,26 +604,15 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
 
     @Override
     public String addUser(DomainUser domainUser, int domainId) throws UniqueIdResolverException {
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection(), false)) {
-            final String addUser = "INSERT INTO IDM_USER " +
-                    "(USER_ID, CONNECTOR_USER_ID, CONNECTOR_ID, DOMAIN_ID, CONNECTOR_TYPE, STATE) " +
-                    "VALUES (:" + SQLPlaceholders.USER_ID + ";, :" + SQLPlaceholders.CONNECTOR_USER_ID + ";, " +
-                    ":" + SQLPlaceholders.CONNECTOR_ID + ";, :" + SQLPlaceholders.DOMAIN_ID + ";, " +
-                    ":" + SQLPlaceholders.CONNECTOR_TYPE + ";, :" + SQLPlaceholders.STATE + ";)";
+        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(readReplicaRouter.getWriteConnection(), false)) {
+            NamedPreparedStatement userInfoStatement = new NamedPreparedStatement(
+                    unitOfWork.getConnection(), ADD_USER_INFO);
+            addUserInfoToBatch(userInfoStatement, domainUser, domainId);
+            userInfoStatement.getPreparedStatement().executeBatch();
 
             NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
-                    unitOfWork.getConnection(), addUser);
-            for (UserPartition userPartition : domainUser.getUserPartitions()) {
-                namedPreparedStatement.setString(SQLPlaceholders.USER_ID, domainUser.getDomainUserId());
-                namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_USER_ID, userPartition.getConnectorUserId());
-                namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_ID, userPartition.getConnectorId());
-                namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
-                namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_TYPE,
-                        userPartition.isIdentityStore() ? UniqueIdResolverConstants.IDENTITY_STORE_CONNECTOR :
-                                UniqueIdResolverConstants.CREDENTIAL_STORE_CONNECTOR);
-                namedPreparedStatement.setString(SQLPlaceholders.STATE, domainUser.getState());
-                namedPreparedStatement.getPreparedStatement().addBatch();
-            }
+                    unitOfWork.getConnection(), ADD_USER);
+            addUserToBatch(namedPreparedStatement, domainUser, domainId);
 
             namedPreparedStatement.getPreparedStatement().executeBatch();
             unitOfWork.endTransaction();
@@ -374,13 +628,40 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
             throws UniqueIdResolverException {
 
         UniqueIdResolverException uniqueIdResolverException = new UniqueIdResolverException();
-        domainUsers.stream().forEach(uniqueUser -> {
-            try {
-                addUser(uniqueUser, domainId);
-            } catch (UniqueIdResolverException e) {
-                uniqueIdResolverException.addSuppressed(e);
+        for (int from = 0; from < domainUsers.size(); from += batchSize) {
+            List<DomainUser> chunk = domainUsers.subList(from, Math.min(from + batchSize, domainUsers.size()));
+
+            List<String> chunkUserIds = chunk.stream()
+                    .map(DomainUser::getDomainUserId)
+                    .collect(Collectors.toList());
+
+            // Row owners maps each row of the executing batch back to the user it belongs to. The user info batch
+            // has a row per user, while the partition batch has a row per partition.
+            List<String> rowOwners = chunkUserIds;
+            try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(readReplicaRouter.getWriteConnection(), false)) {
+                NamedPreparedStatement userInfoStatement = new NamedPreparedStatement(
+                        unitOfWork.getConnection(), ADD_USER_INFO);
+                for (DomainUser domainUser : chunk) {
+                    addUserInfoToBatch(userInfoStatement, domainUser, domainId);
+                }
+                userInfoStatement.getPreparedStatement().executeBatch();
+
+                rowOwners = new ArrayList<>();
+                NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
+                        unitOfWork.getConnection(), ADD_USER);
+                for (DomainUser domainUser : chunk) {
+                    int rows = addUserToBatch(namedPreparedStatement, domainUser, domainId);
+                    for (int i = 0; i < rows; i++) {
+                        rowOwners.add(domainUser.getDomainUserId());
+                    }
+                }
+
+                namedPreparedStatement.getPreparedStatement().executeBatch();
+                unitOfWork.endTransaction();
+            } catch (SQLException e) {
+                addBatchFailures(uniqueIdResolverException, e, rowOwners, chunkUserIds, "user");
             }
-        });
+        }
 
         if (uniqueIdResolverException.getSuppressed().length > 0) {
             throw uniqueIdResolverException;
@@ -395,24 +676,96 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
     public void updateUser(String domainUserId, Map<String, String> connectorUserIdMap, int domainId, String state)
             throws UniqueIdResolverException {
 
-        // Put operation
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection(), false)) {
-            deleteUser(domainUserId, unitOfWork, domainId);
-            final String addUser = "INSERT INTO IDM_USER " +
-                    "(USER_ID, CONNECTOR_USER_ID, CONNECTOR_ID, DOMAIN_ID, CONNECTOR_TYPE, STATE) " +
-                    "VALUES (:" + SQLPlaceholders.USER_ID + ";, :" + SQLPlaceholders.CONNECTOR_USER_ID + ";, " +
-                    ":" + SQLPlaceholders.CONNECTOR_ID + ";, :" + SQLPlaceholders.DOMAIN_ID + ";, " +
-                    ":" + SQLPlaceholders.CONNECTOR_TYPE + ";,:" + SQLPlaceholders.STATE + ";)";
+        updateUser(domainUserId, connectorUserIdMap, null, domainId, state);
+    }
+
+    @Override
+    public void updateUser(String domainUserId, Map<String, String> connectorUserIdMap, boolean identityStore,
+                           int domainId, String state) throws UniqueIdResolverException {
+
+        updateUser(domainUserId, connectorUserIdMap, identityStore ?
+                UniqueIdResolverConstants.IDENTITY_STORE_CONNECTOR :
+                UniqueIdResolverConstants.CREDENTIAL_STORE_CONNECTOR, domainId, state);
+    }
+
+    private void updateUser(String domainUserId, Map<String, String> connectorUserIdMap, String givenConnectorType,
+                            int domainId, String state) throws UniqueIdResolverException {
+
+        // Put operation over the partitions of one connector type. The given partitions are upserted, keeping their
+        // connector type, and the partitions of the other connectors of the same type are removed. The partitions of
+        // the other type are left as they are.
+        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(readReplicaRouter.getWriteConnection(), false)) {
+
+            // Partitions of a user without the info row are never read, hence check the user before writing them.
+            boolean userExists = state != null ? updateUserState(domainUserId, state, unitOfWork, domainId) > 0 :
+                    isUserInfoPresent(domainUserId, unitOfWork, domainId);
+            if (!userExists) {
+                throw new UniqueIdResolverException(String.format("No user found with the id - %s.", domainUserId));
+            }
+
+            Map<String, String> connectorTypes = new HashMap<>();
+            final String selectConnectorTypes = "SELECT CONNECTOR_ID, CONNECTOR_TYPE FROM IDM_USER " +
+                    "WHERE USER_ID = :" + SQLPlaceholders.USER_ID + "; AND " +
+                    "DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + ";";
+            NamedPreparedStatement selectStatement = new NamedPreparedStatement(
+                    unitOfWork.getConnection(), selectConnectorTypes);
+            unitOfWork.queueToClose(selectStatement.getPreparedStatement());
+            selectStatement.setString(SQLPlaceholders.USER_ID, domainUserId);
+            selectStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
+            try (ResultSet resultSet = selectStatement.getPreparedStatement().executeQuery()) {
+                while (resultSet.next()) {
+                    connectorTypes.put(resultSet.getString(ColumnNames.CONNECTOR_ID),
+                            resultSet.getString(ColumnNames.CONNECTOR_TYPE));
+                }
+            }
+
+            // Without a given type, the type is taken from the stored partitions of the given connectors. New
+            // connectors of a user without any of them stored are identity store connectors.
+            String connectorType = givenConnectorType != null ? givenConnectorType :
+                    connectorUserIdMap.keySet().stream()
+                            .map(connectorTypes::get)
+                            .filter(Objects::nonNull)
+                            .findFirst()
+                            .orElse(connectorUserIdMap.isEmpty() ? null :
+                                    UniqueIdResolverConstants.IDENTITY_STORE_CONNECTOR);
+
+            List<String> stalePartitions = connectorTypes.entrySet().stream()
+                    .filter(entry -> entry.getValue().equals(connectorType))
+                    .map(Map.Entry::getKey)
+                    .filter(connectorId -> !connectorUserIdMap.containsKey(connectorId))
+                    .collect(Collectors.toList());
+            if (!stalePartitions.isEmpty()) {
+                final String deletePartition = "DELETE FROM IDM_USER " +
+                        "WHERE USER_ID = :" + SQLPlaceholders.USER_ID + "; AND " +
+                        "DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; AND " +
+                        "CONNECTOR_ID = :" + SQLPlaceholders.CONNECTOR_ID + ";";
+                NamedPreparedStatement deleteStatement = new NamedPreparedStatement(
+                        unitOfWork.getConnection(), deletePartition);
+                unitOfWork.queueToClose(deleteStatement.getPreparedStatement());
+                for (String connectorId : stalePartitions) {
+                    deleteStatement.setString(SQLPlaceholders.USER_ID, domainUserId);
+                    deleteStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
+                    deleteStatement.setString(SQLPlaceholders.CONNECTOR_ID, connectorId);
+                    deleteStatement.getPreparedStatement().addBatch();
+                }
+                deleteStatement.getPreparedStatement().executeBatch();
+            }
+
             NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
-                    unitOfWork.getConnection(), addUser);
+                    unitOfWork.getConnection(), upsertUserPartition);
+            unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
             for (Map.Entry<String, String> entry : connectorUserIdMap.entrySet()) {
                 namedPreparedStatement.setString(SQLPlaceholders.USER_ID, domainUserId);
-                namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_USER_ID, entry.getValue());
-                namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_ID, entry.getKey());
                 namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
+                namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_ID, entry.getKey());
+                namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_USER_ID, entry.getValue());
+                namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_TYPE,
+                        connectorTypes.getOrDefault(entry.getKey(), connectorType));
                 namedPreparedStatement.getPreparedStatement().addBatch();
             }
-            namedPreparedStatement.getPreparedStatement().executeBatch();
+            if (!connectorUserIdMap.isEmpty()) {
+                namedPreparedStatement.getPreparedStatement().executeBatch();
+            }
             unitOfWork.endTransaction();
         } catch (SQLException e) {
             throw new UniqueIdResolverException("Error while adding user.", e);
@@ -422,7 +775,7 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
     @Override
     public void deleteUser(String domainUserId, int domainId) throws UniqueIdResolverException {
 
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection())) {
+        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(readReplicaRouter.getWriteConnection())) {
             deleteUser(domainUserId, unitOfWork, domainId);
             deleteUserGroupMappingsForUser(domainUserId, unitOfWork, domainId);
             unitOfWork.endTransaction();
@@ -434,22 +787,10 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
     @Override
     public String addGroup(DomainGroup domainGroup, int domainId) throws UniqueIdResolverException {
 
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection(), false)) {
-            final String addGroup = "INSERT INTO IDM_GROUP " +
-                    "(GROUP_ID, CONNECTOR_GROUP_ID, CONNECTOR_ID, DOMAIN_ID) " +
-                    "VALUES (:" + SQLPlaceholders.GROUP_ID + ";, :" + SQLPlaceholders.CONNECTOR_GROUP_ID + ";, " +
-                    ":" + SQLPlaceholders.CONNECTOR_ID + ";, :" + SQLPlaceholders.DOMAIN_ID + ";)";
+        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(readReplicaRouter.getWriteConnection(), false)) {
             NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
-                    unitOfWork.getConnection(), addGroup);
-            for (GroupPartition groupPartition : domainGroup.getGroupPartitions()) {
-                namedPreparedStatement.setString(SQLPlaceholders.GROUP_ID, domainGroup.getDomainGroupId());
-                namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_GROUP_ID,
-                        groupPartition.getConnectorGroupId());
-                namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_ID, groupPartition.getConnectorId());
-                namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
-
-                namedPreparedStatement.getPreparedStatement().addBatch();
-            }
+                    unitOfWork.getConnection(), ADD_GROUP);
+            addGroupToBatch(namedPreparedStatement, domainGroup, domainId);
 
             namedPreparedStatement.getPreparedStatement().executeBatch();
             unitOfWork.endTransaction();
@@ -465,13 +806,29 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
             throws UniqueIdResolverException {
 
         UniqueIdResolverException uniqueIdResolverException = new UniqueIdResolverException();
-        domainGroups.stream().forEach(uniqueGroup -> {
-            try {
-                addGroup(uniqueGroup, domainId);
-            } catch (UniqueIdResolverException e) {
-                uniqueIdResolverException.addSuppressed(e);
+        for (int from = 0; from < domainGroups.size(); from += batchSize) {
+            List<DomainGroup> chunk = domainGroups.subList(from, Math.min(from + batchSize, domainGroups.size()));
+
+            // Row owners maps each batched partition row back to the group it belongs to.
+            List<String> rowOwners = new ArrayList<>();
+            try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(readReplicaRouter.getWriteConnection(), false)) {
+                NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
+                        unitOfWork.getConnection(), ADD_GROUP);
+                for (DomainGroup domainGroup : chunk) {
+                    int rows = addGroupToBatch(namedPreparedStatement, domainGroup, domainId);
+                    for (int i = 0; i < rows; i++) {
+                        rowOwners.add(domainGroup.getDomainGroupId());
+                    }
+                }
+
+                namedPreparedStatement.getPreparedStatement().executeBatch();
+                unitOfWork.endTransaction();
+            } catch (SQLException e) {
+                addBatchFailures(uniqueIdResolverException, e, rowOwners, chunk.stream()
+                        .map(DomainGroup::getDomainGroupId)
+                        .collect(Collectors.toList()), "group");
             }
-        });
+        }
 
         if (uniqueIdResolverException.getSuppressed().length > 0) {
             throw uniqueIdResolverException;
@@ -486,24 +843,38 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
     public void updateGroup(String domainGroupId, Map<String, String> connectorGroupIdMap, int domainId) throws
             UniqueIdResolverException {
 
-        // Put operation
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection(), false)) {
-            deleteGroup(domainGroupId, unitOfWork, domainId);
-            final String addGroup = "INSERT INTO IDM_GROUP " +
-                    "(GROUP_ID, CONNECTOR_GROUP_ID, CONNECTOR_ID, DOMAIN_ID) " +
-                    "VALUES (:" + SQLPlaceholders.GROUP_ID + ";, :" + SQLPlaceholders.CONNECTOR_GROUP_ID + ";, " +
-                    ":" + SQLPlaceholders.CONNECTOR_ID + ";, :" + SQLPlaceholders.DOMAIN_ID + ";)";
-            NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
-                    unitOfWork.getConnection(), addGroup);
-            for (Map.Entry<String, String> entry : connectorGroupIdMap.entrySet()) {
-                namedPreparedStatement.setString(SQLPlaceholders.GROUP_ID, domainGroupId);
-                namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_GROUP_ID,
-                        entry.getValue());
-                namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_ID,
-                        entry.getKey());
-                namedPreparedStatement.getPreparedStatement().addBatch();
+        // Put operation. The partitions of the other connectors are removed and the given ones are upserted.
+        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(readReplicaRouter.getWriteConnection(), false)) {
+            final String deleteOtherPartitions = "DELETE FROM IDM_GROUP " +
+                    "WHERE GROUP_ID = :" + SQLPlaceholders.GROUP_ID + "; AND " +
+                    "DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; AND " +
+                    "CONNECTOR_ID NOT IN (:" + SQLPlaceholders.CONNECTOR_ID + ";)";
+            if (connectorGroupIdMap.isEmpty()) {
+                deleteGroup(domainGroupId, unitOfWork, domainId);
+            } else {
+                Map<String, Integer> repetition = new HashMap<>();
+                repetition.put(SQLPlaceholders.CONNECTOR_ID, connectorGroupIdMap.size());
+                NamedPreparedStatement deleteStatement = new NamedPreparedStatement(
+                        unitOfWork.getConnection(), deleteOtherPartitions, repetition);
+                unitOfWork.queueToClose(deleteStatement.getPreparedStatement());
+                deleteStatement.setString(SQLPlaceholders.GROUP_ID, domainGroupId);
+                deleteStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
+                deleteStatement.setString(SQLPlaceholders.CONNECTOR_ID, new ArrayList<>(connectorGroupIdMap
+                        .keySet()));
+                deleteStatement.getPreparedStatement().executeUpdate();
+
+                NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
+                        unitOfWork.getConnection(), upsertGroupPartition);
+                unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
+                for (Map.Entry<String, String> entry : connectorGroupIdMap.entrySet()) {
+                    namedPreparedStatement.setString(SQLPlaceholders.GROUP_ID, domainGroupId);
+                    namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
+                    namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_ID, entry.getKey());
+                    namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_GROUP_ID, entry.getValue());
+                    namedPreparedStatement.getPreparedStatement().addBatch();
+                }
+                namedPreparedStatement.getPreparedStatement().executeBatch();
             }
-            namedPreparedStatement.getPreparedStatement().executeBatch();
             unitOfWork.endTransaction();
         } catch (SQLException e) {
             throw new UniqueIdResolverException("Error while adding user.", e);
@@ -513,7 +884,7 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
     @Override
     public void deleteGroup(String domainGroupId, int domainId) throws UniqueIdResolverException {
 
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection())) {
+        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(readReplicaRouter.getWriteConnection())) {
             deleteGroup(domainGroupId, unitOfWork, domainId);
             deleteUserGroupMappingsForGroup(domainGroupId, unitOfWork, domainId);
             unitOfWork.endTransaction();
@@ -525,7 +896,7 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
     @Override
     public boolean isGroupExists(String uniqueGroupId, int domainId) throws UniqueIdResolverException {
 
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection())) {
+        try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(readReplicaRouter.getReadDataSource())) {
             final String selectUser = "SELECT ID FROM IDM_GROUP " +
                     "WHERE GROUP_ID = :" + SQLPlaceholders.GROUP_ID + "; AND " +
                     "DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + ";";
@@ -533,6 +904,7 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
             NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
                     unitOfWork.getConnection(),
                     selectUser);
+            unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
             namedPreparedStatement.setString(SQLPlaceholders.GROUP_ID, uniqueGroupId);
             namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
             try (ResultSet resultSet = namedPreparedStatement.getPreparedStatement().executeQuery()) {
@@ -558,15 +930,16 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
             offset--;
         }
 
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection())) {
+        try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(readReplicaRouter.getReadDataSource())) {
             final String selectUniqueUser = "SELECT GROUP_ID, CONNECTOR_ID, CONNECTOR_GROUP_ID " +
-                    "FROM IDM_GROUP WHERE DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; " +
-                    "LIMIT :limit; OFFSET :offset;";
+                    "FROM IDM_GROUP WHERE DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; ORDER BY GROUP_ID " +
+                    sqlDialect.limitOffset(SQLPlaceholders.LIMIT, SQLPlaceholders.OFFSET);
 
             Map<String, DomainGroup> groupMap = new HashMap<>();
             NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
                     unitOfWork.getConnection(),
                     selectUniqueUser);
+            unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
             namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
             namedPreparedStatement.setInt(SQLPlaceholders.LIMIT, length);
             namedPreparedStatement.setInt(SQLPlaceholders.OFFSET, offset);
@@ -597,6 +970,59 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
         }
     }
 
+    @Override
+    public List<DomainGroup> listGroups(String lastDomainGroupId, int length, int domainId)
+            throws UniqueIdResolverException {
+
+        // Seek on GROUP_ID to pick the next set of groups, then fetch all the partitions of those groups.
+        try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(readReplicaRouter.getReadDataSource())) {
+            final String selectUniqueGroups = "SELECT G.GROUP_ID, G.CONNECTOR_ID, G.CONNECTOR_GROUP_ID " +
+                    "FROM IDM_GROUP G INNER JOIN (" +
+                    "SELECT DISTINCT GROUP_ID FROM IDM_GROUP " +
+                    "WHERE DOMAIN_ID = :" + SQLPlaceholders.MAPPING_DOMAIN_ID + "; " +
+                    (lastDomainGroupId == null ? "" : "AND GROUP_ID > :" + SQLPlaceholders.GROUP_ID + "; ") +
+                    "ORDER BY GROUP_ID " + sqlDialect.limit(SQLPlaceholders.LIMIT) + ") P " +
+                    "ON G.GROUP_ID = P.GROUP_ID " +
+                    "WHERE G.DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; ORDER BY G.GROUP_ID";
+
+            Map<String, DomainGroup> groupMap = new LinkedHashMap<>();
+            NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
+                    unitOfWork.getConnection(),
+                    selectUniqueGroups);
+            unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
+            namedPreparedStatement.setInt(SQLPlaceholders.MAPPING_DOMAIN_ID, domainId);
+            if (lastDomainGroupId != null) {
+                namedPreparedStatement.setString(SQLPlaceholders.GROUP_ID, lastDomainGroupId);
+            }
+            namedPreparedStatement.setInt(SQLPlaceholders.LIMIT, length);
+            namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
+            try (ResultSet resultSet = namedPreparedStatement.getPreparedStatement().executeQuery()) {
+
+                while (resultSet.next()) {
+                    GroupPartition groupPartition = new GroupPartition();
+                    String groupUUID = resultSet.getString(ColumnNames.GROUP_ID);
+                    groupPartition.setConnectorId(resultSet.getString(ColumnNames.CONNECTOR_ID));
+                    groupPartition.setConnectorGroupId(resultSet.getString(ColumnNames.CONNECTOR_GROUP_ID));
+
+                    DomainGroup group;
+                    if ((group = groupMap.get(groupUUID)) != null) {
+                        group.addGroupPartition(groupPartition);
+                    } else {
+                        group = new DomainGroup();
+                        group.setDomainGroupId(groupUUID);
+                        group.addGroupPartition(groupPartition);
+                        groupMap.put(groupUUID, group);
+                    }
+                }
+            }
+
+            return new ArrayList<>(groupMap.values());
+
+        } catch (SQLException e) {
+            throw new UniqueIdResolverException("Error while listing groups.", e);
+        }
+    }
+
     @Override
     public List<DomainGroup> getGroups(List<String> connectorGroupIds, String connectorId, int domainId) throws
             UniqueIdResolverException {
@@ -622,21 +1048,20 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
     @Override
     public List<DomainGroup> getGroupsOfUser(String domainUserId, int domainId) throws UniqueIdResolverException {
 
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection())) {
-            final String selectGroupsOfUser = "SELECT GROUP_ID, CONNECTOR_ID, CONNECTOR_GROUP_ID " +
-                    "FROM IDM_GROUP WHERE GROUP_ID IN ( " +
-                    "SELECT GROUP_ID " +
-                    "FROM IDM_USER_GROUP_MAPPING " +
-                    "WHERE USER_ID = :" + SQLPlaceholders.USER_ID + "; AND " +
-                    "DOMAIN_ID = :" + SQLPlaceholders.MAPPING_DOMAIN_ID + ";) AND " +
-                    "DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + ";";
+        try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(readReplicaRouter.getReadDataSource())) {
+            // The mappings of the user are read from IDM_MAPPING_INDEX_1 and joined to the groups.
+            final String selectGroupsOfUser = "SELECT G.GROUP_ID, G.CONNECTOR_ID, G.CONNECTOR_GROUP_ID " +
+                    "FROM IDM_USER_GROUP_MAPPING M INNER JOIN IDM_GROUP G " +
+                    "ON G.GROUP_ID = M.GROUP_ID AND G.DOMAIN_ID = M.DOMAIN_ID " +
+                    "WHERE M.DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; AND " +
+                    "M.USER_ID = :" + SQLPlaceholders.USER_ID + ";";
 
             Map<String, DomainGroup> groupMap = new HashMap<>();
             NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
                     unitOfWork.getConnection(),
                     selectGroupsOfUser);
+            unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
             namedPreparedStatement.setString(SQLPlaceholders.USER_ID, domainUserId);
-            namedPreparedStatement.setInt(SQLPlaceholders.MAPPING_DOMAIN_ID, domainId);
             namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
             try (ResultSet resultSet = namedPreparedStatement.getPreparedStatement().executeQuery()) {
 
@@ -665,24 +1090,102 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
         }
     }
 
+    /**
+     * Get the ids of the groups mapped to a user, without resolving the groups themselves.
+     *
+     * @param domainUserId Globally unique user Id.
+     * @param domainId     Domain id.
+     * @return list of group ids.
+     * @throws UniqueIdResolverException Unique Id Resolver Exception.
+     */
+    List<String> getGroupIdsOfUser(String domainUserId, int domainId) throws UniqueIdResolverException {
+
+        try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(readReplicaRouter.getReadDataSource())) {
+            final String selectGroupIdsOfUser = "SELECT GROUP_ID FROM IDM_USER_GROUP_MAPPING " +
+                    "WHERE DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; AND " +
+                    "USER_ID = :" + SQLPlaceholders.USER_ID + ";";
+
+            List<String> domainGroupIds = new ArrayList<>();
+            NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
+                    unitOfWork.getConnection(),
+                    selectGroupIdsOfUser);
+            unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
+            namedPreparedStatement.setString(SQLPlaceholders.USER_ID, domainUserId);
+            namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
+            try (ResultSet resultSet = namedPreparedStatement.getPreparedStatement().executeQuery()) {
+                while (resultSet.next()) {
+                    domainGroupIds.add(resultSet.getString(ColumnNames.GROUP_ID));
+                }
+            }
+            return domainGroupIds;
+
+        } catch (SQLException e) {
+            throw new UniqueIdResolverException("Error while listing groups of user.", e);
+        }
+    }
+
+    /**
+     * Get the groups of the given domain group ids. Ids without a group are left out of the returned list.
+     *
+     * @param domainGroupIds Globally unique group Ids.
+     * @param domainId       Domain id.
+     * @return list of groups with all of their partitions.
+     * @throws UniqueIdResolverException Unique Id Resolver Exception.
+     */
+    List<DomainGroup> getGroupsByIds(List<String> domainGroupIds, int domainId) throws UniqueIdResolverException {
+
+        Map<String, DomainGroup> groupMap = new LinkedHashMap<>();
+        try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(readReplicaRouter.getReadDataSource())) {
+            for (int from = 0; from < domainGroupIds.size(); from += UniqueIdResolverConstants.MAX_IN_CLAUSE_SIZE) {
+                List<String> chunk = domainGroupIds.subList(from, Math.min(from + UniqueIdResolverConstants
+                        .MAX_IN_CLAUSE_SIZE, domainGroupIds.size()));
+                final String selectGroups = "SELECT GROUP_ID, CONNECTOR_ID, CONNECTOR_GROUP_ID FROM IDM_GROUP " +
+                        "WHERE DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; AND " +
+                        "GROUP_ID IN (:" + SQLPlaceholders.GROUP_ID + ";)";
+
+                Map<String, Integer> repetition = new HashMap<>();
+                repetition.put(SQLPlaceholders.GROUP_ID, chunk.size());
+                NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
+                        unitOfWork.getConnection(), selectGroups, repetition);
+                unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
+                namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
+                namedPreparedStatement.setString(SQLPlaceholders.GROUP_ID, chunk);
+                try (ResultSet resultSet = namedPreparedStatement.getPreparedStatement().executeQuery()) {
+                    while (resultSet.next()) {
+                        GroupPartition groupPartition = new GroupPartition();
+                        groupPartition.setConnectorId(resultSet.getString(ColumnNames.CONNECTOR_ID));
+                        groupPartition.setConnectorGroupId(resultSet.getString(ColumnNames.CONNECTOR_GROUP_ID));
+                        groupMap.computeIfAbsent(resultSet.getString(ColumnNames.GROUP_ID), groupId -> {
+                            DomainGroup domainGroup = new DomainGroup();
+                            domainGroup.setDomainGroupId(groupId);
+                            return domainGroup;
+                        }).addGroupPartition(groupPartition);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new UniqueIdResolverException("Error while searching groups.", e);
+        }
+        return new ArrayList<>(groupMap.values());
+    }
+
     @Override
     public List<DomainUser> getUsersOfGroup(String domainGroupId, int domainId) throws UniqueIdResolverException {
 
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection())) {
-            final String selectUsersOfGroup = "SELECT USER_ID, CONNECTOR_ID, CONNECTOR_USER_ID, CONNECTOR_TYPE, STATE" +
-                    " FROM IDM_USER WHERE USER_ID IN ( " +
-                    "SELECT USER_ID " +
-                    "FROM IDM_USER_GROUP_MAPPING " +
-                    "WHERE GROUP_ID = :" + SQLPlaceholders.GROUP_ID + "; AND " +
-                    "DOMAIN_ID = :" + SQLPlaceholders.MAPPING_DOMAIN_ID + "; ) AND " +
-                    "DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + ";";
+        try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(readReplicaRouter.getReadDataSource())) {
+            // The mappings of the group are read from IDM_MAPPING_INDEX_2 and joined to the users.
+            final String selectUsersOfGroup = "SELECT U.USER_ID, U.CONNECTOR_ID, U.CONNECTOR_USER_ID, " +
+                    "U.CONNECTOR_TYPE, I.STATE FROM IDM_USER_GROUP_MAPPING M INNER JOIN IDM_USER U " +
+                    "ON U.USER_ID = M.USER_ID AND U.DOMAIN_ID = M.DOMAIN_ID " + JOIN_USER_INFO +
+                    "WHERE M.DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; AND " +
+                    "M.GROUP_ID = :" + SQLPlaceholders.GROUP_ID + ";";
 
             Map<String, DomainUser> userMap = new HashMap<>();
             NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
                     unitOfWork.getConnection(),
                     selectUsersOfGroup);
+            unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
             namedPreparedStatement.setString(SQLPlaceholders.GROUP_ID, domainGroupId);
-            namedPreparedStatement.setInt(SQLPlaceholders.MAPPING_DOMAIN_ID, domainId);
             namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
             String state;
             try (ResultSet resultSet = namedPreparedStatement.getPreparedStatement().executeQuery()) {
@@ -719,16 +1222,18 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
     public boolean isUserInGroup(String domainUserId, String domainGroupId, int domainId)
             throws UniqueIdResolverException {
 
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection())) {
-            final String selectUsersOfGroup = "SELECT ID " +
+        try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(readReplicaRouter.getReadDataSource())) {
+            // Answered from IDM_MAPPING_INDEX_1 without reading the mapping rows.
+            final String selectUsersOfGroup = "SELECT USER_ID " +
                     "FROM IDM_USER_GROUP_MAPPING " +
-                    "WHERE GROUP_ID = :" + SQLPlaceholders.GROUP_ID + "; AND " +
+                    "WHERE DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; AND " +
                     "USER_ID = :" + SQLPlaceholders.USER_ID + "; AND " +
-                    "DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + ";";
+                    "GROUP_ID = :" + SQLPlaceholders.GROUP_ID + ";";
 
             NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
                     unitOfWork.getConnection(),
                     selectUsersOfGroup);
+            unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
             namedPreparedStatement.setString(SQLPlaceholders.GROUP_ID, domainGroupId);
             namedPreparedStatement.setString(SQLPlaceholders.USER_ID, domainUserId);
             namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
@@ -749,25 +1254,22 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
     public void updateGroupsOfUser(String domainUserId, List<String> domainGroupIds, int domainId)
             throws UniqueIdResolverException {
 
-        // Put operation
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection())) {
-            deleteUserGroupMappingsForUser(domainUserId, unitOfWork, domainId);
-            final String insertGroupsOfUser = "INSERT INTO IDM_USER_GROUP_MAPPING (USER_ID, GROUP_ID, DOMAIN_ID) " +
-                    "VALUES ( :" + SQLPlaceholders.USER_ID + ";, :" + SQLPlaceholders.GROUP_ID + ";, " +
-                    ":" + SQLPlaceholders.DOMAIN_ID + "; ) ";
-            NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
-                    unitOfWork.getConnection(),
-                    insertGroupsOfUser);
-            for (String uniqueGroupId : domainGroupIds) {
-                namedPreparedStatement.setString(SQLPlaceholders.USER_ID, domainUserId);
-                namedPreparedStatement.setString(SQLPlaceholders.GROUP_ID, uniqueGroupId);
-                namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
-                namedPreparedStatement.getPreparedStatement().addBatch();
-            }
-            namedPreparedStatement.getPreparedStatement().executeBatch();
-
-            unitOfWork.endTransaction();
-
+        // Put operation. Only the difference to the current groups of the user is written.
+        try {
+            updateMemberships(unitOfWork -> {
+                Set<String> currentGroupIds = getMappedIds(unitOfWork, ColumnNames.USER_ID, domainUserId,
+                        ColumnNames.GROUP_ID, null, domainId);
+                Set<String> targetGroupIds = new LinkedHashSet<>(domainGroupIds);
+
+                deleteMappings(unitOfWork, ColumnNames.USER_ID, domainUserId, ColumnNames.GROUP_ID,
+                        currentGroupIds.stream()
+                                .filter(groupId -> !targetGroupIds.contains(groupId))
+                                .collect(Collectors.toList()), domainId);
+                addMappings(unitOfWork, ColumnNames.USER_ID, domainUserId, ColumnNames.GROUP_ID,
+                        targetGroupIds.stream()
+                                .filter(groupId -> !currentGroupIds.contains(groupId))
+                                .collect(Collectors.toList()), domainId);
+            });
         } catch (SQLException e) {
             throw new UniqueIdResolverException("Error while updating groups of user", e);
         }
@@ -778,40 +1280,20 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
             domainGroupIdsToRemove, int domainId) throws UniqueIdResolverException {
 
         // Patch operation
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection())) {
-            // Delete the user group mappings in uniqueGroupIdsToRemove
-            final String deleteUserGroupMapping = "DELETE FROM IDM_USER_GROUP_MAPPING " +
-                    "WHERE USER_ID = :" + SQLPlaceholders.USER_ID + "; AND " +
-                    "GROUP_ID = :" + SQLPlaceholders.GROUP_ID + "; AND " +
-                    "DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; ";
-            NamedPreparedStatement deleteNamedPreparedStatement = new NamedPreparedStatement(
-                    unitOfWork.getConnection(), deleteUserGroupMapping);
-            for (String uniqueGroupId : domainGroupIdsToRemove) {
-                deleteNamedPreparedStatement.setString(SQLPlaceholders.USER_ID, domainUserId);
-                deleteNamedPreparedStatement.setString(SQLPlaceholders.GROUP_ID, uniqueGroupId);
-                deleteNamedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
-                deleteNamedPreparedStatement.getPreparedStatement().addBatch();
-            }
-
-            deleteNamedPreparedStatement.getPreparedStatement().executeBatch();
-
-            // Add the user group mappings in uniqueGroupIdsToUpdate
-            final String insertGroupsOfUser = "INSERT INTO IDM_USER_GROUP_MAPPING (USER_ID, GROUP_ID, DOMAIN_ID) " +
-                    "VALUES ( :" + SQLPlaceholders.USER_ID + ";, :" + SQLPlaceholders.GROUP_ID + ";, " +
-                    ":" + SQLPlaceholders.DOMAIN_ID + "; ) ";
-            NamedPreparedStatement addNamedPreparedStatement = new NamedPreparedStatement(
-                    unitOfWork.getConnection(),
-                    insertGroupsOfUser);
-            for (String uniqueGroupId : domainGroupIdsToUpdate) {
-                addNamedPreparedStatement.setString(SQLPlaceholders.USER_ID, domainUserId);
-                addNamedPreparedStatement.setString(SQLPlaceholders.GROUP_ID, uniqueGroupId);
-                addNamedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
-                addNamedPreparedStatement.getPreparedStatement().addBatch();
-            }
-            addNamedPreparedStatement.getPreparedStatement().executeBatch();
-
-            unitOfWork.endTransaction();
-
+        try {
+            updateMemberships(unitOfWork -> {
+                Set<String> groupIdsToAdd = new LinkedHashSet<>(domainGroupIdsToUpdate);
+                deleteMappings(unitOfWork, ColumnNames.USER_ID, domainUserId, ColumnNames.GROUP_ID,
+                        domainGroupIdsToRemove.stream()
+                                .filter(groupId -> !groupIdsToAdd.contains(groupId))
+                                .distinct()
+                                .collect(Collectors.toList()), domainId);
+
+                groupIdsToAdd.removeAll(getMappedIds(unitOfWork, ColumnNames.USER_ID, domainUserId,
+                        ColumnNames.GROUP_ID, new ArrayList<>(groupIdsToAdd), domainId));
+                addMappings(unitOfWork, ColumnNames.USER_ID, domainUserId, ColumnNames.GROUP_ID,
+                        new ArrayList<>(groupIdsToAdd), domainId);
+            });
         } catch (SQLException e) {
             throw new UniqueIdResolverException("Error while updating groups of user", e);
         }
@@ -821,25 +1303,22 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
     public void updateUsersOfGroup(String domainGroupId, List<String> domainUserIds, int domainId)
             throws UniqueIdResolverException {
 
-        // Put operation
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection())) {
-            deleteUserGroupMappingsForGroup(domainGroupId, unitOfWork, domainId);
-            final String insertUsersOfGroup = "INSERT INTO IDM_USER_GROUP_MAPPING (USER_ID, GROUP_ID, DOMAIN_ID) " +
-                    "VALUES ( :" + SQLPlaceholders.USER_ID + ";, :" + SQLPlaceholders.GROUP_ID + ";, " +
-                    ":" + SQLPlaceholders.DOMAIN_ID + "; ) ";
-            NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
-                    unitOfWork.getConnection(),
-                    insertUsersOfGroup);
-            for (String uniqueUserId : domainUserIds) {
-                namedPreparedStatement.setString(SQLPlaceholders.USER_ID, uniqueUserId);
-                namedPreparedStatement.setString(SQLPlaceholders.GROUP_ID, domainGroupId);
-                namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
-                namedPreparedStatement.getPreparedStatement().addBatch();
-            }
-            namedPreparedStatement.getPreparedStatement().executeBatch();
-
-            unitOfWork.endTransaction();
-
+        // Put operation. Only the difference to the current users of the group is written.
+        try {
+            updateMemberships(unitOfWork -> {
+                Set<String> currentUserIds = getMappedIds(unitOfWork, ColumnNames.GROUP_ID, domainGroupId,
+                        ColumnNames.USER_ID, null, domainId);
+                Set<String> targetUserIds = new LinkedHashSet<>(domainUserIds);
+
+                deleteMappings(unitOfWork, ColumnNames.GROUP_ID, domainGroupId, ColumnNames.USER_ID,
+                        currentUserIds.stream()
+                                .filter(userId -> !targetUserIds.contains(userId))
+                                .collect(Collectors.toList()), domainId);
+                addMappings(unitOfWork, ColumnNames.GROUP_ID, domainGroupId, ColumnNames.USER_ID,
+                        targetUserIds.stream()
+                                .filter(userId -> !currentUserIds.contains(userId))
+                                .collect(Collectors.toList()), domainId);
+            });
         } catch (SQLException e) {
             throw new UniqueIdResolverException("Error while updating groups of user", e);
         }
@@ -850,40 +1329,20 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
             domainUserIdsToRemove, int domainId) throws UniqueIdResolverException {
 
         // Patch operation
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection())) {
-            // Delete the user group mappings in uniqueUserIdsToRemove
-            final String deleteUserGroupMapping = "DELETE FROM IDM_USER_GROUP_MAPPING " +
-                    "WHERE USER_ID = :" + SQLPlaceholders.USER_ID + "; AND " +
-                    "GROUP_ID = :" + SQLPlaceholders.GROUP_ID + "; AND " +
-                    "DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + ";";
-            NamedPreparedStatement deleteNamedPreparedStatement = new NamedPreparedStatement(
-                    unitOfWork.getConnection(), deleteUserGroupMapping);
-            for (String uniqueUserId : domainUserIdsToRemove) {
-                deleteNamedPreparedStatement.setString(SQLPlaceholders.USER_ID, uniqueUserId);
-                deleteNamedPreparedStatement.setString(SQLPlaceholders.GROUP_ID, doaminGroupId);
-                deleteNamedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
-                deleteNamedPreparedStatement.getPreparedStatement().addBatch();
-            }
-
-            deleteNamedPreparedStatement.getPreparedStatement().executeBatch();
-
-            // Add the user group mappings in uniqueUserIdsToUpdate
-            final String insertUsersOfGroup = "INSERT INTO IDM_USER_GROUP_MAPPING (USER_ID, GROUP_ID, DOMAIN_ID) " +
-                    "VALUES ( :" + SQLPlaceholders.USER_ID + ";, :" + SQLPlaceholders.GROUP_ID + ";, " +
-                    ":" + SQLPlaceholders.DOMAIN_ID + "; ) ";
-            NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
-                    unitOfWork.getConnection(),
-                    insertUsersOfGroup);
-            for (String uniqueUserId : domainUserIdsToUpdate) {
-                namedPreparedStatement.setString(SQLPlaceholders.USER_ID, uniqueUserId);
-                namedPreparedStatement.setString(SQLPlaceholders.GROUP_ID, doaminGroupId);
-                namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
-                namedPreparedStatement.getPreparedStatement().addBatch();
-            }
-            namedPreparedStatement.getPreparedStatement().executeBatch();
-
-            unitOfWork.endTransaction();
-
+        try {
+            updateMemberships(unitOfWork -> {
+                Set<String> userIdsToAdd = new LinkedHashSet<>(domainUserIdsToUpdate);
+                deleteMappings(unitOfWork, ColumnNames.GROUP_ID, doaminGroupId, ColumnNames.USER_ID,
+                        domainUserIdsToRemove.stream()
+                                .filter(userId -> !userIdsToAdd.contains(userId))
+                                .distinct()
+                                .collect(Collectors.toList()), domainId);
+
+                userIdsToAdd.removeAll(getMappedIds(unitOfWork, ColumnNames.GROUP_ID, doaminGroupId,
+                        ColumnNames.USER_ID, new ArrayList<>(userIdsToAdd), domainId));
+                addMappings(unitOfWork, ColumnNames.GROUP_ID, doaminGroupId, ColumnNames.USER_ID,
+                        new ArrayList<>(userIdsToAdd), domainId);
+            });
         } catch (SQLException e) {
             throw new UniqueIdResolverException("Error while updating groups of user", e);
         }
@@ -892,22 +1351,46 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
     @Override
     public void setUserState(String domainUserId, String targetState, int domainId) throws UniqueIdResolverException {
 
-        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(dataSource.getConnection())) {
-            final String setState = "UPDATE IDM_USER SET STATE =:" + SQLPlaceholders.STATE + "; WHERE USER_ID = :" +
-                    SQLPlaceholders.USER_ID + "; AND DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + ";";
-
-            NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
-                    unitOfWork.getConnection(), setState);
-            namedPreparedStatement.setString(SQLPlaceholders.STATE, targetState);
-            namedPreparedStatement.setString(SQLPlaceholders.USER_ID, domainUserId);
-            namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
-            namedPreparedStatement.getPreparedStatement().executeUpdate();
-
+        try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(readReplicaRouter.getWriteConnection())) {
+            updateUserState(domainUserId, targetState, unitOfWork, domainId);
+            unitOfWork.endTransaction();
         } catch (SQLException e) {
             throw new UniqueIdResolverException("Error while set user state.", e);
         }
     }
 
+    private boolean isUserInfoPresent(String domainUserId, UnitOfWork unitOfWork, int domainId) throws SQLException {
+
+        final String selectUser = "SELECT USER_ID FROM IDM_USER_INFO " +
+                "WHERE DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; AND " +
+                "USER_ID = :" + SQLPlaceholders.USER_ID + ";";
+
+        NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
+                unitOfWork.getConnection(), selectUser);
+        unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
+        namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
+        namedPreparedStatement.setString(SQLPlaceholders.USER_ID, domainUserId);
+        try (ResultSet resultSet = namedPreparedStatement.getPreparedStatement().executeQuery()) {
+            return resultSet.next();
+        }
+    }
+
+    private int updateUserState(String domainUserId, String state, UnitOfWork unitOfWork, int domainId)
+            throws SQLException {
+
+        final String setState = "UPDATE IDM_USER_INFO SET STATE = :" + SQLPlaceholders.STATE + "; " +
+                "WHERE DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; AND " +
+                "USER_ID = :" + SQLPlaceholders.USER_ID + ";";
+
+        NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
+                unitOfWork.getConnection(), setState);
+        unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
+        namedPreparedStatement.setString(SQLPlaceholders.STATE, state);
+        namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
+        namedPreparedStatement.setString(SQLPlaceholders.USER_ID, domainUserId);
+        return namedPreparedStatement.getPreparedStatement().executeUpdate();
+    }
+
     private void deleteUser(String uniqueUserId, UnitOfWork unitOfWork, int domainId) throws SQLException {
 
         final String deleteUser = "DELETE FROM IDM_USER " +
@@ -920,6 +1403,15 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
 
         namedPreparedStatement.getPreparedStatement().executeUpdate();
 
+        final String deleteUserInfo = "DELETE FROM IDM_USER_INFO " +
+                "WHERE DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; AND " +
+                "USER_ID = :" + SQLPlaceholders.USER_ID + ";";
+        NamedPreparedStatement userInfoStatement = new NamedPreparedStatement(
+                unitOfWork.getConnection(), deleteUserInfo);
+        userInfoStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
+        userInfoStatement.setString(SQLPlaceholders.USER_ID, uniqueUserId);
+
+        userInfoStatement.getPreparedStatement().executeUpdate();
     }
 
     private void deleteGroup(String uniqueGroupId, UnitOfWork unitOfWork, int domainId) throws SQLException {
@@ -940,11 +1432,11 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
             throws SQLException {
 
         final String deleteUserGroupMapping = "DELETE FROM IDM_USER_GROUP_MAPPING " +
-                "WHERE GROUP_ID = :" + SQLPlaceholders.GROUP_ID + "; AND " +
+                "WHERE USER_ID = :" + SQLPlaceholders.USER_ID + "; AND " +
                 "DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + ";";
         NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
                 unitOfWork.getConnection(), deleteUserGroupMapping);
-        namedPreparedStatement.setString(SQLPlaceholders.GROUP_ID, uniqueUserId);
+        namedPreparedStatement.setString(SQLPlaceholders.USER_ID, uniqueUserId);
         namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
 
         namedPreparedStatement.getPreparedStatement().executeUpdate();
@@ -955,14 +1447,262 @@ public class JDBCUniqueIdResolver implements UniqueIdResolver {
             throws SQLException {
 
         final String deleteUserGroupMapping = "DELETE FROM IDM_USER_GROUP_MAPPING " +
-                "WHERE USER_ID = :" + SQLPlaceholders.USER_ID + "; AND " +
+                "WHERE GROUP_ID = :" + SQLPlaceholders.GROUP_ID + "; AND " +
                 "DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + ";";
         NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(
                 unitOfWork.getConnection(), deleteUserGroupMapping);
-        namedPreparedStatement.setString(SQLPlaceholders.USER_ID, uniqueGroupId);
+        namedPreparedStatement.setString(SQLPlaceholders.GROUP_ID, uniqueGroupId);
         namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
 
         namedPreparedStatement.getPreparedStatement().executeUpdate();
 
     }
+
+    /**
+     * Apply an update of the group memberships in a transaction. Concurrent updates can both read a membership as
+     * missing and insert it, in which case the later insert fails on the unique mapping index. The update is then
+     * retried, so that it reads the membership inserted by the other update and skips it.
+     */
+    private void updateMemberships(MembershipUpdate membershipUpdate) throws SQLException {
+
+        for (int attempt = 1; ; attempt++) {
+            try (UnitOfWork unitOfWork = UnitOfWork.beginTransaction(readReplicaRouter.getWriteConnection())) {
+                membershipUpdate.apply(unitOfWork);
+                unitOfWork.endTransaction();
+                return;
+            } catch (SQLException e) {
+                if (attempt >= MAX_MEMBERSHIP_UPDATE_ATTEMPTS || !isIntegrityConstraintViolation(e)) {
+                    throw e;
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Retrying the membership update which conflicted with a concurrent update.", e);
+                }
+            }
+        }
+    }
+
+    private static boolean isIntegrityConstraintViolation(SQLException e) {
+
+        // Drivers report the violation on the batch exception itself or on the chained exceptions.
+        for (SQLException exception = e; exception != null; exception = exception.getNextException()) {
+            if (exception instanceof SQLIntegrityConstraintViolationException || (exception.getSQLState() != null &&
+                    exception.getSQLState().startsWith(INTEGRITY_CONSTRAINT_VIOLATION_CLASS))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read the mapped ids of a user or a group. The key column is either USER_ID or GROUP_ID and the value column is
+     * the other one. When candidate ids are given, only the mapped ids among them are read.
+     */
+    private Set<String> getMappedIds(UnitOfWork unitOfWork, String keyColumn, String keyId, String valueColumn,
+                                     List<String> candidateIds, int domainId) throws SQLException {
+
+        final String selectMappedIds = "SELECT " + valueColumn + " FROM IDM_USER_GROUP_MAPPING " +
+                "WHERE DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; AND " +
+                keyColumn + " = :" + SQLPlaceholders.MAPPING_KEY_ID + ";";
+        final String selectMappedCandidateIds = selectMappedIds + " AND " +
+                valueColumn + " IN (:" + SQLPlaceholders.MAPPING_VALUE_ID + ";)";
+
+        Set<String> mappedIds = new LinkedHashSet<>();
+        if (candidateIds == null) {
+            NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(unitOfWork.getConnection(),
+                    selectMappedIds);
+            unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
+            namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
+            namedPreparedStatement.setString(SQLPlaceholders.MAPPING_KEY_ID, keyId);
+            try (ResultSet resultSet = namedPreparedStatement.getPreparedStatement().executeQuery()) {
+                while (resultSet.next()) {
+                    mappedIds.add(resultSet.getString(valueColumn));
+                }
+            }
+            return mappedIds;
+        }
+
+        for (int from = 0; from < candidateIds.size(); from += UniqueIdResolverConstants.MAX_IN_CLAUSE_SIZE) {
+            List<String> chunk = candidateIds.subList(from, Math.min(from + UniqueIdResolverConstants
+                    .MAX_IN_CLAUSE_SIZE, candidateIds.size()));
+            Map<String, Integer> repetition = new HashMap<>();
+            repetition.put(SQLPlaceholders.MAPPING_VALUE_ID, chunk.size());
+            NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(unitOfWork.getConnection(),
+                    selectMappedCandidateIds, repetition);
+            unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
+            namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
+            namedPreparedStatement.setString(SQLPlaceholders.MAPPING_KEY_ID, keyId);
+            namedPreparedStatement.setString(SQLPlaceholders.MAPPING_VALUE_ID, chunk);
+            try (ResultSet resultSet = namedPreparedStatement.getPreparedStatement().executeQuery()) {
+                while (resultSet.next()) {
+                    mappedIds.add(resultSet.getString(valueColumn));
+                }
+            }
+        }
+        return mappedIds;
+    }
+
+    /**
+     * Delete the mappings of a user or a group to the given ids, with one multi row delete per chunk of ids.
+     */
+    private void deleteMappings(UnitOfWork unitOfWork, String keyColumn, String keyId, String valueColumn,
+                                List<String> valueIds, int domainId) throws SQLException {
+
+        final String deleteMappings = "DELETE FROM IDM_USER_GROUP_MAPPING " +
+                "WHERE DOMAIN_ID = :" + SQLPlaceholders.DOMAIN_ID + "; AND " +
+                keyColumn + " = :" + SQLPlaceholders.MAPPING_KEY_ID + "; AND " +
+                valueColumn + " IN (:" + SQLPlaceholders.MAPPING_VALUE_ID + ";)";
+
+        for (int from = 0; from < valueIds.size(); from += UniqueIdResolverConstants.MAX_IN_CLAUSE_SIZE) {
+            List<String> chunk = valueIds.subList(from, Math.min(from + UniqueIdResolverConstants.MAX_IN_CLAUSE_SIZE,
+                    valueIds.size()));
+            Map<String, Integer> repetition = new HashMap<>();
+            repetition.put(SQLPlaceholders.MAPPING_VALUE_ID, chunk.size());
+            NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(unitOfWork.getConnection(),
+                    deleteMappings, repetition);
+            unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
+            namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
+            namedPreparedStatement.setString(SQLPlaceholders.MAPPING_KEY_ID, keyId);
+            namedPreparedStatement.setString(SQLPlaceholders.MAPPING_VALUE_ID, chunk);
+            namedPreparedStatement.getPreparedStatement().executeUpdate();
+        }
+    }
+
+    /**
+     * Add the mappings of a user or a group to the given ids. The mappings are written with multi row inserts of up
+     * to batch size rows, or with a JDBC batch executed for every batch size mappings if the database has no multi
+     * row insert.
+     */
+    private void addMappings(UnitOfWork unitOfWork, String keyColumn, String keyId, String valueColumn,
+                             List<String> valueIds, int domainId) throws SQLException {
+
+        if (valueIds.isEmpty()) {
+            return;
+        }
+
+        int rowsPerInsert = Math.min(batchSize, sqlDialect.getMaxRowsPerInsert(MAPPING_COLUMNS.size()));
+        if (rowsPerInsert > 1) {
+            boolean keyIsUser = ColumnNames.USER_ID.equals(keyColumn);
+            PreparedStatement preparedStatement = null;
+            for (int from = 0; from < valueIds.size(); from += rowsPerInsert) {
+                List<String> chunk = valueIds.subList(from, Math.min(from + rowsPerInsert, valueIds.size()));
+                // Full chunks share a statement. Only the last chunk can be shorter.
+                if (preparedStatement == null || chunk.size() < rowsPerInsert) {
+                    preparedStatement = unitOfWork.getConnection().prepareStatement(sqlDialect.insertRows(
+                            "IDM_USER_GROUP_MAPPING", MAPPING_COLUMNS, chunk.size()));
+                    unitOfWork.queueToClose(preparedStatement);
+                }
+                int parameterIndex = 1;
+                for (String valueId : chunk) {
+                    preparedStatement.setString(parameterIndex++, keyIsUser ? keyId : valueId);
+                    preparedStatement.setString(parameterIndex++, keyIsUser ? valueId : keyId);
+                    preparedStatement.setInt(parameterIndex++, domainId);
+                }
+                preparedStatement.executeUpdate();
+            }
+            return;
+        }
+
+        final String insertMappings = "INSERT INTO IDM_USER_GROUP_MAPPING (" + keyColumn + ", " + valueColumn +
+                ", DOMAIN_ID) VALUES ( :" + SQLPlaceholders.MAPPING_KEY_ID + ";, :" +
+                SQLPlaceholders.MAPPING_VALUE_ID + ";, :" + SQLPlaceholders.DOMAIN_ID + "; ) ";
+        NamedPreparedStatement namedPreparedStatement = new NamedPreparedStatement(unitOfWork.getConnection(),
+                insertMappings);
+        unitOfWork.queueToClose(namedPreparedStatement.getPreparedStatement());
+        for (int i = 0; i < valueIds.size(); i++) {
+            namedPreparedStatement.setString(SQLPlaceholders.MAPPING_KEY_ID, keyId);
+            namedPreparedStatement.setString(SQLPlaceholders.MAPPING_VALUE_ID, valueIds.get(i));
+            namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
+            namedPreparedStatement.getPreparedStatement().addBatch();
+            if ((i + 1) % batchSize == 0) {
+                namedPreparedStatement.getPreparedStatement().executeBatch();
+            }
+        }
+        if (valueIds.size() % batchSize != 0) {
+            namedPreparedStatement.getPreparedStatement().executeBatch();
+        }
+    }
+
+    private int addUserToBatch(NamedPreparedStatement namedPreparedStatement, DomainUser domainUser, int domainId)
+            throws SQLException {
+
+        for (UserPartition userPartition : domainUser.getUserPartitions()) {
+            namedPreparedStatement.setString(SQLPlaceholders.USER_ID, domainUser.getDomainUserId());
+            namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_USER_ID, userPartition.getConnectorUserId());
+            namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_ID, userPartition.getConnectorId());
+            namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
+            namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_TYPE,
+                    userPartition.isIdentityStore() ? UniqueIdResolverConstants.IDENTITY_STORE_CONNECTOR :
+                            UniqueIdResolverConstants.CREDENTIAL_STORE_CONNECTOR);
+            namedPreparedStatement.getPreparedStatement().addBatch();
+        }
+        return domainUser.getUserPartitions().size();
+    }
+
+    private void addUserInfoToBatch(NamedPreparedStatement namedPreparedStatement, DomainUser domainUser,
+                                    int domainId) throws SQLException {
+
+        namedPreparedStatement.setString(SQLPlaceholders.USER_ID, domainUser.getDomainUserId());
+        namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
+        namedPreparedStatement.setString(SQLPlaceholders.STATE, domainUser.getState());
+        namedPreparedStatement.getPreparedStatement().addBatch();
+    }
+
+    private int addGroupToBatch(NamedPreparedStatement namedPreparedStatement, DomainGroup domainGroup, int domainId)
+            throws SQLException {
+
+        for (GroupPartition groupPartition : domainGroup.getGroupPartitions()) {
+            namedPreparedStatement.setString(SQLPlaceholders.GROUP_ID, domainGroup.getDomainGroupId());
+            namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_GROUP_ID, groupPartition.getConnectorGroupId());
+            namedPreparedStatement.setString(SQLPlaceholders.CONNECTOR_ID, groupPartition.getConnectorId());
+            namedPreparedStatement.setInt(SQLPlaceholders.DOMAIN_ID, domainId);
+            namedPreparedStatement.getPreparedStatement().addBatch();
+        }
+        return domainGroup.getGroupPartitions().size();
+    }
+
+    /**
+     * Record the failures of a rolled back batch chunk. Entities whose rows are reported as failed by the driver are
+     * reported individually. Otherwise the whole chunk is reported as failed.
+     */
+    private void addBatchFailures(UniqueIdResolverException uniqueIdResolverException, SQLException e,
+                                  List<String> rowOwners, List<String> chunkEntityIds, String entityType) {
+
+        Set<String> failedEntityIds = new LinkedHashSet<>();
+        if (e instanceof BatchUpdateException) {
+            int[] updateCounts = ((BatchUpdateException) e).getUpdateCounts();
+            if (updateCounts != null) {
+                for (int i = 0; i < updateCounts.length && i < rowOwners.size(); i++) {
+                    if (updateCounts[i] == Statement.EXECUTE_FAILED) {
+                        failedEntityIds.add(rowOwners.get(i));
+                    }
+                }
+                // Drivers which stop at the first failure only report the counts of the successful rows.
+                if (failedEntityIds.isEmpty() && updateCounts.length < rowOwners.size()) {
+                    failedEntityIds.add(rowOwners.get(updateCounts.length));
+                }
+            }
+        }
+
+        if (failedEntityIds.isEmpty()) {
+            uniqueIdResolverException.addSuppressed(new UniqueIdResolverException(String.format("Error while " +
+                    "adding %ss: %s", entityType, chunkEntityIds), e));
+            return;
+        }
+
+        failedEntityIds.forEach(entityId -> uniqueIdResolverException.addSuppressed(
+                new UniqueIdResolverException(String.format("Error while adding %s: %s", entityType, entityId), e)));
+        chunkEntityIds.stream()
+                .filter(entityId -> !failedEntityIds.contains(entityId))
+                .forEach(entityId -> uniqueIdResolverException.addSuppressed(new UniqueIdResolverException(
+                        String.format("Rolled back %s: %s due to a failure in the same batch.", entityType,
+                                entityId))));
+    }
+
+    /**
+     * Update of the group memberships, applied in a transaction.
+     */
+    private interface MembershipUpdate {
+
+        void apply(UnitOfWork unitOfWork) throws SQLException;
+    }
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.impl;
+
+import org.wso2.carbon.identity.mgt.cache.InvalidationListener;
+import org.wso2.carbon.identity.mgt.cache.InvalidationMessage;
+import org.wso2.carbon.identity.mgt.cache.InvalidationTransport;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Invalidation transport delivering the messages to the listeners of the same JVM, in the publishing thread.
+ * <p>
+ * Used when no clustered transport is registered and in tests.
+ */
+public class LoopbackInvalidationTransport implements InvalidationTransport {
+
+    private final CopyOnWriteArrayList<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(List<InvalidationMessage> messages) {
+
+        List<InvalidationMessage> batch = Collections.unmodifiableList(messages);
+        for (InvalidationListener listener : listeners) {
+            listener.onInvalidation(batch);
+        }
+    }
+
+    @Override
+    public void subscribe(InvalidationListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    @Override
+    public void unsubscribe(InvalidationListener listener) {
+        listeners.remove(listener);
+    }
+}
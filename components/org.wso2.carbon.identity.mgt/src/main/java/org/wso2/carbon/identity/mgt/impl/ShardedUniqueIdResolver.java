@@ -0,0 +1,497 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.identity.mgt.impl;
+
+import org.wso2.carbon.identity.mgt.exception.GroupNotFoundException;
+import org.wso2.carbon.identity.mgt.exception.UniqueIdResolverException;
+import org.wso2.carbon.identity.mgt.exception.UserNotFoundException;
+import org.wso2.carbon.identity.mgt.impl.util.UniqueIdResolverConstants;
+import org.wso2.carbon.identity.mgt.resolver.DomainGroup;
+import org.wso2.carbon.identity.mgt.resolver.DomainUser;
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolver;
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolverConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * UniqueIdResolver implementation which partitions the users and groups across several JDBC data sources.
+ * <p>
+ * Entities are placed on a shard by a stable hash of their domain entity id, or by the domain id when the shard key
+ * is {@code domain}. Lookups by domain entity id go to a single shard, while lookups by connector entity id and list
+ * operations fan out to the shards of the domain and merge the results. User group mappings are stored on the shard
+ * of the user. Writes spanning several shards are not atomic across the shards.
+ */
+public class ShardedUniqueIdResolver implements UniqueIdResolver {
+
+    private List<JDBCUniqueIdResolver> shards = new ArrayList<>();
+
+    private boolean shardByDomain;
+
+    @Override
+    public void init(UniqueIdResolverConfig uniqueIdResolverConfig) throws UniqueIdResolverException {
+
+        Map<String, String> properties = uniqueIdResolverConfig.getProperties();
+
+        String shardKey = properties.getOrDefault(UniqueIdResolverConstants.SHARD_KEY,
+                UniqueIdResolverConstants.SHARD_KEY_ENTITY_ID).trim();
+        if (UniqueIdResolverConstants.SHARD_KEY_DOMAIN.equals(shardKey)) {
+            shardByDomain = true;
+        } else if (!UniqueIdResolverConstants.SHARD_KEY_ENTITY_ID.equals(shardKey)) {
+            throw new UniqueIdResolverException("Invalid shard key: " + shardKey);
+        }
+
+        String shardDataSourcesProperty = properties.get(UniqueIdResolverConstants.SHARD_DATA_SOURCES);
+        if (shardDataSourcesProperty != null) {
+            for (String shardDataSourceName : shardDataSourcesProperty.split(",")) {
+                if (shardDataSourceName.trim().isEmpty()) {
+                    continue;
+                }
+
+                // Each shard is a plain JDBC resolver. Read replicas are configured per data source, hence they
+                // are not carried over to the shards.
+                Map<String, String> shardProperties = new HashMap<>(properties);
+                shardProperties.remove(UniqueIdResolverConstants.SHARD_DATA_SOURCES);
+                shardProperties.remove(UniqueIdResolverConstants.SHARD_KEY);
+                shardProperties.remove(UniqueIdResolverConstants.READ_DATA_SOURCES);
+                shardProperties.put(UniqueIdResolverConstants.DATA_SOURCE, shardDataSourceName.trim());
+
+                JDBCUniqueIdResolver shard = new JDBCUniqueIdResolver();
+                shard.init(new UniqueIdResolverConfig(uniqueIdResolverConfig.getType(), shardProperties));
+                shards.add(shard);
+            }
+        }
+
+        if (shards.isEmpty()) {
+            throw new UniqueIdResolverException("At least one shard data source should be configured.");
+        }
+    }
+
+    @Override
+    public DomainUser getUser(String domainUserId, int domainId) throws UniqueIdResolverException,
+            UserNotFoundException {
+
+        return getShard(domainUserId, domainId).getUser(domainUserId, domainId);
+    }
+
+    @Override
+    public DomainUser getUserFromConnectorUserId(String connectorUserId, String connectorId, int domainId) throws
+            UserNotFoundException, UniqueIdResolverException {
+
+        for (JDBCUniqueIdResolver shard : getShards(domainId)) {
+            try {
+                return shard.getUserFromConnectorUserId(connectorUserId, connectorId, domainId);
+            } catch (UserNotFoundException e) {
+                // The user is on another shard.
+            }
+        }
+        throw new UserNotFoundException("No user found.");
+    }
+
+    @Override
+    public List<DomainUser> getUsers(List<String> connectorUserIds, String connectorId, int domainId) throws
+            UniqueIdResolverException {
+
+        // Only the connector user ids which are not resolved yet are looked up on the next shard.
+        Map<String, DomainUser> connectorUserIdToUserMap = new HashMap<>();
+        List<String> remainingConnectorUserIds = connectorUserIds.stream()
+                .distinct()
+                .collect(Collectors.toList());
+        for (JDBCUniqueIdResolver shard : getShards(domainId)) {
+            if (remainingConnectorUserIds.isEmpty()) {
+                break;
+            }
+            Map<String, DomainUser> shardUsers = shard.findUsers(remainingConnectorUserIds, connectorId, domainId);
+            connectorUserIdToUserMap.putAll(shardUsers);
+            remainingConnectorUserIds = remainingConnectorUserIds.stream()
+                    .filter(connectorUserId -> !shardUsers.containsKey(connectorUserId))
+                    .collect(Collectors.toList());
+        }
+
+        UniqueIdResolverException uniqueIdResolverException = new UniqueIdResolverException();
+        List<DomainUser> domainUsers = new ArrayList<>();
+        connectorUserIds.forEach(connectorUserId -> {
+            DomainUser domainUser = connectorUserIdToUserMap.get(connectorUserId);
+            if (domainUser != null) {
+                domainUsers.add(domainUser);
+            } else {
+                uniqueIdResolverException.addSuppressed(new UserNotFoundException(String.format("No user found for " +
+                        "connector user id: %s", connectorUserId)));
+            }
+        });
+
+        if (uniqueIdResolverException.getSuppressed().length > 0) {
+            throw uniqueIdResolverException;
+        }
+
+        return domainUsers;
+    }
+
+    @Override
+    public boolean isUserExists(String domainUserId, int domainId) throws UniqueIdResolverException {
+
+        return getShard(domainUserId, domainId).isUserExists(domainUserId, domainId);
+    }
+
+    @Override
+    public List<DomainUser> listDomainUsers(int offset, int length, int domainId) throws UniqueIdResolverException {
+
+        List<JDBCUniqueIdResolver> domainShards = getShards(domainId);
+        if (domainShards.size() == 1) {
+            return domainShards.get(0).listDomainUsers(offset, length, domainId);
+        }
+
+        // A global offset can not be pushed down to the shards, hence every shard returns its first offset + length
+        // users in order and the merged list is skipped up to the offset.
+        int skip = offset > 0 ? offset - 1 : 0;
+        List<DomainUser> domainUsers = listDomainUsers(null, skip + length, domainId);
+        if (skip >= domainUsers.size()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(domainUsers.subList(skip, domainUsers.size()));
+    }
+
+    @Override
+    public List<DomainUser> listDomainUsers(String lastDomainUserId, int length, int domainId)
+            throws UniqueIdResolverException {
+
+        List<DomainUser> domainUsers = new ArrayList<>();
+        for (JDBCUniqueIdResolver shard : getShards(domainId)) {
+            domainUsers.addAll(shard.listDomainUsers(lastDomainUserId, length, domainId));
+        }
+        return firstOf(domainUsers, DomainUser::getDomainUserId, length);
+    }
+
+    @Override
+    public DomainGroup getGroup(String domainGroupId, int domainId) throws UniqueIdResolverException,
+            GroupNotFoundException {
+
+        return getShard(domainGroupId, domainId).getGroup(domainGroupId, domainId);
+    }
+
+    @Override
+    public DomainGroup getGroupFromConnectorGroupId(String connectorGroupId, String connectorId, int domainId)
+            throws UniqueIdResolverException, GroupNotFoundException {
+
+        for (JDBCUniqueIdResolver shard : getShards(domainId)) {
+            try {
+                return shard.getGroupFromConnectorGroupId(connectorGroupId, connectorId, domainId);
+            } catch (GroupNotFoundException e) {
+                // The group is on another shard.
+            }
+        }
+        throw new GroupNotFoundException("No group found.");
+    }
+
+    @Override
+    public boolean isGroupExists(String uniqueGroupId, int domainId) throws UniqueIdResolverException {
+
+        return getShard(uniqueGroupId, domainId).isGroupExists(uniqueGroupId, domainId);
+    }
+
+    @Override
+    public List<DomainGroup> listGroups(int offset, int length, int domainId) throws UniqueIdResolverException {
+
+        List<JDBCUniqueIdResolver> domainShards = getShards(domainId);
+        if (domainShards.size() == 1) {
+            return domainShards.get(0).listGroups(offset, length, domainId);
+        }
+
+        int skip = offset > 0 ? offset - 1 : 0;
+        List<DomainGroup> domainGroups = listGroups(null, skip + length, domainId);
+        if (skip >= domainGroups.size()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(domainGroups.subList(skip, domainGroups.size()));
+    }
+
+    @Override
+    public List<DomainGroup> listGroups(String lastDomainGroupId, int length, int domainId)
+            throws UniqueIdResolverException {
+
+        List<DomainGroup> domainGroups = new ArrayList<>();
+        for (JDBCUniqueIdResolver shard : getShards(domainId)) {
+            domainGroups.addAll(shard.listGroups(lastDomainGroupId, length, domainId));
+        }
+        return firstOf(domainGroups, DomainGroup::getDomainGroupId, length);
+    }
+
+    @Override
+    public List<DomainGroup> getGroups(List<String> connectorGroupIds, String connectorId, int domainId) throws
+            UniqueIdResolverException {
+
+        UniqueIdResolverException uniqueIdResolverException = new UniqueIdResolverException();
+        List<DomainGroup> domainGroups = new ArrayList<>();
+        for (String connectorGroupId : connectorGroupIds) {
+            try {
+                domainGroups.add(getGroupFromConnectorGroupId(connectorGroupId, connectorId, domainId));
+            } catch (UniqueIdResolverException | GroupNotFoundException e) {
+                uniqueIdResolverException.addSuppressed(e);
+            }
+        }
+
+        if (uniqueIdResolverException.getSuppressed().length > 0) {
+            throw uniqueIdResolverException;
+        }
+
+        return domainGroups;
+    }
+
+    @Override
+    public List<DomainGroup> getGroupsOfUser(String domainUserId, int domainId) throws UniqueIdResolverException {
+
+        JDBCUniqueIdResolver userShard = getShard(domainUserId, domainId);
+        if (shardByDomain) {
+            return userShard.getGroupsOfUser(domainUserId, domainId);
+        }
+
+        // The mappings are on the shard of the user, while the groups may be on any shard.
+        List<DomainGroup> domainGroups = new ArrayList<>();
+        for (Map.Entry<JDBCUniqueIdResolver, List<String>> entry : partition(userShard.getGroupIdsOfUser(
+                domainUserId, domainId), Function.identity(), domainId).entrySet()) {
+            domainGroups.addAll(entry.getKey().getGroupsByIds(entry.getValue(), domainId));
+        }
+        return domainGroups;
+    }
+
+    @Override
+    public List<DomainUser> getUsersOfGroup(String domainGroupId, int domainId) throws UniqueIdResolverException {
+
+        // The mappings are stored along with the users, so each shard resolves its own members.
+        List<DomainUser> domainUsers = new ArrayList<>();
+        for (JDBCUniqueIdResolver shard : getShards(domainId)) {
+            domainUsers.addAll(shard.getUsersOfGroup(domainGroupId, domainId));
+        }
+        return domainUsers;
+    }
+
+    @Override
+    public boolean isUserInGroup(String domainUserId, String domainGroupId, int domainId)
+            throws UniqueIdResolverException {
+
+        return getShard(domainUserId, domainId).isUserInGroup(domainUserId, domainGroupId, domainId);
+    }
+
+    @Override
+    public String addUser(DomainUser domainUser, int domainId) throws UniqueIdResolverException {
+
+        return getShard(domainUser.getDomainUserId(), domainId).addUser(domainUser, domainId);
+    }
+
+    @Override
+    public List<String> addUsers(List<DomainUser> domainUsers, int domainId) throws UniqueIdResolverException {
+
+        UniqueIdResolverException uniqueIdResolverException = new UniqueIdResolverException();
+        for (Map.Entry<JDBCUniqueIdResolver, List<DomainUser>> entry : partition(domainUsers,
+                DomainUser::getDomainUserId, domainId).entrySet()) {
+            try {
+                entry.getKey().addUsers(entry.getValue(), domainId);
+            } catch (UniqueIdResolverException e) {
+                for (Throwable failure : e.getSuppressed()) {
+                    uniqueIdResolverException.addSuppressed(failure);
+                }
+            }
+        }
+
+        if (uniqueIdResolverException.getSuppressed().length > 0) {
+            throw uniqueIdResolverException;
+        }
+
+        return domainUsers.stream()
+                .map(DomainUser::getDomainUserId)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void updateUser(String domainUserId, Map<String, String> connectorUserIdMap, int domainId, String state)
+            throws UniqueIdResolverException {
+
+        getShard(domainUserId, domainId).updateUser(domainUserId, connectorUserIdMap, domainId, state);
+    }
+
+    @Override
+    public void updateUser(String domainUserId, Map<String, String> connectorUserIdMap, boolean identityStore,
+                           int domainId, String state) throws UniqueIdResolverException {
+
+        getShard(domainUserId, domainId).updateUser(domainUserId, connectorUserIdMap, identityStore, domainId,
+                state);
+    }
+
+    @Override
+    public void deleteUser(String domainUserId, int domainId) throws UniqueIdResolverException {
+
+        getShard(domainUserId, domainId).deleteUser(domainUserId, domainId);
+    }
+
+    @Override
+    public String addGroup(DomainGroup domainGroup, int domainId) throws UniqueIdResolverException {
+
+        return getShard(domainGroup.getDomainGroupId(), domainId).addGroup(domainGroup, domainId);
+    }
+
+    @Override
+    public List<String> addGroups(List<DomainGroup> domainGroups, int domainId) throws UniqueIdResolverException {
+
+        UniqueIdResolverException uniqueIdResolverException = new UniqueIdResolverException();
+        for (Map.Entry<JDBCUniqueIdResolver, List<DomainGroup>> entry : partition(domainGroups,
+                DomainGroup::getDomainGroupId, domainId).entrySet()) {
+            try {
+                entry.getKey().addGroups(entry.getValue(), domainId);
+            } catch (UniqueIdResolverException e) {
+                for (Throwable failure : e.getSuppressed()) {
+                    uniqueIdResolverException.addSuppressed(failure);
+                }
+            }
+        }
+
+        if (uniqueIdResolverException.getSuppressed().length > 0) {
+            throw uniqueIdResolverException;
+        }
+
+        return domainGroups.stream()
+                .map(DomainGroup::getDomainGroupId)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void updateGroup(String domainGroupId, Map<String, String> connectorGroupIdMap, int domainId) throws
+            UniqueIdResolverException {
+
+        getShard(domainGroupId, domainId).updateGroup(domainGroupId, connectorGroupIdMap, domainId);
+    }
+
+    @Override
+    public void deleteGroup(String domainGroupId, int domainId) throws UniqueIdResolverException {
+
+        // Members of the group on the other shards hold mappings to the group as well.
+        JDBCUniqueIdResolver groupShard = getShard(domainGroupId, domainId);
+        for (JDBCUniqueIdResolver shard : getShards(domainId)) {
+            if (shard == groupShard) {
+                shard.deleteGroup(domainGroupId, domainId);
+            } else {
+                shard.updateUsersOfGroup(domainGroupId, Collections.emptyList(), domainId);
+            }
+        }
+    }
+
+    @Override
+    public void updateGroupsOfUser(String domainUserId, List<String> domainGroupIds, int domainId)
+            throws UniqueIdResolverException {
+
+        getShard(domainUserId, domainId).updateGroupsOfUser(domainUserId, domainGroupIds, domainId);
+    }
+
+    @Override
+    public void updateGroupsOfUser(String domainUserId, List<String> domainGroupIdsToUpdate,
+                                   List<String> domainGroupIdsToRemove, int domainId)
+            throws UniqueIdResolverException {
+
+        getShard(domainUserId, domainId).updateGroupsOfUser(domainUserId, domainGroupIdsToUpdate,
+                domainGroupIdsToRemove, domainId);
+    }
+
+    @Override
+    public void updateUsersOfGroup(String domainGroupId, List<String> domainUserIds, int domainId)
+            throws UniqueIdResolverException {
+
+        // Every shard replaces its own members of the group, including the shards left without any member.
+        Map<JDBCUniqueIdResolver, List<String>> domainUserIdsOfShards = partition(domainUserIds, Function.identity(),
+                domainId);
+        for (JDBCUniqueIdResolver shard : getShards(domainId)) {
+            shard.updateUsersOfGroup(domainGroupId, domainUserIdsOfShards.getOrDefault(shard,
+                    Collections.emptyList()), domainId);
+        }
+    }
+
+    @Override
+    public void updateUsersOfGroup(String doaminGroupId, List<String> domainUserIdsToUpdate,
+                                   List<String> domainUserIdsToRemove, int domainId)
+            throws UniqueIdResolverException {
+
+        Map<JDBCUniqueIdResolver, List<String>> domainUserIdsToUpdateOfShards = partition(domainUserIdsToUpdate,
+                Function.identity(), domainId);
+        Map<JDBCUniqueIdResolver, List<String>> domainUserIdsToRemoveOfShards = partition(domainUserIdsToRemove,
+                Function.identity(), domainId);
+        for (JDBCUniqueIdResolver shard : getShards(domainId)) {
+            List<String> shardUserIdsToUpdate = domainUserIdsToUpdateOfShards.getOrDefault(shard,
+                    Collections.emptyList());
+            List<String> shardUserIdsToRemove = domainUserIdsToRemoveOfShards.getOrDefault(shard,
+                    Collections.emptyList());
+            if (!shardUserIdsToUpdate.isEmpty() || !shardUserIdsToRemove.isEmpty()) {
+                shard.updateUsersOfGroup(doaminGroupId, shardUserIdsToUpdate, shardUserIdsToRemove, domainId);
+            }
+        }
+    }
+
+    @Override
+    public void setUserState(String domainUserId, String targetState, int domainId) throws UniqueIdResolverException {
+
+        getShard(domainUserId, domainId).setUserState(domainUserId, targetState, domainId);
+    }
+
+    /**
+     * Get the shard which holds the given entity. String hash codes are specified by the platform, hence the
+     * placement is stable across restarts and nodes.
+     */
+    private JDBCUniqueIdResolver getShard(String domainEntityId, int domainId) {
+
+        int shardKey = shardByDomain ? domainId : domainEntityId.hashCode();
+        return shards.get(Math.floorMod(shardKey, shards.size()));
+    }
+
+    /**
+     * Get the shards which may hold the entities of a domain.
+     */
+    private List<JDBCUniqueIdResolver> getShards(int domainId) {
+
+        if (shardByDomain) {
+            return Collections.singletonList(shards.get(Math.floorMod(domainId, shards.size())));
+        }
+        return shards;
+    }
+
+    private <T> Map<JDBCUniqueIdResolver, List<T>> partition(List<T> entities, Function<T, String> idFunction,
+                                                             int domainId) {
+
+        Map<JDBCUniqueIdResolver, List<T>> entitiesOfShards = new LinkedHashMap<>();
+        for (T entity : entities) {
+            entitiesOfShards.computeIfAbsent(getShard(idFunction.apply(entity), domainId), shard -> new ArrayList<>())
+                    .add(entity);
+        }
+        return entitiesOfShards;
+    }
+
+    /**
+     * Merge the ordered pages of the shards into a single page of the given length.
+     */
+    private <T> List<T> firstOf(List<T> entities, Function<T, String> idFunction, int length) {
+
+        entities.sort(Comparator.comparing(idFunction));
+        if (entities.size() > length) {
+            return new ArrayList<>(entities.subList(0, length));
+        }
+        return entities;
+    }
+}
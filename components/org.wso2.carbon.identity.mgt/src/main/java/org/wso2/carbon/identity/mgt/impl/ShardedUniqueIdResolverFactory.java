@@ -0,0 +1,15 @@
+package org.wso2.carbon.identity.mgt.impl;
+
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolver;
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolverFactory;
+
+/**
+ * Sharded Unique Id Resolver Factory.
+ */
+public class ShardedUniqueIdResolverFactory implements UniqueIdResolverFactory {
+
+    @Override
+    public UniqueIdResolver getInstance() {
+        return new ShardedUniqueIdResolver();
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.identity.mgt.impl;
+
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdGenerator;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unique id generator of time ordered UUIDs, in the version 7 layout of RFC 9562.
+ * <p>
+ * The ids start with the creation time in milliseconds, so new ids are appended to the end of the indexes on the id
+ * columns instead of being inserted at random positions. The 12 bits after the version are a counter that orders the
+ * ids of the same millisecond, and the remaining 62 bits are random. Ids of a node are strictly increasing, also in
+ * their string form.
+ */
+public class TimeOrderedUniqueIdGenerator implements UniqueIdGenerator {
+
+    private static final int SEQUENCE_BITS = 12;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final long VERSION = 0x7L << SEQUENCE_BITS;
+
+    private static final long VARIANT = 0x8000000000000000L;
+
+    private static final long RANDOM_MASK = 0x3FFFFFFFFFFFFFFFL;
+
+    private final SecureRandom random = new SecureRandom();
+
+    // Timestamp of the last id, shifted by the sequence bits, with the sequence of the last id in the low bits. A
+    // sequence overflow moves on to the next millisecond.
+    private final AtomicLong lastTimestampAndSequence = new AtomicLong();
+
+    @Override
+    public String generate() {
+
+        long now = System.currentTimeMillis() << SEQUENCE_BITS;
+        long timestampAndSequence = lastTimestampAndSequence.updateAndGet(last -> Math.max(last + 1, now));
+        long timestamp = timestampAndSequence >>> SEQUENCE_BITS;
+        long sequence = timestampAndSequence & SEQUENCE_MASK;
+
+        long mostSigBits = timestamp << 16 | VERSION | sequence;
+        long leastSigBits = random.nextLong() & RANDOM_MASK | VARIANT;
+        return new UUID(mostSigBits, leastSigBits).toString();
+    }
+}
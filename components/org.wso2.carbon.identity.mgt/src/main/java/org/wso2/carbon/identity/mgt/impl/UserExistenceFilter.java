@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.identity.mgt.claim.Claim;
+import org.wso2.carbon.identity.mgt.claim.MetaClaim;
+import org.wso2.carbon.identity.mgt.claim.MetaClaimMapping;
+import org.wso2.carbon.identity.mgt.exception.DomainException;
+import org.wso2.carbon.identity.mgt.impl.config.UserExistenceFilterConfig;
+import org.wso2.carbon.identity.mgt.impl.util.BloomFilter;
+import org.wso2.carbon.identity.mgt.resolver.DomainUser;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Per domain and unique claim Bloom filters of claim values, used to answer user existence checks without querying
+ * the domain when the value is definitely not taken.
+ * <p>
+ * Filters are updated incrementally when users are added or their claims are updated through the identity store and
+ * rebuilt periodically from the domains. Values taken on the other nodes of a cluster are added from their claim
+ * invalidations. Hence values are only reported as absent once the filter is marked authoritative, as cache
+ * invalidation is running, and the filters of the domain were rebuilt since. Until then they are reported as unknown.
+ * Values taken directly in the connectors are not known until the next rebuild, and are reported as absent until
+ * then. Bloom filters cannot forget values, hence deleted users and changed values only turn into false positives
+ * until the next rebuild. Values are compared case insensitively, which may only add false positives for case
+ * sensitive connectors.
+ */
+public class UserExistenceFilter implements UserExistenceFilterMXBean {
+
+    private static final Logger log = LoggerFactory.getLogger(UserExistenceFilter.class);
+
+    private static final String OBJECT_NAME = "org.wso2.carbon.identity.mgt:type=UserExistenceFilter";
+
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    private final UserExistenceFilterConfig filterConfig;
+
+    private final Collection<Domain> domains;
+
+    /**
+     * Filters in use, by domain id and claim URI. A domain without filters is treated as if every value might exist.
+     */
+    private final Map<Integer, Map<String, BloomFilter>> filters = new ConcurrentHashMap<>();
+
+    /**
+     * Filters being rebuilt, by domain id and claim URI. Values added during a rebuild are put to these as well.
+     */
+    private final Map<Integer, Map<String, BloomFilter>> rebuildingFilters = new ConcurrentHashMap<>();
+
+    private final AtomicLong lookupCount = new AtomicLong();
+
+    private final AtomicLong negativeCount = new AtomicLong();
+
+    private final AtomicLong falsePositiveCount = new AtomicLong();
+
+    private ScheduledExecutorService rebuildExecutor;
+
+    /**
+     * Whether the values taken on the other nodes of the cluster are added to the filters.
+     */
+    private volatile boolean authoritative;
+
+    /**
+     * Ids of the domains whose filters were rebuilt while authoritative, hence know all the values taken.
+     */
+    private final Set<Integer> authoritativeDomainIds = ConcurrentHashMap.newKeySet();
+
+    public UserExistenceFilter(UserExistenceFilterConfig filterConfig, Collection<Domain> domains) {
+
+        this.filterConfig = filterConfig;
+        this.domains = domains;
+    }
+
+    /**
+     * Build the filters in the background and schedule the periodic rebuild. Until the first build of a domain
+     * completes, all the values of it are treated as existing.
+     */
+    public void start() {
+
+        rebuildExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "identity-store-user-filter-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rebuildExecutor.scheduleWithFixedDelay(this::rebuild, 0, filterConfig.getRebuildInterval(), TimeUnit.MINUTES);
+
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(this, objectName);
+        } catch (JMException e) {
+            log.warn("Failed to register the user existence filter MBean.", e);
+        }
+    }
+
+    /**
+     * Set whether the values taken on the other nodes of the cluster are added to the filters. The filters built
+     * before may miss values, hence checks are answered with {@link Answer#UNKNOWN} until the filters of the domain
+     * are rebuilt, which is scheduled right away.
+     *
+     * @param authoritative Whether the claim invalidations of the other nodes are applied to the filters.
+     */
+    public void setAuthoritative(boolean authoritative) {
+
+        this.authoritative = authoritative;
+        if (!authoritative) {
+            authoritativeDomainIds.clear();
+        } else if (rebuildExecutor != null && !rebuildExecutor.isShutdown()) {
+            rebuildExecutor.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * Answer of the filters to an existence check.
+     */
+    public enum Answer {
+
+        /**
+         * No user of the domain owns the value.
+         */
+        ABSENT,
+
+        /**
+         * A user of the domain might own the value.
+         */
+        MAYBE_PRESENT,
+
+        /**
+         * The domain has no filter of the claim yet or the filters are not authoritative, hence the value was not
+         * checked.
+         */
+        UNKNOWN
+    }
+
+    /**
+     * Check whether a user might own the given claim value in the domain.
+     *
+     * @param domain Domain to check.
+     * @param claim  Unique claim.
+     * @return Answer of the filter of the claim in the domain.
+     */
+    public Answer check(Domain domain, Claim claim) {
+
+        Map<String, BloomFilter> domainFilters = filters.get(domain.getId());
+        BloomFilter filter = domainFilters == null ? null : domainFilters.get(claim.getClaimUri());
+        if (filter == null || !authoritativeDomainIds.contains(domain.getId())) {
+            return Answer.UNKNOWN;
+        }
+
+        lookupCount.incrementAndGet();
+        if (filter.mightContain(normalize(claim.getValue()))) {
+            return Answer.MAYBE_PRESENT;
+        }
+        negativeCount.incrementAndGet();
+        return Answer.ABSENT;
+    }
+
+    /**
+     * Record a {@link Answer#MAYBE_PRESENT} answer which was not backed by a user in the domain.
+     */
+    public void recordFalsePositive() {
+        falsePositiveCount.incrementAndGet();
+    }
+
+    /**
+     * Put the unique claim values of a user to the filters of the domain.
+     *
+     * @param domain Domain of the user.
+     * @param claims Claims of the user.
+     */
+    public void add(Domain domain, List<Claim> claims) {
+
+        if (claims == null || claims.isEmpty()) {
+            return;
+        }
+
+        addToFilters(rebuildingFilters.get(domain.getId()), claims);
+        addToFilters(filters.get(domain.getId()), claims);
+    }
+
+    /**
+     * Put a claim value taken by a user on another node to the filters of all the domains, as the domain of the user
+     * is not known.
+     *
+     * @param claimValueId Claim URI and the value, separated by a colon as in the claim invalidations.
+     */
+    public void addTaken(String claimValueId) {
+
+        rebuildingFilters.values().forEach(domainFilters -> addTaken(domainFilters, claimValueId));
+        filters.values().forEach(domainFilters -> addTaken(domainFilters, claimValueId));
+    }
+
+    @Override
+    public void rebuild() {
+        domains.forEach(this::rebuild);
+    }
+
+    /**
+     * Rebuild the filters of a domain from the unique claim values of all the users of it. The current filters are
+     * kept if the rebuild fails.
+     *
+     * @param domain Domain to rebuild the filters of.
+     */
+    public void rebuild(Domain domain) {
+
+        List<MetaClaim> uniqueMetaClaims;
+        try {
+            uniqueMetaClaims = domain.getMetaClaimMappings().stream()
+                    .filter(MetaClaimMapping::isUnique)
+                    .map(MetaClaimMapping::getMetaClaim)
+                    .collect(Collectors.toList());
+        } catch (DomainException e) {
+            log.error(String.format("Failed to rebuild the user existence filter of domain - %s", domain.getName()),
+                    e);
+            return;
+        }
+
+        Map<String, BloomFilter> domainFilters = new HashMap<>();
+        uniqueMetaClaims.forEach(metaClaim -> domainFilters.put(metaClaim.getClaimUri(),
+                new BloomFilter(filterConfig.getExpectedInsertions(), filterConfig.getFalsePositiveProbability())));
+
+        long startTime = System.currentTimeMillis();
+        boolean rebuildAuthoritative = authoritative;
+        rebuildingFilters.put(domain.getId(), domainFilters);
+        try {
+            if (!uniqueMetaClaims.isEmpty()) {
+                String lastDomainUserId = null;
+                List<DomainUser> domainUsers;
+                do {
+                    domainUsers = domain.listDomainUsers(lastDomainUserId, REBUILD_PAGE_SIZE);
+                    for (DomainUser domainUser : domainUsers) {
+                        addToFilters(domainFilters, domain.getClaimsOfUser(domainUser, uniqueMetaClaims));
+                        lastDomainUserId = domainUser.getDomainUserId();
+                    }
+                } while (domainUsers.size() == REBUILD_PAGE_SIZE);
+            }
+            filters.put(domain.getId(), Collections.unmodifiableMap(domainFilters));
+            if (rebuildAuthoritative) {
+                authoritativeDomainIds.add(domain.getId());
+            }
+        } catch (DomainException | RuntimeException e) {
+            log.error(String.format("Failed to rebuild the user existence filter of domain - %s", domain.getName()),
+                    e);
+            return;
+        } finally {
+            rebuildingFilters.remove(domain.getId());
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Rebuilt the user existence filter of domain - %s in %d ms. Lookups: %d, " +
+                            "negatives: %d, false positives: %d.", domain.getName(),
+                    System.currentTimeMillis() - startTime, lookupCount.get(), negativeCount.get(),
+                    falsePositiveCount.get()));
+        }
+    }
+
+    /**
+     * Stop the periodic rebuild of the filters.
+     */
+    public void stop() {
+
+        if (rebuildExecutor != null) {
+            rebuildExecutor.shutdownNow();
+        }
+        try {
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            log.warn("Failed to unregister the user existence filter MBean.", e);
+        }
+    }
+
+    @Override
+    public long getLookupCount() {
+        return lookupCount.get();
+    }
+
+    @Override
+    public long getNegativeCount() {
+        return negativeCount.get();
+    }
+
+    @Override
+    public long getFalsePositiveCount() {
+        return falsePositiveCount.get();
+    }
+
+    @Override
+    public double getFalsePositiveRate() {
+
+        long positiveCount = lookupCount.get() - negativeCount.get();
+        return positiveCount <= 0 ? 0 : (double) falsePositiveCount.get() / positiveCount;
+    }
+
+    @Override
+    public double getExpectedFalsePositiveProbability() {
+
+        return filters.values().stream()
+                .flatMap(domainFilters -> domainFilters.values().stream())
+                .mapToDouble(BloomFilter::getExpectedFalsePositiveProbability)
+                .max()
+                .orElse(0);
+    }
+
+    private static void addToFilters(Map<String, BloomFilter> domainFilters, List<Claim> claims) {
+
+        if (domainFilters == null) {
+            return;
+        }
+
+        for (Claim claim : claims) {
+            if (claim == null || claim.getValue() == null) {
+                continue;
+            }
+            BloomFilter filter = domainFilters.get(claim.getClaimUri());
+            if (filter != null) {
+                filter.put(normalize(claim.getValue()));
+            }
+        }
+    }
+
+    private static void addTaken(Map<String, BloomFilter> domainFilters, String claimValueId) {
+
+        // Claim URIs contain colons themselves, hence the value is separated by matching the known claim URIs.
+        domainFilters.forEach((claimUri, filter) -> {
+            if (claimValueId.length() > claimUri.length() && claimValueId.startsWith(claimUri) &&
+                    claimValueId.charAt(claimUri.length()) == ':') {
+                filter.put(normalize(claimValueId.substring(claimUri.length() + 1)));
+            }
+        });
+    }
+
+    private static String normalize(String claimValue) {
+        return claimValue.toLowerCase(Locale.ENGLISH);
+    }
+}
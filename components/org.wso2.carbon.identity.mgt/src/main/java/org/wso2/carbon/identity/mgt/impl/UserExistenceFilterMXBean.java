@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.impl;
+
+/**
+ * Management interface exposing the metrics of the user existence filter.
+ */
+public interface UserExistenceFilterMXBean {
+
+    /**
+     * Get the number of existence checks answered by the filter.
+     *
+     * @return Number of lookups.
+     */
+    long getLookupCount();
+
+    /**
+     * Get the number of existence checks answered without querying the domain.
+     *
+     * @return Number of definite negative answers.
+     */
+    long getNegativeCount();
+
+    /**
+     * Get the number of positive answers which were not backed by a user in the domain.
+     *
+     * @return Number of false positives.
+     */
+    long getFalsePositiveCount();
+
+    /**
+     * Get the observed ratio of false positives to the positive answers.
+     *
+     * @return False positive rate.
+     */
+    double getFalsePositiveRate();
+
+    /**
+     * Get the highest false positive probability estimated from the current filters.
+     *
+     * @return Expected false positive probability.
+     */
+    double getExpectedFalsePositiveProbability();
+
+    /**
+     * Rebuild the filters of all the domains.
+     */
+    void rebuild();
+}
@@ -31,6 +31,12 @@ public class CacheConfig {
 
     private boolean statisticsEnabled;
 
+    // Reload entries nearing expiry in the background instead of letting them expire.
+    private boolean refreshAhead;
+
+    // Time in minutes an expired entry can still be served while it is being reloaded.
+    private int maxStaleTime;
+
     public boolean isEnable() {
         return enable;
     }
@@ -47,6 +53,14 @@ public class CacheConfig {
         return expireTime;
     }
 
+    public boolean isRefreshAhead() {
+        return refreshAhead;
+    }
+
+    public int getMaxStaleTime() {
+        return maxStaleTime;
+    }
+
     public void setEnable(boolean enable) {
         this.enable = enable;
     }
@@ -62,4 +76,12 @@ public class CacheConfig {
     public void setExpireTime(int expireTime) {
         this.expireTime = expireTime;
     }
+
+    public void setRefreshAhead(boolean refreshAhead) {
+        this.refreshAhead = refreshAhead;
+    }
+
+    public void setMaxStaleTime(int maxStaleTime) {
+        this.maxStaleTime = maxStaleTime;
+    }
 }
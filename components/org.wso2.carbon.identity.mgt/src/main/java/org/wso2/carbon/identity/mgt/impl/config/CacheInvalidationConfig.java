@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.impl.config;
+
+/**
+ * Represents the cache invalidation config in the store config.
+ */
+public class CacheInvalidationConfig {
+
+    public static final long DEFAULT_BATCH_INTERVAL = 100;
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+
+    private boolean enable;
+
+    // Maximum time in milliseconds an invalidation is held before it is published.
+    private long batchInterval = DEFAULT_BATCH_INTERVAL;
+
+    // Number of pending invalidations which triggers an immediate publish.
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    public boolean isEnable() {
+        return enable;
+    }
+
+    public void setEnable(boolean enable) {
+        this.enable = enable;
+    }
+
+    public long getBatchInterval() {
+        return batchInterval;
+    }
+
+    public void setBatchInterval(long batchInterval) {
+        this.batchInterval = batchInterval;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+}
@@ -40,6 +40,14 @@ public class StoreConfig {
 
     private Map<String, AuthorizationStoreConnectorConfig> authorizationConnectorConfigMap = new HashMap<>();
 
+    private AuthenticationConfig authenticationConfig = new AuthenticationConfig();
+
+    private UserExistenceFilterConfig userExistenceFilterConfig = new UserExistenceFilterConfig();
+
+    private CacheWarmUpConfig cacheWarmUpConfig = new CacheWarmUpConfig();
+
+    private CacheInvalidationConfig cacheInvalidationConfig = new CacheInvalidationConfig();
+
     public StoreConfig() {
 
     }
@@ -100,4 +108,36 @@ public class StoreConfig {
             Map<String, AuthorizationStoreConnectorConfig> authorizationConnectorConfigMap) {
         this.authorizationConnectorConfigMap = authorizationConnectorConfigMap;
     }
+
+    public AuthenticationConfig getAuthenticationConfig() {
+        return authenticationConfig;
+    }
+
+    public void setAuthenticationConfig(AuthenticationConfig authenticationConfig) {
+        this.authenticationConfig = authenticationConfig;
+    }
+
+    public UserExistenceFilterConfig getUserExistenceFilterConfig() {
+        return userExistenceFilterConfig;
+    }
+
+    public void setUserExistenceFilterConfig(UserExistenceFilterConfig userExistenceFilterConfig) {
+        this.userExistenceFilterConfig = userExistenceFilterConfig;
+    }
+
+    public CacheWarmUpConfig getCacheWarmUpConfig() {
+        return cacheWarmUpConfig;
+    }
+
+    public void setCacheWarmUpConfig(CacheWarmUpConfig cacheWarmUpConfig) {
+        this.cacheWarmUpConfig = cacheWarmUpConfig;
+    }
+
+    public CacheInvalidationConfig getCacheInvalidationConfig() {
+        return cacheInvalidationConfig;
+    }
+
+    public void setCacheInvalidationConfig(CacheInvalidationConfig cacheInvalidationConfig) {
+        this.cacheInvalidationConfig = cacheInvalidationConfig;
+    }
 }
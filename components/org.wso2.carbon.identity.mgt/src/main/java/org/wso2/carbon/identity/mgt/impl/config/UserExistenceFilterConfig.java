@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.impl.config;
+
+/**
+ * Represents the user existence filter config in the store config.
+ */
+public class UserExistenceFilterConfig {
+
+    public static final int DEFAULT_EXPECTED_INSERTIONS = 100000;
+
+    public static final double DEFAULT_FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    public static final int DEFAULT_REBUILD_INTERVAL = 60;
+
+    // The filter can only be trusted if all the users are added through the identity store, hence disabled by default.
+    // Users added directly in the connectors are reported as absent until the next rebuild. The filter is only used
+    // when cache invalidation is enabled as well, so that the values taken on the other nodes are added.
+    private boolean enable;
+
+    // Number of unique claim values expected per domain and claim.
+    private int expectedInsertions = DEFAULT_EXPECTED_INSERTIONS;
+
+    private double falsePositiveProbability = DEFAULT_FALSE_POSITIVE_PROBABILITY;
+
+    // Interval in minutes to rebuild the filters from the domains.
+    private int rebuildInterval = DEFAULT_REBUILD_INTERVAL;
+
+    public boolean isEnable() {
+        return enable;
+    }
+
+    public void setEnable(boolean enable) {
+        this.enable = enable;
+    }
+
+    public int getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    public void setExpectedInsertions(int expectedInsertions) {
+        this.expectedInsertions = expectedInsertions;
+    }
+
+    public double getFalsePositiveProbability() {
+        return falsePositiveProbability;
+    }
+
+    public void setFalsePositiveProbability(double falsePositiveProbability) {
+        this.falsePositiveProbability = falsePositiveProbability;
+    }
+
+    public int getRebuildInterval() {
+        return rebuildInterval;
+    }
+
+    public void setRebuildInterval(int rebuildInterval) {
+        this.rebuildInterval = rebuildInterval;
+    }
+}
@@ -30,8 +30,8 @@ import org.wso2.carbon.caching.CarbonCachingService;
 import org.wso2.carbon.datasource.core.api.DataSourceService;
 import org.wso2.carbon.identity.common.util.IdentityUtilService;
 import org.wso2.carbon.identity.event.EventService;
-import org.wso2.carbon.identity.mgt.IdentityStore;
 import org.wso2.carbon.identity.mgt.RealmService;
+import org.wso2.carbon.identity.mgt.cache.InvalidationTransport;
 import org.wso2.carbon.identity.mgt.connector.CredentialStoreConnector;
 import org.wso2.carbon.identity.mgt.connector.CredentialStoreConnectorFactory;
 import org.wso2.carbon.identity.mgt.connector.IdentityStoreConnector;
@@ -47,16 +47,24 @@ import org.wso2.carbon.identity.mgt.exception.IdentityStoreConnectorException;
 import org.wso2.carbon.identity.mgt.exception.IdentityStoreException;
 import org.wso2.carbon.identity.mgt.exception.MetaClaimStoreException;
 import org.wso2.carbon.identity.mgt.exception.UniqueIdResolverException;
+import org.wso2.carbon.identity.mgt.impl.CacheWarmer;
+import org.wso2.carbon.identity.mgt.impl.CachingUniqueIdResolver;
 import org.wso2.carbon.identity.mgt.impl.Domain;
 import org.wso2.carbon.identity.mgt.impl.InterceptingIdentityStore;
+import org.wso2.carbon.identity.mgt.impl.InvalidationBroadcaster;
+import org.wso2.carbon.identity.mgt.impl.LoopbackInvalidationTransport;
 import org.wso2.carbon.identity.mgt.impl.RealmServiceImpl;
+import org.wso2.carbon.identity.mgt.impl.config.CacheInvalidationConfig;
 import org.wso2.carbon.identity.mgt.impl.config.DomainConfig;
 import org.wso2.carbon.identity.mgt.impl.config.StoreConfig;
 import org.wso2.carbon.identity.mgt.impl.internal.config.connector.ConnectorConfigReader;
 import org.wso2.carbon.identity.mgt.impl.internal.config.domain.DomainConfigReader;
 import org.wso2.carbon.identity.mgt.impl.internal.config.store.IdentityStoreConfigReader;
+import org.wso2.carbon.identity.mgt.impl.util.CacheHelper;
+import org.wso2.carbon.identity.mgt.impl.util.UniqueIdResolverConstants;
 import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolver;
 import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolverConfig;
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdGenerator;
 import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolverFactory;
 import org.wso2.carbon.kernel.startupresolver.RequiredCapabilityListener;
 
@@ -65,6 +73,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.cache.CacheManager;
 
 /**
  * OSGi service component which handle identity management.
@@ -87,6 +96,10 @@ public class IdentityMgtComponent implements RequiredCapabilityListener {
 
     private BundleContext bundleContext;
     private CarbonCachingService carbonCachingService;
+    private CacheWarmer cacheWarmer;
+    private InvalidationTransport invalidationTransport;
+    private InvalidationBroadcaster invalidationBroadcaster;
+    private InterceptingIdentityStore identityStore;
 
     @Activate
     public void registerCarbonIdentityMgtProvider(BundleContext bundleContext) {
@@ -96,9 +109,19 @@ public class IdentityMgtComponent implements RequiredCapabilityListener {
 
     @Deactivate
     public void unregisterCarbonIdentityMgtProvider(BundleContext bundleContext) {
+        if (cacheWarmer != null) {
+            cacheWarmer.cancel();
+            cacheWarmer.writeSnapshot();
+        }
+        stopCacheInvalidation();
         if (bundleContext != null && realmServiceRegistration != null) {
             bundleContext.ungetService(realmServiceRegistration.getReference());
         }
+        if (identityStore != null) {
+            identityStore.close();
+            identityStore = null;
+        }
+        CacheHelper.shutdownRefreshExecutor();
     }
 
     @Reference(
@@ -163,6 +186,24 @@ public class IdentityMgtComponent implements RequiredCapabilityListener {
         IdentityMgtDataHolder.getInstance().unregisterUniqueIdResolverFactory(uniqueIdResolverFactory);
     }
 
+    @Reference(
+            name = "UniqueIdGenerator",
+            service = UniqueIdGenerator.class,
+            cardinality = ReferenceCardinality.MULTIPLE,
+            policy = ReferencePolicy.DYNAMIC,
+            unbind = "unregisterUniqueIdGenerator"
+    )
+    protected void registerUniqueIdGenerator(UniqueIdGenerator uniqueIdGenerator, Map<String, String> properties) {
+
+        String generatorType = properties.get(CONNECTOR_TYPE);
+        IdentityMgtDataHolder.getInstance().registerUniqueIdGenerator(generatorType, uniqueIdGenerator);
+    }
+
+    protected void unregisterUniqueIdGenerator(UniqueIdGenerator uniqueIdGenerator) {
+
+        IdentityMgtDataHolder.getInstance().unregisterUniqueIdGenerator(uniqueIdGenerator);
+    }
+
     //TODO make this MANDATORY in M3 release
 //    @Reference(
 //            name = "AuthorizationStore",
@@ -221,6 +262,33 @@ public class IdentityMgtComponent implements RequiredCapabilityListener {
         this.carbonCachingService = cachingService;
     }
 
+    @Reference(
+            name = "InvalidationTransport",
+            service = InvalidationTransport.class,
+            cardinality = ReferenceCardinality.OPTIONAL,
+            policy = ReferencePolicy.DYNAMIC,
+            unbind = "unregisterInvalidationTransport"
+    )
+    protected synchronized void registerInvalidationTransport(InvalidationTransport transport,
+                                                              Map<String, ?> properties) {
+
+        this.invalidationTransport = transport;
+        if (invalidationBroadcaster != null) {
+            invalidationBroadcaster.setTransport(transport);
+        }
+    }
+
+    protected synchronized void unregisterInvalidationTransport(InvalidationTransport transport) {
+
+        if (this.invalidationTransport != transport) {
+            return;
+        }
+        this.invalidationTransport = null;
+        if (invalidationBroadcaster != null) {
+            invalidationBroadcaster.setTransport(new LoopbackInvalidationTransport());
+        }
+    }
+
 //    @Reference(
 //            name = "AuthorizationStoreConnectorFactory",
 //            service = AuthorizationStoreConnectorFactory.class,
@@ -298,13 +366,13 @@ public class IdentityMgtComponent implements RequiredCapabilityListener {
                     (storeConnectorConfigs);
 
             // Build Domains
-            List<Domain> domains = constructDomains(domainConfigs);
+            CacheManager cacheManager = carbonCachingService.getCachingProvider().getCacheManager();
+            List<Domain> domains = constructDomains(domainConfigs, cacheManager);
 
             // Get the store configurations
             StoreConfig storeConfig = IdentityStoreConfigReader.getStoreConfig();
 
-            IdentityStore identityStore = new InterceptingIdentityStore(storeConfig, domains,
-                    carbonCachingService.getCachingProvider().getCacheManager());
+            identityStore = new InterceptingIdentityStore(storeConfig, domains, cacheManager);
 
             // Register the realm service.
             RealmService realmService = new RealmServiceImpl(identityStore);
@@ -313,6 +381,21 @@ public class IdentityMgtComponent implements RequiredCapabilityListener {
             realmServiceRegistration = bundleContext.registerService(RealmService.class, realmService, null);
             log.info("Realm service registered successfully.");
 
+            // Warm up the caches in the background, the realm service is already usable.
+            if (storeConfig.getCacheWarmUpConfig().isEnable() && identityStore.getCacheBackedIdentityStore() != null) {
+                cacheWarmer = new CacheWarmer(identityStore.getCacheBackedIdentityStore(),
+                        storeConfig.getCacheWarmUpConfig());
+                cacheWarmer.start();
+            }
+
+            if (storeConfig.getCacheInvalidationConfig().isEnable() &&
+                    identityStore.getCacheBackedIdentityStore() != null) {
+                startCacheInvalidation(storeConfig.getCacheInvalidationConfig(), identityStore);
+            } else if (storeConfig.getUserExistenceFilterConfig().isEnable()) {
+                log.warn("The user existence filter is enabled without cache invalidation. The filter does not " +
+                        "know the users added on the other nodes, hence it is not used for existence checks.");
+            }
+
             log.info("Carbon-Identity-Mgt bundle activated successfully.");
 
         } catch (CredentialStoreConnectorException | IdentityStoreException e) {
@@ -330,7 +413,7 @@ public class IdentityMgtComponent implements RequiredCapabilityListener {
         }
     }
 
-    private List<Domain> constructDomains(List<DomainConfig> domainConfigs)
+    private List<Domain> constructDomains(List<DomainConfig> domainConfigs, CacheManager cacheManager)
             throws DomainException, DomainConfigException, MetaClaimStoreException, UniqueIdResolverException,
             IdentityStoreException, CredentialStoreConnectorException, IdentityStoreConnectorException {
 
@@ -358,11 +441,28 @@ public class IdentityMgtComponent implements RequiredCapabilityListener {
                 throw new UniqueIdResolverException(String.format("Failed to get unique id resolve instance for " +
                         "domain - %s", domainConfig.getName()));
             }
+            if (uniqueIdResolverConfig.getProperties() != null && Boolean.parseBoolean(uniqueIdResolverConfig
+                    .getProperties().get(UniqueIdResolverConstants.CACHE_ENABLED))) {
+                uniqueIdResolver = new CachingUniqueIdResolver(uniqueIdResolver, cacheManager,
+                        String.valueOf(domainConfig.getId()));
+            }
             uniqueIdResolver.init(uniqueIdResolverConfig);
 
             Domain domain = new Domain(domainConfig.getId(), domainConfig.getName(), domainConfig.getOrder(),
                     uniqueIdResolver);
 
+            String idGeneratorType = uniqueIdResolverConfig.getProperties() == null ? null :
+                    uniqueIdResolverConfig.getProperties().get(UniqueIdResolverConstants.ID_GENERATOR);
+            if (idGeneratorType != null) {
+                UniqueIdGenerator uniqueIdGenerator = IdentityMgtDataHolder.getInstance().getUniqueIdGeneratorMap()
+                        .get(idGeneratorType);
+                if (uniqueIdGenerator == null) {
+                    throw new UniqueIdResolverException(String.format("Invalid unique id generator %s for domain - " +
+                            "%s", idGeneratorType, domainConfig.getName()));
+                }
+                domain.setUniqueIdGenerator(uniqueIdGenerator);
+            }
+
             domain.setMetaClaimMappings(domainConfig.getMetaClaimMappings());
 
             if (!domainConfig.getIdentityStoreConnectorConfigs().isEmpty()) {
@@ -424,4 +524,29 @@ public class IdentityMgtComponent implements RequiredCapabilityListener {
 
         return domains;
     }
+
+    private synchronized void startCacheInvalidation(CacheInvalidationConfig invalidationConfig,
+                                                     InterceptingIdentityStore interceptingIdentityStore) {
+
+        InvalidationTransport transport = invalidationTransport;
+        if (transport == null) {
+            log.info("No cache invalidation transport is registered. Cache invalidations are only delivered " +
+                    "within this node.");
+            transport = new LoopbackInvalidationTransport();
+        }
+
+        invalidationBroadcaster = new InvalidationBroadcaster(transport, invalidationConfig,
+                interceptingIdentityStore::applyInvalidation);
+        interceptingIdentityStore.getCacheBackedIdentityStore().setInvalidationBroadcaster(invalidationBroadcaster);
+        invalidationBroadcaster.start();
+        interceptingIdentityStore.setInvalidationEnabled(true);
+    }
+
+    private synchronized void stopCacheInvalidation() {
+
+        if (invalidationBroadcaster != null) {
+            invalidationBroadcaster.close();
+            invalidationBroadcaster = null;
+        }
+    }
 }
@@ -24,6 +24,10 @@ import org.wso2.carbon.identity.mgt.RealmService;
 import org.wso2.carbon.identity.mgt.connector.CredentialStoreConnectorFactory;
 import org.wso2.carbon.identity.mgt.connector.IdentityStoreConnectorFactory;
 import org.wso2.carbon.identity.mgt.impl.JDBCUniqueIdResolverFactory;
+import org.wso2.carbon.identity.mgt.impl.RandomUniqueIdGenerator;
+import org.wso2.carbon.identity.mgt.impl.ShardedUniqueIdResolverFactory;
+import org.wso2.carbon.identity.mgt.impl.TimeOrderedUniqueIdGenerator;
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdGenerator;
 import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolverFactory;
 
 import java.util.HashMap;
@@ -31,6 +35,9 @@ import java.util.Map;
 import java.util.Optional;
 import javax.sql.DataSource;
 
+import static org.wso2.carbon.identity.mgt.impl.util.IdentityMgtConstants.RANDOM_UNIQUE_ID_GENERATOR_TYPE;
+import static org.wso2.carbon.identity.mgt.impl.util.IdentityMgtConstants.SHARDED_UNIQUE_ID_RESOLVER_TYPE;
+import static org.wso2.carbon.identity.mgt.impl.util.IdentityMgtConstants.TIME_ORDERED_UNIQUE_ID_GENERATOR_TYPE;
 import static org.wso2.carbon.identity.mgt.impl.util.IdentityMgtConstants.UNIQUE_ID_RESOLVER_TYPE;
 
 /**
@@ -58,11 +65,16 @@ public class IdentityMgtDataHolder {
 
     private Map<String, UniqueIdResolverFactory> uniqueIdResolverFactoryMap = new HashMap<>();
 
+    private Map<String, UniqueIdGenerator> uniqueIdGeneratorMap = new HashMap<>();
+
 //    private Map<String, AuthorizationStoreConnectorFactory> authorizationStoreConnectorFactoryMap = new HashMap<>();
 
     private IdentityMgtDataHolder() {
 
         uniqueIdResolverFactoryMap.put(UNIQUE_ID_RESOLVER_TYPE, new JDBCUniqueIdResolverFactory());
+        uniqueIdResolverFactoryMap.put(SHARDED_UNIQUE_ID_RESOLVER_TYPE, new ShardedUniqueIdResolverFactory());
+        uniqueIdGeneratorMap.put(RANDOM_UNIQUE_ID_GENERATOR_TYPE, new RandomUniqueIdGenerator());
+        uniqueIdGeneratorMap.put(TIME_ORDERED_UNIQUE_ID_GENERATOR_TYPE, new TimeOrderedUniqueIdGenerator());
     }
 
     public static IdentityMgtDataHolder getInstance() {
@@ -116,6 +128,10 @@ public class IdentityMgtDataHolder {
         return (DataSource) dataSourceService.getDataSource(dataSourceName);
     }
 
+    public DataSourceService getDataSourceService() {
+        return dataSourceService;
+    }
+
     public void setDataSourceService(DataSourceService dataSourceService) {
         this.dataSourceService = dataSourceService;
     }
@@ -190,6 +206,28 @@ public class IdentityMgtDataHolder {
         }
     }
 
+    void registerUniqueIdGenerator(String key, UniqueIdGenerator uniqueIdGenerator) {
+
+        this.uniqueIdGeneratorMap.put(key, uniqueIdGenerator);
+    }
+
+    public Map<String, UniqueIdGenerator> getUniqueIdGeneratorMap() {
+        return uniqueIdGeneratorMap;
+    }
+
+    public void unregisterUniqueIdGenerator(UniqueIdGenerator uniqueIdGenerator) {
+
+        if (uniqueIdGenerator != null && !uniqueIdGeneratorMap.isEmpty()) {
+            Optional<String> generatorId = uniqueIdGeneratorMap.entrySet().stream()
+                    .filter(t -> t.getValue().equals(uniqueIdGenerator))
+                    .map(Map.Entry::getKey)
+                    .findFirst();
+            if (generatorId.isPresent()) {
+                uniqueIdGeneratorMap.remove(generatorId.get());
+            }
+        }
+    }
+
 
     /**
      * Register an instance of IdentityUtilService.
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.impl.internal.config.store;
+
+/**
+ * Authentication Config Entry.
+ */
+public class AuthenticationConfigEntry {
+
+    private boolean parallel;
+
+    private int threadPoolSize;
+
+    private int domainTimeout;
+
+    private int routingIndexSize;
+
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public int getThreadPoolSize() {
+        return threadPoolSize;
+    }
+
+    public void setThreadPoolSize(int threadPoolSize) {
+        this.threadPoolSize = threadPoolSize;
+    }
+
+    public int getDomainTimeout() {
+        return domainTimeout;
+    }
+
+    public void setDomainTimeout(int domainTimeout) {
+        this.domainTimeout = domainTimeout;
+    }
+
+    public int getRoutingIndexSize() {
+        return routingIndexSize;
+    }
+
+    public void setRoutingIndexSize(int routingIndexSize) {
+        this.routingIndexSize = routingIndexSize;
+    }
+}
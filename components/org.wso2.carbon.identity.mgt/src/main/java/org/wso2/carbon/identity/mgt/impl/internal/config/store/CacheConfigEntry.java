@@ -31,6 +31,10 @@ public class CacheConfigEntry {
 
     private boolean statisticsEnabled;
 
+    private boolean refreshAhead;
+
+    private int maxStaleTime;
+
     public String getName() {
         return name;
     }
@@ -70,4 +74,20 @@ public class CacheConfigEntry {
     public void setStatisticsEnabled(boolean statisticsEnabled) {
         this.statisticsEnabled = statisticsEnabled;
     }
+
+    public boolean isRefreshAhead() {
+        return refreshAhead;
+    }
+
+    public void setRefreshAhead(boolean refreshAhead) {
+        this.refreshAhead = refreshAhead;
+    }
+
+    public int getMaxStaleTime() {
+        return maxStaleTime;
+    }
+
+    public void setMaxStaleTime(int maxStaleTime) {
+        this.maxStaleTime = maxStaleTime;
+    }
 }
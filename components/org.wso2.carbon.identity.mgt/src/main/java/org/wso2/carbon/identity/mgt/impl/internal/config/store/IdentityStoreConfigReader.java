@@ -17,8 +17,12 @@
 package org.wso2.carbon.identity.mgt.impl.internal.config.store;
 
 import org.wso2.carbon.identity.mgt.exception.CarbonIdentityMgtConfigException;
+import org.wso2.carbon.identity.mgt.impl.config.AuthenticationConfig;
 import org.wso2.carbon.identity.mgt.impl.config.CacheConfig;
+import org.wso2.carbon.identity.mgt.impl.config.CacheInvalidationConfig;
+import org.wso2.carbon.identity.mgt.impl.config.CacheWarmUpConfig;
 import org.wso2.carbon.identity.mgt.impl.config.StoreConfig;
+import org.wso2.carbon.identity.mgt.impl.config.UserExistenceFilterConfig;
 import org.wso2.carbon.identity.mgt.impl.util.FileUtil;
 import org.wso2.carbon.identity.mgt.impl.util.IdentityMgtConstants;
 import org.wso2.carbon.kernel.utils.StringUtils;
@@ -53,6 +57,24 @@ public class IdentityStoreConfigReader {
         StoreConfigFile storeConfigFile = buildStoreConfig();
         StoreConfig storeConfig = new StoreConfig();
 
+        if (storeConfigFile.getAuthentication() != null) {
+            storeConfig.setAuthenticationConfig(getAuthenticationConfig(storeConfigFile.getAuthentication()));
+        }
+
+        if (storeConfigFile.getUserExistenceFilter() != null) {
+            storeConfig.setUserExistenceFilterConfig(getUserExistenceFilterConfig(storeConfigFile
+                    .getUserExistenceFilter()));
+        }
+
+        if (storeConfigFile.getCacheWarmUp() != null) {
+            storeConfig.setCacheWarmUpConfig(getCacheWarmUpConfig(storeConfigFile.getCacheWarmUp()));
+        }
+
+        if (storeConfigFile.getCacheInvalidation() != null) {
+            storeConfig.setCacheInvalidationConfig(
+                    getCacheInvalidationConfig(storeConfigFile.getCacheInvalidation()));
+        }
+
         if (!storeConfigFile.isEnableCache()) {
             storeConfig.setEnableCache(false);
             return storeConfig;
@@ -119,9 +141,100 @@ public class IdentityStoreConfigReader {
                     cacheConfig.setEnable(cacheConfigEntry.isEnableCache());
                     cacheConfig.setExpireTime(cacheConfigEntry.getExpireTime());
                     cacheConfig.setMaxCapacity(cacheConfigEntry.getMaxCapacity());
-                    cacheConfig.setEnable(cacheConfigEntry.isStatisticsEnabled());
+                    cacheConfig.setStatisticsEnabled(cacheConfigEntry.isStatisticsEnabled());
+                    cacheConfig.setRefreshAhead(cacheConfigEntry.isRefreshAhead());
+                    cacheConfig.setMaxStaleTime(cacheConfigEntry.getMaxStaleTime());
                     cacheConfigMap.put(cacheConfigEntry.getName(), cacheConfig);
                 });
         return cacheConfigMap;
     }
+
+    /**
+     * Get authentication config of the identity store.
+     *
+     * @param authenticationConfigEntry Authentication config entry.
+     * @return AuthenticationConfig with defaults for the values not provided.
+     */
+    private static AuthenticationConfig getAuthenticationConfig(AuthenticationConfigEntry authenticationConfigEntry) {
+
+        AuthenticationConfig authenticationConfig = new AuthenticationConfig();
+        authenticationConfig.setParallel(authenticationConfigEntry.isParallel());
+        if (authenticationConfigEntry.getThreadPoolSize() > 0) {
+            authenticationConfig.setThreadPoolSize(authenticationConfigEntry.getThreadPoolSize());
+        }
+        if (authenticationConfigEntry.getDomainTimeout() > 0) {
+            authenticationConfig.setDomainTimeout(authenticationConfigEntry.getDomainTimeout());
+        }
+        authenticationConfig.setRoutingIndexSize(authenticationConfigEntry.getRoutingIndexSize());
+        return authenticationConfig;
+    }
+
+    /**
+     * Get user existence filter config of the identity store.
+     *
+     * @param filterConfigEntry User existence filter config entry.
+     * @return UserExistenceFilterConfig with defaults for the values not provided.
+     */
+    private static UserExistenceFilterConfig getUserExistenceFilterConfig(
+            UserExistenceFilterConfigEntry filterConfigEntry) {
+
+        UserExistenceFilterConfig filterConfig = new UserExistenceFilterConfig();
+        filterConfig.setEnable(filterConfigEntry.isEnable());
+        if (filterConfigEntry.getExpectedInsertions() > 0) {
+            filterConfig.setExpectedInsertions(filterConfigEntry.getExpectedInsertions());
+        }
+        double falsePositiveProbability = filterConfigEntry.getFalsePositiveProbability();
+        if (falsePositiveProbability > 0 && falsePositiveProbability < 1) {
+            filterConfig.setFalsePositiveProbability(falsePositiveProbability);
+        }
+        if (filterConfigEntry.getRebuildInterval() > 0) {
+            filterConfig.setRebuildInterval(filterConfigEntry.getRebuildInterval());
+        }
+        return filterConfig;
+    }
+
+    /**
+     * Get cache warm up config of the identity store.
+     *
+     * @param warmUpConfigEntry Cache warm up config entry.
+     * @return CacheWarmUpConfig with defaults for the values not provided.
+     */
+    private static CacheWarmUpConfig getCacheWarmUpConfig(CacheWarmUpConfigEntry warmUpConfigEntry) {
+
+        CacheWarmUpConfig warmUpConfig = new CacheWarmUpConfig();
+        warmUpConfig.setEnable(warmUpConfigEntry.isEnable());
+        if (warmUpConfigEntry.getMaxUsers() > 0) {
+            warmUpConfig.setMaxUsers(warmUpConfigEntry.getMaxUsers());
+        }
+        if (warmUpConfigEntry.getBatchSize() > 0) {
+            warmUpConfig.setBatchSize(warmUpConfigEntry.getBatchSize());
+        }
+        if (warmUpConfigEntry.getParallelism() > 0) {
+            warmUpConfig.setParallelism(warmUpConfigEntry.getParallelism());
+        }
+        if (warmUpConfigEntry.getSnapshotFile() != null && !warmUpConfigEntry.getSnapshotFile().trim().isEmpty()) {
+            warmUpConfig.setSnapshotFile(warmUpConfigEntry.getSnapshotFile().trim());
+        }
+        return warmUpConfig;
+    }
+
+    /**
+     * Get cache invalidation config of the identity store.
+     *
+     * @param invalidationConfigEntry Cache invalidation config entry.
+     * @return CacheInvalidationConfig with defaults for the values not provided.
+     */
+    private static CacheInvalidationConfig getCacheInvalidationConfig(
+            CacheInvalidationConfigEntry invalidationConfigEntry) {
+
+        CacheInvalidationConfig invalidationConfig = new CacheInvalidationConfig();
+        invalidationConfig.setEnable(invalidationConfigEntry.isEnable());
+        if (invalidationConfigEntry.getBatchInterval() > 0) {
+            invalidationConfig.setBatchInterval(invalidationConfigEntry.getBatchInterval());
+        }
+        if (invalidationConfigEntry.getMaxBatchSize() > 0) {
+            invalidationConfig.setMaxBatchSize(invalidationConfigEntry.getMaxBatchSize());
+        }
+        return invalidationConfig;
+    }
 }
@@ -29,6 +29,14 @@ public class StoreConfigFile {
 
     private StoreConfigEntry credentialStore;
 
+    private AuthenticationConfigEntry authentication;
+
+    private UserExistenceFilterConfigEntry userExistenceFilter;
+
+    private CacheWarmUpConfigEntry cacheWarmUp;
+
+    private CacheInvalidationConfigEntry cacheInvalidation;
+
     public boolean isEnableCache() {
         return enableCache;
     }
@@ -52,5 +60,36 @@ public class StoreConfigFile {
     public void setCredentialStore(StoreConfigEntry credentialStore) {
         this.credentialStore = credentialStore;
     }
-}
 
+    public AuthenticationConfigEntry getAuthentication() {
+        return authentication;
+    }
+
+    public void setAuthentication(AuthenticationConfigEntry authentication) {
+        this.authentication = authentication;
+    }
+
+    public UserExistenceFilterConfigEntry getUserExistenceFilter() {
+        return userExistenceFilter;
+    }
+
+    public void setUserExistenceFilter(UserExistenceFilterConfigEntry userExistenceFilter) {
+        this.userExistenceFilter = userExistenceFilter;
+    }
+
+    public CacheWarmUpConfigEntry getCacheWarmUp() {
+        return cacheWarmUp;
+    }
+
+    public void setCacheWarmUp(CacheWarmUpConfigEntry cacheWarmUp) {
+        this.cacheWarmUp = cacheWarmUp;
+    }
+
+    public CacheInvalidationConfigEntry getCacheInvalidation() {
+        return cacheInvalidation;
+    }
+
+    public void setCacheInvalidation(CacheInvalidationConfigEntry cacheInvalidation) {
+        this.cacheInvalidation = cacheInvalidation;
+    }
+}
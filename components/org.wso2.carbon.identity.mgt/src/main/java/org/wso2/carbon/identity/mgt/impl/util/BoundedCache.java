@@ -0,0 +1,482 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.impl.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.cache.Cache;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Size bounded view of a cache. Entries are stored and expired by the underlying cache, while the
+ * {@link TinyLfuPolicy} decides which entries to keep when the maximum capacity is reached.
+ * <p>
+ * Reads are recorded through a lossy {@link ReadBuffer}, which is drained into the policy under the policy lock by
+ * whichever thread finds it full, or by the next write. Reads therefore never wait for the lock.
+ * <p>
+ * Hit, miss and eviction statistics are collected and exposed as an MXBean if statistics are enabled for the cache.
+ * <p>
+ * If refresh ahead is enabled, entries read through {@link #get(Object, Callable)} are reloaded in the background once
+ * they reach {@link #REFRESH_AHEAD_RATIO} of the expire time, while the current value keeps being served. Expired
+ * entries are served for at most the max stale time.
+ * <p>
+ * Values loaded outside the cache should be put with {@link #putIfUnchanged(Object, Object, long)}, so that a load
+ * which started before a removal of the key cannot put back the removed value.
+ *
+ * @param <K> Type of the key.
+ * @param <V> Type of the value.
+ */
+public class BoundedCache<K, V> implements BoundedCacheMXBean {
+
+    private static final Logger log = LoggerFactory.getLogger(BoundedCache.class);
+
+    private static final String OBJECT_NAME = "org.wso2.carbon.identity.mgt:type=CacheStatistics,name=";
+
+    /**
+     * Fraction of the expire time after which an entry is refreshed.
+     */
+    public static final double REFRESH_AHEAD_RATIO = 0.75;
+
+    private static final int GENERATION_STRIPES = 64;
+
+    private final Cache<K, V> cache;
+
+    private final TinyLfuPolicy<K> policy;
+
+    private final ReadBuffer<K> readBuffer = new ReadBuffer<>();
+
+    // Guards the policy.
+    private final ReentrantLock policyLock = new ReentrantLock();
+
+    private final int maxCapacity;
+
+    private final boolean statisticsEnabled;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private final long refreshAfterNanos;
+
+    private final long expireNanos;
+
+    private final long maxAgeNanos;
+
+    private final Map<K, Long> writeTimes = new ConcurrentHashMap<>();
+
+    private final Map<K, Object> refreshes = new ConcurrentHashMap<>();
+
+    private final AtomicLong refreshCount = new AtomicLong();
+
+    private final AtomicLong refreshFailureCount = new AtomicLong();
+
+    private final AtomicLong staleHitCount = new AtomicLong();
+
+    // Removal count of the keys of each stripe. Keys sharing a stripe only cause a racing load to be not cached.
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    public BoundedCache(Cache<K, V> cache, int maxCapacity, boolean statisticsEnabled) {
+
+        this(cache, maxCapacity, statisticsEnabled, 0, 0);
+    }
+
+    /**
+     * Create a bounded cache which refreshes entries ahead of expiry.
+     *
+     * @param cache             Underlying cache.
+     * @param maxCapacity       Maximum number of entries.
+     * @param statisticsEnabled Whether to expose the statistics.
+     * @param expireTime        Expire time of the entries in milliseconds or 0 to disable refresh ahead.
+     * @param maxStaleTime      Time in milliseconds an expired entry can be served while it is being refreshed.
+     */
+    public BoundedCache(Cache<K, V> cache, int maxCapacity, boolean statisticsEnabled, long expireTime,
+                        long maxStaleTime) {
+
+        this.cache = cache;
+        this.policy = new TinyLfuPolicy<>(maxCapacity);
+        this.maxCapacity = maxCapacity;
+        this.statisticsEnabled = statisticsEnabled;
+        this.expireNanos = TimeUnit.MILLISECONDS.toNanos(expireTime);
+        this.refreshAfterNanos = (long) (expireNanos * REFRESH_AHEAD_RATIO);
+        this.maxAgeNanos = expireNanos + TimeUnit.MILLISECONDS.toNanos(maxStaleTime);
+
+        if (statisticsEnabled) {
+            registerMBean();
+        }
+    }
+
+    /**
+     * Get the value mapped to the key.
+     *
+     * @param key Key.
+     * @return Value or null if not available in the cache.
+     */
+    public V get(K key) {
+
+        V value = cache.get(key);
+        if (value != null) {
+            if (readBuffer.add(key)) {
+                tryDrainReadBuffer();
+            }
+        } else if (policyLock.tryLock()) {
+            // The entry might have been expired by the underlying cache. If the lock is busy the key is left to be
+            // evicted by the policy instead.
+            try {
+                drainReadBuffer();
+                policy.recordRemoval(key);
+            } finally {
+                policyLock.unlock();
+            }
+        }
+        if (value == null && isRefreshAhead()) {
+            writeTimes.remove(key);
+        }
+
+        if (statisticsEnabled) {
+            if (value != null) {
+                hitCount.incrementAndGet();
+            } else {
+                missCount.incrementAndGet();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Get the value mapped to the key, refreshing it in the background with the given loader if it is close to
+     * expiry. Behaves the same as {@link #get(Object)} if refresh ahead is disabled.
+     *
+     * @param key    Key.
+     * @param loader Loader of the current value of the key. Should return null if the key no longer has a value.
+     * @return Value or null if not available in the cache.
+     */
+    public V get(K key, Callable<V> loader) {
+
+        V value = get(key);
+        if (value == null || !isRefreshAhead()) {
+            return value;
+        }
+
+        Long writeTime = writeTimes.get(key);
+        if (writeTime == null) {
+            return value;
+        }
+
+        long age = System.nanoTime() - writeTime;
+        if (age >= maxAgeNanos) {
+            // Never serve entries beyond the staleness bound, even if the underlying cache is yet to expire them.
+            remove(key);
+            return null;
+        }
+        if (age >= expireNanos) {
+            staleHitCount.incrementAndGet();
+        }
+        if (age >= refreshAfterNanos) {
+            refreshAsync(key, loader);
+        }
+        return value;
+    }
+
+    /**
+     * Map the value to the key. The entry is only kept if admitted by the eviction policy.
+     *
+     * @param key   Key.
+     * @param value Value.
+     */
+    public void put(K key, V value) {
+
+        cache.put(key, value);
+        if (isRefreshAhead()) {
+            writeTimes.put(key, System.nanoTime());
+        }
+
+        List<K> evictedKeys;
+        policyLock.lock();
+        try {
+            drainReadBuffer();
+            evictedKeys = policy.recordWrite(key);
+        } finally {
+            policyLock.unlock();
+        }
+        for (K evictedKey : evictedKeys) {
+            cache.remove(evictedKey);
+            writeTimes.remove(evictedKey);
+        }
+        if (statisticsEnabled && !evictedKeys.isEmpty()) {
+            evictionCount.addAndGet(evictedKeys.size());
+        }
+    }
+
+    /**
+     * Get the generation of the key. The generation changes whenever the key is removed, hence it should be taken
+     * before loading the value of the key and passed to {@link #putIfUnchanged(Object, Object, long)}.
+     *
+     * @param key Key.
+     * @return Generation of the key.
+     */
+    public long getGeneration(K key) {
+        return generations.get(stripe(key));
+    }
+
+    /**
+     * Map the value to the key, unless the key was removed after the given generation was taken.
+     *
+     * @param key        Key.
+     * @param value      Value.
+     * @param generation Generation of the key taken before the value was loaded.
+     * @return True if the value was put.
+     */
+    public boolean putIfUnchanged(K key, V value, long generation) {
+
+        int stripe = stripe(key);
+        if (generations.get(stripe) != generation) {
+            return false;
+        }
+
+        put(key, value);
+
+        // A removal after this check deletes the value itself, while a removal before it is undone here.
+        if (generations.get(stripe) != generation) {
+            discard(key);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remove the value mapped to the key.
+     *
+     * @param key Key.
+     */
+    public void remove(K key) {
+
+        // Advance the generation and cancel the refresh in progress first, so that neither a load nor a refresh can
+        // put back the value being removed.
+        generations.incrementAndGet(stripe(key));
+        refreshes.remove(key);
+        discard(key);
+    }
+
+    /**
+     * Remove all the entries of the cache.
+     */
+    public void removeAll() {
+
+        for (int i = 0; i < GENERATION_STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        refreshes.clear();
+        cache.removeAll();
+        writeTimes.clear();
+        policyLock.lock();
+        try {
+            drainReadBuffer();
+            policy.clear();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    public String getName() {
+        return cache.getName();
+    }
+
+    /**
+     * Get the keys of the most recently used entries.
+     *
+     * @param limit Maximum number of keys to return.
+     * @return Keys, most recently used first.
+     */
+    public List<K> getRecentKeys(int limit) {
+
+        policyLock.lock();
+        try {
+            drainReadBuffer();
+            return policy.recentKeys(limit);
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public double getHitRate() {
+
+        long requestCount = hitCount.get() + missCount.get();
+        return requestCount == 0 ? 0 : (double) hitCount.get() / requestCount;
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    @Override
+    public int getSize() {
+
+        policyLock.lock();
+        try {
+            return policy.size();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    @Override
+    public int getMaxCapacity() {
+        return maxCapacity;
+    }
+
+    @Override
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    @Override
+    public long getRefreshFailureCount() {
+        return refreshFailureCount.get();
+    }
+
+    @Override
+    public long getStaleHitCount() {
+        return staleHitCount.get();
+    }
+
+    private boolean isRefreshAhead() {
+        return expireNanos > 0;
+    }
+
+    private void refreshAsync(K key, Callable<V> loader) {
+
+        Object refresh = new Object();
+        if (refreshes.putIfAbsent(key, refresh) != null) {
+            return;
+        }
+
+        try {
+            CacheHelper.getRefreshExecutor().execute(() -> refresh(key, loader, refresh));
+        } catch (RejectedExecutionException e) {
+            refreshes.remove(key, refresh);
+            refreshFailureCount.incrementAndGet();
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Refresh of an entry of cache - %s was rejected.", cache.getName()), e);
+            }
+        }
+    }
+
+    private void refresh(K key, Callable<V> loader, Object refresh) {
+
+        V value;
+        try {
+            value = loader.call();
+        } catch (Exception e) {
+            refreshes.remove(key, refresh);
+            refreshFailureCount.incrementAndGet();
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Failed to refresh an entry of cache - %s.", cache.getName()), e);
+            }
+            return;
+        }
+
+        // The refresh is discarded if the entry was removed while it was being loaded.
+        refreshes.computeIfPresent(key, (k, inProgress) -> {
+            if (inProgress == refresh) {
+                if (value != null) {
+                    put(key, value);
+                } else {
+                    discard(key);
+                }
+                refreshCount.incrementAndGet();
+                return null;
+            }
+            return inProgress;
+        });
+    }
+
+    private void discard(K key) {
+
+        cache.remove(key);
+        writeTimes.remove(key);
+        policyLock.lock();
+        try {
+            drainReadBuffer();
+            policy.recordRemoval(key);
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private void tryDrainReadBuffer() {
+
+        if (policyLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                policyLock.unlock();
+            }
+        }
+    }
+
+    // Should be called while holding the policy lock.
+    private void drainReadBuffer() {
+        readBuffer.drain(policy::recordAccess);
+    }
+
+    private static int stripe(Object key) {
+
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+
+    private void registerMBean() {
+
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(OBJECT_NAME + ObjectName.quote(cache.getName()));
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(this, objectName);
+        } catch (JMException e) {
+            log.warn(String.format("Failed to register the statistics MBean of cache - %s", cache.getName()), e);
+        }
+    }
+}
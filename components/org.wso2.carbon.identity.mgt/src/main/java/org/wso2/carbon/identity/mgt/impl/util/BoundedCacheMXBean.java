@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.impl.util;
+
+/**
+ * Management interface exposing the statistics of a bounded cache.
+ */
+public interface BoundedCacheMXBean {
+
+    /**
+     * Get the number of reads served from the cache.
+     *
+     * @return Number of hits.
+     */
+    long getHitCount();
+
+    /**
+     * Get the number of reads not served from the cache.
+     *
+     * @return Number of misses.
+     */
+    long getMissCount();
+
+    /**
+     * Get the ratio of hits to all the reads.
+     *
+     * @return Hit rate.
+     */
+    double getHitRate();
+
+    /**
+     * Get the number of entries evicted or not admitted to stay within the maximum capacity.
+     *
+     * @return Number of evictions.
+     */
+    long getEvictionCount();
+
+    /**
+     * Get the number of entries tracked by the cache.
+     *
+     * @return Number of entries.
+     */
+    int getSize();
+
+    /**
+     * Get the maximum number of entries of the cache.
+     *
+     * @return Maximum capacity.
+     */
+    int getMaxCapacity();
+
+    /**
+     * Get the number of entries refreshed in the background.
+     *
+     * @return Number of refreshes.
+     */
+    long getRefreshCount();
+
+    /**
+     * Get the number of background refreshes that failed or were rejected.
+     *
+     * @return Number of failed refreshes.
+     */
+    long getRefreshFailureCount();
+
+    /**
+     * Get the number of reads served with an expired entry while it was being refreshed.
+     *
+     * @return Number of stale hits.
+     */
+    long getStaleHitCount();
+}
@@ -19,24 +19,40 @@ package org.wso2.carbon.identity.mgt.impl.util;
 import org.wso2.carbon.identity.mgt.impl.config.CacheConfig;
 
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.cache.Cache;
 import javax.cache.CacheManager;
 import javax.cache.configuration.MutableConfiguration;
 import javax.cache.expiry.AccessedExpiryPolicy;
 import javax.cache.expiry.Duration;
+import javax.cache.expiry.ModifiedExpiryPolicy;
 
 /**
  * Helper class for cache handling.
  */
 public class CacheHelper {
 
+    public static final int MIN_EXPIRE_TIME = 1;
     public static final int LOW_EXPIRE_TIME = 5;
     public static final int MEDIUM_EXPIRE_TIME = 15;
     public static final int HIGH_EXPIRE_TIME = 45;
 
+    public static final int DEFAULT_MAX_CAPACITY = 10000;
+
+    public static final int DEFAULT_MAX_STALE_TIME = 1;
+
+    private static final int REFRESH_POOL_SIZE = 2;
+
+    private static final int REFRESH_QUEUE_SIZE = 1000;
+
+    private static volatile ExecutorService refreshExecutor;
+
     /**
-     * Create a new cache from the given cache manager.
+     * Create a new size bounded cache from the given cache manager.
      *
      * @param cacheName         Name of the cache.
      * @param keyClass          Type of the key class.
@@ -46,14 +62,20 @@ public class CacheHelper {
      * @param cacheManager      Cache manager to use to create the cache.
      * @param <K>               Type of the Key.
      * @param <V>               Type of the Value.
-     * @return Created cache.
+     * @return Created cache bounded to the max capacity in the config or {@link #DEFAULT_MAX_CAPACITY}.
      */
-    public static <K, V> Cache<K, V> createCache(String cacheName, Class<K> keyClass, Class<V> valueClass,
+    public static <K, V> BoundedCache<K, V> createCache(String cacheName, Class<K> keyClass, Class<V> valueClass,
                                                  int defaultExpiryTime, Map<String, CacheConfig> cacheConfigMap,
                                                  CacheManager cacheManager) {
 
-        Duration cacheExpiry = new Duration(TimeUnit.MINUTES, getExpireTime(cacheConfigMap, cacheName,
-                defaultExpiryTime));
+        int expireTime = getExpireTime(cacheConfigMap, cacheName, defaultExpiryTime);
+        CacheConfig cacheConfig = cacheConfigMap.get(cacheName);
+        boolean refreshAhead = cacheConfig != null && cacheConfig.isRefreshAhead();
+        int maxStaleTime = 0;
+        if (refreshAhead) {
+            maxStaleTime = cacheConfig.getMaxStaleTime() > 0 ? cacheConfig.getMaxStaleTime() :
+                    DEFAULT_MAX_STALE_TIME;
+        }
 
         boolean isStatisticsEnabled = false;
 
@@ -64,10 +86,62 @@ public class CacheHelper {
         MutableConfiguration<K, V> configuration = new MutableConfiguration<>();
         configuration.setStoreByValue(false)
                 .setTypes(keyClass, valueClass)
-                .setExpiryPolicyFactory(AccessedExpiryPolicy.factoryOf(cacheExpiry))
                 .setStatisticsEnabled(isStatisticsEnabled);
+        if (refreshAhead) {
+            // Entries are refreshed by the bounded cache, the underlying cache only enforces the staleness bound. Each
+            // refresh is an update of the entry, which restarts its expiry.
+            configuration.setExpiryPolicyFactory(ModifiedExpiryPolicy.factoryOf(new Duration(TimeUnit.MINUTES,
+                    expireTime + maxStaleTime)));
+        } else {
+            configuration.setExpiryPolicyFactory(AccessedExpiryPolicy.factoryOf(new Duration(TimeUnit.MINUTES,
+                    expireTime)));
+        }
+
+        Cache<K, V> cache = cacheManager.createCache(cacheName, configuration);
+        if (refreshAhead) {
+            return new BoundedCache<>(cache, getMaxCapacity(cacheConfigMap, cacheName), isStatisticsEnabled,
+                    TimeUnit.MINUTES.toMillis(expireTime), TimeUnit.MINUTES.toMillis(maxStaleTime));
+        }
+        return new BoundedCache<>(cache, getMaxCapacity(cacheConfigMap, cacheName), isStatisticsEnabled);
+    }
+
+    /**
+     * Get the executor used to refresh cache entries in the background. The executor has a bounded queue and rejects
+     * refreshes once the queue is full.
+     *
+     * @return Refresh executor shared by all the caches.
+     */
+    public static ExecutorService getRefreshExecutor() {
 
-        return cacheManager.createCache(cacheName, configuration);
+        if (refreshExecutor == null) {
+            synchronized (CacheHelper.class) {
+                if (refreshExecutor == null) {
+                    AtomicInteger threadCount = new AtomicInteger();
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(REFRESH_POOL_SIZE, REFRESH_POOL_SIZE, 60,
+                            TimeUnit.SECONDS, new ArrayBlockingQueue<>(REFRESH_QUEUE_SIZE), runnable -> {
+                        Thread thread = new Thread(runnable, "identity-mgt-cache-refresh-" +
+                                threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    executor.allowCoreThreadTimeOut(true);
+                    refreshExecutor = executor;
+                }
+            }
+        }
+        return refreshExecutor;
+    }
+
+    /**
+     * Shut down the executor used to refresh cache entries. Pending refreshes are dropped and a new executor is
+     * created for the next refresh.
+     */
+    public static synchronized void shutdownRefreshExecutor() {
+
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+            refreshExecutor = null;
+        }
     }
 
     /**
@@ -102,4 +176,19 @@ public class CacheHelper {
                 cacheConfigs.get(cacheName).getExpireTime() == 0 ? defaultExpireTime :
                 cacheConfigs.get(cacheName).getExpireTime();
     }
+
+    /**
+     * Get the max capacity if available for given cache. Default will be returned if there is no max capacity present
+     * in the config.
+     *
+     * @param cacheConfigs Map of cache configs.
+     * @param cacheName    Name of the cache.
+     * @return Max capacity in the config or {@link #DEFAULT_MAX_CAPACITY}.
+     */
+    public static int getMaxCapacity(Map<String, CacheConfig> cacheConfigs, String cacheName) {
+
+        return cacheConfigs.get(cacheName) == null ||
+                cacheConfigs.get(cacheName).getMaxCapacity() <= 0 ? DEFAULT_MAX_CAPACITY :
+                cacheConfigs.get(cacheName).getMaxCapacity();
+    }
 }
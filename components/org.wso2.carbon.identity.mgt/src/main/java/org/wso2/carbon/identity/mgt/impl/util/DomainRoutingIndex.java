@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.impl.util;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded, least recently used index of unique claim values to the unique id of the user owning the value. Used to
+ * route requests without a domain hint straight to the domain of the user instead of querying every domain.
+ * <p>
+ * The index is only a hint. A missing entry means the owning domain is not known, and an entry can be stale if the
+ * claim value was changed directly in the connector, hence callers must verify the result against the domain.
+ */
+public class DomainRoutingIndex {
+
+    private final Map<String, String> claimToUser;
+
+    private final Map<String, Set<String>> userToClaims = new HashMap<>();
+
+    public DomainRoutingIndex(int maxSize) {
+
+        this.claimToUser = new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+
+                if (size() <= maxSize) {
+                    return false;
+                }
+                removeReverseEntry(eldest.getValue(), eldest.getKey());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Get the unique id of the user owning the given claim value.
+     *
+     * @param claimUri   Claim URI.
+     * @param claimValue Claim value.
+     * @return Unique user id or null if the owner is not known.
+     */
+    public synchronized String get(String claimUri, String claimValue) {
+        return claimToUser.get(getKey(claimUri, claimValue));
+    }
+
+    /**
+     * Remember the owner of the given claim value.
+     *
+     * @param claimUri     Claim URI.
+     * @param claimValue   Claim value.
+     * @param uniqueUserId Unique id of the user owning the claim value.
+     */
+    public synchronized void put(String claimUri, String claimValue, String uniqueUserId) {
+
+        String key = getKey(claimUri, claimValue);
+        String previousUserId = claimToUser.put(key, uniqueUserId);
+        if (previousUserId != null && !previousUserId.equals(uniqueUserId)) {
+            removeReverseEntry(previousUserId, key);
+        }
+        userToClaims.computeIfAbsent(uniqueUserId, userId -> new HashSet<>()).add(key);
+    }
+
+    /**
+     * Forget the owner of the given claim value.
+     *
+     * @param claimUri   Claim URI.
+     * @param claimValue Claim value.
+     */
+    public synchronized void remove(String claimUri, String claimValue) {
+
+        String key = getKey(claimUri, claimValue);
+        String uniqueUserId = claimToUser.remove(key);
+        if (uniqueUserId != null) {
+            removeReverseEntry(uniqueUserId, key);
+        }
+    }
+
+    /**
+     * Forget all the claim values owned by the given user.
+     *
+     * @param uniqueUserId Unique user id.
+     */
+    public synchronized void removeUser(String uniqueUserId) {
+
+        Set<String> keys = userToClaims.remove(uniqueUserId);
+        if (keys != null) {
+            keys.forEach(claimToUser::remove);
+        }
+    }
+
+    private void removeReverseEntry(String uniqueUserId, String key) {
+
+        Set<String> keys = userToClaims.get(uniqueUserId);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                userToClaims.remove(uniqueUserId);
+            }
+        }
+    }
+
+    private static String getKey(String claimUri, String claimValue) {
+        return claimUri + '\u0000' + claimValue;
+    }
+}
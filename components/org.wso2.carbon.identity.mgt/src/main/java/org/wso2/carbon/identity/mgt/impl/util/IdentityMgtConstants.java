@@ -41,6 +41,12 @@ public class IdentityMgtConstants {
 
     public static final String UNIQUE_ID_RESOLVER_TYPE = "JDBCUniqueIdResolver";
 
+    public static final String SHARDED_UNIQUE_ID_RESOLVER_TYPE = "ShardedUniqueIdResolver";
+
+    public static final String RANDOM_UNIQUE_ID_GENERATOR_TYPE = "RandomUniqueIdGenerator";
+
+    public static final String TIME_ORDERED_UNIQUE_ID_GENERATOR_TYPE = "TimeOrderedUniqueIdGenerator";
+
     public static final String CLAIM_ROOT_DIALECT = "http://wso2.org/claims";
 
     public static final String USERNAME_CLAIM = "http://wso2.org/claims/username";
@@ -21,18 +21,19 @@ package org.wso2.carbon.identity.mgt.impl.util;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Prepared statement with named indexes.
+ * <p>
+ * Queries are parsed into a shared {@link NamedSqlTemplate}, hence creating a statement for a query used before only
+ * prepares the positional SQL. A name used more than once in a query is set at every occurrence.
  */
 public class NamedPreparedStatement {
 
     private PreparedStatement preparedStatement;
-    private List<String> fields = new ArrayList<>();
+    private NamedSqlTemplate.Expansion expansion;
 
     /**
      * Create a named prepared statement with repeated indexes.
@@ -44,30 +45,7 @@ public class NamedPreparedStatement {
      */
     public NamedPreparedStatement(Connection connection, String sqlQuery, Map<String, Integer> repetition)
             throws SQLException {
-
-        int pos;
-        while ((pos = sqlQuery.indexOf(":")) != -1) {
-
-            int end = sqlQuery.substring(pos).indexOf(";");
-            if (end == -1) {
-                throw new SQLException("Cannot find the end of the placeholder.");
-            } else {
-                end += pos;
-            }
-
-            fields.add(sqlQuery.substring(pos + 1, end));
-            StringBuilder builder = new StringBuilder("?");
-
-            if (repetition.get(sqlQuery.substring(pos + 1, end)) != null) {
-                for (int i = 0; i < repetition.get(sqlQuery.substring(pos + 1, end)) - 1; i++) {
-                    builder.append(", ?");
-                }
-            }
-
-            sqlQuery = String.format("%s %s %s", sqlQuery.substring(0, pos), builder.toString(),
-                    sqlQuery.substring(end + 1));
-        }
-        preparedStatement = connection.prepareStatement(sqlQuery);
+        this(connection, NamedSqlTemplate.of(sqlQuery).getExpansion(repetition));
     }
 
     /**
@@ -78,7 +56,20 @@ public class NamedPreparedStatement {
      * @throws SQLException SQL Exception.
      */
     public NamedPreparedStatement(Connection connection, String sqlQuery) throws SQLException {
-        this(connection, sqlQuery, new HashMap<>());
+        this(connection, NamedSqlTemplate.of(sqlQuery).getExpansion());
+    }
+
+    /**
+     * Create a named prepared statement from a parsed query.
+     *
+     * @param connection Database connection to be used.
+     * @param expansion  Positional form of the query.
+     * @throws SQLException SQL Exception.
+     */
+    public NamedPreparedStatement(Connection connection, NamedSqlTemplate.Expansion expansion) throws SQLException {
+
+        this.expansion = expansion;
+        preparedStatement = connection.prepareStatement(expansion.getSql());
     }
 
     /**
@@ -98,7 +89,10 @@ public class NamedPreparedStatement {
      * @throws SQLException SQL Exception.
      */
     public void setLong(String name, long value) throws SQLException {
-        preparedStatement.setLong(getIndex(name), value);
+
+        for (int index : expansion.getIndexes(name)) {
+            preparedStatement.setLong(index, value);
+        }
     }
 
     /**
@@ -109,7 +103,10 @@ public class NamedPreparedStatement {
      * @throws SQLException SQL Exception.
      */
     public void setInt(String name, int value) throws SQLException {
-        preparedStatement.setInt(getIndex(name), value);
+
+        for (int index : expansion.getIndexes(name)) {
+            preparedStatement.setInt(index, value);
+        }
     }
 
     /**
@@ -120,7 +117,10 @@ public class NamedPreparedStatement {
      * @throws SQLException SQL Exception
      */
     public void setString(String name, String value) throws SQLException {
-        preparedStatement.setString(getIndex(name), value);
+
+        for (int index : expansion.getIndexes(name)) {
+            preparedStatement.setString(index, value);
+        }
     }
 
     /**
@@ -132,14 +132,12 @@ public class NamedPreparedStatement {
      */
     public void setString(String name, List<String> values) throws SQLException {
 
-        int indexInc = 0;
-        for (String value : values) {
-            preparedStatement.setString(getIndex(name) + indexInc, value);
-            indexInc++;
+        for (int index : expansion.getIndexes(name)) {
+            int indexInc = 0;
+            for (String value : values) {
+                preparedStatement.setString(index + indexInc, value);
+                indexInc++;
+            }
         }
     }
-
-    private int getIndex(String name) {
-        return fields.indexOf(name) + 1;
-    }
 }
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.impl.util;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parsed form of a SQL query with named placeholders, in the form <code>:name;</code>.
+ * <p>
+ * Queries are parsed once and the templates are shared, so that preparing a statement only needs the positional SQL
+ * and the indexes of each name. Expansions of repeated placeholders, used for <code>IN</code> lists, are cached per
+ * repetition as well.
+ */
+public final class NamedSqlTemplate {
+
+    private static final int MAX_TEMPLATES = 1024;
+
+    private static final int MAX_EXPANSIONS = 64;
+
+    private static final Map<String, NamedSqlTemplate> TEMPLATES = new ConcurrentHashMap<>();
+
+    // SQL text around the placeholders. There is one more segment than there are placeholders.
+    private final String[] segments;
+
+    private final String[] names;
+
+    private final Map<Map<String, Integer>, Expansion> expansions = new ConcurrentHashMap<>();
+
+    private final Expansion defaultExpansion;
+
+    private NamedSqlTemplate(String[] segments, String[] names) {
+
+        this.segments = segments;
+        this.names = names;
+        this.defaultExpansion = expand(Collections.emptyMap());
+    }
+
+    /**
+     * Get the template of a query, parsing the query if it is not parsed yet.
+     *
+     * @param sqlQuery SQL query with named placeholders.
+     * @return Template of the query.
+     * @throws SQLException If a placeholder is not terminated.
+     */
+    public static NamedSqlTemplate of(String sqlQuery) throws SQLException {
+
+        NamedSqlTemplate template = TEMPLATES.get(sqlQuery);
+        if (template == null) {
+            template = parse(sqlQuery);
+            // Queries are constants, so the limit only guards against queries built from values.
+            if (TEMPLATES.size() < MAX_TEMPLATES) {
+                TEMPLATES.putIfAbsent(sqlQuery, template);
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Parse a query without caching the template.
+     *
+     * @param sqlQuery SQL query with named placeholders.
+     * @return Template of the query.
+     * @throws SQLException If a placeholder is not terminated.
+     */
+    public static NamedSqlTemplate parse(String sqlQuery) throws SQLException {
+
+        List<String> segments = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int from = 0;
+        int pos;
+        while ((pos = sqlQuery.indexOf(':', from)) != -1) {
+            int end = sqlQuery.indexOf(';', pos);
+            if (end == -1) {
+                throw new SQLException("Cannot find the end of the placeholder.");
+            }
+            segments.add(sqlQuery.substring(from, pos));
+            names.add(sqlQuery.substring(pos + 1, end));
+            from = end + 1;
+        }
+        segments.add(sqlQuery.substring(from));
+
+        return new NamedSqlTemplate(segments.toArray(new String[segments.size()]),
+                names.toArray(new String[names.size()]));
+    }
+
+    /**
+     * Get the positional form of the query where every placeholder is a single parameter.
+     *
+     * @return Expansion of the query.
+     */
+    public Expansion getExpansion() {
+        return defaultExpansion;
+    }
+
+    /**
+     * Get the positional form of the query where the given placeholders are repeated.
+     *
+     * @param repetition Number of parameters of the repeated placeholders.
+     * @return Expansion of the query.
+     */
+    public Expansion getExpansion(Map<String, Integer> repetition) {
+
+        if (repetition == null || repetition.isEmpty()) {
+            return defaultExpansion;
+        }
+
+        Expansion expansion = expansions.get(repetition);
+        if (expansion == null) {
+            expansion = expand(repetition);
+            if (expansions.size() < MAX_EXPANSIONS) {
+                expansions.putIfAbsent(new HashMap<>(repetition), expansion);
+            }
+        }
+        return expansion;
+    }
+
+    private Expansion expand(Map<String, Integer> repetition) {
+
+        StringBuilder builder = new StringBuilder();
+        Map<String, List<Integer>> indexes = new HashMap<>();
+        int parameterIndex = 1;
+        for (int i = 0; i < names.length; i++) {
+            Integer count = repetition.get(names[i]);
+            int parameterCount = count == null ? 1 : Math.max(count, 1);
+
+            // Placeholders are padded with spaces, so that the SQL is the same as the one of the earlier parser.
+            builder.append(segments[i]).append(" ?");
+            for (int j = 1; j < parameterCount; j++) {
+                builder.append(", ?");
+            }
+            builder.append(' ');
+
+            indexes.computeIfAbsent(names[i], name -> new ArrayList<>()).add(parameterIndex);
+            parameterIndex += parameterCount;
+        }
+        builder.append(segments[names.length]);
+
+        Map<String, int[]> indexArrays = new HashMap<>(indexes.size() * 2);
+        indexes.forEach((name, positions) -> indexArrays.put(name, positions.stream()
+                .mapToInt(Integer::intValue)
+                .toArray()));
+        return new Expansion(builder.toString(), indexArrays);
+    }
+
+    /**
+     * Positional SQL of a template with the parameter indexes of each placeholder name.
+     */
+    public static final class Expansion {
+
+        private final String sql;
+
+        private final Map<String, int[]> indexes;
+
+        private Expansion(String sql, Map<String, int[]> indexes) {
+
+            this.sql = sql;
+            this.indexes = indexes;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * Get the first parameter index of each occurrence of a placeholder.
+         *
+         * @param name Name of the placeholder.
+         * @return Parameter indexes, starting from 1.
+         * @throws SQLException If the query does not have the placeholder.
+         */
+        public int[] getIndexes(String name) throws SQLException {
+
+            int[] parameterIndexes = indexes.get(name);
+            if (parameterIndexes == null) {
+                throw new SQLException("Unknown placeholder: " + name);
+            }
+            return parameterIndexes;
+        }
+    }
+}
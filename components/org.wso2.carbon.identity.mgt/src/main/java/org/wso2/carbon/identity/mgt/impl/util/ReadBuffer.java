@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.impl.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Lossy buffer of the keys read from a cache, so that reads do not have to take the lock of the eviction policy.
+ * <p>
+ * Readers add keys without locking to one of several ring buffers, picked by the reading thread. When a ring buffer is
+ * full, further keys are dropped until it is drained. Dropping a few reads only makes the access frequencies of the
+ * policy slightly less accurate. A single thread at a time drains the buffers while holding the policy lock.
+ *
+ * @param <K> Type of the key.
+ */
+public class ReadBuffer<K> {
+
+    private static final int STRIPES = 16;
+
+    private static final int STRIPE_SIZE = 32;
+
+    private final AtomicReferenceArray<K> keys = new AtomicReferenceArray<>(STRIPES * STRIPE_SIZE);
+
+    // Number of keys added to and drained from each stripe. Only the drain count is updated by the draining thread.
+    private final AtomicLongArray addCounts = new AtomicLongArray(STRIPES);
+
+    private final AtomicLongArray drainCounts = new AtomicLongArray(STRIPES);
+
+    /**
+     * Add a read key to the buffer. The key is dropped if the buffer of the thread is full or another reader of the
+     * same buffer is adding a key at the same time.
+     *
+     * @param key Key which was read.
+     * @return True if the buffer of the thread is full and should be drained.
+     */
+    public boolean add(K key) {
+
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        long addCount = addCounts.get(stripe);
+        long pending = addCount - drainCounts.get(stripe);
+        if (pending >= STRIPE_SIZE) {
+            return true;
+        }
+        if (!addCounts.compareAndSet(stripe, addCount, addCount + 1)) {
+            return false;
+        }
+        keys.lazySet(index(stripe, addCount), key);
+        return pending + 1 >= STRIPE_SIZE;
+    }
+
+    /**
+     * Pass the buffered keys to the consumer in the order they were read by each thread. Should only be called by one
+     * thread at a time.
+     *
+     * @param consumer Consumer of the keys.
+     */
+    public void drain(Consumer<K> consumer) {
+
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            long drainCount = drainCounts.get(stripe);
+            long addCount = addCounts.get(stripe);
+            for (; drainCount < addCount; drainCount++) {
+                int index = index(stripe, drainCount);
+                K key = keys.get(index);
+                if (key == null) {
+                    // The reader has claimed the slot but is yet to write the key.
+                    break;
+                }
+                keys.lazySet(index, null);
+                consumer.accept(key);
+            }
+            drainCounts.lazySet(stripe, drainCount);
+        }
+    }
+
+    private static int index(int stripe, long count) {
+        return stripe * STRIPE_SIZE + (int) (count & (STRIPE_SIZE - 1));
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.impl.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+/**
+ * Routes reads to read replica data sources and writes to the primary data source.
+ * <p>
+ * Reads of a thread go to the primary for a short window after each write of the same thread, so that a write is not
+ * followed by a read of the replicated state before it is replicated. The writes of other threads do not affect the
+ * routing, hence the replicas keep serving the reads of a node under a steady write load. Reads also fall back to the
+ * primary if a replica is not reachable.
+ * <p>
+ * As a write of another thread or node may not be replicated yet, reads whose results are cached, such as the lookups
+ * of a single user, should use {@link #getPrimaryDataSource()}, so that a lagging replica is not cached until expiry.
+ */
+public class ReadReplicaRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadReplicaRouter.class);
+
+    /**
+     * Policy used to select the replica of a read.
+     */
+    public enum RoutingPolicy {
+
+        ROUND_ROBIN,
+        LEAST_IN_FLIGHT;
+
+        /**
+         * Get the policy of a config value, such as <code>roundRobin</code> or <code>leastInFlight</code>.
+         *
+         * @param value Config value.
+         * @return Routing policy.
+         * @throws IllegalArgumentException If the value is not a known policy.
+         */
+        public static RoutingPolicy fromValue(String value) {
+
+            String normalized = value.trim().replaceAll("[-_\\s]", "").toUpperCase(Locale.ENGLISH);
+            for (RoutingPolicy policy : values()) {
+                if (policy.name().replace("_", "").equals(normalized)) {
+                    return policy;
+                }
+            }
+            throw new IllegalArgumentException("Unknown read routing policy: " + value);
+        }
+    }
+
+    private final DataSource primary;
+
+    private final List<Replica> replicas = new ArrayList<>();
+
+    private final RoutingPolicy routingPolicy;
+
+    private final long readYourWritesWindow;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    private final DataSource readDataSource;
+
+    private final ThreadLocal<Long> primaryReadsUntil = new ThreadLocal<>();
+
+    /**
+     * Create a router.
+     *
+     * @param primary              Primary data source.
+     * @param replicas             Read replica data sources. Reads go to the primary if empty.
+     * @param routingPolicy        Policy used to select the replica of a read.
+     * @param readYourWritesWindow Time in milliseconds for which the reads of a thread go to the primary after a write
+     *                             of the thread.
+     */
+    public ReadReplicaRouter(DataSource primary, List<DataSource> replicas, RoutingPolicy routingPolicy,
+                             long readYourWritesWindow) {
+
+        this.primary = primary;
+        replicas.forEach(replica -> this.replicas.add(new Replica(replica)));
+        this.routingPolicy = routingPolicy;
+        this.readYourWritesWindow = readYourWritesWindow;
+        this.readDataSource = this.replicas.isEmpty() ? primary : new RoutingDataSource();
+    }
+
+    /**
+     * Get the data source to read from. The same instance is returned for every read, so the reads of a
+     * {@link UnitOfWork.ReadScope} share a single replica connection.
+     *
+     * @return Data source routing the connections to the replicas.
+     */
+    public DataSource getReadDataSource() {
+        return readDataSource;
+    }
+
+    /**
+     * Get the primary data source to read the latest state from, regardless of the writes of the calling thread.
+     *
+     * @return Primary data source.
+     */
+    public DataSource getPrimaryDataSource() {
+        return primary;
+    }
+
+    /**
+     * Get a connection of the primary data source to write. Reads of the calling thread go to the primary until the
+     * read your writes window elapses after the connection is closed.
+     *
+     * @return Connection of the primary data source.
+     * @throws SQLException SQL Exception.
+     */
+    public Connection getWriteConnection() throws SQLException {
+
+        Connection connection = primary.getConnection();
+        if (replicas.isEmpty()) {
+            return connection;
+        }
+
+        markWrite();
+        return onClose(connection, this::markWrite);
+    }
+
+    /**
+     * Route the reads of the calling thread to the primary for the read your writes window from now.
+     */
+    public void markWrite() {
+        primaryReadsUntil.set(System.currentTimeMillis() + readYourWritesWindow);
+    }
+
+    /**
+     * Get the number of connections of each replica which are not closed yet.
+     *
+     * @return In flight connection counts in the order of the replicas.
+     */
+    public int[] getInFlightCounts() {
+
+        return replicas.stream()
+                .mapToInt(replica -> replica.inFlight.get())
+                .toArray();
+    }
+
+    private Connection getReadConnection() throws SQLException {
+
+        if (isInReadYourWritesWindow()) {
+            return primary.getConnection();
+        }
+
+        Replica replica = selectReplica();
+        Connection connection;
+        try {
+            connection = replica.dataSource.getConnection();
+        } catch (SQLException e) {
+            log.warn("Failed to get a connection of the read replica. Reading from the primary data source.", e);
+            return primary.getConnection();
+        }
+
+        replica.inFlight.incrementAndGet();
+        return onClose(connection, replica.inFlight::decrementAndGet);
+    }
+
+    private boolean isInReadYourWritesWindow() {
+
+        Long readsUntil = primaryReadsUntil.get();
+        if (readsUntil == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() < readsUntil) {
+            return true;
+        }
+        primaryReadsUntil.remove();
+        return false;
+    }
+
+    private Replica selectReplica() {
+
+        if (routingPolicy == RoutingPolicy.LEAST_IN_FLIGHT) {
+            // Start from a rotating offset, so that idle replicas share the load.
+            int offset = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+            Replica selected = null;
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica replica = replicas.get((offset + i) % replicas.size());
+                if (selected == null || replica.inFlight.get() < selected.inFlight.get()) {
+                    selected = replica;
+                }
+            }
+            return selected;
+        }
+        return replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+    }
+
+    private static Connection onClose(Connection connection, Runnable closeListener) {
+
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && method.getParameterCount() == 0 &&
+                            closed.compareAndSet(false, true)) {
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        } finally {
+                            closeListener.run();
+                        }
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /**
+     * Read replica with the number of its connections in use.
+     */
+    private static final class Replica {
+
+        private final DataSource dataSource;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+
+    /**
+     * Data source handing out the read connections of the router.
+     */
+    private final class RoutingDataSource implements DataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return getReadConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            throw new SQLFeatureNotSupportedException("Read connections use the credentials of the data sources.");
+        }
+
+        @Override
+        public PrintWriter getLogWriter() throws SQLException {
+            return primary.getLogWriter();
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) throws SQLException {
+            primary.setLogWriter(out);
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) throws SQLException {
+            primary.setLoginTimeout(seconds);
+        }
+
+        @Override
+        public int getLoginTimeout() throws SQLException {
+            return primary.getLoginTimeout();
+        }
+
+        @Override
+        public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            return primary.getParentLogger();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            return primary.unwrap(iface);
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) throws SQLException {
+            return primary.isWrapperFor(iface);
+        }
+    }
+}
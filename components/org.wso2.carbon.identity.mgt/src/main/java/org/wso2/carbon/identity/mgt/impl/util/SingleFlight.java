@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.impl.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces concurrent loads of the same key. The first caller of a key runs the loader while the callers arriving
+ * before it completes wait for and share its result, so a burst of misses for a key results in a single backend call.
+ * <p>
+ * Results are not retained once the load completes. Callers are expected to cache the result themselves.
+ *
+ * @param <K> Type of the key.
+ * @param <V> Type of the value.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlightCalls = new ConcurrentHashMap<>();
+
+    /**
+     * Load the value of the key, joining a load already in progress for the same key if there is one.
+     *
+     * @param key    Key to load.
+     * @param loader Loader to run if no load is in progress for the key.
+     * @return Loaded value.
+     * @throws ExecutionException If the loader failed with a checked exception. The cause is the original exception.
+     */
+    public V execute(K key, Callable<V> loader) throws ExecutionException {
+
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> inFlightCall = inFlightCalls.putIfAbsent(key, call);
+        if (inFlightCall != null) {
+            return await(inFlightCall);
+        }
+
+        try {
+            V value = loader.call();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } catch (Exception e) {
+            call.completeExceptionally(e);
+            throw new ExecutionException(e);
+        } finally {
+            inFlightCalls.remove(key, call);
+        }
+    }
+
+    /**
+     * Get the number of loads in progress.
+     *
+     * @return Number of keys being loaded.
+     */
+    public int getInFlightCount() {
+        return inFlightCalls.size();
+    }
+
+    private V await(CompletableFuture<V> inFlightCall) throws ExecutionException {
+
+        try {
+            return inFlightCall.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExecutionException("Interrupted while waiting for an in flight call.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.impl.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+
+/**
+ * SQL forms that differ between the databases supported by the JDBC unique id resolver.
+ * <p>
+ * Queries built by a dialect use named placeholders, in the form <code>:name;</code>. The placeholder of a column is
+ * the lower case column name, which is the convention of {@link UniqueIdResolverConstants.SQLPlaceholders}. Multi row
+ * inserts are the only exception, since their parameters are bound by position.
+ * <p>
+ * The H2 and MySQL dialects are tested on H2 in the matching compatibility mode. The PostgreSQL, Oracle and MSSQL
+ * dialects are only checked against the SQL they generate and have not been run on those databases.
+ */
+public enum SqlDialect {
+
+    H2("H2") {
+        @Override
+        public String upsert(String table, List<String> keyColumns, List<String> updateColumns,
+                             List<String> insertColumns) {
+
+            // MERGE writes every listed column, so the insert only columns keep the value of an existing row.
+            String keyCondition = keyColumns.stream()
+                    .map(column -> column + " = " + placeholder(column))
+                    .collect(Collectors.joining(" AND "));
+            List<String> values = new ArrayList<>();
+            keyColumns.forEach(column -> values.add(placeholder(column)));
+            updateColumns.forEach(column -> values.add(placeholder(column)));
+            insertColumns.forEach(column -> values.add("COALESCE((SELECT " + column + " FROM " + table + " WHERE " +
+                    keyCondition + "), " + placeholder(column) + ")"));
+
+            return "MERGE INTO " + table + " (" + String.join(", ", columns(keyColumns, updateColumns,
+                    insertColumns)) + ") KEY (" + String.join(", ", keyColumns) + ") VALUES (" +
+                    String.join(", ", values) + ")";
+        }
+    },
+
+    MYSQL("MySQL", "MariaDB") {
+        @Override
+        public String upsert(String table, List<String> keyColumns, List<String> updateColumns,
+                             List<String> insertColumns) {
+
+            return insert(table, columns(keyColumns, updateColumns, insertColumns)) + " ON DUPLICATE KEY UPDATE " +
+                    updateColumns.stream()
+                            .map(column -> column + " = VALUES(" + column + ")")
+                            .collect(Collectors.joining(", "));
+        }
+    },
+
+    POSTGRESQL("PostgreSQL", "Postgres") {
+        @Override
+        public String upsert(String table, List<String> keyColumns, List<String> updateColumns,
+                             List<String> insertColumns) {
+
+            return insert(table, columns(keyColumns, updateColumns, insertColumns)) + " ON CONFLICT (" +
+                    String.join(", ", keyColumns) + ") DO UPDATE SET " + updateColumns.stream()
+                    .map(column -> column + " = EXCLUDED." + column)
+                    .collect(Collectors.joining(", "));
+        }
+
+        @Override
+        public int getMaxRowsPerInsert(int columnCount) {
+
+            // The wire protocol limits the number of bind parameters of a statement.
+            return Short.MAX_VALUE / columnCount;
+        }
+    },
+
+    ORACLE("Oracle") {
+        @Override
+        public String limit(String limitPlaceholder) {
+            return "OFFSET 0 ROWS FETCH NEXT :" + limitPlaceholder + "; ROWS ONLY";
+        }
+
+        @Override
+        public String limitOffset(String limitPlaceholder, String offsetPlaceholder) {
+            return "OFFSET :" + offsetPlaceholder + "; ROWS FETCH NEXT :" + limitPlaceholder + "; ROWS ONLY";
+        }
+
+        @Override
+        public String upsert(String table, List<String> keyColumns, List<String> updateColumns,
+                             List<String> insertColumns) {
+            return merge(table, keyColumns, updateColumns, insertColumns, " FROM DUAL", "");
+        }
+
+        @Override
+        public int getMaxRowsPerInsert(int columnCount) {
+
+            // Oracle has no multi row VALUES form. A JDBC batch of single row inserts is its fastest bulk insert.
+            return 1;
+        }
+    },
+
+    MSSQL("Microsoft SQL Server", "SQLServer", "MSSQL") {
+        @Override
+        public String limit(String limitPlaceholder) {
+            return "OFFSET 0 ROWS FETCH NEXT :" + limitPlaceholder + "; ROWS ONLY";
+        }
+
+        @Override
+        public String limitOffset(String limitPlaceholder, String offsetPlaceholder) {
+            return "OFFSET :" + offsetPlaceholder + "; ROWS FETCH NEXT :" + limitPlaceholder + "; ROWS ONLY";
+        }
+
+        @Override
+        public String upsert(String table, List<String> keyColumns, List<String> updateColumns,
+                             List<String> insertColumns) {
+
+            // MERGE checks and writes the row without a range lock unless it is asked to hold one.
+            return merge(table + " WITH (HOLDLOCK)", keyColumns, updateColumns, insertColumns, "", ";");
+        }
+
+        @Override
+        public int getMaxRowsPerInsert(int columnCount) {
+
+            // A VALUES list takes at most 1000 rows and a statement takes at most 2100 parameters.
+            return Math.min(1000, 2099 / columnCount);
+        }
+    };
+
+    private static final Logger log = LoggerFactory.getLogger(SqlDialect.class);
+
+    private final List<String> names;
+
+    SqlDialect(String... names) {
+        this.names = Arrays.asList(names);
+    }
+
+    /**
+     * Get the dialect of a config value, such as <code>MySQL</code> or <code>PostgreSQL</code>.
+     *
+     * @param value Config value.
+     * @return Dialect.
+     * @throws IllegalArgumentException If the value is not a known database type.
+     */
+    public static SqlDialect fromValue(String value) {
+
+        String normalized = normalize(value);
+        for (SqlDialect dialect : values()) {
+            if (dialect.name().equals(normalized) || dialect.names.stream()
+                    .anyMatch(name -> normalize(name).equals(normalized))) {
+                return dialect;
+            }
+        }
+        throw new IllegalArgumentException("Unknown database type: " + value);
+    }
+
+    /**
+     * Detect the dialect of a data source from the product name of the database. H2 is used if the database can not
+     * be reached or is not known, since its pagination and insert forms are the ones used before dialects.
+     *
+     * @param dataSource Data source.
+     * @return Dialect.
+     */
+    public static SqlDialect detect(DataSource dataSource) {
+
+        try (Connection connection = dataSource.getConnection()) {
+            if (connection != null) {
+                String productName = connection.getMetaData().getDatabaseProductName();
+                for (SqlDialect dialect : values()) {
+                    if (dialect.names.stream().anyMatch(name -> productName.toLowerCase(Locale.ENGLISH)
+                            .startsWith(name.toLowerCase(Locale.ENGLISH)))) {
+                        return dialect;
+                    }
+                }
+                log.warn("Unknown database: {}. Using the H2 SQL dialect.", productName);
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to detect the database type. Using the H2 SQL dialect.", e);
+        }
+        return H2;
+    }
+
+    /**
+     * Get the clause that limits the rows of an ordered query.
+     *
+     * @param limitPlaceholder Placeholder of the number of rows.
+     * @return Limit clause.
+     */
+    public String limit(String limitPlaceholder) {
+        return "LIMIT :" + limitPlaceholder + ";";
+    }
+
+    /**
+     * Get the clause that skips and limits the rows of an ordered query.
+     *
+     * @param limitPlaceholder  Placeholder of the number of rows.
+     * @param offsetPlaceholder Placeholder of the number of rows to skip.
+     * @return Limit and offset clause.
+     */
+    public String limitOffset(String limitPlaceholder, String offsetPlaceholder) {
+        return "LIMIT :" + limitPlaceholder + "; OFFSET :" + offsetPlaceholder + ";";
+    }
+
+    /**
+     * Get a statement that inserts a row, or updates the row with the same key columns if there is one. The key
+     * columns should have a unique index.
+     *
+     * @param table         Table name.
+     * @param keyColumns    Columns that identify the row.
+     * @param updateColumns Columns written to both new and existing rows.
+     * @param insertColumns Columns written to new rows only. Existing rows keep their values.
+     * @return Upsert statement with named placeholders.
+     */
+    public abstract String upsert(String table, List<String> keyColumns, List<String> updateColumns,
+                                  List<String> insertColumns);
+
+    /**
+     * Get the maximum number of rows inserted by a single multi row insert statement. A value of one means the rows
+     * should be inserted with a JDBC batch instead.
+     *
+     * @param columnCount Number of columns of a row.
+     * @return Maximum number of rows.
+     */
+    public int getMaxRowsPerInsert(int columnCount) {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Get a multi row insert statement with positional parameters, bound row by row.
+     *
+     * @param table    Table name.
+     * @param columns  Columns of a row.
+     * @param rowCount Number of rows.
+     * @return Insert statement.
+     */
+    public String insertRows(String table, List<String> columns, int rowCount) {
+
+        String row = columns.stream()
+                .map(column -> "?")
+                .collect(Collectors.joining(", ", "(", ")"));
+        StringBuilder builder = new StringBuilder("INSERT INTO ").append(table).append(" (")
+                .append(String.join(", ", columns)).append(") VALUES ").append(row);
+        for (int i = 1; i < rowCount; i++) {
+            builder.append(", ").append(row);
+        }
+        return builder.toString();
+    }
+
+    private static String normalize(String value) {
+        return value.trim().replaceAll("[-_\\s]", "").toUpperCase(Locale.ENGLISH);
+    }
+
+    private static String placeholder(String column) {
+        return ":" + column.toLowerCase(Locale.ENGLISH) + ";";
+    }
+
+    private static List<String> columns(List<String> keyColumns, List<String> updateColumns,
+                                        List<String> insertColumns) {
+
+        List<String> columns = new ArrayList<>(keyColumns);
+        columns.addAll(updateColumns);
+        columns.addAll(insertColumns);
+        return columns;
+    }
+
+    private static String insert(String table, List<String> columns) {
+
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" + columns.stream()
+                .map(SqlDialect::placeholder)
+                .collect(Collectors.joining(", ")) + ")";
+    }
+
+    private static String merge(String table, List<String> keyColumns, List<String> updateColumns,
+                                List<String> insertColumns, String from, String terminator) {
+
+        List<String> columns = columns(keyColumns, updateColumns, insertColumns);
+        return "MERGE INTO " + table + " T USING (SELECT " + columns.stream()
+                .map(column -> placeholder(column) + " AS " + column)
+                .collect(Collectors.joining(", ")) + from + ") S ON (" + keyColumns.stream()
+                .map(column -> "T." + column + " = S." + column)
+                .collect(Collectors.joining(" AND ")) + ") WHEN MATCHED THEN UPDATE SET " + updateColumns.stream()
+                .map(column -> "T." + column + " = S." + column)
+                .collect(Collectors.joining(", ")) + " WHEN NOT MATCHED THEN INSERT (" + String.join(", ", columns) +
+                ") VALUES (" + columns.stream()
+                .map(column -> "S." + column)
+                .collect(Collectors.joining(", ")) + ")" + terminator;
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.impl.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size bounded eviction policy based on W-TinyLFU.
+ * <p>
+ * New keys enter a small LRU window. Keys leaving the window compete with the least recently used key of the main
+ * segmented LRU and only the one accessed more often according to a frequency sketch is kept. Keys touched once
+ * by a scan therefore cannot flush the frequently used keys out of the main area, while the window still lets
+ * bursts of new keys build up frequency. The policy only tracks keys, the values are held by the cache using it.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @param <K> Type of the key.
+ */
+public class TinyLfuPolicy<K> {
+
+    private static final int SKETCH_DEPTH = 4;
+    private static final int MAX_FREQUENCY = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0xb1a7a1b5, 0x2c8f2a35, 0x5f356495};
+
+    private final int maxSize;
+
+    private final int maxWindowSize;
+
+    private final int maxProtectedSize;
+
+    private final LinkedHashMap<K, Boolean> window = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LinkedHashMap<K, Boolean> probation = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LinkedHashMap<K, Boolean> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Access order of all the tracked keys, as the segments only order their own keys.
+    private final LinkedHashMap<K, Boolean> accessOrder = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final byte[][] sketch;
+
+    private final int sketchMask;
+
+    private final int sampleSize;
+
+    private int additions;
+
+    public TinyLfuPolicy(int maxSize) {
+
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Maximum size must be positive.");
+        }
+
+        this.maxSize = maxSize;
+        this.maxWindowSize = Math.max(1, maxSize / 100);
+        this.maxProtectedSize = (int) ((maxSize - maxWindowSize) * 0.8);
+
+        // Four counters per row and entry keep the collisions low enough for the frequencies to be meaningful.
+        int width = Integer.highestOneBit(Math.max(16, maxSize - 1) << 1) << 2;
+        this.sketch = new byte[SKETCH_DEPTH][width];
+        this.sketchMask = width - 1;
+        this.sampleSize = 10 * Math.max(16, maxSize);
+    }
+
+    /**
+     * Record an access to a key of the cache.
+     *
+     * @param key Key which was read.
+     */
+    public void recordAccess(K key) {
+
+        increment(key);
+        accessOrder.get(key);
+        if (window.get(key) != null || protectedSegment.get(key) != null) {
+            return;
+        }
+        if (probation.remove(key) != null) {
+            promote(key);
+        }
+    }
+
+    /**
+     * Record a key written to the cache.
+     *
+     * @param key Key which was written.
+     * @return Keys to be removed from the cache to stay within the maximum size. May contain the written key itself if
+     * it was not admitted.
+     */
+    public List<K> recordWrite(K key) {
+
+        if (contains(key)) {
+            recordAccess(key);
+            return Collections.emptyList();
+        }
+
+        increment(key);
+        window.put(key, Boolean.TRUE);
+        accessOrder.put(key, Boolean.TRUE);
+        if (window.size() <= maxWindowSize) {
+            return Collections.emptyList();
+        }
+
+        K candidate = removeEldest(window);
+        if (size() < maxSize) {
+            probation.put(candidate, Boolean.TRUE);
+            return Collections.emptyList();
+        }
+
+        if (probation.isEmpty() && protectedSegment.isEmpty()) {
+            // The window holds the whole capacity of a tiny cache, hence there is no victim to compete with.
+            accessOrder.remove(candidate);
+            return Collections.singletonList(candidate);
+        }
+
+        List<K> evictedKeys = new ArrayList<>(1);
+        LinkedHashMap<K, Boolean> victimSegment = probation.isEmpty() ? protectedSegment : probation;
+        K victim = victimSegment.keySet().iterator().next();
+        if (frequency(candidate) > frequency(victim)) {
+            victimSegment.remove(victim);
+            probation.put(candidate, Boolean.TRUE);
+            evictedKeys.add(victim);
+        } else {
+            evictedKeys.add(candidate);
+        }
+        accessOrder.remove(evictedKeys.get(0));
+        return evictedKeys;
+    }
+
+    /**
+     * Stop tracking a key removed from the cache.
+     *
+     * @param key Key which was removed.
+     */
+    public void recordRemoval(K key) {
+
+        if (window.remove(key) == null && probation.remove(key) == null) {
+            protectedSegment.remove(key);
+        }
+        accessOrder.remove(key);
+    }
+
+    /**
+     * Stop tracking all the keys. Frequencies are kept, as they still describe the workload.
+     */
+    public void clear() {
+
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+        accessOrder.clear();
+    }
+
+    public boolean contains(K key) {
+        return window.containsKey(key) || probation.containsKey(key) || protectedSegment.containsKey(key);
+    }
+
+    public int size() {
+        return window.size() + probation.size() + protectedSegment.size();
+    }
+
+    /**
+     * Get the estimated number of accesses of a key within the current sample.
+     *
+     * @param key Key.
+     * @return Estimated frequency, capped at 15.
+     */
+    public int frequency(K key) {
+
+        int hash = spread(key.hashCode());
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < SKETCH_DEPTH; i++) {
+            frequency = Math.min(frequency, sketch[i][indexOf(hash, i)]);
+        }
+        return frequency;
+    }
+
+    /**
+     * Get the tracked keys ordered from the most to the least frequently used. Keys with the same frequency are
+     * ordered by recency, favouring the keys of the main area.
+     *
+     * @param limit Maximum number of keys to return.
+     * @return Hottest keys.
+     */
+    public List<K> hottestKeys(int limit) {
+
+        List<K> keys = new ArrayList<>(size());
+        addMostRecentFirst(keys, protectedSegment);
+        addMostRecentFirst(keys, probation);
+        addMostRecentFirst(keys, window);
+        keys.sort(Comparator.comparingInt(this::frequency).reversed());
+        return keys.size() > limit ? new ArrayList<>(keys.subList(0, limit)) : keys;
+    }
+
+    /**
+     * Get the tracked keys ordered from the most to the least recently used.
+     *
+     * @param limit Maximum number of keys to return.
+     * @return Most recently used keys.
+     */
+    public List<K> recentKeys(int limit) {
+
+        List<K> keys = new ArrayList<>(Math.min(limit, accessOrder.size()));
+        addMostRecentFirst(keys, accessOrder);
+        return keys.size() > limit ? new ArrayList<>(keys.subList(0, limit)) : keys;
+    }
+
+    private void addMostRecentFirst(List<K> keys, LinkedHashMap<K, Boolean> segment) {
+
+        List<K> segmentKeys = new ArrayList<>(segment.keySet());
+        Collections.reverse(segmentKeys);
+        keys.addAll(segmentKeys);
+    }
+
+    private void promote(K key) {
+
+        protectedSegment.put(key, Boolean.TRUE);
+        if (protectedSegment.size() > maxProtectedSize) {
+            // Demoted keys get another chance in the probation segment instead of being evicted.
+            probation.put(removeEldest(protectedSegment), Boolean.TRUE);
+        }
+    }
+
+    private void increment(K key) {
+
+        int hash = spread(key.hashCode());
+        boolean incremented = false;
+        for (int i = 0; i < SKETCH_DEPTH; i++) {
+            int index = indexOf(hash, i);
+            if (sketch[i][index] < MAX_FREQUENCY) {
+                sketch[i][index]++;
+                incremented = true;
+            }
+        }
+
+        if (incremented && ++additions >= sampleSize) {
+            // Age the frequencies so that keys which were popular a long time ago can be evicted.
+            for (byte[] row : sketch) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = (byte) (row[i] >>> 1);
+                }
+            }
+            additions /= 2;
+        }
+    }
+
+    private int indexOf(int hash, int row) {
+
+        int index = (hash ^ SEEDS[row]) * SEEDS[row];
+        return (index ^ (index >>> 16)) & sketchMask;
+    }
+
+    private static int spread(int hash) {
+
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+
+    private static <K> K removeEldest(Map<K, Boolean> segment) {
+
+        Iterator<K> iterator = segment.keySet().iterator();
+        K eldest = iterator.next();
+        iterator.remove();
+        return eldest;
+    }
+}
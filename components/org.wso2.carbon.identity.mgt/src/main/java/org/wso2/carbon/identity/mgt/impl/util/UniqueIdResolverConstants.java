@@ -26,6 +26,35 @@ public class UniqueIdResolverConstants {
     public static final String IDENTITY_STORE_CONNECTOR = "I";
     public static final String CREDENTIAL_STORE_CONNECTOR = "C";
     public static final String DATA_SOURCE = "dataSource";
+    public static final String BATCH_SIZE = "batchSize";
+    public static final String DATABASE_TYPE = "databaseType";
+    public static final String ID_GENERATOR = "idGenerator";
+    public static final String CACHE_ENABLED = "cacheEnabled";
+    public static final String CACHE_EXPIRE_TIME = "cacheExpireTime";
+    public static final String CACHE_MAX_CAPACITY = "cacheMaxCapacity";
+    public static final String CACHE_STATISTICS_ENABLED = "cacheStatisticsEnabled";
+    public static final String READ_DATA_SOURCES = "readDataSources";
+    public static final String READ_ROUTING_POLICY = "readRoutingPolicy";
+    public static final String READ_YOUR_WRITES_WINDOW = "readYourWritesWindow";
+    public static final String SHARD_DATA_SOURCES = "shardDataSources";
+    public static final String SHARD_KEY = "shardKey";
+    public static final String SHARD_KEY_ENTITY_ID = "entityId";
+    public static final String SHARD_KEY_DOMAIN = "domain";
+
+    /**
+     * Default number of entities written in a single batch transaction.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * Maximum number of values bound to a single IN clause in batch lookups.
+     */
+    public static final int MAX_IN_CLAUSE_SIZE = 100;
+
+    /**
+     * Default time in milliseconds for which reads are routed to the primary data source after a write.
+     */
+    public static final long DEFAULT_READ_YOUR_WRITES_WINDOW = 2000;
 
 
     /**
@@ -39,6 +68,8 @@ public class UniqueIdResolverConstants {
         public static final String GROUP_ID = "group_id";
         public static final String DOMAIN_ID = "domain_id";
         public static final String MAPPING_DOMAIN_ID = "mapping_domain_id";
+        public static final String MAPPING_KEY_ID = "mapping_key_id";
+        public static final String MAPPING_VALUE_ID = "mapping_value_id";
         public static final String CONNECTOR_TYPE = "connector_type";
         public static final String STATE = "state";
 
@@ -57,5 +88,6 @@ public class UniqueIdResolverConstants {
         public static final String CONNECTOR_ID = "CONNECTOR_ID";
         public static final String CONNECTOR_TYPE = "CONNECTOR_TYPE";
         public static final String DOMAIN_ID = "DOMAIN_ID";
+        public static final String MAPPED_CONNECTOR_USER_ID = "MAPPED_CONNECTOR_USER_ID";
     }
 }
@@ -24,19 +24,31 @@ import org.slf4j.LoggerFactory;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
 
 /**
  * Support class to implement Unit of work patter.
+ * <p>
+ * Reads can use a read only unit of work, which neither commits nor rolls back. Its connection is switched to auto
+ * commit, so that each read runs in a transaction of its own, and restored on close. Read only units of work started
+ * within a {@link ReadScope} of the same thread share a single connection per data source.
  */
 public class UnitOfWork implements AutoCloseable {
 
     private static Logger log = LoggerFactory.getLogger(UnitOfWork.class);
 
+    private static final ThreadLocal<ReadScope> READ_SCOPE = new ThreadLocal<>();
+
     private Connection connection = null;
     private List<AutoCloseable> listToClose = new ArrayList<>();
     private AtomicInteger transactionLevel = new AtomicInteger(0);
+    private boolean readOnly;
+    private boolean ownsConnection = true;
+    private boolean autoCommit = true;
 
     private UnitOfWork() throws SQLException {
         super();
@@ -72,6 +84,94 @@ public class UnitOfWork implements AutoCloseable {
         return unitOfWork;
     }
 
+    /**
+     * Begin a read only unit of work. The connection of the current read scope is used if there is one, otherwise a
+     * connection is taken from the data source and returned on close.
+     *
+     * @param dataSource Data source to read from.
+     * @return Instance of UnitOfWork.
+     * @throws SQLException SQL Exception.
+     */
+    public static UnitOfWork beginReadOnly(DataSource dataSource) throws SQLException {
+
+        UnitOfWork unitOfWork = new UnitOfWork();
+        unitOfWork.readOnly = true;
+
+        ReadScope readScope = READ_SCOPE.get();
+        if (readScope != null) {
+            unitOfWork.connection = readScope.getConnection(dataSource);
+            unitOfWork.ownsConnection = false;
+        } else {
+            unitOfWork.connection = dataSource.getConnection();
+            unitOfWork.autoCommit = prepareReadOnly(unitOfWork.connection);
+        }
+        return unitOfWork;
+    }
+
+    /**
+     * Open a read scope for the current thread. Read only units of work started until the scope is closed share their
+     * connections. Scopes may be nested, the connections are closed with the outermost scope.
+     *
+     * @return Read scope to be closed by the caller.
+     */
+    public static ReadScope openReadScope() {
+
+        ReadScope readScope = READ_SCOPE.get();
+        if (readScope == null) {
+            readScope = new ReadScope();
+            READ_SCOPE.set(readScope);
+        }
+        readScope.depth++;
+        return readScope;
+    }
+
+    /**
+     * Prepare a connection for reads.
+     *
+     * @return Auto commit status of the connection before it was prepared.
+     */
+    private static boolean prepareReadOnly(Connection connection) throws SQLException {
+
+        boolean autoCommit;
+        try {
+            // Without auto commit the reads would open a transaction that is never ended, and the read only flag
+            // could not be reset within it before the connection is returned to the pool.
+            autoCommit = connection.getAutoCommit();
+            if (!autoCommit) {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+
+        try {
+            connection.setReadOnly(true);
+        } catch (SQLException e) {
+            // Read only is only a hint to the driver, reads work without it.
+            log.debug("Failed to mark the connection as read only.", e);
+        }
+        return autoCommit;
+    }
+
+    private static void closeReadOnlyConnection(Connection connection, boolean autoCommit) throws SQLException {
+
+        try {
+            // Connections are returned to a pool, hence do not leak the read only flag or the auto commit status to
+            // the next borrower.
+            try {
+                connection.setReadOnly(false);
+            } catch (SQLException e) {
+                log.debug("Failed to reset the read only flag of the connection.", e);
+            }
+            if (!autoCommit) {
+                connection.setAutoCommit(false);
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
     /**
      * Queue any auto closable to close at the end.
      *
@@ -87,6 +187,10 @@ public class UnitOfWork implements AutoCloseable {
      * @throws SQLException SQL Exception.
      */
     public void endTransaction() throws SQLException {
+
+        if (readOnly) {
+            return;
+        }
         transactionLevel.decrementAndGet();
         if (transactionLevel.get() <= 0) {
             connection.commit();
@@ -148,10 +252,65 @@ public class UnitOfWork implements AutoCloseable {
             }
         }
 
-        connection.close();
+        if (readOnly) {
+            if (ownsConnection) {
+                closeReadOnlyConnection(connection, autoCommit);
+            }
+        } else {
+            connection.close();
+        }
 
         if (exception != null) {
             throw exception;
         }
     }
+
+    /**
+     * Scope of the current thread in which read only units of work share their connections.
+     */
+    public static final class ReadScope implements AutoCloseable {
+
+        private final Map<DataSource, Connection> connections = new IdentityHashMap<>();
+
+        private final Map<Connection, Boolean> autoCommits = new IdentityHashMap<>();
+
+        private int depth;
+
+        private ReadScope() {
+
+        }
+
+        private Connection getConnection(DataSource dataSource) throws SQLException {
+
+            Connection connection = connections.get(dataSource);
+            if (connection == null) {
+                connection = dataSource.getConnection();
+                autoCommits.put(connection, prepareReadOnly(connection));
+                connections.put(dataSource, connection);
+            }
+            return connection;
+        }
+
+        /**
+         * Close the scope. Failures to close the connections are logged, since the reads are already complete.
+         */
+        @Override
+        public void close() {
+
+            if (--depth > 0) {
+                return;
+            }
+            READ_SCOPE.remove();
+
+            for (Connection connection : connections.values()) {
+                try {
+                    closeReadOnlyConnection(connection, autoCommits.get(connection));
+                } catch (SQLException e) {
+                    log.warn("Failed to close the connection of the read scope.", e);
+                }
+            }
+            connections.clear();
+            autoCommits.clear();
+        }
+    }
 }
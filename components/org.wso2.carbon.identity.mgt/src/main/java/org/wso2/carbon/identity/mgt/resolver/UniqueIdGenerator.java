@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.identity.mgt.resolver;
+
+/**
+ * Generates the globally unique ids of new users and groups.
+ * <p>
+ * The ids are the keys of the users and groups in the unique id resolver. They should be unique across all the nodes
+ * that share the resolver and should not be longer than 64 characters.
+ */
+public interface UniqueIdGenerator {
+
+    /**
+     * Generate a new unique id.
+     *
+     * @return Unique id.
+     */
+    String generate();
+}
@@ -20,8 +20,10 @@ import org.wso2.carbon.identity.mgt.exception.GroupNotFoundException;
 import org.wso2.carbon.identity.mgt.exception.UniqueIdResolverException;
 import org.wso2.carbon.identity.mgt.exception.UserNotFoundException;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * UniqueIdResolver interface.
@@ -81,13 +83,55 @@ public interface UniqueIdResolver {
     /**
      * List a set of users selected from the given range.
      *
-     * @param offset Start position
+     * @param offset Start position, starting with 1
      * @param length Number of users to retrieve
      * @return list of unique users within given range
      * @throws UniqueIdResolverException Unique Id Resolver Exception
      */
     List<DomainUser> listDomainUsers(int offset, int length, int domainId) throws UniqueIdResolverException;
 
+    /**
+     * List a set of users ordered by domain user id, starting after the given domain user id.
+     * <p>
+     * The default implementation scans all the users of the domain through
+     * {@link #listDomainUsers(int, int, int)} for every page. Resolvers able to seek on the domain user id should
+     * override it.
+     *
+     * @param lastDomainUserId Last domain user id of the previous page or null to start from the beginning
+     * @param length           Number of users to retrieve
+     * @param domainId         Domain id
+     * @return list of unique users with all of their partitions
+     * @throws UniqueIdResolverException Unique Id Resolver Exception
+     */
+    default List<DomainUser> listDomainUsers(String lastDomainUserId, int length, int domainId)
+            throws UniqueIdResolverException {
+
+        TreeMap<String, DomainUser> page = new TreeMap<>();
+        int scanLength = Math.max(length, 1000);
+        // The offset is the 1-based start index. A range may count partitions instead of users, hence a user may be
+        // split across two ranges and a range may hold fewer users than requested until the last one.
+        for (int offset = 1; ; offset += scanLength) {
+            List<DomainUser> domainUsers = listDomainUsers(offset, scanLength, domainId);
+            if (domainUsers.isEmpty()) {
+                return new ArrayList<>(page.values());
+            }
+            for (DomainUser domainUser : domainUsers) {
+                if (lastDomainUserId != null && domainUser.getDomainUserId().compareTo(lastDomainUserId) <= 0) {
+                    continue;
+                }
+                DomainUser pagedUser = page.get(domainUser.getDomainUserId());
+                if (pagedUser != null) {
+                    domainUser.getUserPartitions().forEach(pagedUser::addUserPartition);
+                } else {
+                    page.put(domainUser.getDomainUserId(), domainUser);
+                    if (page.size() > length) {
+                        page.pollLastEntry();
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Get unique group for a unique group Id.
      *
@@ -122,13 +166,54 @@ public interface UniqueIdResolver {
     /**
      * List a set of groups selected from the given range.
      *
-     * @param offset Start position
+     * @param offset Start position, starting with 1
      * @param length Number of groups to retrieve
      * @return list of unique groups within given range
      * @throws UniqueIdResolverException Unique Id Resolver Exception
      */
     List<DomainGroup> listGroups(int offset, int length, int domainId) throws UniqueIdResolverException;
 
+    /**
+     * List a set of groups ordered by domain group id, starting after the given domain group id.
+     * <p>
+     * The default implementation scans all the groups of the domain through {@link #listGroups(int, int, int)}
+     * for every page. Resolvers able to seek on the domain group id should override it.
+     *
+     * @param lastDomainGroupId Last domain group id of the previous page or null to start from the beginning
+     * @param length            Number of groups to retrieve
+     * @param domainId          Domain id
+     * @return list of unique groups with all of their partitions
+     * @throws UniqueIdResolverException Unique Id Resolver Exception
+     */
+    default List<DomainGroup> listGroups(String lastDomainGroupId, int length, int domainId)
+            throws UniqueIdResolverException {
+
+        TreeMap<String, DomainGroup> page = new TreeMap<>();
+        int scanLength = Math.max(length, 1000);
+        // The offset is the 1-based start index. A range may count partitions instead of groups, hence a group may be
+        // split across two ranges and a range may hold fewer groups than requested until the last one.
+        for (int offset = 1; ; offset += scanLength) {
+            List<DomainGroup> domainGroups = listGroups(offset, scanLength, domainId);
+            if (domainGroups.isEmpty()) {
+                return new ArrayList<>(page.values());
+            }
+            for (DomainGroup domainGroup : domainGroups) {
+                if (lastDomainGroupId != null && domainGroup.getDomainGroupId().compareTo(lastDomainGroupId) <= 0) {
+                    continue;
+                }
+                DomainGroup pagedGroup = page.get(domainGroup.getDomainGroupId());
+                if (pagedGroup != null) {
+                    pagedGroup.addGroupPartitions(domainGroup.getGroupPartitions());
+                } else {
+                    page.put(domainGroup.getDomainGroupId(), domainGroup);
+                    if (page.size() > length) {
+                        page.pollLastEntry();
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Get global unique Ids for a connector specific group Ids.
      *
@@ -187,15 +272,34 @@ public interface UniqueIdResolver {
             UniqueIdResolverException;
 
     /**
-     * Update user.
+     * Update user. The connector user id map holds all the partitions of one connector type of the user.
      *
      * @param domainUserId       Globally unique user Id.
      * @param connectorUserIdMap Connector user id map.
-     * @throws UniqueIdResolverException Unique Id Resolver Exception.
+     * @throws UniqueIdResolverException Unique Id Resolver Exception, also thrown if the user does not exist.
      */
     void updateUser(String domainUserId, Map<String, String> connectorUserIdMap, int domainId, String state) throws
             UniqueIdResolverException;
 
+    /**
+     * Update the identity store or the credential store partitions of a user. The partitions of the other
+     * connectors of that type are removed, while the partitions of the other type are kept.
+     * <p>
+     * The default implementation calls {@link #updateUser(String, Map, int, String)}.
+     *
+     * @param domainUserId       Globally unique user Id.
+     * @param connectorUserIdMap Connector user ids of all the partitions of the type.
+     * @param identityStore      Whether the partitions belong to identity store connectors.
+     * @param domainId           Id of the domain.
+     * @param state              State of the user.
+     * @throws UniqueIdResolverException Unique Id Resolver Exception, also thrown if the user does not exist.
+     */
+    default void updateUser(String domainUserId, Map<String, String> connectorUserIdMap, boolean identityStore,
+                            int domainId, String state) throws UniqueIdResolverException {
+
+        updateUser(domainUserId, connectorUserIdMap, domainId, state);
+    }
+
     /**
      * Delete user.
      *
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.store.test.unit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.mgt.impl.util.BloomFilter;
+
+/**
+ * Unit tests for the Bloom filter used by the user existence filter.
+ */
+public class BloomFilterTests {
+
+    @Test
+    public void testNoFalseNegatives() {
+
+        BloomFilter bloomFilter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            bloomFilter.put("user-" + i);
+        }
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertTrue(bloomFilter.mightContain("user-" + i), "Added value must always be found.");
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+
+        BloomFilter bloomFilter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            bloomFilter.put("user-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (bloomFilter.mightContain("missing-user-" + i)) {
+                falsePositives++;
+            }
+        }
+        Assert.assertTrue(falsePositives < 300, "False positive rate is too high: " + falsePositives);
+        Assert.assertTrue(bloomFilter.getExpectedFalsePositiveProbability() < 0.03);
+    }
+}
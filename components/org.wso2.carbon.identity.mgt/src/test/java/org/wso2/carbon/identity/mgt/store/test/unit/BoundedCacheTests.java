@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.store.test.unit;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.mgt.impl.config.CacheConfig;
+import org.wso2.carbon.identity.mgt.impl.util.BoundedCache;
+import org.wso2.carbon.identity.mgt.impl.util.CacheHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.cache.CacheManager;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.expiry.ModifiedExpiryPolicy;
+
+/**
+ * Unit tests for the refresh ahead and the concurrent reads of the bounded cache.
+ */
+public class BoundedCacheTests {
+
+    private static final long EXPIRE_TIME = 200;
+
+    private static final long MAX_STALE_TIME = 1000;
+
+    @Test
+    public void testRefreshAheadReloadsEntry() throws Exception {
+
+        BoundedCache<String, String> boundedCache = createRefreshAheadCache();
+        boundedCache.put("admin", "v1");
+
+        Thread.sleep((long) (EXPIRE_TIME * BoundedCache.REFRESH_AHEAD_RATIO) + 50);
+        Assert.assertEquals(boundedCache.get("admin", () -> "v2"), "v1",
+                "The current value should be served while it is being refreshed.");
+
+        waitForRefresh(boundedCache, 1);
+        Assert.assertEquals(boundedCache.get("admin"), "v2");
+        Assert.assertEquals(boundedCache.getRefreshFailureCount(), 0);
+    }
+
+    @Test
+    public void testStaleEntryIsServedUntilMaxStaleTime() throws Exception {
+
+        BoundedCache<String, String> boundedCache = createRefreshAheadCache();
+        boundedCache.put("admin", "v1");
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            Thread.sleep(EXPIRE_TIME + 100);
+            Assert.assertEquals(boundedCache.get("admin", () -> {
+                release.await();
+                return "v2";
+            }), "v1");
+            Assert.assertEquals(boundedCache.getStaleHitCount(), 1);
+
+            Thread.sleep(MAX_STALE_TIME);
+            Assert.assertNull(boundedCache.get("admin", () -> "v3"),
+                    "Entries older than the max stale time should not be served.");
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testRemoveCancelsRefresh() throws Exception {
+
+        BoundedCache<String, String> boundedCache = createRefreshAheadCache();
+        boundedCache.put("admin", "v1");
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread.sleep((long) (EXPIRE_TIME * BoundedCache.REFRESH_AHEAD_RATIO) + 50);
+        boundedCache.get("admin", () -> {
+            loadStarted.countDown();
+            release.await();
+            return "v2";
+        });
+        Assert.assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+        boundedCache.remove("admin");
+        release.countDown();
+
+        // Give the refresh time to complete, it should not put back the removed entry.
+        Thread.sleep(200);
+        Assert.assertNull(boundedCache.get("admin"));
+        Assert.assertEquals(boundedCache.getRefreshCount(), 0);
+    }
+
+    @Test(timeOut = 10000)
+    public void testConcurrentlyReadEntrySurvivesScan() throws Exception {
+
+        BoundedCache<String, String> boundedCache = new BoundedCache<>(
+                CacheBackedIdentityStoreTests.mapBackedCache("concurrentlyReadCache"), 10, true);
+        boundedCache.put("admin", "v1");
+
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread reader = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    boundedCache.get("admin");
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        Assert.assertEquals(boundedCache.getHitCount(), 8000);
+
+        // The buffered reads should have made the entry frequent enough to be kept over one off entries.
+        for (int i = 0; i < 100; i++) {
+            boundedCache.put("scan-" + i, "v1");
+        }
+        Assert.assertEquals(boundedCache.get("admin"), "v1");
+        Assert.assertEquals(boundedCache.getSize(), 10);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRefreshedEntriesExpireFromLastUpdate() {
+
+        CacheConfig cacheConfig = new CacheConfig();
+        cacheConfig.setEnable(true);
+        cacheConfig.setRefreshAhead(true);
+        cacheConfig.setExpireTime(1);
+
+        CacheManager cacheManager = Mockito.mock(CacheManager.class);
+        ArgumentCaptor<MutableConfiguration> configuration = ArgumentCaptor.forClass(MutableConfiguration.class);
+        Mockito.doAnswer(invocation -> CacheBackedIdentityStoreTests.mapBackedCache("refreshedCache"))
+                .when(cacheManager).createCache(Mockito.anyString(), configuration.capture());
+
+        CacheHelper.createCache("refreshedCache", String.class, String.class, CacheHelper.LOW_EXPIRE_TIME,
+                Collections.singletonMap("refreshedCache", cacheConfig), cacheManager);
+
+        // A refresh puts the entry again, which should extend its life in the underlying cache.
+        Assert.assertTrue(configuration.getValue().getExpiryPolicyFactory().create() instanceof ModifiedExpiryPolicy);
+    }
+
+    private static BoundedCache<String, String> createRefreshAheadCache() {
+
+        return new BoundedCache<>(CacheBackedIdentityStoreTests.mapBackedCache("refreshAheadCache"), 10, false,
+                EXPIRE_TIME, MAX_STALE_TIME);
+    }
+
+    private static void waitForRefresh(BoundedCache<String, String> boundedCache, long refreshCount)
+            throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (boundedCache.getRefreshCount() < refreshCount && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(boundedCache.getRefreshCount(), refreshCount);
+    }
+}
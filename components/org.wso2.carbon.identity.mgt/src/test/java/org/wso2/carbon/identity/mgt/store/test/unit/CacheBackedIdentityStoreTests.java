@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.store.test.unit;
+
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.mgt.IdentityStore;
+import org.wso2.carbon.identity.mgt.User;
+import org.wso2.carbon.identity.mgt.bean.UserBean;
+import org.wso2.carbon.identity.mgt.claim.Claim;
+import org.wso2.carbon.identity.mgt.claim.MetaClaim;
+import org.wso2.carbon.identity.mgt.exception.UserNotFoundException;
+import org.wso2.carbon.identity.mgt.impl.CacheBackedIdentityStore;
+import org.wso2.carbon.identity.mgt.impl.InvalidationBroadcaster;
+import org.wso2.carbon.identity.mgt.impl.LoopbackInvalidationTransport;
+import org.wso2.carbon.identity.mgt.impl.config.CacheInvalidationConfig;
+import org.wso2.carbon.identity.mgt.impl.util.BoundedCache;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+
+/**
+ * Unit tests for the caching of the users, groups and claims of the identity store.
+ */
+public class CacheBackedIdentityStoreTests {
+
+    private static final String PRIMARY_DOMAIN = "PRIMARY";
+
+    private static final Claim EMAIL_CLAIM = new Claim("http://wso2.org/claims", "http://wso2.org/claims/email",
+            "alice@wso2.com");
+
+    @Test
+    public void testUsersWithCollidingHashCodesAreCachedSeparately() throws Exception {
+
+        Assert.assertEquals("Aa".hashCode(), "BB".hashCode());
+
+        IdentityStore identityStore = mockIdentityStore();
+        Mockito.when(identityStore.getUser("Aa")).thenReturn(buildUser(identityStore, "Aa", "UNLOCKED"));
+        Mockito.when(identityStore.getUser("BB")).thenReturn(buildUser(identityStore, "BB", "LOCKED"));
+
+        CacheBackedIdentityStore cacheBackedIdentityStore = new CacheBackedIdentityStore(new HashMap<>(),
+                identityStore, mockCacheManager());
+
+        Assert.assertEquals(cacheBackedIdentityStore.getUser("Aa").getUniqueUserId(), "Aa");
+        User user = cacheBackedIdentityStore.getUser("BB");
+        Assert.assertEquals(user.getUniqueUserId(), "BB");
+        Assert.assertEquals(user.getState(), "LOCKED");
+    }
+
+    @Test
+    public void testLoadRacingWithUpdateIsNotCached() throws Exception {
+
+        IdentityStore identityStore = mockIdentityStore();
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loadCount = new AtomicInteger();
+        Mockito.when(identityStore.getUser("admin")).thenAnswer(invocation -> {
+            if (loadCount.incrementAndGet() == 1) {
+                loadStarted.countDown();
+                release.await();
+                return buildUser(identityStore, "admin", "UNLOCKED");
+            }
+            return buildUser(identityStore, "admin", "LOCKED");
+        });
+
+        CacheBackedIdentityStore cacheBackedIdentityStore = new CacheBackedIdentityStore(new HashMap<>(),
+                identityStore, mockCacheManager());
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<User> staleRead = executorService.submit(() -> cacheBackedIdentityStore.getUser("admin"));
+            Assert.assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+            // The update invalidates the user while the load of the previous state is in progress.
+            cacheBackedIdentityStore.setUserState("admin", "LOCKED");
+            release.countDown();
+            Assert.assertEquals(staleRead.get(5, TimeUnit.SECONDS).getState(), "UNLOCKED");
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        Assert.assertEquals(cacheBackedIdentityStore.getUser("admin").getState(), "LOCKED",
+                "A load which started before an update should not be cached.");
+        Assert.assertEquals(loadCount.get(), 2);
+    }
+
+    @Test
+    public void testMissingUserRacingWithAddIsNotCached() throws Exception {
+
+        IdentityStore identityStore = mockIdentityStore();
+        CountDownLatch lookupStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger lookupCount = new AtomicInteger();
+        Mockito.when(identityStore.getUser(EMAIL_CLAIM)).thenAnswer(invocation -> {
+            if (lookupCount.incrementAndGet() == 1) {
+                lookupStarted.countDown();
+                release.await();
+                throw new UserNotFoundException("Invalid claim value.");
+            }
+            return buildUser(identityStore, "alice", "UNLOCKED");
+        });
+
+        CacheBackedIdentityStore cacheBackedIdentityStore = new CacheBackedIdentityStore(new HashMap<>(),
+                identityStore, mockCacheManager());
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<User> missedLookup = executorService.submit(() -> cacheBackedIdentityStore.getUser(EMAIL_CLAIM));
+            Assert.assertTrue(lookupStarted.await(5, TimeUnit.SECONDS));
+
+            // The user is added while the lookup, which read the store before the add, is still in progress.
+            cacheBackedIdentityStore.addUser(buildUserBean(EMAIL_CLAIM));
+            release.countDown();
+            try {
+                missedLookup.get(5, TimeUnit.SECONDS);
+                Assert.fail("The lookup which started before the add should not find the user.");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof UserNotFoundException);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        Assert.assertEquals(cacheBackedIdentityStore.getUser(EMAIL_CLAIM).getUniqueUserId(), "alice",
+                "A miss which raced with the add should not be cached.");
+    }
+
+    @Test
+    public void testMissingUserIsInvalidatedAcrossNodes() throws Exception {
+
+        IdentityStore identityStore = mockIdentityStore();
+        Mockito.when(identityStore.getUser(EMAIL_CLAIM))
+                .thenThrow(new UserNotFoundException("Invalid claim value."))
+                .thenReturn(buildUser(identityStore, "alice", "UNLOCKED"));
+
+        CacheBackedIdentityStore node1 = new CacheBackedIdentityStore(new HashMap<>(), identityStore,
+                mockCacheManager());
+        CacheBackedIdentityStore node2 = new CacheBackedIdentityStore(new HashMap<>(), identityStore,
+                mockCacheManager());
+        LoopbackInvalidationTransport transport = new LoopbackInvalidationTransport();
+        InvalidationBroadcaster broadcaster1 = new InvalidationBroadcaster(transport, new CacheInvalidationConfig(),
+                node1::applyInvalidation);
+        InvalidationBroadcaster broadcaster2 = new InvalidationBroadcaster(transport, new CacheInvalidationConfig(),
+                node2::applyInvalidation);
+        transport.subscribe(broadcaster1);
+        transport.subscribe(broadcaster2);
+        node1.setInvalidationBroadcaster(broadcaster1);
+        node2.setInvalidationBroadcaster(broadcaster2);
+
+        try {
+            node2.getUser(EMAIL_CLAIM);
+            Assert.fail("The user should not exist before it is added.");
+        } catch (UserNotFoundException e) {
+            Mockito.verify(identityStore, Mockito.times(1)).getUser(EMAIL_CLAIM);
+        }
+
+        node1.addUser(buildUserBean(EMAIL_CLAIM));
+        broadcaster1.flush();
+
+        Assert.assertEquals(node2.getUser(EMAIL_CLAIM).getUniqueUserId(), "alice",
+                "A user added on another node should not be hidden by the cached miss.");
+    }
+
+    @Test
+    public void testCachedClaimsAreNotChangedByCallers() throws Exception {
+
+        IdentityStore identityStore = mockIdentityStore();
+        Mockito.when(identityStore.getClaimsOfUser("alice")).thenAnswer(invocation -> Collections.singletonList(
+                new Claim(EMAIL_CLAIM.getDialectUri(), EMAIL_CLAIM.getClaimUri(), EMAIL_CLAIM.getValue())));
+
+        CacheBackedIdentityStore cacheBackedIdentityStore = new CacheBackedIdentityStore(new HashMap<>(),
+                identityStore, mockCacheManager());
+
+        cacheBackedIdentityStore.getClaimsOfUser("alice").get(0).setValue("changed@wso2.com");
+        cacheBackedIdentityStore.getClaimsOfUser("alice").get(0).setValue("changed@wso2.com");
+        cacheBackedIdentityStore.getClaimsOfUser("alice", Collections.singletonList(
+                new MetaClaim(EMAIL_CLAIM.getDialectUri(), EMAIL_CLAIM.getClaimUri()))).get(0)
+                .setValue("changed@wso2.com");
+
+        Assert.assertEquals(cacheBackedIdentityStore.getClaimsOfUser("alice").get(0).getValue(),
+                EMAIL_CLAIM.getValue(), "Changes to the returned claims should not change the cached claims.");
+        Mockito.verify(identityStore, Mockito.times(1)).getClaimsOfUser("alice");
+    }
+
+    @Test
+    public void testPutIfUnchangedSkipsRemovedKeys() {
+
+        BoundedCache<String, String> boundedCache = new BoundedCache<>(mapBackedCache("testCache"), 10, false);
+
+        long generation = boundedCache.getGeneration("admin");
+        boundedCache.remove("admin");
+        Assert.assertFalse(boundedCache.putIfUnchanged("admin", "stale", generation));
+        Assert.assertNull(boundedCache.get("admin"));
+
+        generation = boundedCache.getGeneration("admin");
+        Assert.assertTrue(boundedCache.putIfUnchanged("admin", "current", generation));
+        Assert.assertEquals(boundedCache.get("admin"), "current");
+    }
+
+    private static IdentityStore mockIdentityStore() throws Exception {
+
+        IdentityStore identityStore = Mockito.mock(IdentityStore.class);
+        Mockito.when(identityStore.getPrimaryDomainName()).thenReturn(PRIMARY_DOMAIN);
+        Mockito.when(identityStore.getDomainNames()).thenReturn(Collections.singleton(PRIMARY_DOMAIN));
+        return identityStore;
+    }
+
+    private static UserBean buildUserBean(Claim claim) {
+
+        UserBean userBean = new UserBean();
+        userBean.setClaims(Collections.singletonList(claim));
+        return userBean;
+    }
+
+    private static User buildUser(IdentityStore identityStore, String uniqueUserId, String state) {
+
+        return new User.UserBuilder()
+                .setUserId(uniqueUserId)
+                .setDomainName(PRIMARY_DOMAIN)
+                .setState(state)
+                .setIdentityStore(identityStore)
+                .build();
+    }
+
+    /**
+     * Create a cache manager whose caches are backed by plain maps.
+     */
+    static CacheManager mockCacheManager() {
+
+        CacheManager cacheManager = Mockito.mock(CacheManager.class);
+        Mockito.doAnswer(invocation -> mapBackedCache((String) invocation.getArguments()[0]))
+                .when(cacheManager).createCache(Mockito.anyString(), Mockito.any());
+        return cacheManager;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> Cache<K, V> mapBackedCache(String cacheName) {
+
+        Map<K, V> entries = new ConcurrentHashMap<>();
+        Cache<K, V> cache = Mockito.mock(Cache.class);
+        Mockito.when(cache.getName()).thenReturn(cacheName);
+        Mockito.when(cache.get(Mockito.any())).thenAnswer(invocation -> entries.get(invocation.getArguments()[0]));
+        Mockito.doAnswer(invocation -> entries.put((K) invocation.getArguments()[0], (V) invocation.getArguments()[1]))
+                .when(cache).put(Mockito.any(), Mockito.any());
+        Mockito.when(cache.remove(Mockito.any()))
+                .thenAnswer(invocation -> entries.remove(invocation.getArguments()[0]) != null);
+        Mockito.doAnswer(invocation -> {
+            entries.clear();
+            return null;
+        }).when(cache).removeAll();
+        return cache;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.store.test.unit;
+
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.mgt.exception.UniqueIdResolverException;
+import org.wso2.carbon.identity.mgt.exception.UserNotFoundException;
+import org.wso2.carbon.identity.mgt.impl.CachingUniqueIdResolver;
+import org.wso2.carbon.identity.mgt.impl.util.UniqueIdResolverConstants;
+import org.wso2.carbon.identity.mgt.resolver.DomainGroup;
+import org.wso2.carbon.identity.mgt.resolver.DomainUser;
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolver;
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolverConfig;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the caching of the partitions of users and groups in front of a unique id resolver.
+ */
+public class CachingUniqueIdResolverTests {
+
+    private static final int DOMAIN_ID = 1;
+
+    private static final String DOMAIN_USER_ID = "alice-id";
+
+    private static final String DOMAIN_GROUP_ID = "admins-id";
+
+    @Test
+    public void testUserPartitionsAreCached() throws Exception {
+
+        UniqueIdResolver uniqueIdResolver = Mockito.mock(UniqueIdResolver.class);
+        DomainUser domainUser = new DomainUser(DOMAIN_USER_ID, Collections.emptyList(), "UNLOCKED");
+        Mockito.when(uniqueIdResolver.getUser(DOMAIN_USER_ID, DOMAIN_ID)).thenReturn(domainUser);
+        CachingUniqueIdResolver cachingUniqueIdResolver = createResolver(uniqueIdResolver, "cachedUsers");
+
+        Assert.assertSame(cachingUniqueIdResolver.getUser(DOMAIN_USER_ID, DOMAIN_ID), domainUser);
+        Assert.assertSame(cachingUniqueIdResolver.getUser(DOMAIN_USER_ID, DOMAIN_ID), domainUser);
+        Assert.assertTrue(cachingUniqueIdResolver.isUserExists(DOMAIN_USER_ID, DOMAIN_ID));
+        Mockito.verify(uniqueIdResolver, Mockito.times(1)).getUser(DOMAIN_USER_ID, DOMAIN_ID);
+        Mockito.verify(uniqueIdResolver, Mockito.never()).isUserExists(DOMAIN_USER_ID, DOMAIN_ID);
+
+        // Users of other domains are cached separately.
+        Assert.assertNull(cachingUniqueIdResolver.getUser(DOMAIN_USER_ID, 2));
+    }
+
+    @Test
+    public void testUserWritesInvalidatePartitions() throws Exception {
+
+        UniqueIdResolver uniqueIdResolver = Mockito.mock(UniqueIdResolver.class);
+        Mockito.when(uniqueIdResolver.getUser(DOMAIN_USER_ID, DOMAIN_ID)).thenReturn(new DomainUser(DOMAIN_USER_ID,
+                Collections.emptyList(), "UNLOCKED"));
+        CachingUniqueIdResolver cachingUniqueIdResolver = createResolver(uniqueIdResolver, "invalidatedUsers");
+
+        cachingUniqueIdResolver.getUser(DOMAIN_USER_ID, DOMAIN_ID);
+        cachingUniqueIdResolver.setUserState(DOMAIN_USER_ID, "LOCKED", DOMAIN_ID);
+        cachingUniqueIdResolver.getUser(DOMAIN_USER_ID, DOMAIN_ID);
+        cachingUniqueIdResolver.updateUser(DOMAIN_USER_ID, Collections.singletonMap("JDBC_ISC", "alice"), DOMAIN_ID,
+                null);
+        cachingUniqueIdResolver.getUser(DOMAIN_USER_ID, DOMAIN_ID);
+        cachingUniqueIdResolver.invalidateUser(DOMAIN_USER_ID, DOMAIN_ID);
+        cachingUniqueIdResolver.getUser(DOMAIN_USER_ID, DOMAIN_ID);
+        Mockito.verify(uniqueIdResolver, Mockito.times(4)).getUser(DOMAIN_USER_ID, DOMAIN_ID);
+
+        // A failed write may have partly applied, hence the user is invalidated as well.
+        Mockito.doThrow(new UniqueIdResolverException("Failed to delete the user.")).when(uniqueIdResolver)
+                .deleteUser(DOMAIN_USER_ID, DOMAIN_ID);
+        try {
+            cachingUniqueIdResolver.deleteUser(DOMAIN_USER_ID, DOMAIN_ID);
+            Assert.fail("The failure of the resolver should be thrown.");
+        } catch (UniqueIdResolverException e) {
+            cachingUniqueIdResolver.getUser(DOMAIN_USER_ID, DOMAIN_ID);
+            Mockito.verify(uniqueIdResolver, Mockito.times(5)).getUser(DOMAIN_USER_ID, DOMAIN_ID);
+        }
+    }
+
+    @Test
+    public void testLoadRacingWithUpdateIsNotCached() throws Exception {
+
+        UniqueIdResolver uniqueIdResolver = Mockito.mock(UniqueIdResolver.class);
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loadCount = new AtomicInteger();
+        Mockito.when(uniqueIdResolver.getUser(DOMAIN_USER_ID, DOMAIN_ID)).thenAnswer(invocation -> {
+            if (loadCount.incrementAndGet() == 1) {
+                loadStarted.countDown();
+                release.await();
+                return new DomainUser(DOMAIN_USER_ID, Collections.emptyList(), "UNLOCKED");
+            }
+            return new DomainUser(DOMAIN_USER_ID, Collections.emptyList(), "LOCKED");
+        });
+        CachingUniqueIdResolver cachingUniqueIdResolver = createResolver(uniqueIdResolver, "racingUsers");
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<DomainUser> staleRead = executorService.submit(() ->
+                    cachingUniqueIdResolver.getUser(DOMAIN_USER_ID, DOMAIN_ID));
+            Assert.assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+            // The update invalidates the user while the load of the previous state is in progress.
+            cachingUniqueIdResolver.setUserState(DOMAIN_USER_ID, "LOCKED", DOMAIN_ID);
+            release.countDown();
+            Assert.assertEquals(staleRead.get(5, TimeUnit.SECONDS).getState(), "UNLOCKED");
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        Assert.assertEquals(cachingUniqueIdResolver.getUser(DOMAIN_USER_ID, DOMAIN_ID).getState(), "LOCKED",
+                "A load which started before an update should not be cached.");
+        Assert.assertEquals(loadCount.get(), 2);
+    }
+
+    @Test
+    public void testMissingUserIsNotCached() throws Exception {
+
+        UniqueIdResolver uniqueIdResolver = Mockito.mock(UniqueIdResolver.class);
+        Mockito.when(uniqueIdResolver.getUser(DOMAIN_USER_ID, DOMAIN_ID))
+                .thenThrow(new UserNotFoundException("User not found."));
+        CachingUniqueIdResolver cachingUniqueIdResolver = createResolver(uniqueIdResolver, "missingUsers");
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                cachingUniqueIdResolver.getUser(DOMAIN_USER_ID, DOMAIN_ID);
+                Assert.fail("Missing user should be reported.");
+            } catch (UserNotFoundException e) {
+                // Expected, the lookup should not be cached.
+            }
+        }
+        Mockito.verify(uniqueIdResolver, Mockito.times(2)).getUser(DOMAIN_USER_ID, DOMAIN_ID);
+    }
+
+    @Test
+    public void testGroupPartitionsAreCachedUntilWritten() throws Exception {
+
+        UniqueIdResolver uniqueIdResolver = Mockito.mock(UniqueIdResolver.class);
+        DomainGroup domainGroup = new DomainGroup(DOMAIN_GROUP_ID, Collections.emptyList());
+        Mockito.when(uniqueIdResolver.getGroup(DOMAIN_GROUP_ID, DOMAIN_ID)).thenReturn(domainGroup);
+        CachingUniqueIdResolver cachingUniqueIdResolver = createResolver(uniqueIdResolver, "cachedGroups");
+
+        Assert.assertSame(cachingUniqueIdResolver.getGroup(DOMAIN_GROUP_ID, DOMAIN_ID), domainGroup);
+        Assert.assertSame(cachingUniqueIdResolver.getGroup(DOMAIN_GROUP_ID, DOMAIN_ID), domainGroup);
+        Assert.assertTrue(cachingUniqueIdResolver.isGroupExists(DOMAIN_GROUP_ID, DOMAIN_ID));
+        Mockito.verify(uniqueIdResolver, Mockito.times(1)).getGroup(DOMAIN_GROUP_ID, DOMAIN_ID);
+
+        cachingUniqueIdResolver.updateGroup(DOMAIN_GROUP_ID, Collections.singletonMap("JDBC_ISC", "admins"),
+                DOMAIN_ID);
+        cachingUniqueIdResolver.getGroup(DOMAIN_GROUP_ID, DOMAIN_ID);
+        cachingUniqueIdResolver.deleteGroup(DOMAIN_GROUP_ID, DOMAIN_ID);
+        cachingUniqueIdResolver.getGroup(DOMAIN_GROUP_ID, DOMAIN_ID);
+        Mockito.verify(uniqueIdResolver, Mockito.times(3)).getGroup(DOMAIN_GROUP_ID, DOMAIN_ID);
+    }
+
+    private static CachingUniqueIdResolver createResolver(UniqueIdResolver uniqueIdResolver, String cacheNameSuffix)
+            throws Exception {
+
+        Map<String, String> properties = new HashMap<>();
+        properties.put(UniqueIdResolverConstants.CACHE_MAX_CAPACITY, "100");
+        properties.put(UniqueIdResolverConstants.CACHE_STATISTICS_ENABLED, "false");
+        CachingUniqueIdResolver cachingUniqueIdResolver = new CachingUniqueIdResolver(uniqueIdResolver,
+                CacheBackedIdentityStoreTests.mockCacheManager(), cacheNameSuffix);
+        cachingUniqueIdResolver.init(new UniqueIdResolverConfig("JDBCUniqueIdResolver", properties));
+        return cachingUniqueIdResolver;
+    }
+}
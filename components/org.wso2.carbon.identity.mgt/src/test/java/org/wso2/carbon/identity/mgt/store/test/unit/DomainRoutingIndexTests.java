@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.store.test.unit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.mgt.impl.util.DomainRoutingIndex;
+
+/**
+ * Unit tests for the domain routing index.
+ */
+public class DomainRoutingIndexTests {
+
+    private static final String USERNAME_CLAIM = "http://wso2.org/claims/username";
+    private static final String EMAIL_CLAIM = "http://wso2.org/claims/email";
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+
+        DomainRoutingIndex routingIndex = new DomainRoutingIndex(2);
+        routingIndex.put(USERNAME_CLAIM, "alice", "1.a");
+        routingIndex.put(USERNAME_CLAIM, "bob", "2.b");
+
+        // Touch alice so that bob becomes the eldest entry.
+        Assert.assertEquals(routingIndex.get(USERNAME_CLAIM, "alice"), "1.a");
+        routingIndex.put(USERNAME_CLAIM, "carol", "2.c");
+
+        Assert.assertNull(routingIndex.get(USERNAME_CLAIM, "bob"), "Least recently used entry should be evicted.");
+        Assert.assertEquals(routingIndex.get(USERNAME_CLAIM, "alice"), "1.a");
+        Assert.assertEquals(routingIndex.get(USERNAME_CLAIM, "carol"), "2.c");
+    }
+
+    @Test
+    public void testRemoveUser() {
+
+        DomainRoutingIndex routingIndex = new DomainRoutingIndex(10);
+        routingIndex.put(USERNAME_CLAIM, "alice", "1.a");
+        routingIndex.put(EMAIL_CLAIM, "alice@wso2.com", "1.a");
+        routingIndex.put(USERNAME_CLAIM, "bob", "2.b");
+
+        routingIndex.removeUser("1.a");
+
+        Assert.assertNull(routingIndex.get(USERNAME_CLAIM, "alice"));
+        Assert.assertNull(routingIndex.get(EMAIL_CLAIM, "alice@wso2.com"));
+        Assert.assertEquals(routingIndex.get(USERNAME_CLAIM, "bob"), "2.b", "Routes of other users should remain.");
+    }
+
+    @Test
+    public void testReassignedClaimValue() {
+
+        DomainRoutingIndex routingIndex = new DomainRoutingIndex(10);
+        routingIndex.put(USERNAME_CLAIM, "alice", "1.a");
+        routingIndex.put(USERNAME_CLAIM, "alice", "2.a");
+
+        // Removing the previous owner must not drop the route of the new owner.
+        routingIndex.removeUser("1.a");
+        Assert.assertEquals(routingIndex.get(USERNAME_CLAIM, "alice"), "2.a");
+    }
+}
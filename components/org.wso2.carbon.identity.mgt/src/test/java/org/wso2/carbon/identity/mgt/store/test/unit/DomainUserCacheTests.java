@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.store.test.unit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.mgt.claim.Claim;
+import org.wso2.carbon.identity.mgt.impl.DomainUserCache;
+import org.wso2.carbon.identity.mgt.impl.util.BoundedCache;
+
+/**
+ * Unit tests for the cache of unique claim values to domain user ids.
+ */
+public class DomainUserCacheTests {
+
+    private static final int DOMAIN_ID = 1;
+
+    private static final String DOMAIN_USER_ID = "alice-id";
+
+    private static final Claim EMAIL_CLAIM = new Claim("http://wso2.org/claims", "http://wso2.org/claims/email",
+            "alice@wso2.com");
+
+    private static final Claim USERNAME_CLAIM = new Claim("http://wso2.org/claims",
+            "http://wso2.org/claims/username", "alice");
+
+    @Test
+    public void testClaimIsMappedToDomainUserId() {
+
+        DomainUserCache domainUserCache = createDomainUserCache();
+        Assert.assertNull(domainUserCache.getDomainUserId(DOMAIN_ID, EMAIL_CLAIM));
+
+        domainUserCache.putIfUnchanged(DOMAIN_ID, EMAIL_CLAIM, DOMAIN_USER_ID, domainUserCache.getGeneration());
+        Assert.assertEquals(domainUserCache.getDomainUserId(DOMAIN_ID, EMAIL_CLAIM), DOMAIN_USER_ID);
+        Assert.assertNull(domainUserCache.getDomainUserId(2, EMAIL_CLAIM), "Domains should not share mappings.");
+        Assert.assertNull(domainUserCache.getDomainUserId(DOMAIN_ID, new Claim(EMAIL_CLAIM.getDialectUri(),
+                EMAIL_CLAIM.getClaimUri(), "bob@wso2.com")));
+    }
+
+    @Test
+    public void testRemovingUserInvalidatesAllClaims() {
+
+        DomainUserCache domainUserCache = createDomainUserCache();
+        domainUserCache.putIfUnchanged(DOMAIN_ID, EMAIL_CLAIM, DOMAIN_USER_ID, domainUserCache.getGeneration());
+        domainUserCache.putIfUnchanged(DOMAIN_ID, USERNAME_CLAIM, DOMAIN_USER_ID, domainUserCache.getGeneration());
+
+        domainUserCache.removeUser(DOMAIN_ID, DOMAIN_USER_ID);
+        Assert.assertNull(domainUserCache.getDomainUserId(DOMAIN_ID, USERNAME_CLAIM));
+
+        // A claim mapped after the removal should not bring back the claims mapped before it, such as an old email.
+        Claim newEmailClaim = new Claim(EMAIL_CLAIM.getDialectUri(), EMAIL_CLAIM.getClaimUri(), "alice@wso2.org");
+        domainUserCache.putIfUnchanged(DOMAIN_ID, newEmailClaim, DOMAIN_USER_ID, domainUserCache.getGeneration());
+        Assert.assertEquals(domainUserCache.getDomainUserId(DOMAIN_ID, newEmailClaim), DOMAIN_USER_ID);
+        Assert.assertNull(domainUserCache.getDomainUserId(DOMAIN_ID, EMAIL_CLAIM));
+    }
+
+    @Test
+    public void testEvictedUserEpochInvalidatesClaims() {
+
+        BoundedCache<String, Long> userEpochCache = new BoundedCache<>(
+                CacheBackedIdentityStoreTests.mapBackedCache("userEpochCache"), 10, false);
+        DomainUserCache domainUserCache = new DomainUserCache(new BoundedCache<>(
+                CacheBackedIdentityStoreTests.mapBackedCache("claimCache"), 10, false), userEpochCache);
+        domainUserCache.putIfUnchanged(DOMAIN_ID, EMAIL_CLAIM, DOMAIN_USER_ID, domainUserCache.getGeneration());
+
+        userEpochCache.remove(DOMAIN_ID + ":" + DOMAIN_USER_ID);
+        Assert.assertNull(domainUserCache.getDomainUserId(DOMAIN_ID, EMAIL_CLAIM),
+                "A claim should not be used without the epoch of its user.");
+    }
+
+    @Test
+    public void testClaimResolvedBeforeRemovalIsNotMapped() {
+
+        DomainUserCache domainUserCache = createDomainUserCache();
+        domainUserCache.putIfUnchanged(DOMAIN_ID, USERNAME_CLAIM, DOMAIN_USER_ID, domainUserCache.getGeneration());
+
+        // A reader resolves the old email of the user, while an update of the user removes it before the reader puts.
+        long generation = domainUserCache.getGeneration();
+        domainUserCache.removeUser(DOMAIN_ID, DOMAIN_USER_ID);
+        Assert.assertFalse(domainUserCache.putIfUnchanged(DOMAIN_ID, EMAIL_CLAIM, DOMAIN_USER_ID, generation));
+        Assert.assertNull(domainUserCache.getDomainUserId(DOMAIN_ID, EMAIL_CLAIM),
+                "A claim resolved before the removal of its user should not be mapped.");
+    }
+
+    private static DomainUserCache createDomainUserCache() {
+
+        return new DomainUserCache(new BoundedCache<>(CacheBackedIdentityStoreTests.mapBackedCache("claimCache"), 10,
+                false), new BoundedCache<>(CacheBackedIdentityStoreTests.mapBackedCache("userEpochCache"), 10, false));
+    }
+}
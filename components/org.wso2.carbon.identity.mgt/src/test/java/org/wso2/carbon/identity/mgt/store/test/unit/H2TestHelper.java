@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.store.test.unit;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.mockito.Mockito;
+import org.wso2.carbon.datasource.core.api.DataSourceService;
+import org.wso2.carbon.identity.mgt.exception.UniqueIdResolverException;
+import org.wso2.carbon.identity.mgt.impl.JDBCUniqueIdResolver;
+import org.wso2.carbon.identity.mgt.impl.internal.IdentityMgtDataHolder;
+import org.wso2.carbon.identity.mgt.impl.util.UniqueIdResolverConstants;
+import org.wso2.carbon.identity.mgt.resolver.DomainGroup;
+import org.wso2.carbon.identity.mgt.resolver.DomainUser;
+import org.wso2.carbon.identity.mgt.resolver.GroupPartition;
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolver;
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolverConfig;
+import org.wso2.carbon.identity.mgt.resolver.UserPartition;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.sql.DataSource;
+
+/**
+ * Shared set up of the H2 databases for the tests of the unique id resolvers.
+ */
+final class H2TestHelper {
+
+    static final String DB_SCRIPT = Paths.get("..", "..", "features", "org.wso2.carbon.identity.mgt.feature",
+            "resources", "dbscripts", "identity-mgt", "h2.sql").toAbsolutePath().toString();
+    static final String IDENTITY_CONNECTOR_ID = "JDBC_ISC";
+
+    private H2TestHelper() {
+
+    }
+
+    /**
+     * Create an in memory database with the identity management tables.
+     *
+     * @param name Name of the database.
+     * @return Data source of the database.
+     * @throws SQLException SQL Exception.
+     */
+    static JdbcDataSource createDatabase(String name) throws SQLException {
+
+        return createDatabase(name, "Regular");
+    }
+
+    /**
+     * Create an in memory database with the identity management tables, in a compatibility mode of H2.
+     *
+     * @param name Name of the database.
+     * @param mode H2 compatibility mode of the database.
+     * @return Data source of the database.
+     * @throws SQLException SQL Exception.
+     */
+    static JdbcDataSource createDatabase(String name, String mode) throws SQLException {
+
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";MODE=" + mode + ";DB_CLOSE_DELAY=-1");
+        runDbScript(dataSource);
+        return dataSource;
+    }
+
+    /**
+     * Create the identity management tables in a database.
+     *
+     * @param dataSource Data source of the database.
+     * @throws SQLException SQL Exception.
+     */
+    static void runDbScript(DataSource dataSource) throws SQLException {
+
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("RUNSCRIPT FROM '" + DB_SCRIPT + "'");
+        }
+    }
+
+    /**
+     * Serve the data sources through a mocked data source service of the data holder.
+     *
+     * @param dataSources Data sources by their names.
+     * @return Data source service which was in the data holder, to be restored after the tests.
+     * @throws Exception Exception.
+     */
+    static DataSourceService registerDataSources(Map<String, ? extends DataSource> dataSources) throws Exception {
+
+        DataSourceService dataSourceService = Mockito.mock(DataSourceService.class);
+        for (Map.Entry<String, ? extends DataSource> entry : dataSources.entrySet()) {
+            Mockito.when(dataSourceService.getDataSource(entry.getKey())).thenReturn(entry.getValue());
+        }
+
+        DataSourceService previousDataSourceService = IdentityMgtDataHolder.getInstance().getDataSourceService();
+        IdentityMgtDataHolder.getInstance().setDataSourceService(dataSourceService);
+        return previousDataSourceService;
+    }
+
+    /**
+     * Restore the data source service of the data holder.
+     *
+     * @param dataSourceService Data source service returned by {@link #registerDataSources(Map)}.
+     */
+    static void restoreDataSourceService(DataSourceService dataSourceService) {
+
+        IdentityMgtDataHolder.getInstance().setDataSourceService(dataSourceService);
+    }
+
+    /**
+     * Create a JDBC unique id resolver over a data source served by {@link #registerDataSources(Map)}.
+     *
+     * @param dataSourceName Name of the data source.
+     * @param properties Other properties of the resolver.
+     * @return Unique id resolver.
+     * @throws UniqueIdResolverException Unique Id Resolver Exception.
+     */
+    static UniqueIdResolver createJDBCResolver(String dataSourceName, Map<String, String> properties)
+            throws UniqueIdResolverException {
+
+        Map<String, String> resolverProperties = new HashMap<>(properties);
+        resolverProperties.put(UniqueIdResolverConstants.DATA_SOURCE, dataSourceName);
+        UniqueIdResolver resolver = new JDBCUniqueIdResolver();
+        resolver.init(new UniqueIdResolverConfig("JDBCUniqueIdResolver", resolverProperties));
+        return resolver;
+    }
+
+    /**
+     * Build a domain user with a random unique id and an identity store partition.
+     *
+     * @param connectorUserId Connector user id of the partitions.
+     * @return Domain user.
+     */
+    static DomainUser buildDomainUser(String connectorUserId) {
+
+        return buildDomainUser(UUID.randomUUID().toString(), connectorUserId);
+    }
+
+    /**
+     * Build a domain user with an identity store partition and a credential store partition of each connector.
+     *
+     * @param domainUserId Unique id of the user.
+     * @param connectorUserId Connector user id of the partitions.
+     * @param credentialConnectorIds Ids of the credential store connectors of the user.
+     * @return Domain user.
+     */
+    static DomainUser buildDomainUser(String domainUserId, String connectorUserId, String... credentialConnectorIds) {
+
+        List<UserPartition> userPartitions = new ArrayList<>();
+        userPartitions.add(buildUserPartition(IDENTITY_CONNECTOR_ID, connectorUserId, true));
+        for (String credentialConnectorId : credentialConnectorIds) {
+            userPartitions.add(buildUserPartition(credentialConnectorId, connectorUserId, false));
+        }
+
+        return new DomainUser(domainUserId, userPartitions, "UNLOCKED");
+    }
+
+    /**
+     * Build a domain group with a random unique id and an identity store partition.
+     *
+     * @param connectorGroupId Connector group id of the partition.
+     * @return Domain group.
+     */
+    static DomainGroup buildDomainGroup(String connectorGroupId) {
+
+        GroupPartition groupPartition = new GroupPartition();
+        groupPartition.setConnectorId(IDENTITY_CONNECTOR_ID);
+        groupPartition.setConnectorGroupId(connectorGroupId);
+
+        return new DomainGroup(UUID.randomUUID().toString(),
+                new ArrayList<>(Collections.singletonList(groupPartition)));
+    }
+
+    private static UserPartition buildUserPartition(String connectorId, String connectorUserId,
+                                                    boolean identityStore) {
+
+        UserPartition userPartition = new UserPartition();
+        userPartition.setConnectorId(connectorId);
+        userPartition.setConnectorUserId(connectorUserId);
+        userPartition.setIdentityStore(identityStore);
+        return userPartition;
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.store.test.unit;
+
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.mgt.AuthenticationContext;
+import org.wso2.carbon.identity.mgt.claim.Claim;
+import org.wso2.carbon.identity.mgt.claim.MetaClaim;
+import org.wso2.carbon.identity.mgt.constant.IdentityMgtConstants;
+import org.wso2.carbon.identity.mgt.exception.AuthenticationFailure;
+import org.wso2.carbon.identity.mgt.exception.IdentityStoreServerException;
+import org.wso2.carbon.identity.mgt.impl.Domain;
+import org.wso2.carbon.identity.mgt.impl.IdentityStoreImpl;
+import org.wso2.carbon.identity.mgt.impl.config.AuthenticationConfig;
+import org.wso2.carbon.identity.mgt.resolver.DomainUser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.PasswordCallback;
+
+/**
+ * Unit tests for the authentication and the iteration of users of the identity store across domains.
+ */
+public class IdentityStoreImplTests {
+
+    private static final Claim USERNAME_CLAIM = new Claim("http://wso2.org/claims", "http://wso2.org/claims/username",
+            "alice");
+
+    private static final Callback[] CREDENTIALS = {new PasswordCallback("password", false)};
+
+    @Test
+    public void testParallelAuthenticationPrefersDomainOrder() throws Exception {
+
+        // The first domain resolves the user last, but is still preferred over the second domain.
+        Domain firstDomain = mockDomain(1, "FIRST");
+        DomainUser firstUser = mockAuthenticatingUser(firstDomain, "alice-first");
+        Mockito.when(firstDomain.getAuthenticatingUser(USERNAME_CLAIM)).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return firstUser;
+        });
+        Domain secondDomain = mockDomain(2, "SECOND");
+        mockAuthenticatingUser(secondDomain, "alice-second");
+
+        IdentityStoreImpl identityStore = new IdentityStoreImpl(Arrays.asList(secondDomain, firstDomain),
+                buildParallelConfig(5000));
+        try {
+            AuthenticationContext authenticationContext = identityStore.authenticate(USERNAME_CLAIM, CREDENTIALS,
+                    null);
+            Assert.assertEquals(authenticationContext.getUser().getUniqueUserId(), "1.alice-first");
+            // The credentials are not checked against a domain with a lower priority.
+            Mockito.verify(secondDomain, Mockito.never()).authenticate(Mockito.any(DomainUser.class),
+                    Mockito.eq(CREDENTIALS));
+        } finally {
+            identityStore.close();
+        }
+    }
+
+    @Test(expectedExceptions = IdentityStoreServerException.class)
+    public void testParallelAuthenticationFailsOnSlowDomain() throws Exception {
+
+        CountDownLatch release = new CountDownLatch(1);
+        Domain failingDomain = mockDomain(1, "FAILING");
+        Mockito.when(failingDomain.getAuthenticatingUser(USERNAME_CLAIM))
+                .thenThrow(new AuthenticationFailure("Invalid claim value."));
+        Domain slowDomain = mockDomain(2, "SLOW");
+        DomainUser slowUser = mockAuthenticatingUser(slowDomain, "alice-slow");
+        Mockito.when(slowDomain.getAuthenticatingUser(USERNAME_CLAIM)).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return slowUser;
+        });
+        Domain domain = mockDomain(3, "PRIMARY");
+        DomainUser domainUser = mockAuthenticatingUser(domain, "alice");
+
+        IdentityStoreImpl identityStore = new IdentityStoreImpl(Arrays.asList(failingDomain, slowDomain, domain),
+                buildParallelConfig(200));
+        try {
+            identityStore.authenticate(USERNAME_CLAIM, CREDENTIALS, null);
+        } finally {
+            // A slow domain with a higher priority should not let a domain with a lower priority authenticate.
+            Mockito.verify(domain, Mockito.never()).authenticate(domainUser, CREDENTIALS);
+            release.countDown();
+            identityStore.close();
+        }
+    }
+
+    @Test
+    public void testParallelAuthenticationWaitsForEachDomain() throws Exception {
+
+        // Each domain gets its own timeout, hence a slow first domain does not cause the second domain to time out.
+        Domain firstDomain = mockDomain(1, "FIRST");
+        Mockito.when(firstDomain.getAuthenticatingUser(USERNAME_CLAIM)).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            throw new AuthenticationFailure("Invalid claim value.");
+        });
+        Domain secondDomain = mockDomain(2, "SECOND");
+        DomainUser secondUser = mockAuthenticatingUser(secondDomain, "alice-second");
+        Mockito.when(secondDomain.getAuthenticatingUser(USERNAME_CLAIM)).thenAnswer(invocation -> {
+            Thread.sleep(600);
+            return secondUser;
+        });
+
+        IdentityStoreImpl identityStore = new IdentityStoreImpl(Arrays.asList(firstDomain, secondDomain),
+                buildParallelConfig(500));
+        try {
+            AuthenticationContext authenticationContext = identityStore.authenticate(USERNAME_CLAIM, CREDENTIALS,
+                    null);
+            Assert.assertEquals(authenticationContext.getUser().getUniqueUserId(), "2.alice-second");
+        } finally {
+            identityStore.close();
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testParallelAuthenticationFallsBackWhenRejected() throws Exception {
+
+        Domain firstDomain = mockDomain(1, "FIRST");
+        mockAuthenticatingUser(firstDomain, "alice-first");
+        Mockito.when(firstDomain.authenticate(USERNAME_CLAIM, CREDENTIALS))
+                .thenThrow(new AuthenticationFailure("Invalid credentials."));
+        Domain secondDomain = mockDomain(2, "SECOND");
+        mockAuthenticatingUser(secondDomain, "alice-second");
+        Mockito.when(secondDomain.authenticate(USERNAME_CLAIM, CREDENTIALS))
+                .thenReturn(buildAuthenticationContext("alice-second"));
+
+        // The closed executor rejects the lookups, hence the domains are authenticated on the calling thread.
+        IdentityStoreImpl identityStore = new IdentityStoreImpl(Arrays.asList(firstDomain, secondDomain),
+                buildParallelConfig(5000));
+        identityStore.close();
+
+        AuthenticationContext authenticationContext = identityStore.authenticate(USERNAME_CLAIM, CREDENTIALS, null);
+        Assert.assertEquals(authenticationContext.getUser().getUniqueUserId(), "2.alice-second");
+        Mockito.verify(firstDomain, Mockito.never()).getAuthenticatingUser(USERNAME_CLAIM);
+    }
+
+    @Test
+    public void testRoutedAuthenticationPrefersDomainOrder() throws Exception {
+
+        Domain firstDomain = mockDomain(1, "FIRST");
+        Mockito.when(firstDomain.authenticate(USERNAME_CLAIM, CREDENTIALS))
+                .thenThrow(new AuthenticationFailure("Invalid claim value."))
+                .thenReturn(buildAuthenticationContext("alice-first"));
+        Domain secondDomain = mockDomain(2, "SECOND");
+        Mockito.when(secondDomain.authenticate(USERNAME_CLAIM, CREDENTIALS))
+                .thenReturn(buildAuthenticationContext("alice-second"));
+
+        AuthenticationConfig authenticationConfig = new AuthenticationConfig();
+        authenticationConfig.setRoutingIndexSize(10);
+        IdentityStoreImpl identityStore = new IdentityStoreImpl(Arrays.asList(firstDomain, secondDomain),
+                authenticationConfig);
+        try {
+            // The claim value is routed to the second domain.
+            Assert.assertEquals(identityStore.authenticate(USERNAME_CLAIM, CREDENTIALS, null).getUser()
+                    .getUniqueUserId(), "2.alice-second");
+
+            // Once the first domain owns the claim value as well, it is preferred over the route.
+            Assert.assertEquals(identityStore.authenticate(USERNAME_CLAIM, CREDENTIALS, null).getUser()
+                    .getUniqueUserId(), "1.alice-first");
+        } finally {
+            identityStore.close();
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testForEachUserVisitsDomainsInOrder() throws Exception {
+
+        Domain firstDomain = mockDomain(1, "FIRST");
+        mockDomainUsers(firstDomain, 2, "alice", "bob", "carol");
+        Domain secondDomain = mockDomain(2, "SECOND");
+        mockDomainUsers(secondDomain, 2, "dave", "eve");
+
+        IdentityStoreImpl identityStore = new IdentityStoreImpl(Arrays.asList(secondDomain, firstDomain));
+        try {
+            List<String> visitedUserIds = new ArrayList<>();
+            identityStore.forEachUser(2, (user, claims) -> {
+                Assert.assertNull(claims, "Claims should only be read when meta claims are given.");
+                visitedUserIds.add(user.getUniqueUserId());
+                return true;
+            });
+            Assert.assertEquals(visitedUserIds, Arrays.asList("1.alice", "1.bob", "1.carol", "2.dave", "2.eve"));
+        } finally {
+            identityStore.close();
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testForEachUserStopsWhenVisitorDeclines() throws Exception {
+
+        Domain domain = mockDomain(1, "PRIMARY");
+        mockDomainUsers(domain, 2, "alice", "bob", "carol", "dave");
+        List<MetaClaim> metaClaims = Collections.singletonList(new MetaClaim(USERNAME_CLAIM.getDialectUri(),
+                USERNAME_CLAIM.getClaimUri()));
+        Mockito.when(domain.getClaimsOfUser(Mockito.any(DomainUser.class), Mockito.eq(metaClaims)))
+                .thenAnswer(invocation -> Collections.singletonList(new Claim(USERNAME_CLAIM.getDialectUri(),
+                        USERNAME_CLAIM.getClaimUri(), ((DomainUser) invocation.getArguments()[0]).getDomainUserId())));
+
+        IdentityStoreImpl identityStore = new IdentityStoreImpl(Collections.singletonList(domain));
+        try {
+            List<String> visitedUsernames = new ArrayList<>();
+            identityStore.forEachUser(2, metaClaims, (user, claims) -> {
+                visitedUsernames.add(claims.get(0).getValue());
+                return visitedUsernames.size() < 3;
+            });
+            Assert.assertEquals(visitedUsernames, Arrays.asList("alice", "bob", "carol"));
+        } finally {
+            identityStore.close();
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void testForEachUserAfterClose() throws Exception {
+
+        Domain domain = mockDomain(1, "PRIMARY");
+        mockDomainUsers(domain, 2, "alice", "bob", "carol");
+        IdentityStoreImpl identityStore = new IdentityStoreImpl(Collections.singletonList(domain));
+        identityStore.close();
+
+        List<String> visitedUserIds = new ArrayList<>();
+        identityStore.forEachUser(2, (user, claims) -> visitedUserIds.add(user.getUniqueUserId()));
+        Assert.assertEquals(visitedUserIds, Arrays.asList("1.alice", "1.bob", "1.carol"));
+    }
+
+    static Domain mockDomain(int id, String name) {
+
+        Domain domain = Mockito.mock(Domain.class);
+        Mockito.when(domain.getId()).thenReturn(id);
+        Mockito.when(domain.getName()).thenReturn(name);
+        Mockito.when(domain.getOrder()).thenReturn(id);
+        Mockito.when(domain.isClaimSupported(Mockito.anyString())).thenReturn(true);
+        return domain;
+    }
+
+    /**
+     * Serve the users of a domain in pages listed after the last domain user id of the previous page.
+     */
+    private static void mockDomainUsers(Domain domain, int pageSize, String... domainUserIds) throws Exception {
+
+        String lastDomainUserId = null;
+        for (int from = 0; from <= domainUserIds.length; from += pageSize) {
+            List<DomainUser> page = new ArrayList<>();
+            for (int i = from; i < Math.min(from + pageSize, domainUserIds.length); i++) {
+                page.add(new DomainUser(domainUserIds[i], Collections.emptyList(), "UNLOCKED"));
+            }
+            Mockito.when(domain.listDomainUsers(lastDomainUserId, pageSize)).thenReturn(page);
+            if (page.isEmpty()) {
+                break;
+            }
+            lastDomainUserId = page.get(page.size() - 1).getDomainUserId();
+        }
+    }
+
+    /**
+     * Resolve the claim value to a user in the domain, who is authenticated with the credentials.
+     */
+    private static DomainUser mockAuthenticatingUser(Domain domain, String domainUserId) throws Exception {
+
+        DomainUser domainUser = new DomainUser(domainUserId, Collections.emptyList(), "UNLOCKED");
+        Mockito.when(domain.getAuthenticatingUser(USERNAME_CLAIM)).thenReturn(domainUser);
+        Mockito.when(domain.authenticate(domainUser, CREDENTIALS)).thenReturn(buildAuthenticationContext(domainUserId));
+        return domainUser;
+    }
+
+    private static AuthenticationConfig buildParallelConfig(int domainTimeout) {
+
+        AuthenticationConfig authenticationConfig = new AuthenticationConfig();
+        authenticationConfig.setParallel(true);
+        authenticationConfig.setDomainTimeout(domainTimeout);
+        return authenticationConfig;
+    }
+
+    private static AuthenticationContext buildAuthenticationContext(String domainUserId) {
+
+        AuthenticationContext<String, String> authenticationContext = new AuthenticationContext<>();
+        authenticationContext.addParameter(IdentityMgtConstants.DOMAIN_USER_ID, domainUserId);
+        authenticationContext.addParameter(IdentityMgtConstants.STATE, "UNLOCKED");
+        return authenticationContext;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.store.test.unit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.mgt.cache.InvalidationMessage;
+import org.wso2.carbon.identity.mgt.impl.InvalidationBroadcaster;
+import org.wso2.carbon.identity.mgt.impl.LoopbackInvalidationTransport;
+import org.wso2.carbon.identity.mgt.impl.config.CacheInvalidationConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Unit tests for the cache invalidation broadcaster.
+ */
+public class InvalidationBroadcasterTests {
+
+    @Test
+    public void testInvalidationsAreCoalesced() {
+
+        LoopbackInvalidationTransport transport = new LoopbackInvalidationTransport();
+        List<InvalidationMessage> publishedMessages = new ArrayList<>();
+        List<InvalidationMessage> receivedMessages = new ArrayList<>();
+        transport.subscribe(publishedMessages::addAll);
+
+        InvalidationBroadcaster publisher = new InvalidationBroadcaster(transport, new CacheInvalidationConfig(),
+                message -> Assert.fail("Own invalidations should not be applied."));
+        InvalidationBroadcaster receiver = new InvalidationBroadcaster(transport, new CacheInvalidationConfig(),
+                receivedMessages::add);
+        transport.subscribe(publisher);
+        transport.subscribe(receiver);
+
+        publisher.publishUser("1.alice");
+        publisher.publishUser("1.bob");
+        publisher.publishGroup("1.admins");
+        publisher.publishUser("1.alice");
+        publisher.flush();
+
+        Assert.assertEquals(publishedMessages.size(), 3, "Invalidations of the same entity should be coalesced.");
+        Assert.assertEquals(getIds(receivedMessages), Arrays.asList("1.bob", "1.admins", "1.alice"),
+                "Invalidations should be ordered by their latest generation.");
+        Assert.assertEquals(receivedMessages.get(1).getEntityType(), InvalidationMessage.EntityType.GROUP);
+        Assert.assertEquals(receivedMessages.get(2).getOrigin(), publisher.getNodeId());
+
+        publisher.flush();
+        Assert.assertEquals(publishedMessages.size(), 3, "Nothing should be published without invalidations.");
+    }
+
+    @Test
+    public void testRedeliveredInvalidationsAreIgnored() {
+
+        LoopbackInvalidationTransport transport = new LoopbackInvalidationTransport();
+        List<InvalidationMessage> publishedMessages = new ArrayList<>();
+        List<InvalidationMessage> receivedMessages = new ArrayList<>();
+        transport.subscribe(publishedMessages::addAll);
+
+        InvalidationBroadcaster publisher = new InvalidationBroadcaster(transport, new CacheInvalidationConfig(),
+                message -> { });
+        InvalidationBroadcaster receiver = new InvalidationBroadcaster(transport, new CacheInvalidationConfig(),
+                receivedMessages::add);
+        transport.subscribe(receiver);
+
+        publisher.publishUser("1.alice");
+        publisher.flush();
+        receiver.onInvalidation(new ArrayList<>(publishedMessages));
+        Assert.assertEquals(receivedMessages.size(), 1, "Redelivered invalidations should be ignored.");
+
+        publisher.publishUser("1.alice");
+        publisher.flush();
+        Assert.assertEquals(receivedMessages.size(), 2, "New invalidations of the same entity should be applied.");
+    }
+
+    @Test
+    public void testFullBatchIsPublished() {
+
+        LoopbackInvalidationTransport transport = new LoopbackInvalidationTransport();
+        List<InvalidationMessage> receivedMessages = new ArrayList<>();
+        CacheInvalidationConfig invalidationConfig = new CacheInvalidationConfig();
+        invalidationConfig.setMaxBatchSize(2);
+
+        InvalidationBroadcaster publisher = new InvalidationBroadcaster(transport, invalidationConfig,
+                message -> { });
+        InvalidationBroadcaster receiver = new InvalidationBroadcaster(transport, invalidationConfig,
+                receivedMessages::add);
+        transport.subscribe(receiver);
+
+        publisher.publishUser("1.alice");
+        Assert.assertTrue(receivedMessages.isEmpty(), "Invalidations should be held until the batch is full.");
+        publisher.publishUser("1.bob");
+        Assert.assertEquals(getIds(receivedMessages), Arrays.asList("1.alice", "1.bob"));
+    }
+
+    private List<String> getIds(List<InvalidationMessage> messages) {
+
+        return messages.stream()
+                .map(InvalidationMessage::getUniqueId)
+                .collect(Collectors.toList());
+    }
+}
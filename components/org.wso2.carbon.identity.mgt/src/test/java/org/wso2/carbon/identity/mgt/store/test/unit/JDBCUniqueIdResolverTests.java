@@ -0,0 +1,587 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.store.test.unit;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.datasource.core.api.DataSourceService;
+import org.wso2.carbon.identity.mgt.exception.UniqueIdResolverException;
+import org.wso2.carbon.identity.mgt.exception.UserNotFoundException;
+import org.wso2.carbon.identity.mgt.impl.util.UniqueIdResolverConstants;
+import org.wso2.carbon.identity.mgt.resolver.DomainGroup;
+import org.wso2.carbon.identity.mgt.resolver.DomainUser;
+import org.wso2.carbon.identity.mgt.resolver.GroupPartition;
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolver;
+import org.wso2.carbon.identity.mgt.resolver.UserPartition;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.IDENTITY_CONNECTOR_ID;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.createDatabase;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.createJDBCResolver;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.registerDataSources;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.restoreDataSourceService;
+
+/**
+ * H2 backed tests for the JDBC unique id resolver.
+ */
+public class JDBCUniqueIdResolverTests {
+
+    private static final Logger log = LoggerFactory.getLogger(JDBCUniqueIdResolverTests.class);
+
+    private static final String DATA_SOURCE_NAME = "WSO2_IDM_TEST_DB";
+    private static final String RACING_DATA_SOURCE_NAME = "WSO2_IDM_RACING_TEST_DB";
+    private static final String CREDENTIAL_CONNECTOR_ID = "JDBC_CSC";
+    private static final String SECOND_CREDENTIAL_CONNECTOR_ID = "JDBC_CSC_2";
+    private static final String SECOND_IDENTITY_CONNECTOR_ID = "JDBC_ISC_2";
+    private static final int DOMAIN_ID = 1;
+    private static final Map<String, String> BATCH_PROPERTIES = Collections.singletonMap(
+            UniqueIdResolverConstants.BATCH_SIZE, "500");
+
+    private JdbcDataSource dataSource;
+
+    private UniqueIdResolver uniqueIdResolver;
+
+    private UniqueIdResolver racingUniqueIdResolver;
+
+    /**
+     * Statement run through another connection right before the next membership insert of the racing resolver.
+     */
+    private final AtomicReference<String> racingStatement = new AtomicReference<>();
+
+    private DataSourceService previousDataSourceService;
+
+    @BeforeClass(alwaysRun = true)
+    public void initClass() throws Exception {
+
+        dataSource = createDatabase(DATA_SOURCE_NAME);
+        Map<String, DataSource> dataSources = new HashMap<>();
+        dataSources.put(DATA_SOURCE_NAME, dataSource);
+        dataSources.put(RACING_DATA_SOURCE_NAME, createRacingDataSource());
+        previousDataSourceService = registerDataSources(dataSources);
+
+        uniqueIdResolver = createJDBCResolver(DATA_SOURCE_NAME, BATCH_PROPERTIES);
+        racingUniqueIdResolver = createJDBCResolver(RACING_DATA_SOURCE_NAME, BATCH_PROPERTIES);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void cleanUpClass() {
+
+        restoreDataSourceService(previousDataSourceService);
+    }
+
+    @Test
+    public void testAddUsersInBatches() throws UniqueIdResolverException {
+
+        // Spans several insert batches and lookup chunks.
+        int userCount = 2500;
+        List<DomainUser> domainUsers = new ArrayList<>();
+        List<String> connectorUserIds = new ArrayList<>();
+        for (int i = 0; i < userCount; i++) {
+            String connectorUserId = "bulk-user-" + i;
+            domainUsers.add(buildDomainUser(connectorUserId));
+            connectorUserIds.add(connectorUserId);
+        }
+
+        List<String> domainUserIds = uniqueIdResolver.addUsers(domainUsers, DOMAIN_ID);
+        Assert.assertEquals(domainUserIds.size(), userCount, "All users should be added.");
+
+        // Resolve in reverse order to make sure the batch lookup preserves the input order.
+        List<String> lookupIds = new ArrayList<>(connectorUserIds.subList(0, 1000));
+        Collections.reverse(lookupIds);
+        List<DomainUser> resolvedUsers = uniqueIdResolver.getUsers(lookupIds, IDENTITY_CONNECTOR_ID, DOMAIN_ID);
+        Assert.assertEquals(resolvedUsers.size(), lookupIds.size());
+        for (int i = 0; i < lookupIds.size(); i++) {
+            DomainUser resolvedUser = resolvedUsers.get(i);
+            Assert.assertEquals(resolvedUser.getDomainUserId(), domainUsers.get(999 - i).getDomainUserId());
+            Assert.assertEquals(resolvedUser.getUserPartitions().size(), 2, "All partitions should be resolved.");
+        }
+    }
+
+    @Test
+    public void testAddUsersRollsBackFailedChunk() throws UniqueIdResolverException {
+
+        DomainUser existingUser = buildDomainUser("existing-user");
+        uniqueIdResolver.addUser(existingUser, DOMAIN_ID);
+
+        // The duplicate violates IDM_ENTITY_INDEX_1, so the whole chunk should be rolled back.
+        DomainUser newUser = buildDomainUser("new-user");
+        try {
+            uniqueIdResolver.addUsers(Arrays.asList(newUser, existingUser), DOMAIN_ID);
+            Assert.fail("Duplicate user should not be added.");
+        } catch (UniqueIdResolverException e) {
+            Assert.assertEquals(e.getSuppressed().length, 2, "Each user of the failed chunk should be reported.");
+        }
+        Assert.assertFalse(uniqueIdResolver.isUserExists(newUser.getDomainUserId(), DOMAIN_ID),
+                "Users of a failed chunk should be rolled back.");
+    }
+
+    @Test
+    public void testGetUsersReportsMissingUsers() throws UniqueIdResolverException {
+
+        DomainUser domainUser = buildDomainUser("lookup-user");
+        uniqueIdResolver.addUser(domainUser, DOMAIN_ID);
+
+        try {
+            uniqueIdResolver.getUsers(Arrays.asList("lookup-user", "missing-user"), IDENTITY_CONNECTOR_ID,
+                    DOMAIN_ID);
+            Assert.fail("Missing user should be reported.");
+        } catch (UniqueIdResolverException e) {
+            Assert.assertEquals(e.getSuppressed().length, 1);
+            Assert.assertTrue(e.getSuppressed()[0] instanceof UserNotFoundException);
+        }
+    }
+
+    @Test
+    public void testAddGroups() throws UniqueIdResolverException {
+
+        List<DomainGroup> domainGroups = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            GroupPartition groupPartition = new GroupPartition();
+            groupPartition.setConnectorId(IDENTITY_CONNECTOR_ID);
+            groupPartition.setConnectorGroupId("bulk-group-" + i);
+            domainGroups.add(new DomainGroup(UUID.randomUUID().toString(),
+                    new ArrayList<>(Arrays.asList(groupPartition))));
+        }
+
+        List<String> domainGroupIds = uniqueIdResolver.addGroups(domainGroups, DOMAIN_ID);
+        Assert.assertEquals(domainGroupIds.size(), domainGroups.size());
+        Assert.assertTrue(uniqueIdResolver.isGroupExists(domainGroupIds.get(domainGroupIds.size() - 1), DOMAIN_ID));
+    }
+
+    @Test
+    public void testListDomainUsersByCursor() throws UniqueIdResolverException {
+
+        int domainId = 2;
+        List<DomainUser> domainUsers = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            domainUsers.add(buildDomainUser("paged-user-" + i));
+        }
+        uniqueIdResolver.addUsers(domainUsers, domainId);
+
+        Set<String> listedUserIds = new HashSet<>();
+        String lastDomainUserId = null;
+        List<Integer> pageSizes = new ArrayList<>();
+        List<DomainUser> page;
+        do {
+            page = uniqueIdResolver.listDomainUsers(lastDomainUserId, 10, domainId);
+            for (DomainUser domainUser : page) {
+                Assert.assertTrue(listedUserIds.add(domainUser.getDomainUserId()), "Users should not be repeated.");
+                Assert.assertEquals(domainUser.getUserPartitions().size(), 2, "Users should not be split.");
+            }
+            pageSizes.add(page.size());
+            if (!page.isEmpty()) {
+                lastDomainUserId = page.get(page.size() - 1).getDomainUserId();
+            }
+        } while (page.size() == 10);
+
+        Assert.assertEquals(listedUserIds.size(), domainUsers.size(), "All users should be listed.");
+        Assert.assertEquals(pageSizes, Arrays.asList(10, 10, 5));
+    }
+
+    @Test(groups = "benchmark")
+    public void testMembershipLookupLatency() throws Exception {
+
+        // Run with -DmembershipBenchmarkSize=1000000 for the full size comparison.
+        int domainId = 3;
+        int membershipCount = Integer.getInteger("membershipBenchmarkSize", 100000);
+        int groupsPerUser = 10;
+        int groupCount = 100;
+        int userCount = membershipCount / groupsPerUser;
+
+        List<DomainUser> domainUsers = new ArrayList<>();
+        for (int i = 0; i < userCount; i++) {
+            domainUsers.add(buildDomainUser("member-" + i));
+        }
+        uniqueIdResolver.addUsers(domainUsers, domainId);
+        List<DomainGroup> domainGroups = new ArrayList<>();
+        for (int i = 0; i < groupCount; i++) {
+            GroupPartition groupPartition = new GroupPartition();
+            groupPartition.setConnectorId(IDENTITY_CONNECTOR_ID);
+            groupPartition.setConnectorGroupId("member-group-" + i);
+            domainGroups.add(new DomainGroup(UUID.randomUUID().toString(),
+                    new ArrayList<>(Arrays.asList(groupPartition))));
+        }
+        uniqueIdResolver.addGroups(domainGroups, domainId);
+
+        try (Connection connection = dataSource.getConnection(); PreparedStatement statement = connection
+                .prepareStatement("INSERT INTO IDM_USER_GROUP_MAPPING (USER_ID, GROUP_ID, DOMAIN_ID) " +
+                        "VALUES (?, ?, ?)")) {
+            for (int i = 0; i < userCount; i++) {
+                for (int j = 0; j < groupsPerUser; j++) {
+                    statement.setString(1, domainUsers.get(i).getDomainUserId());
+                    statement.setString(2, domainGroups.get((i + j) % groupCount).getDomainGroupId());
+                    statement.setInt(3, domainId);
+                    statement.addBatch();
+                }
+                if (i % 1000 == 999) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+        }
+
+        long indexedNanos = runMembershipLookups(domainUsers, domainGroups, groupsPerUser, domainId);
+        long unindexedNanos;
+        try {
+            executeStatement("DROP INDEX IDM_MAPPING_INDEX_1");
+            executeStatement("DROP INDEX IDM_MAPPING_INDEX_2");
+            unindexedNanos = runMembershipLookups(domainUsers, domainGroups, groupsPerUser, domainId);
+        } finally {
+            executeStatement("CREATE UNIQUE INDEX IF NOT EXISTS IDM_MAPPING_INDEX_1 ON IDM_USER_GROUP_MAPPING " +
+                    "(DOMAIN_ID, USER_ID, GROUP_ID)");
+            executeStatement("CREATE INDEX IF NOT EXISTS IDM_MAPPING_INDEX_2 ON IDM_USER_GROUP_MAPPING " +
+                    "(DOMAIN_ID, GROUP_ID, USER_ID)");
+        }
+        log.info("Membership lookups over {} memberships took {} ms without the mapping indexes and {} ms with " +
+                "them.", membershipCount, unindexedNanos / 1000000, indexedNanos / 1000000);
+    }
+
+    @Test
+    public void testUpdateUsersOfGroupWritesDifference() throws Exception {
+
+        int domainId = 4;
+        List<DomainUser> domainUsers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            domainUsers.add(buildDomainUser("diff-member-" + i));
+        }
+        uniqueIdResolver.addUsers(domainUsers, domainId);
+        List<String> userIds = new ArrayList<>();
+        domainUsers.forEach(domainUser -> userIds.add(domainUser.getDomainUserId()));
+        String domainGroupId = UUID.randomUUID().toString();
+
+        uniqueIdResolver.updateUsersOfGroup(domainGroupId, userIds.subList(0, 3), domainId);
+        Map<String, Integer> mappingIds = getMappingIds(domainGroupId, domainId);
+
+        uniqueIdResolver.updateUsersOfGroup(domainGroupId, userIds.subList(1, 4), domainId);
+        Map<String, Integer> updatedMappingIds = getMappingIds(domainGroupId, domainId);
+        Assert.assertEquals(updatedMappingIds.keySet(), new HashSet<>(userIds.subList(1, 4)));
+        Assert.assertEquals(updatedMappingIds.get(userIds.get(1)), mappingIds.get(userIds.get(1)),
+                "Unchanged memberships should not be rewritten.");
+        Assert.assertEquals(updatedMappingIds.get(userIds.get(2)), mappingIds.get(userIds.get(2)),
+                "Unchanged memberships should not be rewritten.");
+
+        // Adding an existing member and removing a member at once.
+        uniqueIdResolver.updateUsersOfGroup(domainGroupId, Arrays.asList(userIds.get(1), userIds.get(0)),
+                Collections.singletonList(userIds.get(3)), domainId);
+        updatedMappingIds = getMappingIds(domainGroupId, domainId);
+        Assert.assertEquals(updatedMappingIds.keySet(), new HashSet<>(userIds.subList(0, 3)));
+        Assert.assertEquals(updatedMappingIds.get(userIds.get(1)), mappingIds.get(userIds.get(1)),
+                "Existing members should not be added again.");
+
+        uniqueIdResolver.updateUsersOfGroup(domainGroupId, Collections.emptyList(), domainId);
+        Assert.assertTrue(getMappingIds(domainGroupId, domainId).isEmpty());
+    }
+
+    @Test
+    public void testUpdateGroupsOfUserWritesDifference() throws Exception {
+
+        int domainId = 6;
+        DomainUser domainUser = buildDomainUser("diff-user");
+        uniqueIdResolver.addUser(domainUser, domainId);
+        String domainUserId = domainUser.getDomainUserId();
+        List<String> groupIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            groupIds.add(UUID.randomUUID().toString());
+        }
+
+        uniqueIdResolver.updateGroupsOfUser(domainUserId, groupIds.subList(0, 3), domainId);
+        Map<String, Integer> mappingIds = getMappingIdsOfUser(domainUserId, domainId);
+
+        uniqueIdResolver.updateGroupsOfUser(domainUserId, groupIds.subList(1, 4), domainId);
+        Map<String, Integer> updatedMappingIds = getMappingIdsOfUser(domainUserId, domainId);
+        Assert.assertEquals(updatedMappingIds.keySet(), new HashSet<>(groupIds.subList(1, 4)));
+        Assert.assertEquals(updatedMappingIds.get(groupIds.get(1)), mappingIds.get(groupIds.get(1)),
+                "Unchanged memberships should not be rewritten.");
+        Assert.assertEquals(updatedMappingIds.get(groupIds.get(2)), mappingIds.get(groupIds.get(2)),
+                "Unchanged memberships should not be rewritten.");
+
+        // Adding an existing group and removing a group at once.
+        uniqueIdResolver.updateGroupsOfUser(domainUserId, Arrays.asList(groupIds.get(1), groupIds.get(0)),
+                Collections.singletonList(groupIds.get(3)), domainId);
+        updatedMappingIds = getMappingIdsOfUser(domainUserId, domainId);
+        Assert.assertEquals(updatedMappingIds.keySet(), new HashSet<>(groupIds.subList(0, 3)));
+        Assert.assertEquals(updatedMappingIds.get(groupIds.get(1)), mappingIds.get(groupIds.get(1)),
+                "Existing groups should not be added again.");
+
+        uniqueIdResolver.updateGroupsOfUser(domainUserId, Collections.emptyList(), domainId);
+        Assert.assertTrue(getMappingIdsOfUser(domainUserId, domainId).isEmpty());
+    }
+
+    @Test
+    public void testConcurrentMembershipInsertIsRetried() throws Exception {
+
+        int domainId = 6;
+        DomainUser domainUser = buildDomainUser("racing-user");
+        uniqueIdResolver.addUser(domainUser, domainId);
+        String domainUserId = domainUser.getDomainUserId();
+        String domainGroupId = UUID.randomUUID().toString();
+
+        // Another update inserts the membership after the resolver has read it as missing.
+        racingStatement.set("INSERT INTO IDM_USER_GROUP_MAPPING (USER_ID, GROUP_ID, DOMAIN_ID) VALUES ('" +
+                domainUserId + "', '" + domainGroupId + "', " + domainId + ")");
+        racingUniqueIdResolver.updateGroupsOfUser(domainUserId, Collections.singletonList(domainGroupId),
+                Collections.emptyList(), domainId);
+
+        Assert.assertNull(racingStatement.get(), "The concurrent insert should have been made.");
+        Assert.assertEquals(getMappingIdsOfUser(domainUserId, domainId).keySet(),
+                Collections.singleton(domainGroupId));
+    }
+
+    @Test
+    public void testUserStateIsStoredOnce() throws Exception {
+
+        int domainId = 5;
+        DomainUser domainUser = buildDomainUser("stateful-user");
+        uniqueIdResolver.addUser(domainUser, domainId);
+        String domainUserId = domainUser.getDomainUserId();
+
+        uniqueIdResolver.setUserState(domainUserId, "LOCKED", domainId);
+        Assert.assertEquals(countRows("IDM_USER_INFO", domainUserId, domainId), 1);
+        DomainUser resolvedUser = uniqueIdResolver.getUser(domainUserId, domainId);
+        Assert.assertEquals(resolvedUser.getState(), "LOCKED");
+        Assert.assertEquals(resolvedUser.getUserPartitions().size(), 2);
+        Assert.assertEquals(uniqueIdResolver.getUserFromConnectorUserId("stateful-user", IDENTITY_CONNECTOR_ID,
+                domainId).getState(), "LOCKED");
+
+        // The identity store partitions are replaced by the given ones and the state is written to its single row.
+        uniqueIdResolver.updateUser(domainUserId, Collections.singletonMap(IDENTITY_CONNECTOR_ID,
+                "renamed-stateful-user"), domainId, "UNLOCKED");
+        resolvedUser = uniqueIdResolver.getUserFromConnectorUserId("renamed-stateful-user", IDENTITY_CONNECTOR_ID,
+                domainId);
+        Assert.assertEquals(resolvedUser.getState(), "UNLOCKED");
+        Assert.assertEquals(resolvedUser.getUserPartitions().size(), 2);
+        Assert.assertEquals(countRows("IDM_USER_INFO", domainUserId, domainId), 1);
+        Assert.assertTrue(resolvedUser.getUserPartitions().stream()
+                .filter(userPartition -> IDENTITY_CONNECTOR_ID.equals(userPartition.getConnectorId()))
+                .allMatch(UserPartition::isIdentityStore));
+
+        uniqueIdResolver.deleteUser(domainUserId, domainId);
+        Assert.assertFalse(uniqueIdResolver.isUserExists(domainUserId, domainId));
+        Assert.assertEquals(countRows("IDM_USER_INFO", domainUserId, domainId), 0);
+        Assert.assertEquals(countRows("IDM_USER", domainUserId, domainId), 0);
+    }
+
+    @Test
+    public void testUpdateUserKeepsPartitionsOfOtherType() throws Exception {
+
+        int domainId = 6;
+        DomainUser domainUser = buildDomainUser("partitioned-user");
+        uniqueIdResolver.addUser(domainUser, domainId);
+        String domainUserId = domainUser.getDomainUserId();
+        Assert.assertEquals(countRows("IDM_USER", domainUserId, domainId), 2);
+
+        // A credential update keeps the identity store partition.
+        uniqueIdResolver.updateUser(domainUserId, Collections.singletonMap(CREDENTIAL_CONNECTOR_ID,
+                "updated-credential"), false, domainId, null);
+        Map<String, UserPartition> partitions = getPartitions(domainUserId, domainId);
+        Assert.assertEquals(partitions.size(), 2);
+        Assert.assertEquals(partitions.get(IDENTITY_CONNECTOR_ID).getConnectorUserId(), "partitioned-user");
+        Assert.assertEquals(partitions.get(CREDENTIAL_CONNECTOR_ID).getConnectorUserId(), "updated-credential");
+
+        // The other identity store partitions are replaced, while the credential store partition is kept.
+        uniqueIdResolver.updateUser(domainUserId, Collections.singletonMap(SECOND_IDENTITY_CONNECTOR_ID,
+                "moved-user"), true, domainId, null);
+        partitions = getPartitions(domainUserId, domainId);
+        Assert.assertEquals(partitions.keySet(), new HashSet<>(Arrays.asList(SECOND_IDENTITY_CONNECTOR_ID,
+                CREDENTIAL_CONNECTOR_ID)));
+        Assert.assertTrue(partitions.get(SECOND_IDENTITY_CONNECTOR_ID).isIdentityStore());
+        Assert.assertFalse(partitions.get(CREDENTIAL_CONNECTOR_ID).isIdentityStore());
+
+        // A new credential store partition is stored with its type.
+        uniqueIdResolver.updateUser(domainUserId, Collections.singletonMap(SECOND_CREDENTIAL_CONNECTOR_ID,
+                "new-credential"), false, domainId, null);
+        partitions = getPartitions(domainUserId, domainId);
+        Assert.assertEquals(partitions.keySet(), new HashSet<>(Arrays.asList(SECOND_IDENTITY_CONNECTOR_ID,
+                SECOND_CREDENTIAL_CONNECTOR_ID)));
+        Assert.assertFalse(partitions.get(SECOND_CREDENTIAL_CONNECTOR_ID).isIdentityStore(),
+                "A new credential store partition should be stored as one.");
+
+        uniqueIdResolver.updateUser(domainUserId, Collections.emptyMap(), false, domainId, null);
+        Assert.assertEquals(getPartitions(domainUserId, domainId).keySet(),
+                Collections.singleton(SECOND_IDENTITY_CONNECTOR_ID));
+        Assert.assertTrue(uniqueIdResolver.isUserExists(domainUserId, domainId));
+    }
+
+    @Test
+    public void testUpdateUnknownUserWritesNoPartitions() throws Exception {
+
+        int domainId = 5;
+        String domainUserId = "unknown-user-id";
+
+        try {
+            uniqueIdResolver.updateUser(domainUserId, Collections.singletonMap(IDENTITY_CONNECTOR_ID,
+                    "unknown-user"), domainId, "UNLOCKED");
+            Assert.fail("Updating a user without an info row should fail.");
+        } catch (UniqueIdResolverException e) {
+            Assert.assertEquals(countRows("IDM_USER", domainUserId, domainId), 0);
+        }
+
+        try {
+            uniqueIdResolver.updateUser(domainUserId, Collections.singletonMap(IDENTITY_CONNECTOR_ID,
+                    "unknown-user"), domainId, null);
+            Assert.fail("Updating a user without an info row should fail.");
+        } catch (UniqueIdResolverException e) {
+            Assert.assertEquals(countRows("IDM_USER", domainUserId, domainId), 0);
+        }
+    }
+
+    private int countRows(String table, String domainUserId, int domainId) throws SQLException {
+
+        try (Connection connection = dataSource.getConnection(); PreparedStatement statement = connection
+                .prepareStatement("SELECT COUNT(*) FROM " + table + " WHERE USER_ID = ? AND DOMAIN_ID = ?")) {
+            statement.setString(1, domainUserId);
+            statement.setInt(2, domainId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getInt(1);
+            }
+        }
+    }
+
+    private Map<String, Integer> getMappingIds(String domainGroupId, int domainId) throws SQLException {
+
+        Map<String, Integer> mappingIds = new HashMap<>();
+        try (Connection connection = dataSource.getConnection(); PreparedStatement statement = connection
+                .prepareStatement("SELECT ID, USER_ID FROM IDM_USER_GROUP_MAPPING WHERE GROUP_ID = ? AND " +
+                        "DOMAIN_ID = ?")) {
+            statement.setString(1, domainGroupId);
+            statement.setInt(2, domainId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    mappingIds.put(resultSet.getString("USER_ID"), resultSet.getInt("ID"));
+                }
+            }
+        }
+        return mappingIds;
+    }
+
+    private Map<String, Integer> getMappingIdsOfUser(String domainUserId, int domainId) throws SQLException {
+
+        Map<String, Integer> mappingIds = new HashMap<>();
+        try (Connection connection = dataSource.getConnection(); PreparedStatement statement = connection
+                .prepareStatement("SELECT ID, GROUP_ID FROM IDM_USER_GROUP_MAPPING WHERE USER_ID = ? AND " +
+                        "DOMAIN_ID = ?")) {
+            statement.setString(1, domainUserId);
+            statement.setInt(2, domainId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    mappingIds.put(resultSet.getString("GROUP_ID"), resultSet.getInt("ID"));
+                }
+            }
+        }
+        return mappingIds;
+    }
+
+    private long runMembershipLookups(List<DomainUser> domainUsers, List<DomainGroup> domainGroups,
+                                      int groupsPerUser, int domainId) throws UniqueIdResolverException {
+
+        int lookupCount = 100;
+        int expectedGroupSize = domainUsers.size() * groupsPerUser / domainGroups.size();
+        long start = System.nanoTime();
+        for (int i = 0; i < lookupCount; i++) {
+            DomainUser domainUser = domainUsers.get(i * (domainUsers.size() / lookupCount));
+            Assert.assertEquals(uniqueIdResolver.getGroupsOfUser(domainUser.getDomainUserId(), domainId).size(),
+                    groupsPerUser);
+            Assert.assertTrue(uniqueIdResolver.isUserInGroup(domainUser.getDomainUserId(), domainGroups.get(
+                    (i * (domainUsers.size() / lookupCount)) % domainGroups.size()).getDomainGroupId(), domainId));
+        }
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(uniqueIdResolver.getUsersOfGroup(domainGroups.get(i).getDomainGroupId(), domainId)
+                    .size(), expectedGroupSize);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void executeStatement(String sql) throws SQLException {
+
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    /**
+     * Data source of the test database, which runs the racing statement before the next membership insert.
+     */
+    private DataSource createRacingDataSource() {
+
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(dataSource, method, args);
+                    if (result instanceof Connection) {
+                        Connection connection = (Connection) result;
+                        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                                (connectionProxy, connectionMethod, connectionArgs) -> {
+                                    if ("prepareStatement".equals(connectionMethod.getName()) &&
+                                            ((String) connectionArgs[0]).startsWith(
+                                                    "INSERT INTO IDM_USER_GROUP_MAPPING")) {
+                                        String statement = racingStatement.getAndSet(null);
+                                        if (statement != null) {
+                                            executeStatement(statement);
+                                        }
+                                    }
+                                    return invoke(connection, connectionMethod, connectionArgs);
+                                });
+                    }
+                    return result;
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Map<String, UserPartition> getPartitions(String domainUserId, int domainId) throws Exception {
+
+        return uniqueIdResolver.getUser(domainUserId, domainId).getUserPartitions().stream()
+                .collect(Collectors.toMap(UserPartition::getConnectorId, userPartition -> userPartition));
+    }
+
+    private DomainUser buildDomainUser(String connectorUserId) {
+
+        return H2TestHelper.buildDomainUser(UUID.randomUUID().toString(), connectorUserId, CREDENTIAL_CONNECTOR_ID);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.store.test.unit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.mgt.impl.util.NamedSqlTemplate;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Unit tests for the parsed named SQL templates.
+ */
+public class NamedSqlTemplateTests {
+
+    private static final Logger log = LoggerFactory.getLogger(NamedSqlTemplateTests.class);
+
+    private static final String SELECT_USERS = "SELECT USER_ID FROM IDM_USER WHERE DOMAIN_ID = :domainId; AND " +
+            "CONNECTOR_USER_ID IN (:connectorUserId;) AND CONNECTOR_ID = :connectorId; AND STATE <> :domainId;";
+
+    @Test
+    public void testExpansion() throws SQLException {
+
+        NamedSqlTemplate.Expansion expansion = NamedSqlTemplate.of(SELECT_USERS).getExpansion();
+
+        Assert.assertEquals(expansion.getSql(), "SELECT USER_ID FROM IDM_USER WHERE DOMAIN_ID =  ?  AND " +
+                "CONNECTOR_USER_ID IN ( ? ) AND CONNECTOR_ID =  ?  AND STATE <>  ? ");
+        Assert.assertEquals(expansion.getIndexes("domainId"), new int[]{1, 4});
+        Assert.assertEquals(expansion.getIndexes("connectorUserId"), new int[]{2});
+        Assert.assertEquals(expansion.getIndexes("connectorId"), new int[]{3});
+    }
+
+    @Test
+    public void testRepeatedExpansion() throws SQLException {
+
+        Map<String, Integer> repetition = Collections.singletonMap("connectorUserId", 3);
+        NamedSqlTemplate.Expansion expansion = NamedSqlTemplate.of(SELECT_USERS).getExpansion(repetition);
+
+        Assert.assertTrue(expansion.getSql().contains("IN ( ?, ?, ? )"));
+        Assert.assertEquals(expansion.getIndexes("connectorUserId"), new int[]{2});
+        Assert.assertEquals(expansion.getIndexes("connectorId"), new int[]{5},
+                "Placeholders after a repeated placeholder should be shifted.");
+        Assert.assertSame(NamedSqlTemplate.of(SELECT_USERS).getExpansion(repetition), expansion,
+                "Expansions should be reused.");
+    }
+
+    @Test(expectedExceptions = SQLException.class)
+    public void testUnknownPlaceholder() throws SQLException {
+
+        NamedSqlTemplate.of(SELECT_USERS).getExpansion().getIndexes("userId");
+    }
+
+    @Test(expectedExceptions = SQLException.class)
+    public void testUnterminatedPlaceholder() throws SQLException {
+
+        NamedSqlTemplate.parse("SELECT USER_ID FROM IDM_USER WHERE USER_ID = :userId");
+    }
+
+    @Test(groups = "benchmark")
+    public void testTemplateThroughput() throws SQLException {
+
+        int iterations = 200000;
+        for (int i = 0; i < iterations; i++) {
+            NamedSqlTemplate.parse(SELECT_USERS).getExpansion().getIndexes("connectorId");
+            NamedSqlTemplate.of(SELECT_USERS).getExpansion().getIndexes("connectorId");
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            NamedSqlTemplate.parse(SELECT_USERS).getExpansion().getIndexes("connectorId");
+        }
+        long parseNanos = (System.nanoTime() - start) / iterations;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            NamedSqlTemplate.of(SELECT_USERS).getExpansion().getIndexes("connectorId");
+        }
+        long cachedNanos = (System.nanoTime() - start) / iterations;
+
+        log.info("Named SQL parsed per call in {} ns, resolved from the template cache in {} ns.", parseNanos,
+                cachedNanos);
+    }
+}
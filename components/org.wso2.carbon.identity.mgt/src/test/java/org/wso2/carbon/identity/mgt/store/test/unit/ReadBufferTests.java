@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.store.test.unit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.mgt.impl.util.ReadBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for the lossy buffer of cache reads.
+ */
+public class ReadBufferTests {
+
+    private static final int STRIPE_SIZE = 32;
+
+    @Test
+    public void testFullBufferDropsKeysUntilDrained() {
+
+        ReadBuffer<Integer> readBuffer = new ReadBuffer<>();
+        for (int i = 0; i < STRIPE_SIZE - 1; i++) {
+            Assert.assertFalse(readBuffer.add(i), "The buffer should not ask to be drained before it is full.");
+        }
+        Assert.assertTrue(readBuffer.add(STRIPE_SIZE - 1));
+        Assert.assertTrue(readBuffer.add(STRIPE_SIZE), "Keys added to a full buffer should be dropped.");
+
+        List<Integer> drainedKeys = new ArrayList<>();
+        readBuffer.drain(drainedKeys::add);
+        Assert.assertEquals(drainedKeys.size(), STRIPE_SIZE);
+        for (int i = 0; i < STRIPE_SIZE; i++) {
+            Assert.assertEquals(drainedKeys.get(i).intValue(), i,
+                    "Keys should be drained in the order they were read.");
+        }
+
+        drainedKeys.clear();
+        Assert.assertFalse(readBuffer.add(STRIPE_SIZE + 1));
+        readBuffer.drain(drainedKeys::add);
+        readBuffer.drain(drainedKeys::add);
+        Assert.assertEquals(drainedKeys.size(), 1, "Keys should be drained only once.");
+    }
+
+    @Test(timeOut = 10000)
+    public void testKeysOfConcurrentReadersAreDrained() throws Exception {
+
+        ReadBuffer<Integer> readBuffer = new ReadBuffer<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int key = i;
+            Thread reader = new Thread(() -> {
+                for (int j = 0; j < STRIPE_SIZE / 2; j++) {
+                    readBuffer.add(key);
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        // Readers sharing a buffer may drop each other's keys, but never more than were added.
+        List<Integer> drainedKeys = new ArrayList<>();
+        readBuffer.drain(drainedKeys::add);
+        Assert.assertFalse(drainedKeys.isEmpty());
+        Assert.assertTrue(drainedKeys.size() <= 4 * STRIPE_SIZE / 2);
+        Assert.assertTrue(drainedKeys.stream().allMatch(key -> key >= 0 && key < 4));
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.store.test.unit;
+
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.datasource.core.api.DataSourceService;
+import org.wso2.carbon.identity.mgt.exception.UniqueIdResolverException;
+import org.wso2.carbon.identity.mgt.impl.util.ReadReplicaRouter;
+import org.wso2.carbon.identity.mgt.impl.util.UniqueIdResolverConstants;
+import org.wso2.carbon.identity.mgt.resolver.DomainUser;
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolver;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.buildDomainUser;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.createDatabase;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.createJDBCResolver;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.registerDataSources;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.restoreDataSourceService;
+
+/**
+ * Tests for routing the reads of the JDBC unique id resolver to read replicas, with two H2 databases.
+ */
+public class ReadReplicaRoutingTests {
+
+    private static final String PRIMARY_DATA_SOURCE_NAME = "WSO2_IDM_PRIMARY_DB";
+    private static final String REPLICA_DATA_SOURCE_NAME = "WSO2_IDM_REPLICA_DB";
+    private static final int DOMAIN_ID = 1;
+
+    private DataSource primaryDataSource;
+    private DataSource replicaDataSource;
+    private DataSourceService previousDataSourceService;
+
+    @BeforeClass
+    public void initClass() throws Exception {
+
+        primaryDataSource = createDatabase(PRIMARY_DATA_SOURCE_NAME);
+        replicaDataSource = createDatabase(REPLICA_DATA_SOURCE_NAME);
+
+        Map<String, DataSource> dataSources = new HashMap<>();
+        dataSources.put(PRIMARY_DATA_SOURCE_NAME, primaryDataSource);
+        dataSources.put(REPLICA_DATA_SOURCE_NAME, replicaDataSource);
+        previousDataSourceService = registerDataSources(dataSources);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void cleanUpClass() {
+
+        restoreDataSourceService(previousDataSourceService);
+    }
+
+    @Test
+    public void testReadsAreRoutedToReplica() throws UniqueIdResolverException {
+
+        // Users written only to the replica are visible through the routed reads.
+        DomainUser replicatedUser = buildDomainUser("replicated-user");
+        createJDBCResolver(REPLICA_DATA_SOURCE_NAME, Collections.emptyMap()).addUser(replicatedUser, DOMAIN_ID);
+
+        Map<String, String> properties = new HashMap<>();
+        properties.put(UniqueIdResolverConstants.READ_DATA_SOURCES, REPLICA_DATA_SOURCE_NAME);
+        properties.put(UniqueIdResolverConstants.READ_YOUR_WRITES_WINDOW, "60000");
+        UniqueIdResolver resolver = createJDBCResolver(PRIMARY_DATA_SOURCE_NAME, properties);
+
+        Assert.assertTrue(resolver.isUserExists(replicatedUser.getDomainUserId(), DOMAIN_ID),
+                "Reads should go to the replica.");
+
+        DomainUser newUser = buildDomainUser("new-user");
+        resolver.addUser(newUser, DOMAIN_ID);
+
+        Assert.assertTrue(resolver.isUserExists(newUser.getDomainUserId(), DOMAIN_ID),
+                "Reads after a write should go to the primary.");
+        Assert.assertFalse(resolver.isUserExists(replicatedUser.getDomainUserId(), DOMAIN_ID),
+                "Reads after a write should go to the primary.");
+    }
+
+    @Test
+    public void testWritesOfOtherThreadsDoNotRouteReads() throws Exception {
+
+        DomainUser replicatedUser = buildDomainUser("replicated-user-2");
+        createJDBCResolver(REPLICA_DATA_SOURCE_NAME, Collections.emptyMap()).addUser(replicatedUser, DOMAIN_ID);
+
+        Map<String, String> properties = new HashMap<>();
+        properties.put(UniqueIdResolverConstants.READ_DATA_SOURCES, REPLICA_DATA_SOURCE_NAME);
+        properties.put(UniqueIdResolverConstants.READ_YOUR_WRITES_WINDOW, "60000");
+        UniqueIdResolver resolver = createJDBCResolver(PRIMARY_DATA_SOURCE_NAME, properties);
+
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            executorService.submit(() -> resolver.addUser(buildDomainUser("other-thread-user"), DOMAIN_ID))
+                    .get(5, TimeUnit.SECONDS);
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        Assert.assertTrue(resolver.isUserExists(replicatedUser.getDomainUserId(), DOMAIN_ID),
+                "Writes of other threads should not route the reads of this thread to the primary.");
+    }
+
+    @Test
+    public void testCachedReadsAreRoutedToPrimary() throws Exception {
+
+        // A user written by another node is not replicated yet.
+        DomainUser primaryUser = buildDomainUser("primary-user");
+        createJDBCResolver(PRIMARY_DATA_SOURCE_NAME, Collections.emptyMap()).addUser(primaryUser, DOMAIN_ID);
+
+        Map<String, String> properties = new HashMap<>();
+        properties.put(UniqueIdResolverConstants.READ_DATA_SOURCES, REPLICA_DATA_SOURCE_NAME);
+        UniqueIdResolver resolver = createJDBCResolver(PRIMARY_DATA_SOURCE_NAME, properties);
+
+        Assert.assertFalse(resolver.isUserExists(primaryUser.getDomainUserId(), DOMAIN_ID),
+                "Reads should go to the replica.");
+        Assert.assertEquals(resolver.getUser(primaryUser.getDomainUserId(), DOMAIN_ID).getUserPartitions().size(),
+                primaryUser.getUserPartitions().size(), "Lookups of a user should go to the primary.");
+    }
+
+    @Test
+    public void testRoutingPolicies() throws Exception {
+
+        DataSource secondReplicaDataSource = Mockito.mock(DataSource.class);
+        Connection secondReplicaConnection = Mockito.mock(Connection.class);
+        Mockito.when(secondReplicaDataSource.getConnection()).thenReturn(secondReplicaConnection);
+
+        ReadReplicaRouter roundRobinRouter = new ReadReplicaRouter(primaryDataSource,
+                Arrays.asList(replicaDataSource, secondReplicaDataSource), ReadReplicaRouter.RoutingPolicy.fromValue(
+                "roundRobin"), 0);
+        try (Connection first = roundRobinRouter.getReadDataSource().getConnection();
+             Connection second = roundRobinRouter.getReadDataSource().getConnection()) {
+            Assert.assertEquals(roundRobinRouter.getInFlightCounts(), new int[]{1, 1});
+        }
+        Assert.assertEquals(roundRobinRouter.getInFlightCounts(), new int[]{0, 0});
+
+        ReadReplicaRouter leastInFlightRouter = new ReadReplicaRouter(primaryDataSource,
+                Arrays.asList(replicaDataSource, secondReplicaDataSource), ReadReplicaRouter.RoutingPolicy.fromValue(
+                "leastInFlight"), 0);
+        try (Connection first = leastInFlightRouter.getReadDataSource().getConnection()) {
+            for (int i = 0; i < 4; i++) {
+                try (Connection connection = leastInFlightRouter.getReadDataSource().getConnection()) {
+                    int[] inFlightCounts = leastInFlightRouter.getInFlightCounts();
+                    Assert.assertEquals(inFlightCounts[0] + inFlightCounts[1], 2);
+                    Assert.assertEquals(Math.abs(inFlightCounts[0] - inFlightCounts[1]), 0,
+                            "Reads should go to the replica with the least connections in use.");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.identity.mgt.store.test.unit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.datasource.core.api.DataSourceService;
+import org.wso2.carbon.identity.mgt.exception.UniqueIdResolverException;
+import org.wso2.carbon.identity.mgt.exception.UserNotFoundException;
+import org.wso2.carbon.identity.mgt.impl.ShardedUniqueIdResolver;
+import org.wso2.carbon.identity.mgt.impl.util.UniqueIdResolverConstants;
+import org.wso2.carbon.identity.mgt.resolver.DomainGroup;
+import org.wso2.carbon.identity.mgt.resolver.DomainUser;
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolver;
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolverConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.IDENTITY_CONNECTOR_ID;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.buildDomainGroup;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.buildDomainUser;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.createDatabase;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.createJDBCResolver;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.registerDataSources;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.restoreDataSourceService;
+
+/**
+ * Tests for the sharded unique id resolver, with two H2 databases as the shards.
+ */
+public class ShardedUniqueIdResolverTests {
+
+    private static final String FIRST_SHARD_DATA_SOURCE_NAME = "WSO2_IDM_SHARD_1_DB";
+    private static final String SECOND_SHARD_DATA_SOURCE_NAME = "WSO2_IDM_SHARD_2_DB";
+
+    private UniqueIdResolver firstShard;
+    private UniqueIdResolver secondShard;
+    private DataSourceService previousDataSourceService;
+
+    @BeforeClass
+    public void initClass() throws Exception {
+
+        Map<String, DataSource> dataSources = new HashMap<>();
+        dataSources.put(FIRST_SHARD_DATA_SOURCE_NAME, createDatabase(FIRST_SHARD_DATA_SOURCE_NAME));
+        dataSources.put(SECOND_SHARD_DATA_SOURCE_NAME, createDatabase(SECOND_SHARD_DATA_SOURCE_NAME));
+        previousDataSourceService = registerDataSources(dataSources);
+
+        firstShard = createJDBCResolver(FIRST_SHARD_DATA_SOURCE_NAME, Collections.emptyMap());
+        secondShard = createJDBCResolver(SECOND_SHARD_DATA_SOURCE_NAME, Collections.emptyMap());
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void cleanUpClass() {
+
+        restoreDataSourceService(previousDataSourceService);
+    }
+
+    @Test
+    public void testUsersAreSpreadAcrossShards() throws Exception {
+
+        int domainId = 1;
+        UniqueIdResolver resolver = createResolver(UniqueIdResolverConstants.SHARD_KEY_ENTITY_ID);
+
+        List<DomainUser> domainUsers = new ArrayList<>();
+        List<String> connectorUserIds = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            domainUsers.add(buildDomainUser("sharded-user-" + i));
+            connectorUserIds.add("sharded-user-" + i);
+        }
+        Assert.assertEquals(resolver.addUsers(domainUsers, domainId).size(), domainUsers.size());
+
+        int firstShardUsers = 0;
+        for (DomainUser domainUser : domainUsers) {
+            boolean onFirstShard = firstShard.isUserExists(domainUser.getDomainUserId(), domainId);
+            boolean onSecondShard = secondShard.isUserExists(domainUser.getDomainUserId(), domainId);
+            Assert.assertTrue(onFirstShard ^ onSecondShard, "Each user should be on exactly one shard.");
+            firstShardUsers += onFirstShard ? 1 : 0;
+            Assert.assertEquals(resolver.getUser(domainUser.getDomainUserId(), domainId).getUserPartitions().size(),
+                    1);
+        }
+        Assert.assertTrue(firstShardUsers > 0 && firstShardUsers < domainUsers.size(),
+                "Users should be spread across the shards.");
+
+        Assert.assertEquals(resolver.getUserFromConnectorUserId("sharded-user-7", IDENTITY_CONNECTOR_ID, domainId)
+                .getDomainUserId(), domainUsers.get(7).getDomainUserId());
+        List<DomainUser> resolvedUsers = resolver.getUsers(connectorUserIds, IDENTITY_CONNECTOR_ID, domainId);
+        for (int i = 0; i < domainUsers.size(); i++) {
+            Assert.assertEquals(resolvedUsers.get(i).getDomainUserId(), domainUsers.get(i).getDomainUserId(),
+                    "Users should be resolved in the order of the connector user ids.");
+        }
+
+        try {
+            resolver.getUserFromConnectorUserId("missing-user", IDENTITY_CONNECTOR_ID, domainId);
+            Assert.fail("Missing user should not be resolved.");
+        } catch (UserNotFoundException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testListUsersAcrossShards() throws UniqueIdResolverException {
+
+        int domainId = 2;
+        UniqueIdResolver resolver = createResolver(UniqueIdResolverConstants.SHARD_KEY_ENTITY_ID);
+
+        List<DomainUser> domainUsers = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            domainUsers.add(buildDomainUser("listed-user-" + i));
+        }
+        resolver.addUsers(domainUsers, domainId);
+        List<String> expectedUserIds = domainUsers.stream()
+                .map(DomainUser::getDomainUserId)
+                .sorted()
+                .collect(Collectors.toList());
+
+        List<String> listedUserIds = new ArrayList<>();
+        String lastDomainUserId = null;
+        List<DomainUser> page;
+        do {
+            page = resolver.listDomainUsers(lastDomainUserId, 10, domainId);
+            page.forEach(domainUser -> listedUserIds.add(domainUser.getDomainUserId()));
+            if (!page.isEmpty()) {
+                lastDomainUserId = page.get(page.size() - 1).getDomainUserId();
+            }
+        } while (page.size() == 10);
+        Assert.assertEquals(listedUserIds, expectedUserIds, "Pages of the shards should be merged in order.");
+
+        List<String> offsetPage = resolver.listDomainUsers(11, 10, domainId).stream()
+                .map(DomainUser::getDomainUserId)
+                .collect(Collectors.toList());
+        Assert.assertEquals(offsetPage, expectedUserIds.subList(10, 20));
+    }
+
+    @Test
+    public void testMembershipAcrossShards() throws UniqueIdResolverException {
+
+        int domainId = 3;
+        UniqueIdResolver resolver = createResolver(UniqueIdResolverConstants.SHARD_KEY_ENTITY_ID);
+
+        List<DomainUser> domainUsers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            domainUsers.add(buildDomainUser("member-" + i));
+        }
+        resolver.addUsers(domainUsers, domainId);
+        List<DomainGroup> domainGroups = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            domainGroups.add(buildDomainGroup("sharded-group-" + i));
+        }
+        resolver.addGroups(domainGroups, domainId);
+
+        String domainGroupId = domainGroups.get(0).getDomainGroupId();
+        List<String> memberIds = domainUsers.stream()
+                .map(DomainUser::getDomainUserId)
+                .collect(Collectors.toList());
+        resolver.updateUsersOfGroup(domainGroupId, memberIds, domainId);
+
+        Set<String> resolvedMemberIds = resolver.getUsersOfGroup(domainGroupId, domainId).stream()
+                .map(DomainUser::getDomainUserId)
+                .collect(Collectors.toSet());
+        Assert.assertEquals(resolvedMemberIds, new HashSet<>(memberIds), "Members on all shards should be listed.");
+        Assert.assertTrue(resolver.isUserInGroup(memberIds.get(3), domainGroupId, domainId));
+
+        String domainUserId = memberIds.get(0);
+        List<String> groupIds = domainGroups.stream()
+                .map(DomainGroup::getDomainGroupId)
+                .collect(Collectors.toList());
+        resolver.updateGroupsOfUser(domainUserId, groupIds.subList(1, groupIds.size()), new ArrayList<>(),
+                domainId);
+        Set<String> resolvedGroupIds = resolver.getGroupsOfUser(domainUserId, domainId).stream()
+                .map(DomainGroup::getDomainGroupId)
+                .collect(Collectors.toSet());
+        Assert.assertEquals(resolvedGroupIds, new HashSet<>(groupIds), "Groups on all shards should be resolved.");
+
+        resolver.deleteGroup(domainGroupId, domainId);
+        Assert.assertFalse(resolver.isGroupExists(domainGroupId, domainId));
+        Assert.assertTrue(resolver.getUsersOfGroup(domainGroupId, domainId).isEmpty(),
+                "Mappings to a deleted group should be removed from all shards.");
+    }
+
+    @Test
+    public void testShardByDomain() throws UniqueIdResolverException {
+
+        UniqueIdResolver resolver = createResolver(UniqueIdResolverConstants.SHARD_KEY_DOMAIN);
+
+        for (int domainId = 4; domainId <= 5; domainId++) {
+            List<DomainUser> domainUsers = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                domainUsers.add(buildDomainUser("domain-" + domainId + "-user-" + i));
+            }
+            resolver.addUsers(domainUsers, domainId);
+
+            UniqueIdResolver domainShard = domainId % 2 == 0 ? firstShard : secondShard;
+            for (DomainUser domainUser : domainUsers) {
+                Assert.assertTrue(domainShard.isUserExists(domainUser.getDomainUserId(), domainId),
+                        "All users of a domain should be on the shard of the domain.");
+            }
+            Assert.assertEquals(resolver.listDomainUsers(null, 10, domainId).size(), domainUsers.size());
+        }
+    }
+
+    @Test(expectedExceptions = UniqueIdResolverException.class)
+    public void testInvalidShardKey() throws UniqueIdResolverException {
+
+        createResolver("user");
+    }
+
+    private UniqueIdResolver createResolver(String shardKey) throws UniqueIdResolverException {
+
+        Map<String, String> properties = new HashMap<>();
+        properties.put(UniqueIdResolverConstants.SHARD_DATA_SOURCES, FIRST_SHARD_DATA_SOURCE_NAME + ", " +
+                SECOND_SHARD_DATA_SOURCE_NAME);
+        properties.put(UniqueIdResolverConstants.SHARD_KEY, shardKey);
+        UniqueIdResolver resolver = new ShardedUniqueIdResolver();
+        resolver.init(new UniqueIdResolverConfig("ShardedUniqueIdResolver", properties));
+        return resolver;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.store.test.unit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.mgt.exception.UserNotFoundException;
+import org.wso2.carbon.identity.mgt.impl.util.SingleFlight;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the coalescing of concurrent loads.
+ */
+public class SingleFlightTests {
+
+    private static final int THREAD_COUNT = 16;
+
+    @Test
+    public void testConcurrentLoadsAreCoalesced() throws Exception {
+
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                results.add(executorService.submit(() -> singleFlight.execute("admin", () -> {
+                    loadCount.incrementAndGet();
+                    release.await();
+                    return "admin-user";
+                })));
+            }
+
+            // Wait until the first load is in progress, and give the other callers time to join it.
+            while (loadCount.get() == 0) {
+                Thread.sleep(1);
+            }
+            Thread.sleep(200);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                Assert.assertEquals(result.get(5, TimeUnit.SECONDS), "admin-user");
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        Assert.assertEquals(loadCount.get(), 1, "Concurrent loads of the same key should share one call.");
+        Assert.assertEquals(singleFlight.getInFlightCount(), 0, "Completed loads should not be retained.");
+    }
+
+    @Test
+    public void testFailureIsSharedAndNotRetained() throws Exception {
+
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        try {
+            singleFlight.execute("missing", () -> {
+                throw new UserNotFoundException("Invalid claim value.");
+            });
+            Assert.fail("Loader failure should be propagated.");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof UserNotFoundException);
+        }
+
+        Assert.assertEquals(singleFlight.execute("missing", () -> "found"), "found",
+                "A failed load should not affect later loads.");
+    }
+}
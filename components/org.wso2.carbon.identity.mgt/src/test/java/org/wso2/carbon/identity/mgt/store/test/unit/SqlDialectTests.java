@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.store.test.unit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.wso2.carbon.datasource.core.api.DataSourceService;
+import org.wso2.carbon.identity.mgt.exception.UniqueIdResolverException;
+import org.wso2.carbon.identity.mgt.impl.util.NamedSqlTemplate;
+import org.wso2.carbon.identity.mgt.impl.util.SqlDialect;
+import org.wso2.carbon.identity.mgt.impl.util.UniqueIdResolverConstants;
+import org.wso2.carbon.identity.mgt.resolver.DomainGroup;
+import org.wso2.carbon.identity.mgt.resolver.DomainUser;
+import org.wso2.carbon.identity.mgt.resolver.GroupPartition;
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolver;
+import org.wso2.carbon.identity.mgt.resolver.UserPartition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.IDENTITY_CONNECTOR_ID;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.buildDomainGroup;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.buildDomainUser;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.createDatabase;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.createJDBCResolver;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.registerDataSources;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.restoreDataSourceService;
+
+/**
+ * Tests for the SQL dialects of the JDBC unique id resolver, with H2 databases in the compatibility mode of each
+ * database.
+ */
+public class SqlDialectTests {
+
+    private static final String CREDENTIAL_CONNECTOR_ID = "JDBC_CSC";
+    private static final String SECOND_IDENTITY_CONNECTOR_ID = "JDBC_ISC_2";
+
+    // Database type of each dialect and the H2 compatibility mode of the database.
+    private static final String[][] MODES = {
+            {"H2", "Regular"},
+            {"MySQL", "MySQL"},
+            {"PostgreSQL", "PostgreSQL"},
+            {"Oracle", "Oracle"},
+            {"MSSQL", "MSSQLServer"}
+    };
+
+    private DataSourceService previousDataSourceService;
+
+    @BeforeClass
+    public void initClass() throws Exception {
+
+        Map<String, DataSource> dataSources = new HashMap<>();
+        for (String[] mode : MODES) {
+            dataSources.put(getDataSourceName(mode[0]), createDatabase(getDataSourceName(mode[0]), mode[1]));
+        }
+        previousDataSourceService = registerDataSources(dataSources);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void cleanUpClass() {
+
+        restoreDataSourceService(previousDataSourceService);
+    }
+
+    @DataProvider(name = "databaseTypes")
+    public Object[][] databaseTypes() {
+
+        return Arrays.stream(MODES)
+                .map(mode -> new Object[]{mode[0]})
+                .toArray(Object[][]::new);
+    }
+
+    @DataProvider(name = "upsertDatabaseTypes")
+    public Object[][] upsertDatabaseTypes() {
+
+        // H2 1.4 has neither ON CONFLICT nor MERGE USING, so those upserts are only covered by the SQL they produce.
+        return new Object[][]{{"H2"}, {"MySQL"}};
+    }
+
+    @Test(dataProvider = "databaseTypes")
+    public void testPagination(String databaseType) throws UniqueIdResolverException {
+
+        int domainId = 1;
+        UniqueIdResolver resolver = createResolver(databaseType);
+
+        List<DomainUser> domainUsers = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            domainUsers.add(buildDomainUser("paged-user-" + i));
+        }
+        resolver.addUsers(domainUsers, domainId);
+        List<String> expectedUserIds = domainUsers.stream()
+                .map(DomainUser::getDomainUserId)
+                .sorted()
+                .collect(Collectors.toList());
+
+        List<String> listedUserIds = new ArrayList<>();
+        String lastDomainUserId = null;
+        List<DomainUser> page;
+        do {
+            page = resolver.listDomainUsers(lastDomainUserId, 10, domainId);
+            page.forEach(domainUser -> listedUserIds.add(domainUser.getDomainUserId()));
+            if (!page.isEmpty()) {
+                lastDomainUserId = page.get(page.size() - 1).getDomainUserId();
+            }
+        } while (page.size() == 10);
+        Assert.assertEquals(listedUserIds, expectedUserIds);
+
+        Set<String> offsetPage = resolver.listDomainUsers(11, 10, domainId).stream()
+                .map(DomainUser::getDomainUserId)
+                .collect(Collectors.toSet());
+        Assert.assertEquals(offsetPage, new HashSet<>(expectedUserIds.subList(10, 20)));
+
+        List<DomainGroup> domainGroups = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            domainGroups.add(buildDomainGroup("paged-group-" + i));
+        }
+        resolver.addGroups(domainGroups, domainId);
+        List<String> expectedGroupIds = domainGroups.stream()
+                .map(DomainGroup::getDomainGroupId)
+                .sorted()
+                .collect(Collectors.toList());
+        List<String> firstGroups = resolver.listGroups(null, 3, domainId).stream()
+                .map(DomainGroup::getDomainGroupId)
+                .collect(Collectors.toList());
+        Assert.assertEquals(firstGroups, expectedGroupIds.subList(0, 3));
+        Set<String> lastGroups = resolver.listGroups(4, 3, domainId).stream()
+                .map(DomainGroup::getDomainGroupId)
+                .collect(Collectors.toSet());
+        Assert.assertEquals(lastGroups, new HashSet<>(expectedGroupIds.subList(3, 5)));
+    }
+
+    @Test(dataProvider = "databaseTypes")
+    public void testBulkMembershipWrite(String databaseType) throws UniqueIdResolverException {
+
+        int domainId = 2;
+        UniqueIdResolver resolver = createResolver(databaseType);
+
+        List<DomainUser> domainUsers = new ArrayList<>();
+        for (int i = 0; i < 23; i++) {
+            domainUsers.add(buildDomainUser("bulk-member-" + i));
+        }
+        resolver.addUsers(domainUsers, domainId);
+        DomainGroup domainGroup = buildDomainGroup("bulk-group");
+        resolver.addGroup(domainGroup, domainId);
+        String domainGroupId = domainGroup.getDomainGroupId();
+
+        // The batch size of the resolver splits the members into full inserts and a shorter last insert.
+        List<String> memberIds = domainUsers.stream()
+                .map(DomainUser::getDomainUserId)
+                .collect(Collectors.toList());
+        resolver.updateUsersOfGroup(domainGroupId, memberIds, domainId);
+        Set<String> resolvedMemberIds = resolver.getUsersOfGroup(domainGroupId, domainId).stream()
+                .map(DomainUser::getDomainUserId)
+                .collect(Collectors.toSet());
+        Assert.assertEquals(resolvedMemberIds, new HashSet<>(memberIds));
+
+        resolver.updateUsersOfGroup(domainGroupId, memberIds.subList(0, 5), domainId);
+        Assert.assertEquals(resolver.getUsersOfGroup(domainGroupId, domainId).size(), 5);
+        Assert.assertTrue(resolver.isUserInGroup(memberIds.get(4), domainGroupId, domainId));
+        Assert.assertFalse(resolver.isUserInGroup(memberIds.get(5), domainGroupId, domainId));
+    }
+
+    @Test(dataProvider = "upsertDatabaseTypes")
+    public void testPartitionUpsert(String databaseType) throws Exception {
+
+        int domainId = 3;
+        UniqueIdResolver resolver = createResolver(databaseType);
+
+        UserPartition credentialPartition = new UserPartition();
+        credentialPartition.setConnectorId(CREDENTIAL_CONNECTOR_ID);
+        credentialPartition.setConnectorUserId("upserted-credential");
+        credentialPartition.setIdentityStore(false);
+        DomainUser domainUser = buildDomainUser("upserted-user");
+        domainUser.getUserPartitions().add(credentialPartition);
+        String domainUserId = resolver.addUser(domainUser, domainId);
+
+        resolver.updateUser(domainUserId, Collections.singletonMap(CREDENTIAL_CONNECTOR_ID, "updated-credential"),
+                domainId, "LOCKED");
+
+        DomainUser updatedUser = resolver.getUser(domainUserId, domainId);
+        Assert.assertEquals(updatedUser.getState(), "LOCKED");
+        Map<String, UserPartition> partitions = updatedUser.getUserPartitions().stream()
+                .collect(Collectors.toMap(UserPartition::getConnectorId, partition -> partition));
+        Assert.assertEquals(partitions.keySet(), new HashSet<>(Arrays.asList(IDENTITY_CONNECTOR_ID,
+                CREDENTIAL_CONNECTOR_ID)), "Partitions of the other connector type should be kept.");
+        Assert.assertEquals(partitions.get(IDENTITY_CONNECTOR_ID).getConnectorUserId(), "upserted-user");
+        Assert.assertEquals(partitions.get(CREDENTIAL_CONNECTOR_ID).getConnectorUserId(), "updated-credential");
+        Assert.assertFalse(partitions.get(CREDENTIAL_CONNECTOR_ID).isIdentityStore(),
+                "An updated partition should keep its connector type.");
+
+        Map<String, String> connectorUserIds = new HashMap<>();
+        connectorUserIds.put(IDENTITY_CONNECTOR_ID, "updated-user");
+        connectorUserIds.put(SECOND_IDENTITY_CONNECTOR_ID, "added-user");
+        resolver.updateUser(domainUserId, connectorUserIds, true, domainId, null);
+
+        partitions = resolver.getUser(domainUserId, domainId).getUserPartitions().stream()
+                .collect(Collectors.toMap(UserPartition::getConnectorId, partition -> partition));
+        Assert.assertEquals(partitions.keySet(), new HashSet<>(Arrays.asList(IDENTITY_CONNECTOR_ID,
+                SECOND_IDENTITY_CONNECTOR_ID, CREDENTIAL_CONNECTOR_ID)),
+                "Partitions of the other connector type should be kept.");
+        Assert.assertEquals(partitions.get(IDENTITY_CONNECTOR_ID).getConnectorUserId(), "updated-user");
+        Assert.assertTrue(partitions.get(SECOND_IDENTITY_CONNECTOR_ID).isIdentityStore());
+        Assert.assertFalse(partitions.get(CREDENTIAL_CONNECTOR_ID).isIdentityStore());
+
+        DomainGroup domainGroup = buildDomainGroup("upserted-group");
+        GroupPartition secondPartition = new GroupPartition();
+        secondPartition.setConnectorId(SECOND_IDENTITY_CONNECTOR_ID);
+        secondPartition.setConnectorGroupId("removed-group");
+        domainGroup.getGroupPartitions().add(secondPartition);
+        String domainGroupId = resolver.addGroup(domainGroup, domainId);
+
+        resolver.updateGroup(domainGroupId, Collections.singletonMap(IDENTITY_CONNECTOR_ID, "updated-group"),
+                domainId);
+        List<GroupPartition> groupPartitions = resolver.getGroup(domainGroupId, domainId).getGroupPartitions();
+        Assert.assertEquals(groupPartitions.size(), 1, "Partitions of the other connectors should be removed.");
+        Assert.assertEquals(groupPartitions.get(0).getConnectorGroupId(), "updated-group");
+    }
+
+    @Test
+    public void testUpsertStatements() throws Exception {
+
+        List<String> keyColumns = Arrays.asList("USER_ID", "DOMAIN_ID", "CONNECTOR_ID");
+        List<String> updateColumns = Collections.singletonList("CONNECTOR_USER_ID");
+        List<String> insertColumns = Collections.singletonList("CONNECTOR_TYPE");
+
+        Assert.assertEquals(SqlDialect.POSTGRESQL.upsert("IDM_USER", keyColumns, updateColumns, insertColumns),
+                "INSERT INTO IDM_USER (USER_ID, DOMAIN_ID, CONNECTOR_ID, CONNECTOR_USER_ID, CONNECTOR_TYPE) " +
+                        "VALUES (:user_id;, :domain_id;, :connector_id;, :connector_user_id;, :connector_type;) " +
+                        "ON CONFLICT (USER_ID, DOMAIN_ID, CONNECTOR_ID) " +
+                        "DO UPDATE SET CONNECTOR_USER_ID = EXCLUDED.CONNECTOR_USER_ID");
+
+        for (SqlDialect dialect : SqlDialect.values()) {
+            String upsert = dialect.upsert("IDM_USER", keyColumns, updateColumns, insertColumns);
+            NamedSqlTemplate.Expansion expansion = NamedSqlTemplate.parse(upsert).getExpansion();
+            for (String column : Arrays.asList("user_id", "domain_id", "connector_id", "connector_user_id",
+                    "connector_type")) {
+                Assert.assertTrue(expansion.getIndexes(column).length > 0);
+            }
+        }
+        Assert.assertTrue(SqlDialect.ORACLE.upsert("IDM_USER", keyColumns, updateColumns, insertColumns)
+                .contains(" FROM DUAL) S ON (T.USER_ID = S.USER_ID AND T.DOMAIN_ID = S.DOMAIN_ID AND " +
+                        "T.CONNECTOR_ID = S.CONNECTOR_ID) WHEN MATCHED THEN UPDATE SET " +
+                        "T.CONNECTOR_USER_ID = S.CONNECTOR_USER_ID"));
+        Assert.assertTrue(SqlDialect.MSSQL.upsert("IDM_USER", keyColumns, updateColumns, insertColumns)
+                .startsWith("MERGE INTO IDM_USER WITH (HOLDLOCK) T USING"));
+    }
+
+    @Test
+    public void testDialectSelection() throws Exception {
+
+        Assert.assertEquals(SqlDialect.fromValue("mysql"), SqlDialect.MYSQL);
+        Assert.assertEquals(SqlDialect.fromValue("MariaDB"), SqlDialect.MYSQL);
+        Assert.assertEquals(SqlDialect.fromValue("postgres"), SqlDialect.POSTGRESQL);
+        Assert.assertEquals(SqlDialect.fromValue("sql-server"), SqlDialect.MSSQL);
+        Assert.assertEquals(SqlDialect.detect(createDatabase("WSO2_IDM_DETECTED_DB", "Regular")), SqlDialect.H2);
+
+        Assert.assertEquals(SqlDialect.ORACLE.getMaxRowsPerInsert(3), 1);
+        Assert.assertEquals(SqlDialect.MSSQL.getMaxRowsPerInsert(3), 699);
+        Assert.assertEquals(SqlDialect.H2.insertRows("IDM_USER_GROUP_MAPPING", Arrays.asList("USER_ID", "GROUP_ID"),
+                2), "INSERT INTO IDM_USER_GROUP_MAPPING (USER_ID, GROUP_ID) VALUES (?, ?), (?, ?)");
+    }
+
+    @Test(expectedExceptions = UniqueIdResolverException.class)
+    public void testUnknownDatabaseType() throws UniqueIdResolverException {
+
+        createResolver("DB2");
+    }
+
+    private UniqueIdResolver createResolver(String databaseType) throws UniqueIdResolverException {
+
+        Map<String, String> properties = new HashMap<>();
+        properties.put(UniqueIdResolverConstants.DATABASE_TYPE, databaseType);
+        properties.put(UniqueIdResolverConstants.BATCH_SIZE, "10");
+        return createJDBCResolver(getDataSourceName(databaseType), properties);
+    }
+
+    private String getDataSourceName(String databaseType) {
+        return "WSO2_IDM_" + databaseType.toUpperCase(Locale.ENGLISH) + "_DB";
+    }
+}
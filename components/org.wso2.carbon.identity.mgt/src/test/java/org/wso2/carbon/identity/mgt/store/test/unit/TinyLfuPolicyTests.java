@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.store.test.unit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.mgt.impl.util.TinyLfuPolicy;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares the hit rate of the bounded cache eviction policy with an LRU and an unbounded cache on a Zipfian
+ * workload mixed with one off scans.
+ */
+public class TinyLfuPolicyTests {
+
+    private static final Logger log = LoggerFactory.getLogger(TinyLfuPolicyTests.class);
+
+    private static final int KEY_SPACE = 100000;
+    private static final int CAPACITY = 1000;
+    private static final int OPERATIONS = 500000;
+
+    @Test
+    public void testHitRateOnZipfianWorkload() {
+
+        int[] keys = generateWorkload();
+
+        TinyLfuPolicy<Integer> policy = new TinyLfuPolicy<>(CAPACITY);
+        Set<Integer> cachedKeys = new HashSet<>();
+        int tinyLfuHits = 0;
+        for (int key : keys) {
+            if (cachedKeys.contains(key)) {
+                tinyLfuHits++;
+                policy.recordAccess(key);
+            } else {
+                cachedKeys.add(key);
+                policy.recordWrite(key).forEach(cachedKeys::remove);
+            }
+            Assert.assertTrue(cachedKeys.size() <= CAPACITY, "Cache should not exceed the max capacity.");
+        }
+
+        Map<Integer, Boolean> lruCache = new LinkedHashMap<Integer, Boolean>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Boolean> eldest) {
+                return size() > CAPACITY;
+            }
+        };
+        int lruHits = 0;
+        for (int key : keys) {
+            if (lruCache.get(key) != null) {
+                lruHits++;
+            } else {
+                lruCache.put(key, Boolean.TRUE);
+            }
+        }
+
+        Set<Integer> unboundedCache = new HashSet<>();
+        int unboundedHits = 0;
+        for (int key : keys) {
+            if (!unboundedCache.add(key)) {
+                unboundedHits++;
+            }
+        }
+
+        log.info("Hit rate with {} entries - TinyLFU: {}, LRU: {}, unbounded: {} ({} entries).", CAPACITY,
+                (double) tinyLfuHits / OPERATIONS, (double) lruHits / OPERATIONS, (double) unboundedHits / OPERATIONS,
+                unboundedCache.size());
+
+        Assert.assertTrue(tinyLfuHits > lruHits, "Frequency aware eviction should beat LRU under scans.");
+    }
+
+    @Test
+    public void testFrequentKeysSurviveScan() {
+
+        TinyLfuPolicy<String> policy = new TinyLfuPolicy<>(100);
+        Set<String> cachedKeys = new HashSet<>();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 50; i++) {
+                String key = "hot-" + i;
+                if (cachedKeys.contains(key)) {
+                    policy.recordAccess(key);
+                } else {
+                    cachedKeys.add(key);
+                    policy.recordWrite(key).forEach(cachedKeys::remove);
+                }
+            }
+        }
+
+        // Scan five times the capacity, within the sample size so that the hot keys are not aged out yet.
+        for (int i = 0; i < 500; i++) {
+            String key = "scan-" + i;
+            cachedKeys.add(key);
+            policy.recordWrite(key).forEach(cachedKeys::remove);
+        }
+
+        for (int i = 0; i < 50; i++) {
+            Assert.assertTrue(cachedKeys.contains("hot-" + i), "Hot key should not be flushed by a scan.");
+        }
+    }
+
+    @Test
+    public void testTinyCapacities() {
+
+        for (int capacity = 1; capacity <= 2; capacity++) {
+            TinyLfuPolicy<String> policy = new TinyLfuPolicy<>(capacity);
+            Set<String> cachedKeys = new HashSet<>();
+            for (int i = 0; i < 20; i++) {
+                String key = "user-" + (i % 5);
+                if (cachedKeys.contains(key)) {
+                    policy.recordAccess(key);
+                } else {
+                    cachedKeys.add(key);
+                    policy.recordWrite(key).forEach(cachedKeys::remove);
+                }
+                Assert.assertTrue(cachedKeys.size() <= capacity, "Cache should not exceed the max capacity.");
+                Assert.assertEquals(policy.size(), cachedKeys.size(), "Policy should track the cached keys.");
+            }
+        }
+    }
+
+    @Test
+    public void testHottestKeys() {
+
+        TinyLfuPolicy<String> policy = new TinyLfuPolicy<>(100);
+        for (int i = 0; i < 100; i++) {
+            policy.recordWrite("user-" + i);
+        }
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j <= i; j++) {
+                policy.recordAccess("user-" + i);
+            }
+        }
+
+        List<String> hottestKeys = policy.hottestKeys(5);
+        Assert.assertEquals(hottestKeys, Arrays.asList("user-9", "user-8", "user-7", "user-6", "user-5"),
+                "Keys should be ordered by frequency.");
+        Assert.assertEquals(policy.hottestKeys(1000).size(), 100, "All the tracked keys should be returned.");
+    }
+
+    @Test
+    public void testRecentKeys() {
+
+        TinyLfuPolicy<String> policy = new TinyLfuPolicy<>(100);
+        for (int i = 0; i < 100; i++) {
+            policy.recordWrite("user-" + i);
+        }
+        // Frequently accessed keys which are not accessed lately should not be the most recent.
+        for (int i = 0; i < 10; i++) {
+            policy.recordAccess("user-0");
+        }
+        policy.recordAccess("user-50");
+        policy.recordRemoval("user-99");
+
+        Assert.assertEquals(policy.recentKeys(3), Arrays.asList("user-50", "user-0", "user-98"),
+                "Keys should be ordered by recency.");
+        Assert.assertEquals(policy.recentKeys(1000).size(), 99, "Removed keys should not be returned.");
+    }
+
+    private static int[] generateWorkload() {
+
+        double[] cumulativeWeights = new double[KEY_SPACE];
+        double totalWeight = 0;
+        for (int i = 0; i < KEY_SPACE; i++) {
+            totalWeight += 1 / Math.pow(i + 1, 0.99);
+            cumulativeWeights[i] = totalWeight;
+        }
+
+        Random random = new Random(42);
+        int[] keys = new int[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            if (i % 5 == 0) {
+                // One off key, as read by a directory scan.
+                keys[i] = KEY_SPACE + i;
+            } else {
+                int index = Arrays.binarySearch(cumulativeWeights, random.nextDouble() * totalWeight);
+                keys[i] = index < 0 ? -index - 1 : index;
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wso2.carbon.identity.mgt.store.test.unit;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.datasource.core.api.DataSourceService;
+import org.wso2.carbon.identity.mgt.impl.JDBCUniqueIdResolver;
+import org.wso2.carbon.identity.mgt.impl.RandomUniqueIdGenerator;
+import org.wso2.carbon.identity.mgt.impl.TimeOrderedUniqueIdGenerator;
+import org.wso2.carbon.identity.mgt.impl.internal.IdentityMgtDataHolder;
+import org.wso2.carbon.identity.mgt.impl.util.IdentityMgtConstants;
+import org.wso2.carbon.identity.mgt.impl.util.UniqueIdResolverConstants;
+import org.wso2.carbon.identity.mgt.resolver.DomainUser;
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdGenerator;
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolver;
+import org.wso2.carbon.identity.mgt.resolver.UniqueIdResolverConfig;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.sql.DataSource;
+
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.buildDomainUser;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.registerDataSources;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.restoreDataSourceService;
+import static org.wso2.carbon.identity.mgt.store.test.unit.H2TestHelper.runDbScript;
+
+/**
+ * Tests for the unique id generators.
+ */
+public class UniqueIdGeneratorTests {
+
+    private static final Logger log = LoggerFactory.getLogger(UniqueIdGeneratorTests.class);
+
+
+    @Test
+    public void testTimeOrderedIdFormat() {
+
+        long before = System.currentTimeMillis();
+        UUID uuid = UUID.fromString(new TimeOrderedUniqueIdGenerator().generate());
+        long after = System.currentTimeMillis();
+
+        Assert.assertEquals(uuid.version(), 7);
+        Assert.assertEquals(uuid.variant(), 2);
+        long timestamp = uuid.getMostSignificantBits() >>> 16;
+        Assert.assertTrue(timestamp >= before && timestamp <= after + 1, "Id should start with the creation time.");
+    }
+
+    @Test
+    public void testTimeOrderedIdsAreIncreasing() {
+
+        UniqueIdGenerator generator = new TimeOrderedUniqueIdGenerator();
+        String lastId = generator.generate();
+        // More ids than the counter holds in a millisecond.
+        for (int i = 0; i < 100000; i++) {
+            String id = generator.generate();
+            Assert.assertTrue(id.compareTo(lastId) > 0, "Ids should be ordered as strings: " + lastId + ", " + id);
+            lastId = id;
+        }
+    }
+
+    @Test
+    public void testTimeOrderedIdsAreUniqueAcrossThreads() throws Exception {
+
+        UniqueIdGenerator generator = new TimeOrderedUniqueIdGenerator();
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        int threadCount = 8;
+        int idsPerThread = 20000;
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                futures.add(executorService.submit(() -> {
+                    for (int j = 0; j < idsPerThread; j++) {
+                        ids.add(generator.generate());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        Assert.assertEquals(ids.size(), threadCount * idsPerThread);
+    }
+
+    @Test
+    public void testDefaultGenerators() {
+
+        Map<String, UniqueIdGenerator> generators = IdentityMgtDataHolder.getInstance().getUniqueIdGeneratorMap();
+        Assert.assertTrue(generators.get(IdentityMgtConstants.RANDOM_UNIQUE_ID_GENERATOR_TYPE)
+                instanceof RandomUniqueIdGenerator);
+        Assert.assertTrue(generators.get(IdentityMgtConstants.TIME_ORDERED_UNIQUE_ID_GENERATOR_TYPE)
+                instanceof TimeOrderedUniqueIdGenerator);
+    }
+
+    @Test(groups = "benchmark")
+    public void testBulkInsertBenchmark() throws Exception {
+
+        // Run with -DidGeneratorBenchmarkSize=1000000 for the full size comparison.
+        int userCount = Integer.getInteger("idGeneratorBenchmarkSize", 50000);
+        int domainId = 1;
+
+        Map<String, UniqueIdGenerator> generators = new HashMap<>();
+        generators.put("WSO2_IDM_RANDOM_ID_DB", new RandomUniqueIdGenerator());
+        generators.put("WSO2_IDM_TIME_ORDERED_ID_DB", new TimeOrderedUniqueIdGenerator());
+
+        Map<String, DataSource> dataSources = new HashMap<>();
+        for (String dataSourceName : generators.keySet()) {
+            dataSources.put(dataSourceName, createDatabase(dataSourceName));
+        }
+        DataSourceService previousDataSourceService = registerDataSources(dataSources);
+
+        try {
+            for (Map.Entry<String, UniqueIdGenerator> entry : generators.entrySet()) {
+                Map<String, String> properties = new HashMap<>();
+                properties.put(UniqueIdResolverConstants.DATA_SOURCE, entry.getKey());
+                UniqueIdResolver resolver = new JDBCUniqueIdResolver();
+                resolver.init(new UniqueIdResolverConfig("JDBCUniqueIdResolver", properties));
+
+                List<DomainUser> domainUsers = new ArrayList<>(userCount);
+                for (int i = 0; i < userCount; i++) {
+                    domainUsers.add(buildDomainUser(entry.getValue().generate(), "benchmark-user-" + i));
+                }
+
+                long start = System.nanoTime();
+                Assert.assertEquals(resolver.addUsers(domainUsers, domainId).size(), userCount);
+                long elapsedMillis = Math.max((System.nanoTime() - start) / 1000000, 1);
+
+                DataSource dataSource = dataSources.get(entry.getKey());
+                log.info("{} added {} users in {} ms ({} users/s). IDM_USER uses {} KB and IDM_USER_INFO uses {} KB " +
+                                "with their indexes.", entry.getValue().getClass().getSimpleName(), userCount,
+                        elapsedMillis, userCount * 1000L / elapsedMillis,
+                        getDiskSpaceUsed(dataSource, "IDM_USER") / 1024,
+                        getDiskSpaceUsed(dataSource, "IDM_USER_INFO") / 1024);
+            }
+        } finally {
+            restoreDataSourceService(previousDataSourceService);
+        }
+    }
+
+    private long getDiskSpaceUsed(DataSource dataSource, String table) throws Exception {
+
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT DISK_SPACE_USED('" + table + "')")) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private DataSource createDatabase(String name) throws Exception {
+
+        // File databases, so that the size of the tables reflects the pages written by the inserts.
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:" + Paths.get("target", "id-generator-benchmark", name).toAbsolutePath());
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        runDbScript(dataSource);
+        return dataSource;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.store.test.unit;
+
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.mgt.impl.util.UnitOfWork;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import javax.sql.DataSource;
+
+/**
+ * Unit tests for the read only units of work.
+ */
+public class UnitOfWorkTests {
+
+    @Test
+    public void testReadOnlyUnitOfWork() throws SQLException {
+
+        Connection connection = Mockito.mock(Connection.class);
+        DataSource dataSource = Mockito.mock(DataSource.class);
+        Mockito.when(dataSource.getConnection()).thenReturn(connection);
+
+        try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(dataSource)) {
+            unitOfWork.endTransaction();
+        }
+
+        Mockito.verify(connection).setReadOnly(true);
+        Mockito.verify(connection).setReadOnly(false);
+        Mockito.verify(connection).close();
+        Mockito.verify(connection, Mockito.never()).commit();
+        Mockito.verify(connection, Mockito.never()).rollback();
+    }
+
+    @Test
+    public void testReadOnlyUnitOfWorkRestoresAutoCommit() throws SQLException {
+
+        Connection connection = Mockito.mock(Connection.class);
+        DataSource dataSource = Mockito.mock(DataSource.class);
+        Mockito.when(dataSource.getConnection()).thenReturn(connection);
+        Mockito.when(connection.getAutoCommit()).thenReturn(false);
+
+        try (UnitOfWork.ReadScope readScope = UnitOfWork.openReadScope()) {
+            try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(dataSource)) {
+                unitOfWork.endTransaction();
+            }
+        }
+
+        // The reads run with auto commit, and the pooled connection gets back its settings once they are done.
+        InOrder inOrder = Mockito.inOrder(connection);
+        inOrder.verify(connection).setAutoCommit(true);
+        inOrder.verify(connection).setReadOnly(true);
+        inOrder.verify(connection).setReadOnly(false);
+        inOrder.verify(connection).setAutoCommit(false);
+        inOrder.verify(connection).close();
+        Mockito.verify(connection, Mockito.never()).commit();
+        Mockito.verify(connection, Mockito.never()).rollback();
+    }
+
+    @Test
+    public void testReadOnlyUnitOfWorkKeepsAutoCommit() throws SQLException {
+
+        Connection connection = Mockito.mock(Connection.class);
+        DataSource dataSource = Mockito.mock(DataSource.class);
+        Mockito.when(dataSource.getConnection()).thenReturn(connection);
+        Mockito.when(connection.getAutoCommit()).thenReturn(true);
+
+        try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(dataSource)) {
+            unitOfWork.endTransaction();
+        }
+
+        Mockito.verify(connection, Mockito.never()).setAutoCommit(Mockito.anyBoolean());
+        Mockito.verify(connection).close();
+    }
+
+    @Test
+    public void testReadScopeSharesConnection() throws SQLException {
+
+        Connection connection = Mockito.mock(Connection.class);
+        DataSource dataSource = Mockito.mock(DataSource.class);
+        Mockito.when(dataSource.getConnection()).thenReturn(connection);
+
+        try (UnitOfWork.ReadScope readScope = UnitOfWork.openReadScope()) {
+            try (UnitOfWork.ReadScope nestedReadScope = UnitOfWork.openReadScope()) {
+                try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(dataSource)) {
+                    unitOfWork.getConnection();
+                }
+            }
+            try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(dataSource)) {
+                unitOfWork.getConnection();
+            }
+            Mockito.verify(connection, Mockito.never()).close();
+        }
+
+        Mockito.verify(dataSource, Mockito.times(1)).getConnection();
+        Mockito.verify(connection, Mockito.times(1)).close();
+
+        // Units of work after the scope take their own connections.
+        try (UnitOfWork unitOfWork = UnitOfWork.beginReadOnly(dataSource)) {
+            unitOfWork.getConnection();
+        }
+        Mockito.verify(dataSource, Mockito.times(2)).getConnection();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.identity.mgt.store.test.unit;
+
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.mgt.claim.Claim;
+import org.wso2.carbon.identity.mgt.claim.MetaClaim;
+import org.wso2.carbon.identity.mgt.claim.MetaClaimMapping;
+import org.wso2.carbon.identity.mgt.exception.UserNotFoundException;
+import org.wso2.carbon.identity.mgt.impl.Domain;
+import org.wso2.carbon.identity.mgt.impl.IdentityStoreImpl;
+import org.wso2.carbon.identity.mgt.impl.UserExistenceFilter;
+import org.wso2.carbon.identity.mgt.impl.config.AuthenticationConfig;
+import org.wso2.carbon.identity.mgt.impl.config.UserExistenceFilterConfig;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Unit tests for the answers and the statistics of the user existence filter.
+ */
+public class UserExistenceFilterTests {
+
+    private static final String EMAIL_CLAIM_URI = "http://wso2.org/claims/email";
+
+    private static final Claim EMAIL_CLAIM = new Claim("http://wso2.org/claims", EMAIL_CLAIM_URI, "alice@wso2.com");
+
+    @Test
+    public void testFilterAnswers() throws Exception {
+
+        Domain domain = mockDomain();
+        Mockito.when(domain.listDomainUsers((String) null, 1000)).thenReturn(Collections.emptyList());
+        UserExistenceFilter userExistenceFilter = new UserExistenceFilter(new UserExistenceFilterConfig(),
+                Collections.singletonList(domain));
+
+        Assert.assertEquals(userExistenceFilter.check(domain, EMAIL_CLAIM), UserExistenceFilter.Answer.UNKNOWN);
+        Assert.assertEquals(userExistenceFilter.getLookupCount(), 0, "Unanswered checks should not be counted.");
+
+        userExistenceFilter.rebuild(domain);
+        Assert.assertEquals(userExistenceFilter.check(domain, EMAIL_CLAIM), UserExistenceFilter.Answer.UNKNOWN,
+                "Values taken on the other nodes are not known before the filter is authoritative.");
+
+        userExistenceFilter.setAuthoritative(true);
+        Assert.assertEquals(userExistenceFilter.check(domain, EMAIL_CLAIM), UserExistenceFilter.Answer.UNKNOWN,
+                "Filters built before the filter became authoritative may miss values.");
+
+        userExistenceFilter.rebuild(domain);
+        Assert.assertEquals(userExistenceFilter.check(domain, EMAIL_CLAIM), UserExistenceFilter.Answer.ABSENT);
+
+        userExistenceFilter.add(domain, Collections.singletonList(EMAIL_CLAIM));
+        Assert.assertEquals(userExistenceFilter.check(domain, EMAIL_CLAIM),
+                UserExistenceFilter.Answer.MAYBE_PRESENT);
+
+        userExistenceFilter.recordFalsePositive();
+        Assert.assertEquals(userExistenceFilter.getFalsePositiveRate(), 1.0);
+    }
+
+    @Test
+    public void testValueTakenOnAnotherNode() throws Exception {
+
+        Domain domain = mockDomain();
+        Mockito.when(domain.listDomainUsers((String) null, 1000)).thenReturn(Collections.emptyList());
+        UserExistenceFilter userExistenceFilter = new UserExistenceFilter(new UserExistenceFilterConfig(),
+                Collections.singletonList(domain));
+        userExistenceFilter.setAuthoritative(true);
+        userExistenceFilter.rebuild(domain);
+
+        // Claim invalidations carry the claim URI and the value, both of which may contain colons.
+        userExistenceFilter.addTaken(EMAIL_CLAIM_URI + ":Alice@wso2.com");
+        Assert.assertEquals(userExistenceFilter.check(domain, EMAIL_CLAIM),
+                UserExistenceFilter.Answer.MAYBE_PRESENT);
+        Assert.assertEquals(userExistenceFilter.check(domain, new Claim("http://wso2.org/claims", EMAIL_CLAIM_URI,
+                "bob@wso2.com")), UserExistenceFilter.Answer.ABSENT);
+    }
+
+    @Test
+    public void testUnansweredLookupIsNotFalsePositive() throws Exception {
+
+        Domain domain = mockDomain();
+        Mockito.when(domain.getName()).thenReturn("PRIMARY");
+        Mockito.when(domain.isClaimSupported(EMAIL_CLAIM_URI)).thenReturn(true);
+        Mockito.when(domain.getDomainUserId(EMAIL_CLAIM)).thenThrow(new UserNotFoundException("Invalid claim value."));
+
+        // Keep the first build of the filters in progress, so that the filter has no answer for the lookup.
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(domain.listDomainUsers((String) null, 1000)).thenAnswer(invocation -> {
+            release.await();
+            return Collections.emptyList();
+        });
+
+        UserExistenceFilterConfig filterConfig = new UserExistenceFilterConfig();
+        filterConfig.setEnable(true);
+        IdentityStoreImpl identityStore = new IdentityStoreImpl(Collections.singletonList(domain),
+                new AuthenticationConfig(), filterConfig);
+
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName("org.wso2.carbon.identity.mgt:type=UserExistenceFilter");
+        try {
+            Assert.assertFalse(identityStore.isUserExist(Collections.singletonList(EMAIL_CLAIM), "PRIMARY"));
+            Assert.assertEquals(mBeanServer.getAttribute(objectName, "FalsePositiveCount"), 0L,
+                    "A miss without a positive answer of the filter is not a false positive.");
+        } finally {
+            release.countDown();
+            identityStore.close();
+        }
+
+        Assert.assertFalse(mBeanServer.isRegistered(objectName), "Closing the store should stop the filter.");
+    }
+
+    private static Domain mockDomain() throws Exception {
+
+        MetaClaimMapping metaClaimMapping = new MetaClaimMapping(new MetaClaim("http://wso2.org/claims",
+                EMAIL_CLAIM_URI), "IDENTITY_STORE", "email");
+        metaClaimMapping.setUnique(true);
+
+        Domain domain = Mockito.mock(Domain.class);
+        Mockito.when(domain.getId()).thenReturn(1);
+        Mockito.when(domain.getMetaClaimMappings()).thenReturn(Collections.singletonList(metaClaimMapping));
+        Mockito.when(domain.getMetaClaimMapping(EMAIL_CLAIM_URI)).thenReturn(metaClaimMapping);
+        return domain;
+    }
+}
@@ -25,8 +25,7 @@ CREATE TABLE IDM_USER
   DOMAIN_ID         INTEGER                            NOT NULL,
   CONNECTOR_TYPE    CHAR(1) DEFAULT 'I'                NOT NULL,
   CONNECTOR_ID      VARCHAR(64)                        NOT NULL,
-  CONNECTOR_USER_ID VARCHAR(64)                        NOT NULL,
-  STATE             VARCHAR(64)                        NOT NULL
+  CONNECTOR_USER_ID VARCHAR(64)                        NOT NULL
 );
 
 CREATE TABLE IDM_GROUP
@@ -38,6 +37,14 @@ CREATE TABLE IDM_GROUP
   CONNECTOR_GROUP_ID VARCHAR(64)                        NOT NULL
 );
 
+CREATE TABLE IDM_USER_INFO
+(
+  USER_ID   VARCHAR(64) NOT NULL,
+  DOMAIN_ID INTEGER     NOT NULL,
+  STATE     VARCHAR(64) NOT NULL,
+  PRIMARY KEY (DOMAIN_ID, USER_ID)
+);
+
 CREATE UNIQUE INDEX IDM_ENTITY_INDEX_1
   ON IDM_USER (USER_ID, DOMAIN_ID, CONNECTOR_TYPE, CONNECTOR_ID, CONNECTOR_USER_ID);
 
@@ -56,6 +63,12 @@ CREATE INDEX IDM_ENTITY_INDEX_5
 CREATE INDEX IDM_ENTITY_INDEX_6
   ON IDM_GROUP (GROUP_ID);
 
+CREATE UNIQUE INDEX IDM_ENTITY_INDEX_7
+  ON IDM_USER (DOMAIN_ID, USER_ID, CONNECTOR_ID);
+
+CREATE UNIQUE INDEX IDM_ENTITY_INDEX_8
+  ON IDM_GROUP (DOMAIN_ID, GROUP_ID, CONNECTOR_ID);
+
 CREATE TABLE IDM_USER_GROUP_MAPPING
 (
   ID        INTEGER AUTO_INCREMENT PRIMARY KEY NOT NULL,
@@ -64,6 +77,12 @@ CREATE TABLE IDM_USER_GROUP_MAPPING
   DOMAIN_ID INTEGER                            NOT NULL
 );
 
+CREATE UNIQUE INDEX IDM_MAPPING_INDEX_1
+  ON IDM_USER_GROUP_MAPPING (DOMAIN_ID, USER_ID, GROUP_ID);
+
+CREATE INDEX IDM_MAPPING_INDEX_2
+  ON IDM_USER_GROUP_MAPPING (DOMAIN_ID, GROUP_ID, USER_ID);
+
 CREATE TABLE IF NOT EXISTS IDN_RECOVERY_DATA (
   USER_UNIQUE_ID VARCHAR(64) NOT NULL,
   CODE VARCHAR(255) NOT NULL,
@@ -0,0 +1,72 @@
+--
+-- Copyright (c) 2017, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+/* Moves the state of the users from each of their partitions in IDM_USER to a single row in IDM_USER_INFO. This runs
+ * first, so that nothing is changed if it fails.
+ *
+ * All the partitions of a user are expected to have the same state. Rather than picking one of the states, the insert
+ * fails on the primary key of IDM_USER_INFO, naming a user whose partitions differ. Such users can be listed with
+ *
+ *   SELECT DOMAIN_ID, USER_ID FROM IDM_USER GROUP BY DOMAIN_ID, USER_ID HAVING COUNT(DISTINCT STATE) > 1;
+ *
+ * and have to be given a single state before running the migration again.
+ *
+ * Every user with a partition gets an info row, as the resolver does not see or update the users without one. Users
+ * which already have an info row, for example from a node started on the new schema, keep it.
+ */
+
+CREATE TABLE IF NOT EXISTS IDM_USER_INFO
+(
+  USER_ID   VARCHAR(64) NOT NULL,
+  DOMAIN_ID INTEGER     NOT NULL,
+  STATE     VARCHAR(64) NOT NULL,
+  PRIMARY KEY (DOMAIN_ID, USER_ID)
+);
+
+INSERT INTO IDM_USER_INFO (USER_ID, DOMAIN_ID, STATE)
+  SELECT DISTINCT U.USER_ID, U.DOMAIN_ID, U.STATE FROM IDM_USER U
+  WHERE NOT EXISTS (SELECT 1 FROM IDM_USER_INFO I WHERE I.DOMAIN_ID = U.DOMAIN_ID AND I.USER_ID = U.USER_ID);
+
+ALTER TABLE IDM_USER DROP COLUMN STATE;
+
+/* Adds the covering indexes of the membership lookups to IDM_USER_GROUP_MAPPING. Duplicate memberships are removed
+ * first, since a user can be a member of a group only once.
+ */
+
+DELETE FROM IDM_USER_GROUP_MAPPING
+WHERE ID NOT IN (SELECT MIN(ID) FROM IDM_USER_GROUP_MAPPING GROUP BY DOMAIN_ID, USER_ID, GROUP_ID);
+
+CREATE UNIQUE INDEX IF NOT EXISTS IDM_MAPPING_INDEX_1
+  ON IDM_USER_GROUP_MAPPING (DOMAIN_ID, USER_ID, GROUP_ID);
+
+CREATE INDEX IF NOT EXISTS IDM_MAPPING_INDEX_2
+  ON IDM_USER_GROUP_MAPPING (DOMAIN_ID, GROUP_ID, USER_ID);
+
+/* Adds the unique indexes of the partition upserts. A user or a group has a single partition per connector, so any
+ * duplicate partitions are removed first.
+ */
+
+DELETE FROM IDM_USER
+WHERE ID NOT IN (SELECT MIN(ID) FROM IDM_USER GROUP BY DOMAIN_ID, USER_ID, CONNECTOR_ID);
+
+DELETE FROM IDM_GROUP
+WHERE ID NOT IN (SELECT MIN(ID) FROM IDM_GROUP GROUP BY DOMAIN_ID, GROUP_ID, CONNECTOR_ID);
+
+CREATE UNIQUE INDEX IF NOT EXISTS IDM_ENTITY_INDEX_7
+  ON IDM_USER (DOMAIN_ID, USER_ID, CONNECTOR_ID);
+
+CREATE UNIQUE INDEX IF NOT EXISTS IDM_ENTITY_INDEX_8
+  ON IDM_GROUP (DOMAIN_ID, GROUP_ID, CONNECTOR_ID);
@@ -31,11 +31,20 @@ CREATE TABLE IF NOT EXISTS IDM_USER
 
 CREATE TABLE IF NOT EXISTS IDM_GROUP
 (
-  ID                INTEGER AUTO_INCREMENT PRIMARY KEY NOT NULL,
-  USER_ID           VARCHAR(64)                        NOT NULL,
-  DOMAIN_ID         INTEGER                            NOT NULL,
-  CONNECTOR_ID      VARCHAR(64)                        NOT NULL,
-  CONNECTOR_USER_ID VARCHAR(64)                        NOT NULL
+  ID                 INTEGER AUTO_INCREMENT PRIMARY KEY NOT NULL,
+  GROUP_ID           VARCHAR(64)                        NOT NULL,
+  DOMAIN_ID          INTEGER                            NOT NULL,
+  CONNECTOR_ID       VARCHAR(64)                        NOT NULL,
+  CONNECTOR_GROUP_ID VARCHAR(64)                        NOT NULL
+)
+  ENGINE INNODB;
+
+CREATE TABLE IF NOT EXISTS IDM_USER_INFO
+(
+  USER_ID   VARCHAR(64) NOT NULL,
+  DOMAIN_ID INTEGER     NOT NULL,
+  STATE     VARCHAR(64) NOT NULL,
+  PRIMARY KEY (DOMAIN_ID, USER_ID)
 )
   ENGINE INNODB;
 
@@ -57,6 +66,12 @@ CREATE INDEX IDM_ENTITY_INDEX_5
 CREATE INDEX IDM_ENTITY_INDEX_6
   ON IDM_GROUP (GROUP_ID);
 
+CREATE UNIQUE INDEX IDM_ENTITY_INDEX_7
+  ON IDM_USER (DOMAIN_ID, USER_ID, CONNECTOR_ID);
+
+CREATE UNIQUE INDEX IDM_ENTITY_INDEX_8
+  ON IDM_GROUP (DOMAIN_ID, GROUP_ID, CONNECTOR_ID);
+
 CREATE TABLE IDM_USER_GROUP_MAPPING
 (
   ID        INTEGER AUTO_INCREMENT PRIMARY KEY NOT NULL,
@@ -64,3 +79,10 @@ CREATE TABLE IDM_USER_GROUP_MAPPING
   GROUP_ID  VARCHAR(64)                        NOT NULL,
   DOMAIN_ID INTEGER                            NOT NULL
 )
+  ENGINE INNODB;
+
+CREATE UNIQUE INDEX IDM_MAPPING_INDEX_1
+  ON IDM_USER_GROUP_MAPPING (DOMAIN_ID, USER_ID, GROUP_ID);
+
+CREATE INDEX IDM_MAPPING_INDEX_2
+  ON IDM_USER_GROUP_MAPPING (DOMAIN_ID, GROUP_ID, USER_ID);